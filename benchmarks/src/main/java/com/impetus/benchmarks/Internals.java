@@ -0,0 +1,24 @@
+package com.impetus.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Handles on private service methods, so hot paths that aren't reachable through a public API can be
+ * measured without widening their visibility. Keep the handle in a {@code static final} field; the JIT then
+ * inlines through it like a direct call.
+ */
+final class Internals {
+
+    private Internals() {
+    }
+
+    static MethodHandle method(Class<?> owner, String name, Class<?>... parameterTypes) {
+        try {
+            var method = owner.getDeclaredMethod(name, parameterTypes);
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No " + owner.getSimpleName() + "." + name + " to benchmark", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.impetus.benchmarks;
+
+import com.impetus.api_gateway.security.JwtService;
+import com.impetus.user_service.config.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token work on every request: user-service signing an access token at login
+ * ({@code JwtTokenProvider.createAccessToken}) and the gateway parsing and validating it
+ * ({@code JwtService.extractAllClaims}, {@code JwtService.isTokenValid}), with a fresh RS256 key pair.
+ * <p>
+ * Logging is set to WARN in the benchmark jar, so {@code isTokenValid} pays for building its log messages but
+ * not for writing them.
+ * <p>
+ * {@code java -jar benchmarks/target/benchmarks.jar JwtBenchmark}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final List<String> ROLES = List.of("ROLE_USER", "ROLE_ADMIN");
+    private static final long ACCESS_EXP = 15 * 60 * 1000L;
+    private static final long REFRESH_EXP = 7 * 24 * 60 * 60 * 1000L;
+
+    private JwtTokenProvider tokenProvider;
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keys = generator.generateKeyPair();
+        Resource privateKey = pem("PRIVATE KEY", keys.getPrivate().getEncoded());
+        Resource publicKey = pem("PUBLIC KEY", keys.getPublic().getEncoded());
+
+        tokenProvider = new JwtTokenProvider(privateKey, publicKey, ACCESS_EXP, REFRESH_EXP);
+        jwtService = new JwtService(privateKey, publicKey, ACCESS_EXP, REFRESH_EXP);
+        token = tokenProvider.createAccessToken("4242", ROLES, "auth-key-v1");
+    }
+
+    private static Resource pem(String type, byte[] der) {
+        String pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+        return new ByteArrayResource(pem.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public String createAccessToken() {
+        return tokenProvider.createAccessToken("4242", ROLES, "auth-key-v1");
+    }
+
+    @Benchmark
+    public Claims extractAllClaims() {
+        return jwtService.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtService.isTokenValid(token);
+    }
+}
@@ -0,0 +1,91 @@
+package com.impetus.benchmarks;
+
+import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.ShippingAddress;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.mapper.OrderMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order to {@link OrderResponse} mapping: the reflective ModelMapper that order-service used to call on every
+ * read against the hand-written {@link OrderMapper}, for orders of 1, 10 and 50 lines.
+ * <p>
+ * {@code java -jar benchmarks/target/benchmarks.jar OrderMappingBenchmark -prof gc}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderMappingBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int items;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final OrderMapper orderMapper = new OrderMapper();
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        order = new Order();
+        order.setId(1L);
+        order.setUserId(4242L);
+        order.setOrderNumber("ORD-0DXKV5Q7M001");
+        order.setStatus(OrderStatus.CONFIRMED);
+        order.setPaymentStatus(PaymentStatus.CAPTURED);
+        order.setPaymentMode(PaymentMode.UPI);
+        order.setPlacedAt(Instant.now());
+
+        ShippingAddress address = new ShippingAddress();
+        address.setId(9L);
+        address.setUserId(4242L);
+        address.setContactName("Bench User");
+        address.setPhone("9876543210");
+        address.setAddressLabel("HOME");
+        address.setAddressLine1("221B Baker Street");
+        address.setCity("Indore");
+        address.setState("MP");
+        address.setPincode("452001");
+        address.setOrder(order);
+        order.setShippingAddress(address);
+
+        int total = 0;
+        for (int i = 0; i < items; i++) {
+            OrderItem item = new OrderItem();
+            item.setId((long) i);
+            item.setOrder(order);
+            item.setProductId("P" + i);
+            item.setProductSku("SKU-" + i);
+            item.setProductName("Product " + i);
+            item.setUnitPrice(100 + i);
+            item.setQuantity(2);
+            item.setTotalPrice(2 * (100 + i));
+            total += item.getTotalPrice();
+            order.getItems().add(item);
+        }
+        order.setTotalAmount(total);
+
+        // Build ModelMapper's type map outside the measurement, as a warmed-up service would have
+        modelMapper.map(order, OrderResponse.class);
+    }
+
+    @Benchmark
+    public OrderResponse modelMapper() {
+        return modelMapper.map(order, OrderResponse.class);
+    }
+
+    @Benchmark
+    public OrderResponse orderMapper() {
+        return orderMapper.toResponse(order);
+    }
+}
@@ -0,0 +1,66 @@
+package com.impetus.benchmarks;
+
+import com.impetus.order_service.Util.OrderNumberGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order number generation: the old {@code "ORD-" + millis + userId + new Random()} scheme against
+ * {@link OrderNumberGenerator}, single threaded and with 8 threads contending on one generator.
+ * <p>
+ * {@code java -jar benchmarks/target/benchmarks.jar OrderNumberGeneratorBenchmark -prof gc}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderNumberGeneratorBenchmark {
+
+    @Param({"DECIMAL", "CROCKFORD32"})
+    public OrderNumberGenerator.Encoding encoding;
+
+    private OrderNumberGenerator generator;
+    private final Long userId = 4242L;
+
+    @Setup
+    public void setUp() {
+        generator = new OrderNumberGenerator(7, encoding, "ORD-");
+    }
+
+    // Copy of the removed OrderServiceImpl.generateOrderNumber, kept as the baseline
+    private static String legacyOrderNumber(Long userId) {
+        return "ORD-" + Instant.now().toEpochMilli() + "-" + (userId % 1000) + "-" + new Random().nextInt(9999);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return legacyOrderNumber(userId);
+    }
+
+    @Benchmark
+    public String snowflake() {
+        return generator.next();
+    }
+
+    @Benchmark
+    public long snowflakeIdOnly() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyContended() {
+        return legacyOrderNumber(userId);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String snowflakeContended() {
+        return generator.next();
+    }
+}
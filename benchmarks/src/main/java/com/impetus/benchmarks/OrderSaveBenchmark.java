@@ -0,0 +1,145 @@
+package com.impetus.benchmarks;
+
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.OrderReservation;
+import com.impetus.order_service.entity.Payment;
+import com.impetus.order_service.entity.ShippingAddress;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of saving one order aggregate (order, N items, N reservations, address, payment) in its own
+ * transaction, by line count, with JDBC batching off ({@code batchSize=0}, one INSERT round trip per row as
+ * under IDENTITY ids) and on.
+ * <p>
+ * Defaults to in-memory H2, which has no network round trips and so understates the gap. For real numbers
+ * point it at a scratch MySQL schema (the tables are dropped and recreated):
+ * <pre>
+ * java -Dbench.jdbc.user=root -Dbench.jdbc.password=... -jar benchmarks/target/benchmarks.jar OrderSaveBenchmark \
+ *   -p jdbcUrl='jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true'
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderSaveBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    @Param({"0", "50"})
+    public int batchSize;
+
+    @Param({"jdbc:h2:mem:orders;DB_CLOSE_DELAY=-1"})
+    public String jdbcUrl;
+
+    private SessionFactory sessionFactory;
+    private final AtomicLong orderNumbers = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Order.class)
+                .addAnnotatedClass(OrderItem.class)
+                .addAnnotatedClass(OrderReservation.class)
+                .addAnnotatedClass(ShippingAddress.class)
+                .addAnnotatedClass(Payment.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, jdbcUrl)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, System.getProperty("bench.jdbc.user", "sa"))
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, System.getProperty("bench.jdbc.password", ""))
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                // Column names as Spring Boot maps them
+                .setProperty(AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none")
+                // Same settings as JpaBatchingConfig
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize)
+                .setProperty(AvailableSettings.ORDER_INSERTS, true)
+                .setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+                .buildSessionFactory();
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Long saveOrder() {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction tx = session.beginTransaction();
+            Order order = newOrder();
+            session.persist(order);
+            tx.commit();
+            return order.getId();
+        }
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setOrderNumber("ORD-" + orderNumbers.incrementAndGet());
+        order.setUserId(7L);
+        order.setStatus(OrderStatus.PENDING_PAYMENT);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentMode(PaymentMode.UPI);
+        order.setSubtotalAmount(100 * lines);
+        order.setTaxAmount(0);
+        order.setShippingFee(0);
+        order.setDiscountAmount(0);
+        order.setTotalAmount(100 * lines);
+        order.setPlacedAt(Instant.now());
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setProductId("P" + i);
+            item.setProductSku("SKU-" + i);
+            item.setProductName("Product " + i);
+            item.setUnitPrice(100);
+            item.setQuantity(1);
+            item.setTotalPrice(100);
+            order.addItem(item);
+
+            OrderReservation reservation = new OrderReservation();
+            reservation.setProductId("P" + i);
+            reservation.setQuantity(1);
+            reservation.setStatus(ReservationStatus.PENDING);
+            reservation.setCreatedAt(Instant.now());
+            order.addReservation(reservation);
+        }
+
+        ShippingAddress address = new ShippingAddress();
+        address.setUserId(7L);
+        address.setContactName("Asha");
+        address.setPhone("9876543210");
+        address.setAddressLabel("Home");
+        address.setAddressLine1("1 MG Road");
+        address.setCity("Bengaluru");
+        address.setState("KA");
+        address.setPincode("560001");
+        address.setOrder(order);
+        order.setShippingAddress(address);
+
+        Payment payment = new Payment();
+        payment.setUserId(7L);
+        payment.setAmountPaisa(100 * lines * 100);
+        payment.setPaymentStatus(PaymentStatus.INITIATED);
+        payment.setOrder(order);
+        order.setPaymentReference(payment);
+        return order;
+    }
+}
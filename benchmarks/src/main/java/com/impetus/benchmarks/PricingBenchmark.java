@@ -0,0 +1,70 @@
+package com.impetus.benchmarks;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import com.impetus.order_service.entity.Cart;
+import com.impetus.order_service.entity.CartItem;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.service.Impl.OrderServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pricing loop of {@code OrderServiceImpl.createOrderFromCart}: matching cart lines to product snapshots,
+ * stock and price checks, and building the order items, reservations and totals, for carts of 1, 10 and 50
+ * lines. The remote lookups and the save around it are left out.
+ * <p>
+ * {@code java -jar benchmarks/target/benchmarks.jar PricingBenchmark}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PricingBenchmark {
+
+    private static final MethodHandle PRICE_ORDER =
+            Internals.method(OrderServiceImpl.class, "priceOrder", Order.class, Cart.class, List.class);
+
+    @Param({"1", "10", "50"})
+    public int items;
+
+    // priceOrder only reads its arguments, so none of the collaborators are needed
+    private final OrderServiceImpl service =
+            new OrderServiceImpl(null, null, null, null, null, null, null, null, null, null, null, null);
+    private Cart cart;
+    private List<ProductResponseDto> products;
+
+    @Setup
+    public void setUp() {
+        cart = new Cart();
+        cart.setUserId(4242L);
+        products = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProductId("P" + i);
+            item.setQuantity(2);
+            cart.getItems().add(item);
+
+            ProductResponseDto product = new ProductResponseDto();
+            product.setId("P" + i);
+            product.setSku("SKU-" + i);
+            product.setName("Product " + i);
+            product.setPrice(100 + i);
+            product.setInventoryQuantity(1_000);
+            products.add(product);
+        }
+    }
+
+    @Benchmark
+    public Order priceOrder() throws Throwable {
+        Order order = new Order();
+        PRICE_ORDER.invokeExact(service, order, cart, products);
+        return order;
+    }
+}
@@ -0,0 +1,63 @@
+package com.impetus.benchmarks;
+
+import com.impetus.product_service.dto.ProductResponseDto;
+import com.impetus.product_service.entity.Product;
+import com.impetus.product_service.service.Impl.ProductServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ProductServiceImpl.toResponse}, which every product read and the batch lookup behind checkout go
+ * through, mapping a page of 1, 10 and 100 products.
+ * <p>
+ * {@code java -jar benchmarks/target/benchmarks.jar ProductResponseMappingBenchmark}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductResponseMappingBenchmark {
+
+    private static final MethodHandle TO_RESPONSE =
+            Internals.method(ProductServiceImpl.class, "toResponse", Product.class);
+
+    @Param({"1", "10", "100"})
+    public int products;
+
+    // toResponse doesn't touch the repository or the template
+    private final ProductServiceImpl service = new ProductServiceImpl(null, null);
+    private List<Product> page;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            Product p = new Product();
+            p.setId("6650f1c2a7b3d41e9c0000" + String.format("%02d", i % 100));
+            p.setName("Product " + i);
+            p.setDescription("Description of product " + i);
+            p.setSku("SKU-" + i);
+            p.setPrice(BigDecimal.valueOf(10_000 + i, 2));
+            p.setInventoryQuantity(1_000);
+            p.setAttributes(Map.of("colour", "black", "size", "M"));
+            page.add(p);
+        }
+    }
+
+    @Benchmark
+    public List<ProductResponseDto> toResponse() throws Throwable {
+        List<ProductResponseDto> out = new ArrayList<>(page.size());
+        for (Product p : page) {
+            out.add((ProductResponseDto) TO_RESPONSE.invokeExact(service, p));
+        }
+        return out;
+    }
+}
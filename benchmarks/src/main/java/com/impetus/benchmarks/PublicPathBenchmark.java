@@ -0,0 +1,38 @@
+package com.impetus.benchmarks;
+
+import com.impetus.api_gateway.filter.AuthHeaderFilter;
+import com.impetus.api_gateway.security.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The gateway's {@code AuthHeaderFilter.isPublicPath}, run on every request before any token work: a path
+ * matching the first prefix, one matching further down the list, and an authenticated path that is checked
+ * against every prefix.
+ * <p>
+ * {@code java -jar benchmarks/target/benchmarks.jar PublicPathBenchmark}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PublicPathBenchmark {
+
+    private static final MethodHandle IS_PUBLIC_PATH =
+            Internals.method(AuthHeaderFilter.class, "isPublicPath", String.class);
+
+    @Param({"/auth/login", "/product/6650f1c2a7b3d41e9c000001", "/order/listOrdersOfUser/4242/scroll"})
+    public String path;
+
+    // isPublicPath doesn't use the JwtService
+    private final AuthHeaderFilter filter = new AuthHeaderFilter((JwtService) null);
+
+    @Benchmark
+    public boolean isPublicPath() throws Throwable {
+        return (boolean) IS_PUBLIC_PATH.invokeExact(filter, path);
+    }
+}
@@ -0,0 +1,63 @@
+package com.impetus.load_test;
+
+import com.impetus.load_test.driver.Fixtures;
+import com.impetus.load_test.driver.GatewayClient;
+import com.impetus.load_test.driver.LoadDriver;
+import com.impetus.load_test.driver.Seeder;
+import com.impetus.load_test.report.Results;
+import com.impetus.load_test.stack.ServiceStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the stack, seeds products and shoppers, runs the scenario mix through the gateway and reports
+ * latency percentiles, throughput and error rates per scenario and per endpoint. Results go to the console
+ * and to {@code summary.json} and {@code histograms/*.hgrm} in the output directory; the services' logs
+ * are in its {@code logs} folder.
+ * <pre>
+ * --rate=20                    scenarios started per second
+ * --warmup=PT30S --duration=PT2M
+ * --concurrency=64             scenarios in flight at most
+ * --shoppers=200 --products=500
+ * --mix=browse:50,search:20,cart:20,checkout:10
+ * --latency.product=20ms+10ms  added to order-service's calls to product-service (base + random jitter)
+ * --latency.user=5ms           added to order-service's calls to user-service
+ * --mysql.url=jdbc:mysql://localhost:3306/ --mysql.username=root --mysql.password=...
+ * --mongo.uri=mongodb://localhost:27017/productdb?replicaSet=rs0
+ *                              existing databases instead of Testcontainers
+ * --target=http://localhost:8084
+ *                              drive an already running gateway instead of starting one
+ * --admin.email=... --admin.password=...
+ * --service.order-service.orders.cart.store=write-behind
+ *                              any property for one service (also api-gateway)
+ * --jvm-args="-Xms256m -Xmx512m" --project-dir=. --output-dir=load-test/target/results
+ * </pre>
+ */
+public class LoadTest {
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    public static void main(String[] args) throws Exception {
+        // The JDK HTTP server behind the config stub and the latency proxies leaves Nagle on, which adds a
+        // ~40 ms delayed-ACK stall to every response on a kept-alive connection
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        if (config.target() != null) {
+            run(config, config.target());
+            return;
+        }
+        try (ServiceStack stack = ServiceStack.start(config)) {
+            run(config, stack.gatewayUrl());
+        }
+    }
+
+    private static void run(LoadTestConfig config, String gatewayUrl) throws Exception {
+        GatewayClient client = new GatewayClient(gatewayUrl);
+        Fixtures fixtures = new Seeder(client)
+                .seed(config.adminEmail(), config.adminPassword(), config.products(), config.shoppers());
+        Results results = new LoadDriver(config, client, fixtures).run();
+
+        results.print(System.out);
+        results.write(config.outputDir(), config);
+        log.info("Results written to {}", config.outputDir());
+    }
+}
@@ -0,0 +1,142 @@
+package com.impetus.load_test;
+
+import com.impetus.load_test.driver.Scenario;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line of {@link LoadTest}, parsed from {@code --name=value} arguments. Durations take ISO-8601
+ * ({@code PT2M}) or a number with {@code ms}, {@code s} or {@code m}.
+ */
+public record LoadTestConfig(
+        // Scenarios started per second, whatever the response times are
+        double rate,
+        Duration warmup,
+        Duration duration,
+        // Scenarios running at once; the rest wait and their wait counts towards scenario latency
+        int concurrency,
+        int shoppers,
+        int products,
+        Map<Scenario, Integer> mix,
+        Latency productLatency,
+        Latency userLatency,
+        // Existing databases instead of containers
+        String mysqlUrl,
+        String mysqlUsername,
+        String mysqlPassword,
+        String mongoUri,
+        // An already running gateway; nothing is started and no latency is injected
+        String target,
+        // Seeds the catalogue; the started user-service creates this account on startup
+        String adminEmail,
+        String adminPassword,
+        String jvmArgs,
+        // Extra properties per service: --service.order-service.orders.cart.store=write-behind
+        Map<String, Map<String, String>> serviceProperties,
+        Path projectDir,
+        Path outputDir) {
+
+    /**
+     * Delay added to every call through a {@code LatencyProxy}: {@code base} plus a uniform random part of up
+     * to {@code jitter}. Written {@code 20ms} or {@code 20ms+10ms}.
+     */
+    public record Latency(Duration base, Duration jitter) {
+        static Latency parse(String value) {
+            int plus = value.indexOf('+');
+            return plus < 0
+                    ? new Latency(duration(value), Duration.ZERO)
+                    : new Latency(duration(value.substring(0, plus)), duration(value.substring(plus + 1)));
+        }
+
+        public boolean isNone() {
+            return base.isZero() && jitter.isZero();
+        }
+
+        @Override
+        public String toString() {
+            return jitter.isZero() ? base.toMillis() + "ms" : base.toMillis() + "ms+" + jitter.toMillis() + "ms";
+        }
+    }
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        Map<String, Map<String, String>> serviceProperties = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith("service.")) {
+                int dot = name.indexOf('.', "service.".length());
+                if (dot < 0) {
+                    throw new IllegalArgumentException("Expected --service.<name>.<property>=value, got " + arg);
+                }
+                serviceProperties.computeIfAbsent(name.substring("service.".length(), dot), s -> new LinkedHashMap<>())
+                        .put(name.substring(dot + 1), value);
+            } else {
+                options.put(name, value);
+            }
+        }
+
+        LoadTestConfig config = new LoadTestConfig(
+                Double.parseDouble(options.getOrDefault("rate", "20")),
+                duration(options.getOrDefault("warmup", "PT30S")),
+                duration(options.getOrDefault("duration", "PT2M")),
+                Integer.parseInt(options.getOrDefault("concurrency", "64")),
+                Integer.parseInt(options.getOrDefault("shoppers", "200")),
+                Integer.parseInt(options.getOrDefault("products", "500")),
+                mix(options.getOrDefault("mix", "browse:50,search:20,cart:20,checkout:10")),
+                Latency.parse(options.getOrDefault("latency.product", "0ms")),
+                Latency.parse(options.getOrDefault("latency.user", "0ms")),
+                options.get("mysql.url"),
+                options.getOrDefault("mysql.username", "root"),
+                options.getOrDefault("mysql.password", "loadtest"),
+                options.get("mongo.uri"),
+                options.get("target"),
+                options.getOrDefault("admin.email", "admin@loadtest.local"),
+                options.getOrDefault("admin.password", "load-test-admin"),
+                options.getOrDefault("jvm-args", "-Xms256m -Xmx512m"),
+                serviceProperties,
+                Path.of(options.getOrDefault("project-dir", ".")).toAbsolutePath().normalize(),
+                Path.of(options.getOrDefault("output-dir", "load-test/target/results")).toAbsolutePath().normalize());
+        if (config.rate <= 0 || config.concurrency <= 0 || config.shoppers < config.concurrency || config.products <= 0) {
+            throw new IllegalArgumentException("rate, concurrency and products must be positive, and shoppers at least concurrency");
+        }
+        return config;
+    }
+
+    static Duration duration(String value) {
+        String v = value.trim();
+        if (v.startsWith("P") || v.startsWith("p")) {
+            return Duration.parse(v);
+        }
+        if (v.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        }
+        if (v.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        if (v.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        throw new IllegalArgumentException("Not a duration: " + value);
+    }
+
+    private static Map<Scenario, Integer> mix(String value) {
+        Map<Scenario, Integer> mix = new EnumMap<>(Scenario.class);
+        for (String part : value.split(",")) {
+            String[] kv = part.split(":");
+            mix.put(Scenario.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Scenario mix needs a positive weight: " + value);
+        }
+        return mix;
+    }
+}
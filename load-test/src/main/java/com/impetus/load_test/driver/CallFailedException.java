@@ -0,0 +1,18 @@
+package com.impetus.load_test.driver;
+
+/**
+ * A call through the gateway that failed or returned an error status; ends the scenario it was part of.
+ */
+public class CallFailedException extends RuntimeException {
+
+    private final int status;
+
+    public CallFailedException(String endpoint, int status, String detail) {
+        super(endpoint + " failed with " + (status == 0 ? "no response" : "status " + status) + ": " + detail);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,10 @@
+package com.impetus.load_test.driver;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * What {@link Seeder} created: the product ids to browse and buy, and the shoppers free to run a scenario.
+ */
+public record Fixtures(List<String> productIds, BlockingQueue<Shopper> shoppers) {
+}
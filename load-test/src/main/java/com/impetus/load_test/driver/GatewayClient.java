@@ -0,0 +1,110 @@
+package com.impetus.load_test.driver;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.load_test.report.LatencyStats;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * JSON over HTTP to the gateway. Every call is timed from just before it is sent until its body has been
+ * read and recorded in the given {@link LatencyStats}, when there is one.
+ */
+public class GatewayClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient http;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public GatewayClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public HttpRequest.Builder get(String path, String token) {
+        return request(path, token).GET();
+    }
+
+    // The product search endpoint takes its criteria as a GET body
+    public HttpRequest.Builder get(String path, String token, Object body) {
+        return request(path, token).header("Content-Type", "application/json").method("GET", json(body));
+    }
+
+    public HttpRequest.Builder post(String path, String token, Object body) {
+        return request(path, token).header("Content-Type", "application/json").POST(json(body));
+    }
+
+    public HttpRequest.Builder postWithIdempotencyKey(String path, String token, Object body) {
+        return post(path, token, body).header("Idempotency-Key", UUID.randomUUID().toString());
+    }
+
+    public HttpRequest.Builder delete(String path, String token) {
+        return request(path, token).DELETE();
+    }
+
+    /**
+     * Sends the request and returns the parsed body, or null when it is empty. Failures are recorded and
+     * thrown as {@link CallFailedException}.
+     */
+    public JsonNode call(String endpoint, HttpRequest.Builder request, LatencyStats stats) {
+        long start = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            if (stats != null) {
+                stats.failure(System.nanoTime() - start, 0);
+            }
+            throw new CallFailedException(endpoint, 0, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallFailedException(endpoint, 0, "interrupted");
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (response.statusCode() >= 400) {
+            if (stats != null) {
+                stats.failure(nanos, response.statusCode());
+            }
+            throw new CallFailedException(endpoint, response.statusCode(), response.body());
+        }
+        if (stats != null) {
+            stats.success(nanos);
+        }
+        try {
+            return response.body().isEmpty() ? null : objectMapper.readTree(response.body());
+        } catch (JsonProcessingException e) {
+            throw new CallFailedException(endpoint, response.statusCode(), "unreadable body " + response.body());
+        }
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Accept", "application/json");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
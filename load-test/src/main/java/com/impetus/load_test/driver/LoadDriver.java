@@ -0,0 +1,103 @@
+package com.impetus.load_test.driver;
+
+import com.impetus.load_test.LoadTestConfig;
+import com.impetus.load_test.report.Results;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts scenarios at a fixed rate (an open workload) for the warmup and then the measured duration, on
+ * {@code concurrency} worker threads.
+ * <p>
+ * Start times are fixed in advance and don't wait for earlier scenarios to finish. When the system falls
+ * behind, scenarios queue for a worker and their latency, measured from the planned start, shows it instead
+ * of the load quietly dropping. Only scenarios planned after the warmup are recorded.
+ */
+public class LoadDriver {
+    private static final Logger log = LoggerFactory.getLogger(LoadDriver.class);
+
+    private final LoadTestConfig config;
+    private final GatewayClient client;
+    private final Fixtures fixtures;
+    private final List<Scenario> weighted = new ArrayList<>();
+
+    public LoadDriver(LoadTestConfig config, GatewayClient client, Fixtures fixtures) {
+        this.config = config;
+        this.client = client;
+        this.fixtures = fixtures;
+        for (Map.Entry<Scenario, Integer> entry : config.mix().entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add(entry.getKey());
+            }
+        }
+    }
+
+    public Results run() throws InterruptedException {
+        Results results = new Results();
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency());
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) / config.rate());
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+        log.info("Warming up for {}, then measuring for {} at {} scenarios/s", config.warmup(), config.duration(),
+                config.rate());
+
+        boolean announced = false;
+        for (long i = 0; ; i++) {
+            long planned = start + i * period;
+            if (planned >= end) {
+                break;
+            }
+            while (System.nanoTime() < planned) {
+                LockSupport.parkNanos(planned - System.nanoTime());
+            }
+            boolean measured = planned >= measureFrom;
+            if (measured && !announced) {
+                log.info("Warmup done, measuring");
+                announced = true;
+            }
+            Scenario scenario = weighted.get(ThreadLocalRandom.current().nextInt(weighted.size()));
+            workers.execute(() -> runScenario(scenario, planned, measured ? results : null));
+        }
+
+        workers.shutdown();
+        if (!workers.awaitTermination(2, TimeUnit.MINUTES)) {
+            log.warn("Scenarios still running two minutes after the last one was started; stopping them");
+            workers.shutdownNow();
+        }
+        results.window(measureFrom, System.nanoTime());
+        return results;
+    }
+
+    private void runScenario(Scenario scenario, long planned, Results results) {
+        Shopper shopper;
+        try {
+            shopper = fixtures.shoppers().take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            scenario.run(new Session(client, results, shopper, fixtures.productIds()));
+            if (results != null) {
+                results.scenario(scenario.name()).success(System.nanoTime() - planned);
+            }
+        } catch (CallFailedException e) {
+            if (results != null) {
+                results.scenario(scenario.name()).failure(System.nanoTime() - planned, e.getStatus());
+            }
+            log.debug("{} failed: {}", scenario, e.getMessage());
+        } finally {
+            fixtures.shoppers().add(shopper);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.impetus.load_test.driver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * What a visitor does in one go. Endpoint names in the results are the gateway routes with their path
+ * variables left as placeholders.
+ */
+public enum Scenario {
+
+    // A catalogue page, then three product pages
+    BROWSE {
+        @Override
+        void run(Session s) {
+            int page = ThreadLocalRandom.current().nextInt(Math.max(1, s.productCount() / 20));
+            s.call("GET /product", s.client().get("/product?page=" + page + "&size=20", null));
+            for (int i = 0; i < 3; i++) {
+                s.call("GET /product/{id}", s.client().get("/product/" + s.randomProduct(), null));
+            }
+        }
+    },
+
+    // A full-text search, then one of the products
+    SEARCH {
+        @Override
+        void run(Session s) {
+            String term = Seeder.CATEGORIES[ThreadLocalRandom.current().nextInt(Seeder.CATEGORIES.length)];
+            s.call("GET /product/search", s.client().get("/product/search", null, Map.of("query", term, "size", 20)));
+            s.call("GET /product/{id}", s.client().get("/product/" + s.randomProduct(), null));
+        }
+    },
+
+    // Adds an item, looks at the cart and abandons it
+    CART {
+        @Override
+        void run(Session s) {
+            String token = s.shopper().token();
+            s.call("POST /cart/add", s.client().post("/cart/add", token, item(s.randomProduct())));
+            s.call("GET /cart", s.client().get("/cart", token));
+            s.call("DELETE /cart", s.client().delete("/cart", token));
+        }
+    },
+
+    // Fills a cart with one to three products, places the order and pays for it
+    CHECKOUT {
+        @Override
+        void run(Session s) {
+            String token = s.shopper().token();
+            Set<String> products = new LinkedHashSet<>();
+            int lines = 1 + ThreadLocalRandom.current().nextInt(3);
+            while (products.size() < Math.min(lines, s.productCount())) {
+                products.add(s.randomProduct());
+            }
+            for (String productId : products) {
+                s.call("POST /cart/add", s.client().post("/cart/add", token, item(productId)));
+            }
+            s.call("GET /cart", s.client().get("/cart", token));
+
+            JsonNode order = s.call("POST /order", s.client().postWithIdempotencyKey("/order", token,
+                    Map.of("shippingAddressId", s.shopper().addressId(), "paymentMode", "UPI")));
+            long orderId = order.path("data").path("id").asLong();
+            s.call("POST /payment/{orderId}", s.client().postWithIdempotencyKey("/payment/" + orderId, token, Map.of()));
+        }
+    };
+
+    abstract void run(Session session);
+
+    private static Map<String, Object> item(String productId) {
+        return Map.of("productId", productId, "quantity", 1 + ThreadLocalRandom.current().nextInt(3));
+    }
+}
@@ -0,0 +1,101 @@
+package com.impetus.load_test.driver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Creates the catalogue and the shoppers through the gateway before the run, as the admin and as each
+ * shopper. Names carry a run id so reruns against the same databases don't collide.
+ */
+public class Seeder {
+    private static final Logger log = LoggerFactory.getLogger(Seeder.class);
+
+    private static final String SHOPPER_PASSWORD = "load-test-shopper";
+    // Also the search terms of Scenario.SEARCH
+    static final String[] CATEGORIES = {"books", "electronics", "kitchen", "garden", "toys", "sports"};
+
+    private final GatewayClient client;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    public Seeder(GatewayClient client) {
+        this.client = client;
+    }
+
+    public Fixtures seed(String adminEmail, String adminPassword, int products, int shoppers) throws Exception {
+        String adminToken = login(adminEmail, adminPassword);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> productIds = new ArrayList<>(products);
+            for (int i = 0; i < products; i++) {
+                int n = i;
+                productIds.add(pool.submit(() -> createProduct(adminToken, n)));
+            }
+            List<Future<Shopper>> created = new ArrayList<>(shoppers);
+            for (int i = 0; i < shoppers; i++) {
+                int n = i;
+                created.add(pool.submit(() -> createShopper(n)));
+            }
+
+            List<String> ids = new ArrayList<>(products);
+            for (Future<String> id : productIds) {
+                ids.add(id.get());
+            }
+            BlockingQueue<Shopper> queue = new ArrayBlockingQueue<>(shoppers);
+            for (Future<Shopper> shopper : created) {
+                queue.add(shopper.get());
+            }
+            log.info("Seeded {} products and {} shoppers", ids.size(), queue.size());
+            return new Fixtures(List.copyOf(ids), queue);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private String createProduct(String adminToken, int n) {
+        String category = CATEGORIES[n % CATEGORIES.length];
+        JsonNode res = client.call("seed product", client.post("/product", adminToken, Map.of(
+                "name", "Load test " + category + " product " + n,
+                "description", "A " + category + " item seeded for load test " + runId,
+                "sku", "LT-" + runId + "-" + n,
+                "price", 100 + (n * 37) % 4900,
+                "inventoryQuantity", 1_000_000,
+                "attributes", Map.of("category", category))), null);
+        return res.path("data").path("id").asText();
+    }
+
+    private Shopper createShopper(int n) {
+        String email = "shopper" + n + "-" + runId + "@loadtest.local";
+        client.call("seed register", client.post("/user/register", null, Map.of(
+                "email", email,
+                "password", SHOPPER_PASSWORD,
+                "fullName", "Shopper " + n,
+                "phone", String.format("98%08d", n))), null);
+        String token = login(email, SHOPPER_PASSWORD);
+        JsonNode address = client.call("seed address", client.post("/user/addresses", token, Map.of(
+                "addressLabel", "HOME",
+                "contactName", "Shopper " + n,
+                "phone", String.format("98%08d", n),
+                "addressLine1", n + " Load Test Road",
+                "city", "Indore",
+                "state", "MP",
+                "pincode", "452001",
+                "isDefaultShipping", true)), null);
+        return new Shopper(email, token, address.path("data").path("id").asLong());
+    }
+
+    private String login(String email, String password) {
+        JsonNode res = client.call("seed login", client.post("/auth/login", null,
+                Map.of("email", email, "password", password)), null);
+        return res.path("data").path("accessToken").asText();
+    }
+}
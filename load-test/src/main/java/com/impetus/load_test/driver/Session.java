@@ -0,0 +1,46 @@
+package com.impetus.load_test.driver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.impetus.load_test.report.Results;
+
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One scenario run: the shopper it runs as, and where its calls are recorded (nowhere during warmup).
+ */
+public final class Session {
+
+    private final GatewayClient client;
+    private final Results results;
+    private final Shopper shopper;
+    private final List<String> productIds;
+
+    Session(GatewayClient client, Results results, Shopper shopper, List<String> productIds) {
+        this.client = client;
+        this.results = results;
+        this.shopper = shopper;
+        this.productIds = productIds;
+    }
+
+    GatewayClient client() {
+        return client;
+    }
+
+    Shopper shopper() {
+        return shopper;
+    }
+
+    JsonNode call(String endpoint, HttpRequest.Builder request) {
+        return client.call(endpoint, request, results == null ? null : results.endpoint(endpoint));
+    }
+
+    String randomProduct() {
+        return productIds.get(ThreadLocalRandom.current().nextInt(productIds.size()));
+    }
+
+    int productCount() {
+        return productIds.size();
+    }
+}
@@ -0,0 +1,7 @@
+package com.impetus.load_test.driver;
+
+/**
+ * A registered user with a token and a default shipping address, used by one scenario at a time.
+ */
+public record Shopper(String email, String token, long addressId) {
+}
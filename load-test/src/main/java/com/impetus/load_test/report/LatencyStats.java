@@ -0,0 +1,76 @@
+package com.impetus.load_test.report;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram in microseconds and outcome counts for one endpoint or scenario.
+ */
+public class LatencyStats {
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final String name;
+    private final Histogram histogram = new ConcurrentHistogram(MAX_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+    // Failures by HTTP status, 0 for transport errors and timeouts
+    private final Map<Integer, LongAdder> failuresByStatus = new ConcurrentHashMap<>();
+
+    LatencyStats(String name) {
+        this.name = name;
+    }
+
+    public void success(long nanos) {
+        histogram.recordValue(micros(nanos));
+    }
+
+    public void failure(long nanos, int status) {
+        histogram.recordValue(micros(nanos));
+        errors.increment();
+        failuresByStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(MAX_MICROS, Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Histogram histogram() {
+        return histogram;
+    }
+
+    public long count() {
+        return histogram.getTotalCount();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public double errorRate() {
+        return count() == 0 ? 0 : (double) errors() / count();
+    }
+
+    public Map<Integer, Long> failuresByStatus() {
+        Map<Integer, Long> out = new TreeMap<>();
+        failuresByStatus.forEach((status, count) -> out.put(status, count.sum()));
+        return out;
+    }
+
+    public double percentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public double maxMillis() {
+        return histogram.getMaxValue() / 1000.0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.impetus.load_test.report;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.impetus.load_test.LoadTestConfig;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Measurements of one run, per endpoint (one HTTP call through the gateway) and per scenario (all of its
+ * calls, timed from when it was scheduled to start, so time spent waiting for a free worker counts too).
+ * <p>
+ * {@link #write} leaves {@code summary.json} and one HdrHistogram percentile distribution ({@code .hgrm},
+ * milliseconds) per endpoint and scenario in the output directory.
+ */
+public class Results {
+
+    private final Map<String, LatencyStats> endpoints = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyStats> scenarios = new ConcurrentSkipListMap<>();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    public LatencyStats endpoint(String name) {
+        return endpoints.computeIfAbsent(name, LatencyStats::new);
+    }
+
+    public LatencyStats scenario(String name) {
+        return scenarios.computeIfAbsent(name, LatencyStats::new);
+    }
+
+    public void window(long startNanos, long endNanos) {
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+    }
+
+    public double seconds() {
+        return (endNanos - startNanos) / 1e9;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%nMeasured %.1f s%n", seconds());
+        table(out, "Scenario", scenarios.values());
+        table(out, "Endpoint", endpoints.values());
+    }
+
+    private void table(PrintStream out, String title, Collection<LatencyStats> rows) {
+        out.printf("%n%-28s %8s %7s %7s %8s %9s %9s %9s %9s %9s%n", title, "count", "errors", "err%", "per sec",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (LatencyStats s : rows) {
+            out.printf("%-28s %8d %7d %6.2f%% %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", s.name(), s.count(), s.errors(),
+                    s.errorRate() * 100, s.count() / seconds(), s.percentileMillis(50), s.percentileMillis(90),
+                    s.percentileMillis(99), s.percentileMillis(99.9), s.maxMillis());
+        }
+    }
+
+    public void write(Path dir, LoadTestConfig config) throws IOException {
+        Path histograms = dir.resolve("histograms");
+        Files.createDirectories(histograms);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("config", Map.of(
+                "rate", config.rate(),
+                "warmup", config.warmup().toString(),
+                "duration", config.duration().toString(),
+                "concurrency", config.concurrency(),
+                "mix", config.mix(),
+                "productLatency", config.productLatency().toString(),
+                "userLatency", config.userLatency().toString()));
+        summary.put("seconds", seconds());
+        summary.put("scenarios", rows(scenarios.values(), histograms, "scenario-"));
+        summary.put("endpoints", rows(endpoints.values(), histograms, "endpoint-"));
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(dir.resolve("summary.json").toFile(), summary);
+    }
+
+    private List<Map<String, Object>> rows(Collection<LatencyStats> stats, Path histograms, String prefix)
+            throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (LatencyStats s : stats) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("name", s.name());
+            row.put("count", s.count());
+            row.put("errors", s.errors());
+            row.put("errorRate", s.errorRate());
+            row.put("failuresByStatus", s.failuresByStatus());
+            row.put("throughputPerSecond", s.count() / seconds());
+            row.put("p50Ms", s.percentileMillis(50));
+            row.put("p90Ms", s.percentileMillis(90));
+            row.put("p99Ms", s.percentileMillis(99));
+            row.put("p999Ms", s.percentileMillis(99.9));
+            row.put("maxMs", s.maxMillis());
+            rows.add(row);
+
+            String file = prefix + s.name().replaceAll("[^A-Za-z0-9]+", "_") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(histograms.resolve(file)))) {
+                s.histogram().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,61 @@
+package com.impetus.load_test.stack;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stands in for config-server: answers {@code GET /{application}/{profile}} in the config-server format with
+ * the properties the harness registered for that application, so the services start unchanged with
+ * {@code spring.cloud.config.uri} pointing here.
+ */
+public class ConfigServerStub implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<String, String>> properties = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    public ConfigServerStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String uri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public void register(String application, Map<String, String> source) {
+        properties.put(application, Map.copyOf(source));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> source = parts.length >= 3 ? properties.get(parts[1]) : null;
+            if (source == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            Map<String, Object> environment = Map.of(
+                    "name", parts[1],
+                    "profiles", List.of(parts[2].split(",")),
+                    "propertySources", List.of(Map.of("name", "load-test:" + parts[1], "source", source)));
+            byte[] body = objectMapper.writeValueAsBytes(environment);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,102 @@
+package com.impetus.load_test.stack;
+
+import com.impetus.load_test.LoadTestConfig.Latency;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HTTP proxy in front of one service that holds every request for the configured {@link Latency} before
+ * forwarding it, to see how the caller behaves when that dependency is slow. The delay is taken on the
+ * proxy's own thread, so it looks to the caller like a slow server, not a slow network.
+ */
+public class LatencyProxy implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LatencyProxy.class);
+
+    // Managed by the HTTP clients on either side
+    private static final Set<String> SKIPPED_HEADERS =
+            Set.of("connection", "content-length", "expect", "host", "upgrade", "transfer-encoding", "keep-alive");
+
+    private final String target;
+    private final Latency latency;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final HttpServer server;
+
+    public LatencyProxy(String target, Latency latency) throws IOException {
+        this.target = target;
+        this.latency = latency;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String uri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            delay();
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(target + exchange.getRequestURI()))
+                    .method(exchange.getRequestMethod(),
+                            HttpRequest.BodyPublishers.ofByteArray(exchange.getRequestBody().readAllBytes()));
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                if (!SKIPPED_HEADERS.contains(header.getKey().toLowerCase())) {
+                    header.getValue().forEach(value -> request.header(header.getKey(), value));
+                }
+            }
+
+            HttpResponse<byte[]> response;
+            try {
+                response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            } catch (IOException e) {
+                log.warn("Proxy to {} failed: {}", target, e.getMessage());
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+            response.headers().map().forEach((name, values) -> {
+                if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                    exchange.getResponseHeaders().put(name, values);
+                }
+            });
+            byte[] body = response.body();
+            exchange.sendResponseHeaders(response.statusCode(), body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                exchange.getResponseBody().write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        if (latency.isNone()) {
+            return;
+        }
+        long jitter = latency.jitter().toNanos();
+        long nanos = latency.base().toNanos() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+        Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
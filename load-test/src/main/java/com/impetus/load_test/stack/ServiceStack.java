@@ -0,0 +1,203 @@
+package com.impetus.load_test.stack;
+
+import com.impetus.load_test.LoadTestConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.mongodb.MongoDBContainer;
+import org.testcontainers.mysql.MySQLContainer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Everything checkout needs on one machine: MySQL and MongoDB (containers unless {@code --mysql.url} and
+ * {@code --mongo.uri} are given), a {@link ConfigServerStub} in place of config-server, the product, user and
+ * order services and the gateway from their exec jars, and a {@link LatencyProxy} between order-service and
+ * each of its dependencies. Eureka is not started; the gateway and order-service get fixed URLs instead.
+ */
+public class ServiceStack implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ServiceStack.class);
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    // Closed in reverse order of creation
+    private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+    private String gatewayUrl;
+
+    public static ServiceStack start(LoadTestConfig config) throws Exception {
+        ServiceStack stack = new ServiceStack();
+        try {
+            stack.startAll(config);
+            return stack;
+        } catch (Exception | Error e) {
+            stack.close();
+            throw e;
+        }
+    }
+
+    public String gatewayUrl() {
+        return gatewayUrl;
+    }
+
+    private void startAll(LoadTestConfig config) throws Exception {
+        Path logDir = config.outputDir().resolve("logs");
+
+        String mysqlUrl = config.mysqlUrl();
+        String mysqlUsername = config.mysqlUsername();
+        String mysqlPassword = config.mysqlPassword();
+        if (mysqlUrl == null) {
+            MySQLContainer mysql = new MySQLContainer("mysql:8.0")
+                    .withUsername("root")
+                    .withPassword(config.mysqlPassword());
+            mysql.start();
+            resources.push(mysql::stop);
+            mysqlUrl = "jdbc:mysql://" + mysql.getHost() + ":" + mysql.getMappedPort(3306) + "/";
+        }
+        String mongoUri = config.mongoUri();
+        if (mongoUri == null) {
+            MongoDBContainer mongo = new MongoDBContainer("mongo:4.4.2").withReplicaSet();
+            mongo.start();
+            resources.push(mongo::stop);
+            mongoUri = mongo.getReplicaSetUrl("productdb");
+        }
+
+        Path keys = writeJwtKeys();
+        ConfigServerStub configServer = new ConfigServerStub();
+        resources.push(configServer);
+
+        int productPort = freePort();
+        int userPort = freePort();
+        int orderPort = freePort();
+        int gatewayPort = freePort();
+
+        LatencyProxy productProxy = new LatencyProxy("http://localhost:" + productPort, config.productLatency());
+        resources.push(productProxy);
+        LatencyProxy userProxy = new LatencyProxy("http://localhost:" + userPort, config.userLatency());
+        resources.push(userProxy);
+
+        Map<String, String> product = common();
+        product.put("spring.data.mongodb.uri", mongoUri);
+        product.put("spring.data.mongodb.auto-index-creation", "true");
+        register(configServer, config, "product-service", product);
+
+        Map<String, String> user = common();
+        putDatasource(user, mysqlUrl + "users_loadtest", mysqlUsername, mysqlPassword);
+        putJwt(user, keys);
+        user.put("default.admin.email", config.adminEmail());
+        user.put("default.admin.username", "loadtest-admin");
+        user.put("default.admin.full-name", "Load Test Admin");
+        user.put("default.admin.password", config.adminPassword());
+        register(configServer, config, "user-service", user);
+
+        Map<String, String> order = common();
+        putDatasource(order, mysqlUrl + "orders_loadtest", mysqlUsername, mysqlPassword);
+        order.put("services.product.base-url", productProxy.uri() + "/product");
+        order.put("services.user.base-url", userProxy.uri() + "/user");
+        order.put("orders.number.node-id", "1");
+        register(configServer, config, "order-service", order);
+
+        Map<String, String> client = Map.of(
+                "spring.cloud.config.uri", configServer.uri(),
+                "spring.cloud.config.fail-fast", "true");
+        ServiceProcess productService = startService(config, "product-service", productPort, client, logDir);
+        ServiceProcess userService = startService(config, "user-service", userPort, client, logDir);
+        productService.awaitHealthy(STARTUP_TIMEOUT);
+        userService.awaitHealthy(STARTUP_TIMEOUT);
+        startService(config, "order-service", orderPort, client, logDir).awaitHealthy(STARTUP_TIMEOUT);
+
+        // The gateway has no config client; its routes are overridden on the command line
+        Map<String, String> gateway = common();
+        gateway.put("spring.cloud.gateway.routes[0].uri", "http://localhost:" + productPort);
+        gateway.put("spring.cloud.gateway.routes[1].uri", "http://localhost:" + orderPort);
+        gateway.put("spring.cloud.gateway.routes[2].uri", "http://localhost:" + userPort);
+        putJwt(gateway, keys);
+        gateway.putAll(config.serviceProperties().getOrDefault("api-gateway", Map.of()));
+        ServiceProcess apiGateway = startService(config, "api-gateway", gatewayPort, gateway, logDir);
+        apiGateway.awaitHealthy(STARTUP_TIMEOUT);
+        gatewayUrl = apiGateway.baseUrl();
+
+        log.info("Stack is up: gateway {}, product latency {}, user latency {}", gatewayUrl,
+                config.productLatency(), config.userLatency());
+    }
+
+    private ServiceProcess startService(LoadTestConfig config, String name, int port, Map<String, String> arguments,
+                                        Path logDir) throws IOException {
+        ServiceProcess process = ServiceProcess.start(name, config.projectDir().resolve(name), port,
+                config.jvmArgs(), arguments, logDir);
+        resources.push(process);
+        return process;
+    }
+
+    private static void register(ConfigServerStub configServer, LoadTestConfig config, String application,
+                                 Map<String, String> properties) {
+        properties.putAll(config.serviceProperties().getOrDefault(application, Map.of()));
+        configServer.register(application, properties);
+    }
+
+    private static Map<String, String> common() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("eureka.client.enabled", "false");
+        // No zipkin to report to
+        properties.put("management.tracing.enabled", "false");
+        return properties;
+    }
+
+    private static void putDatasource(Map<String, String> properties, String url, String username, String password) {
+        properties.put("spring.datasource.url", url + "?createDatabaseIfNotExist=true");
+        properties.put("spring.datasource.username", username);
+        properties.put("spring.datasource.password", password);
+        properties.put("spring.jpa.hibernate.ddl-auto", "update");
+    }
+
+    private static void putJwt(Map<String, String> properties, Path keys) {
+        properties.put("jwt.private-key-path", "file:" + keys.resolve("jwt.private-key"));
+        properties.put("jwt.public-key-path", "file:" + keys.resolve("jwt.public-key"));
+        properties.put("jwt.access-exp", String.valueOf(Duration.ofHours(2).toMillis()));
+        properties.put("jwt.refresh-exp", String.valueOf(Duration.ofDays(1).toMillis()));
+    }
+
+    private static Path writeJwtKeys() throws IOException, NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair pair = generator.generateKeyPair();
+        Path dir = Files.createTempDirectory("load-test-keys");
+        Files.writeString(dir.resolve("jwt.private-key"), pem("PRIVATE KEY", pair.getPrivate().getEncoded()));
+        Files.writeString(dir.resolve("jwt.public-key"), pem("PUBLIC KEY", pair.getPublic().getEncoded()));
+        return dir;
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        while (!resources.isEmpty()) {
+            try {
+                resources.pop().close();
+            } catch (Exception e) {
+                log.warn("Failed to stop {}: {}", e.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+}
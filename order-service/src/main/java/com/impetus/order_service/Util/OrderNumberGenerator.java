@@ -0,0 +1,132 @@
+package com.impetus.order_service.Util;
+
+import com.netflix.appinfo.EurekaInstanceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style order numbers: 41 bits of milliseconds since 2024-01-01, 10 bits of node id and a 12 bit
+ * per-millisecond sequence, so ids are unique across nodes without a database round trip.
+ * <p>
+ * The last timestamp and sequence are packed into one {@link AtomicLong} and advanced with CAS, so callers never
+ * block. When a millisecond's 4096 sequence values run out, or the clock steps backwards, the generator borrows the
+ * next millisecond instead of waiting, which keeps numbers unique and increasing per node.
+ * <pre>
+ * orders.number.node-id=7            # 0-1023; derived from the Eureka instance id when unset
+ * orders.number.encoding=CROCKFORD32 # DECIMAL, BASE36 or CROCKFORD32
+ * orders.number.prefix=ORD-
+ * </pre>
+ */
+@Component
+public class OrderNumberGenerator {
+    private static final Logger log = LoggerFactory.getLogger(OrderNumberGenerator.class);
+
+    static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    public enum Encoding {
+        DECIMAL(10, DIGITS),
+        BASE36(36, DIGITS),
+        // No I, L, O or U, so numbers read out over the phone can't be confused
+        CROCKFORD32(32, CROCKFORD);
+
+        private final int radix;
+        private final char[] alphabet;
+
+        Encoding(int radix, char[] alphabet) {
+            this.radix = radix;
+            this.alphabet = alphabet;
+        }
+    }
+
+    private final long nodeBits;
+    private final Encoding encoding;
+    private final char[] prefix;
+    private final LongSupplier clock;
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong state = new AtomicLong();
+
+    @Autowired
+    public OrderNumberGenerator(@Value("${orders.number.node-id:-1}") int nodeId,
+                                @Value("${orders.number.encoding:CROCKFORD32}") Encoding encoding,
+                                @Value("${orders.number.prefix:ORD-}") String prefix,
+                                ObjectProvider<EurekaInstanceConfig> eurekaInstance) {
+        this(nodeId >= 0 ? nodeId : nodeIdFromEureka(eurekaInstance.getIfAvailable()), encoding, prefix,
+                System::currentTimeMillis);
+    }
+
+    public OrderNumberGenerator(int nodeId, Encoding encoding, String prefix) {
+        this(nodeId, encoding, prefix, System::currentTimeMillis);
+    }
+
+    OrderNumberGenerator(int nodeId, Encoding encoding, String prefix, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("orders.number.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.encoding = encoding;
+        this.prefix = prefix.toCharArray();
+        this.clock = clock;
+    }
+
+    public String next() {
+        return encode(nextId());
+    }
+
+    public long nextId() {
+        while (true) {
+            long prev = state.get();
+            long lastMillis = prev >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+
+            long next = now > lastMillis
+                    ? now << SEQUENCE_BITS
+                    // Same millisecond, clock went backwards, or the sequence wrapped into the next millisecond
+                    : prev + 1;
+            if (state.compareAndSet(prev, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    String encode(long id) {
+        // Ids are positive longs, so at most 19 digits even in decimal
+        char[] buf = new char[prefix.length + 19];
+        int pos = buf.length;
+        int radix = encoding.radix;
+        char[] alphabet = encoding.alphabet;
+        do {
+            buf[--pos] = alphabet[(int) (id % radix)];
+            id /= radix;
+        } while (id > 0);
+        pos -= prefix.length;
+        System.arraycopy(prefix, 0, buf, pos, prefix.length);
+        return new String(buf, pos, buf.length - pos);
+    }
+
+    private static int nodeIdFromEureka(EurekaInstanceConfig instance) {
+        if (instance == null || instance.getInstanceId() == null) {
+            log.warn("No orders.number.node-id or Eureka instance id, using node 0; set orders.number.node-id when running more than one instance");
+            return 0;
+        }
+        int nodeId = (int) ((instance.getInstanceId().hashCode() & 0x7fffffffL) % (MAX_NODE_ID + 1));
+        log.info("Order number node id {} derived from Eureka instance {}; set orders.number.node-id to pin it",
+                nodeId, instance.getInstanceId());
+        return nodeId;
+    }
+}
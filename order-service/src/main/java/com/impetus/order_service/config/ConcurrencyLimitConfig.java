@@ -0,0 +1,88 @@
+package com.impetus.order_service.config;
+
+import com.impetus.order_service.exception.ConcurrencyLimitExceededException;
+import com.impetus.order_service.integrations.AdaptiveConcurrencyLimiter;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.common.circuitbreaker.configuration.CircuitBreakerConfigCustomizer;
+import io.github.resilience4j.common.retry.configuration.RetryConfigCustomizer;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * One {@link AdaptiveConcurrencyLimiter} per kind of downstream call, tunable under {@code services.<name>.limit.*}.
+ * Product lookups ({@code product}) and the outbox's inventory commands ({@code product-commands}) are limited
+ * separately: they differ in cost and latency, and a backlog of commands mustn't shed checkout lookups.
+ * <pre>
+ * services.product.limit.initial=20
+ * services.product.limit.min=2
+ * services.product.limit.max=200
+ * services.product.limit.rtt-tolerance=2.0
+ * services.product.limit.backoff-ratio=0.9
+ * </pre>
+ * A shed call never reached the service, so the {@code product-service} and {@code user-service} retries and
+ * circuit breakers ignore {@link ConcurrencyLimitExceededException}: retrying it straight away only adds load,
+ * and counting it as a failure would open the breaker because of our own limit. Their fallbacks still handle it.
+ * The retry customizer replaces any {@code ignore-exceptions} set for those instances on the config server.
+ */
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public AdaptiveConcurrencyLimiter productLookupLimiter(Environment env, MeterRegistry meterRegistry) {
+        return limiter(env, meterRegistry, "product", "product-service");
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter productCommandLimiter(Environment env, MeterRegistry meterRegistry) {
+        return limiter(env, meterRegistry, "product-commands", "product-service-commands");
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter userServiceLimiter(Environment env, MeterRegistry meterRegistry) {
+        return limiter(env, meterRegistry, "user", "user-service");
+    }
+
+    @Bean
+    public RetryConfigCustomizer productServiceRetryCustomizer() {
+        return RetryConfigCustomizer.of("product-service", ConcurrencyLimitConfig::ignoreShedCalls);
+    }
+
+    @Bean
+    public RetryConfigCustomizer userServiceRetryCustomizer() {
+        return RetryConfigCustomizer.of("user-service", ConcurrencyLimitConfig::ignoreShedCalls);
+    }
+
+    @Bean
+    public CircuitBreakerConfigCustomizer productServiceCircuitBreakerCustomizer() {
+        return CircuitBreakerConfigCustomizer.of("product-service", ConcurrencyLimitConfig::ignoreShedCalls);
+    }
+
+    @Bean
+    public CircuitBreakerConfigCustomizer userServiceCircuitBreakerCustomizer() {
+        return CircuitBreakerConfigCustomizer.of("user-service", ConcurrencyLimitConfig::ignoreShedCalls);
+    }
+
+    static void ignoreShedCalls(RetryConfig.Builder<?> retry) {
+        retry.ignoreExceptions(ConcurrencyLimitExceededException.class);
+    }
+
+    // Added to whatever the config server ignores rather than replacing it
+    static void ignoreShedCalls(CircuitBreakerConfig.Builder circuitBreaker) {
+        circuitBreaker.ignoreException(ConcurrencyLimitExceededException.class::isInstance);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(Environment env, MeterRegistry meterRegistry, String name,
+                                               String service) {
+        String prefix = "services." + name + ".limit.";
+        return new AdaptiveConcurrencyLimiter(service,
+                env.getProperty(prefix + "initial", Integer.class, 20),
+                env.getProperty(prefix + "min", Integer.class, 2),
+                env.getProperty(prefix + "max", Integer.class, 200),
+                env.getProperty(prefix + "rtt-tolerance", Double.class, 2.0),
+                env.getProperty(prefix + "backoff-ratio", Double.class, 0.9),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,23 @@
+package com.impetus.order_service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.service.idempotency.IdempotencyFilter;
+import com.impetus.order_service.service.idempotency.IdempotencyStore;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Honours {@code Idempotency-Key} on order creation and payment initiation.
+ */
+@Configuration
+public class IdempotencyConfig {
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper) {
+        FilterRegistrationBean<IdempotencyFilter> registration =
+                new FilterRegistrationBean<>(new IdempotencyFilter(store, objectMapper));
+        registration.addUrlPatterns("/order", "/payment/*");
+        return registration;
+    }
+}
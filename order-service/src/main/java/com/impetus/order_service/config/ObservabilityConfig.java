@@ -0,0 +1,33 @@
+package com.impetus.order_service.config;
+
+import com.impetus.order_service.observability.CheckoutInstrumentation;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes percentile histograms for the checkout timers, so p95/p99 can be aggregated across instances.
+ */
+@Configuration
+public class ObservabilityConfig {
+
+    @Bean
+    public MeterFilter checkoutHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!id.getName().equals(CheckoutInstrumentation.PHASE)
+                        && !id.getName().equals(CheckoutInstrumentation.DEPENDENCY)) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .percentiles(0.5, 0.95, 0.99)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
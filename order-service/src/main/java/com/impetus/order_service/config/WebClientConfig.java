@@ -1,14 +1,46 @@
 package com.impetus.order_service.config;
 
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound HTTP clients for the downstream services. Each service gets its own Reactor Netty connection
+ * pool (with pool metrics) and timeouts, tunable per service under {@code services.<name>.http.*}:
+ * <pre>
+ * services.product.http.max-connections=100
+ * services.product.http.pending-acquire-max-count=500
+ * services.product.http.pending-acquire-timeout=2s
+ * services.product.http.max-idle-time=30s
+ * services.product.http.max-life-time=5m
+ * services.product.http.connect-timeout=1s
+ * services.product.http.read-timeout=5s
+ * services.product.http.write-timeout=5s
+ * services.product.http.response-timeout=5s
+ * services.product.http.http2=false
+ * </pre>
+ */
 @Configuration
-public class WebClientConfig {
+public class WebClientConfig implements DisposableBean {
+
+    private final List<ConnectionProvider> pools = new CopyOnWriteArrayList<>();
 
 //    @Bean
 //    @LoadBalanced
@@ -18,24 +50,65 @@ public class WebClientConfig {
 
 
     @Bean
-    public WebClient productWebClient(
-            @Value("${services.product.base-url}") String baseUrl) {
-        return WebClient.builder()
-                .baseUrl(baseUrl)
-                .filter(propagateGatewayHeaders())
-                .build();
+    public WebClient productWebClient(WebClient.Builder webClientBuilder, Environment env,
+                                      @Value("${services.product.base-url}") String baseUrl) {
+        return downstreamClient(webClientBuilder, env, "product", baseUrl);
     }
 
     @Bean
-    public WebClient userWebClient(@Value("${services.user.base-url}") String baseUrl) {
-        return WebClient.builder()
+    public WebClient userWebClient(WebClient.Builder webClientBuilder, Environment env,
+                                   @Value("${services.user.base-url}") String baseUrl) {
+        return downstreamClient(webClientBuilder, env, "user", baseUrl);
+    }
+
+    private WebClient downstreamClient(WebClient.Builder webClientBuilder, Environment env, String service, String baseUrl) {
+        String prefix = "services." + service + ".http.";
+
+        ConnectionProvider pool = ConnectionProvider.builder(service + "-service")
+                .maxConnections(env.getProperty(prefix + "max-connections", Integer.class, 100))
+                .pendingAcquireMaxCount(env.getProperty(prefix + "pending-acquire-max-count", Integer.class, 500))
+                .pendingAcquireTimeout(env.getProperty(prefix + "pending-acquire-timeout", Duration.class, Duration.ofSeconds(2)))
+                .maxIdleTime(env.getProperty(prefix + "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+                .maxLifeTime(env.getProperty(prefix + "max-life-time", Duration.class, Duration.ofMinutes(5)))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+        pools.add(pool);
+
+        Duration connectTimeout = env.getProperty(prefix + "connect-timeout", Duration.class, Duration.ofSeconds(1));
+        Duration readTimeout = env.getProperty(prefix + "read-timeout", Duration.class, Duration.ofSeconds(5));
+        Duration writeTimeout = env.getProperty(prefix + "write-timeout", Duration.class, Duration.ofSeconds(5));
+
+        HttpClient httpClient = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(env.getProperty(prefix + "response-timeout", Duration.class, Duration.ofSeconds(5)))
+                .doOnConnected(conn -> conn
+                        .addHandlerLast(new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                        .addHandlerLast(new WriteTimeoutHandler(writeTimeout.toMillis(), TimeUnit.MILLISECONDS)));
+
+        if (env.getProperty(prefix + "http2", Boolean.class, false)) {
+            // Falls back to HTTP/1.1 when the server doesn't negotiate h2
+            httpClient = baseUrl.startsWith("https")
+                    ? httpClient.secure().protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                    : httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        return webClientBuilder.clone()
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .filter(propagateGatewayHeaders())   // ensure X-user-Id and X-user-Roles forwarded
                 .build();
     }
 
 
 
+    @Override
+    public void destroy() {
+        pools.forEach(ConnectionProvider::dispose);
+    }
+
     private ExchangeFilterFunction propagateGatewayHeaders() {
         // Note: In a real app, capture headers from Reactor context via ServerWebExchange
         // or use Spring Cloud Gateway's forward headers. For simplicity, you can inject
@@ -1,6 +1,7 @@
 package com.impetus.order_service.controller;
 
 import com.impetus.order_service.dto.AddCartItemRequest;
+import com.impetus.order_service.dto.CartQuoteResponse;
 import com.impetus.order_service.dto.CartResponse;
 import com.impetus.order_service.dto.UpdateCartItemRequest;
 import com.impetus.order_service.response.ApiResponse;
@@ -56,6 +57,13 @@ public class CartController {
         return ResponseEntity.ok(new ApiResponse<>("Cart fetched successfully", res));
     }
 
+    @GetMapping("/quote")
+    public ResponseEntity<ApiResponse<CartQuoteResponse>> quote(HttpServletRequest request){
+        Long userId = getCurrentUserId(request);
+        CartQuoteResponse res = cartService.quote(userId);
+        return ResponseEntity.ok(new ApiResponse<>("Cart quoted successfully", res));
+    }
+
     @PostMapping("/item/{itemId}")
     public ResponseEntity<ApiResponse<CartResponse>> updateItem(@PathVariable String itemId, @Valid @RequestBody UpdateCartItemRequest req, HttpServletRequest request){
         Long userId = getCurrentUserId(request);
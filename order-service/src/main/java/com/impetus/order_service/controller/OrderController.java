@@ -1,19 +1,29 @@
 package com.impetus.order_service.controller;
 
+import com.impetus.order_service.dto.CursorPage;
 import com.impetus.order_service.dto.OrderRequest;
 import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.enums.OrderStatus;
 import com.impetus.order_service.response.ApiResponse;
 import com.impetus.order_service.service.OrderService;
+import com.impetus.order_service.service.export.OrderExportService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.BadRequestException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
 @Slf4j
 @RestController
 @RequestMapping("/order")
@@ -22,6 +32,9 @@ public class OrderController {
     @Autowired
     OrderService orderService;
 
+    @Autowired
+    OrderExportService orderExportService;
+
     private Long getCurrentUserId(HttpServletRequest request){
         Long userId = Long.valueOf(request.getHeader("X-User-Id"));
         if(userId == null || userId == 0){
@@ -63,6 +76,13 @@ public class OrderController {
         return ResponseEntity.ok(new ApiResponse<>("Orders fetched Successfully", orders));
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<ApiResponse<CursorPage<OrderResponse>>> scrollOrders(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean withTotal, HttpServletRequest request){
+        Long userId = getCurrentUserId(request);
+        CursorPage<OrderResponse> orders = orderService.scrollOrders(userId, cursor, size, withTotal);
+        return ResponseEntity.ok(new ApiResponse<>("Orders fetched Successfully", orders));
+    }
+
     @GetMapping("/listOrdersOfUser/{userId}")
     public ResponseEntity<ApiResponse<Page<OrderResponse>>> listOrdersOfUser(@PathVariable Long userId, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size, HttpServletRequest request){
         Page<OrderResponse> orders = orderService.listOrder(userId, page, size);
@@ -75,4 +95,32 @@ public class OrderController {
         Page<OrderResponse> orders = orderService.listAllOrders(page, size);
         return ResponseEntity.ok(new ApiResponse<>("Orders fetched Successfully", orders));
     }
+
+    // Streams every matching order to the response as it is read, so there is no page size
+    @GetMapping("/listAllOrders/export")
+    public void exportOrders(@RequestParam(defaultValue = "ndjson") String format, @RequestParam(required = false) Instant from, @RequestParam(required = false) Instant to, @RequestParam(required = false) List<OrderStatus> status, HttpServletResponse response) throws IOException {
+        // Both throw IllegalArgumentException, answered with 400 before anything is written
+        OrderExportService.Format exportFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        OrderExportService.Filter filter = new OrderExportService.Filter(from, to, status);
+        if(exportFormat == OrderExportService.Format.CSV){
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.csv\"");
+        }else{
+            response.setContentType("application/x-ndjson;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.ndjson\"");
+        }
+        orderExportService.export(filter, exportFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/listOrdersOfUser/{userId}/scroll")
+    public ResponseEntity<ApiResponse<CursorPage<OrderResponse>>> scrollOrdersOfUser(@PathVariable Long userId, @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean withTotal){
+        CursorPage<OrderResponse> orders = orderService.scrollOrders(userId, cursor, size, withTotal);
+        return ResponseEntity.ok(new ApiResponse<>("Orders fetched Successfully", orders));
+    }
+
+    @GetMapping("/listAllOrders/scroll")
+    public ResponseEntity<ApiResponse<CursorPage<OrderResponse>>> scrollAllOrders(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean withTotal){
+        CursorPage<OrderResponse> orders = orderService.scrollAllOrders(cursor, size, withTotal);
+        return ResponseEntity.ok(new ApiResponse<>("Orders fetched Successfully", orders));
+    }
 }
@@ -1,32 +1,48 @@
 package com.impetus.order_service.controller;
 
-import jakarta.servlet.http.HttpServletRequest;
+import com.impetus.order_service.service.payment.PaymentWebhookProcessor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 @RequestMapping("/webhooks/razorpay/payment-events")
+@RequiredArgsConstructor
 public class PaymentEventsController {
 
+    private static final int MAX_EVENT_ID_LENGTH = 64;
+
+    private final PaymentWebhookProcessor paymentWebhookProcessor;
+
     @GetMapping
     public ResponseEntity<Void> check(){
         return ResponseEntity.ok(null);
     }
 
+    // Only verifies and queues the event; PaymentWebhookProcessor applies it in the background.
+    // The raw bytes are needed as sent, the signature is computed over them
     @PostMapping
-    public ResponseEntity<Void> updateEvents(HttpServletRequest request){
-//        Boolean captured = request.getBody().get("payload").get("payment").get("entity").get("status");
-
-        boolean captured = true;
-        if(captured){
-//            mark the reservations as fullfillled
-//            Extract payment Id and Order Id from notes which needs to passed while creating payment order in paymentGateway
-//            From that order fetch all reservations and mark them
+    public ResponseEntity<Void> updateEvents(@RequestBody byte[] body,
+                                             @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId,
+                                             @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature){
+        if(eventId == null || eventId.isBlank() || eventId.length() > MAX_EVENT_ID_LENGTH){
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(null);
 
+        return switch (paymentWebhookProcessor.accept(eventId, signature, body)) {
+            case QUEUED -> ResponseEntity.ok(null);
+            case INVALID_SIGNATURE -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            // Razorpay retries non-2xx deliveries, which is the backpressure we want
+            case QUEUE_FULL -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        };
     }
 }
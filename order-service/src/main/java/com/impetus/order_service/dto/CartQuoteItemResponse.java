@@ -0,0 +1,18 @@
+package com.impetus.order_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class CartQuoteItemResponse {
+    private Long itemId;
+    private String productId;
+    private String productSku;
+    private String productName;
+    private Integer unitPrice;
+    private Integer quantity;
+    private Integer totalPrice;
+    // False when product-service has fewer in stock than the line asks for; checkout would refuse the cart
+    private boolean inStock;
+}
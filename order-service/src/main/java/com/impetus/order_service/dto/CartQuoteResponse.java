@@ -0,0 +1,19 @@
+package com.impetus.order_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class CartQuoteResponse {
+    private Long cartId;
+    private Long userId;
+    private List<CartQuoteItemResponse> items;
+    private Integer subtotalAmount;
+    private Integer taxAmount;
+    private Integer shippingFee;
+    private Integer discountAmount;
+    private Integer totalAmount;
+}
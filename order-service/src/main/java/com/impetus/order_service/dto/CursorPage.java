@@ -0,0 +1,18 @@
+package com.impetus.order_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a keyset listing. {@code nextCursor} is null on the last page; {@code estimatedTotal} is only
+ * filled in when the caller asked for it.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private Long estimatedTotal;
+}
@@ -0,0 +1,19 @@
+package com.impetus.order_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// One entry of a product-service /inventoryCommands batch: type is COMMIT or RELEASE
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class InventoryCommandRequest {
+    private String type;
+    private String idempotencyKey;
+    private List<UpdateInventoryRequest> item;
+}
@@ -0,0 +1,17 @@
+package com.impetus.order_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+// What product-service answered for one batched command: the status its own endpoint would have returned,
+// with the response on 200 and the error message otherwise
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class InventoryCommandResult {
+    private String idempotencyKey;
+    private int status;
+    private UpdateInventoryResponse response;
+    private String error;
+}
@@ -1,7 +1,5 @@
 package com.impetus.order_service.dto;
 
-import com.impetus.order_service.entity.OrderItem;
-import com.impetus.order_service.entity.ShippingAddress;
 import com.impetus.order_service.enums.OrderStatus;
 import com.impetus.order_service.enums.PaymentMode;
 import com.impetus.order_service.enums.PaymentStatus;
@@ -22,6 +20,6 @@ public class OrderResponse {
     private PaymentMode paymentMode;
     private Integer totalAmount;
     private Instant placedAt;
-    private ShippingAddress shippingAddress;
+    private ShippingAddressResponse shippingAddress;
     private List<OrderItemResponse> items;
 }
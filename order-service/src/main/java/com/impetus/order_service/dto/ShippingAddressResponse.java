@@ -0,0 +1,20 @@
+package com.impetus.order_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ShippingAddressResponse {
+    private Long id;
+    private Long userId;
+    private String contactName;
+    private String phone;
+    private String addressLabel;
+    private String addressLine1;
+    private String addressLine2;
+    private String locality;
+    private String city;
+    private String state;
+    private String pincode;
+}
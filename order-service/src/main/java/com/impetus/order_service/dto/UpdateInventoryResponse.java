@@ -13,6 +13,13 @@ import java.util.List;
 public class UpdateInventoryResponse {
     private boolean success;
     private List<FailedItem> failedItems;
+    // Stock product-service took but could not put back; released again through the outbox
+    private List<UpdateInventoryRequest> pendingRelease = List.of();
+
+    public UpdateInventoryResponse(boolean success, List<FailedItem> failedItems) {
+        this.success = success;
+        this.failedItems = failedItems;
+    }
 
     @Data
     @AllArgsConstructor
@@ -0,0 +1,59 @@
+package com.impetus.order_service.entity;
+
+import com.impetus.order_service.enums.SagaStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Checkout progress of one order, see {@link com.impetus.order_service.service.saga.CheckoutSagaOrchestrator}.
+ * The state of each step is kept in {@link CheckoutSagaStep}.
+ */
+@Entity
+@Data
+@Table(name = "checkout_saga",
+        indexes = {
+                // Drives the resume sweep: WHERE status = 'COMPENSATING' AND updated_at < ? ORDER BY updated_at
+                @Index(name = "idx_checkout_saga_status_updated_at", columnList = "status, updated_at")
+        })
+public class CheckoutSaga implements Persistable<Long> {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private SagaStatus status;
+
+    // Why the order is being compensated, e.g. inventory-unavailable
+    @Column(name = "reason", length = 64)
+    private String reason;
+
+    private Instant createdAt;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    // The id is the order's, so tell Spring Data to insert instead of merging over an existing row
+    @Transient
+    private boolean newRecord = true;
+
+    @Override
+    public Long getId() {
+        return orderId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newRecord = false;
+    }
+}
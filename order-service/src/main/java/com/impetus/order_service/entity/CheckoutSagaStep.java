@@ -0,0 +1,54 @@
+package com.impetus.order_service.entity;
+
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.enums.SagaStepStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * State of one step of an order's {@link CheckoutSaga}. Steps are locked row by row while they run, so
+ * compensations of the same order can run in parallel and a step is never run twice at once.
+ */
+@Entity
+@Data
+@Table(name = "checkout_saga_step",
+        indexes = {
+                // Drives the stalled capture sweep: WHERE step = ? AND status IN (...) AND updated_at < ?
+                @Index(name = "idx_checkout_saga_step_step_status", columnList = "step, status, updated_at")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_checkout_saga_step", columnNames = {"order_id", "step"})
+        })
+public class CheckoutSagaStep {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "checkout_saga_step_id")
+    @TableGenerator(name = "checkout_saga_step_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "checkout_saga_step", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "step", nullable = false, length = 32)
+    private SagaStep step;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private SagaStepStatus status;
+
+    // Payment id for CAPTURE_PAYMENT, so a capture cut short can be run again
+    @Column(name = "reference")
+    private Long reference;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
@@ -0,0 +1,64 @@
+package com.impetus.order_service.entity;
+
+import com.impetus.order_service.enums.IdempotencyStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * The outcome of a request sent with an {@code Idempotency-Key}, replayed to retries of the same request.
+ * Written by {@link com.impetus.order_service.service.idempotency.IdempotencyStore}.
+ */
+@Entity
+@Data
+@Table(name = "idempotency_record",
+        indexes = {
+                // Drives the purge: WHERE expires_at < ? ORDER BY expires_at
+                @Index(name = "idx_idempotency_expires_at", columnList = "expires_at")
+        })
+public class IdempotencyRecord implements Persistable<String> {
+
+    // Fixed 22 chars whatever the client's key: base64url of 128 bits of sha256(user, method, path, key)
+    @Id
+    @Column(name = "id", length = 22)
+    private String id;
+
+    // base64url sha256 of the request body, so a key reused for a different request is rejected
+    @Column(name = "request_hash", nullable = false, length = 43)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private IdempotencyStatus status;
+
+    private Integer responseStatus;
+
+    @Column(name = "response_content_type", length = 100)
+    private String responseContentType;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    private Instant createdAt;
+
+    // Lease end while IN_PROGRESS, retention end once COMPLETED
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // The id is assigned, so tell Spring Data to insert instead of merging over an existing row
+    @Transient
+    private boolean newRecord = true;
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newRecord = false;
+    }
+}
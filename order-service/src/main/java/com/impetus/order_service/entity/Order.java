@@ -6,6 +6,7 @@ import com.impetus.order_service.enums.PaymentMode;
 import com.impetus.order_service.enums.PaymentStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -17,10 +18,18 @@ import java.util.List;
 @NoArgsConstructor
 @Getter
 @Setter
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Keyset listings seek on (placed_at, id), newest first, per user and across all users
+        @Index(name = "idx_orders_user_placed_at", columnList = "user_id, placed_at, id"),
+        @Index(name = "idx_orders_placed_at", columnList = "placed_at, id")
+})
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Ids come from a pooled range reserved in id_generator rather than from AUTO_INCREMENT, so Hibernate knows
+    // them before inserting and can batch the aggregate's inserts (see JpaBatchingConfig)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
 
     @Column(name = "order_number", unique = true, nullable = false)
@@ -68,7 +77,9 @@ public class Order {
     private Instant cancelledAt;
     private Instant deliveredAt;
 
+    // Initialised for a whole listing page in one IN query instead of one select per order
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     private List<OrderItem> items = new ArrayList<>();
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
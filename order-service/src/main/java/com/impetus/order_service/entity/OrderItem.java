@@ -7,7 +7,9 @@ import lombok.Data;
 @Data
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_item_id")
+    @TableGenerator(name = "order_item_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_item", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
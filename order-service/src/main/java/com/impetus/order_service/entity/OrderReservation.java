@@ -9,9 +9,15 @@ import java.time.Instant;
 
 @Entity
 @Data
+@Table(indexes = {
+        // Drives the keyset-paged expiry sweep: WHERE status = ? AND created_at < ? ORDER BY created_at, id
+        @Index(name = "idx_reservation_status_created_at", columnList = "status, created_at, id")
+})
 public class OrderReservation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_reservation_id")
+    @TableGenerator(name = "order_reservation_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_reservation", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -29,6 +35,7 @@ public class OrderReservation {
     @Column(name = "status", nullable = false)
     private ReservationStatus status;
 
+    @Column(name = "created_at")
     private Instant createdAt;
     private Instant expiresAt;
 }
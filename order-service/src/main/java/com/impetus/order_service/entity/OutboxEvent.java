@@ -0,0 +1,58 @@
+package com.impetus.order_service.entity;
+
+import com.impetus.order_service.enums.OutboxEventType;
+import com.impetus.order_service.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * A command for another service, written in the same transaction as the order change that caused it and
+ * delivered later by {@link com.impetus.order_service.schedular.OutboxDispatchSchedular}.
+ */
+@Entity
+@Data
+@Table(name = "outbox_event",
+        indexes = {
+                // Drives the dispatcher poll: WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY next_attempt_at, id
+                @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at, id")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_outbox_idempotency_key", columnNames = "idempotency_key")
+        })
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private OutboxEventType type;
+
+    // Sent as the Idempotency-Key header so redeliveries are applied once downstream
+    @Column(name = "idempotency_key", nullable = false, length = 191)
+    private String idempotencyKey;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private OutboxStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    private Instant createdAt;
+    private Instant sentAt;
+}
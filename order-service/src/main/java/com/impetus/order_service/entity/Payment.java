@@ -10,7 +10,9 @@ import lombok.Data;
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "payment_id")
+    @TableGenerator(name = "payment_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "payment", allocationSize = 50)
     private Long id;
 
     private Long userId;
@@ -0,0 +1,77 @@
+package com.impetus.order_service.entity;
+
+import com.impetus.order_service.enums.WebhookEventStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * A Razorpay webhook event that has been applied, kept so redeliveries of the same event are skipped. An event
+ * that could not be applied is kept as FAILED, with its body, until the retry sweep gets it through.
+ */
+@Entity
+@Data
+@Table(name = "payment_webhook_event",
+        indexes = {
+                // Drives the retry sweep: WHERE status = 'FAILED' AND next_attempt_at <= ? ORDER BY next_attempt_at
+                @Index(name = "idx_webhook_event_status_next_attempt", columnList = "status, next_attempt_at")
+        })
+public class PaymentWebhookEvent implements Persistable<String> {
+
+    // Razorpay's x-razorpay-event-id
+    @Id
+    @Column(name = "event_id", length = 64)
+    private String eventId;
+
+    @Column(name = "event_type", length = 64)
+    private String eventType;
+
+    private Long orderId;
+
+    private Instant processedAt;
+
+    // Rows written before the column existed were all applied, so null reads as APPLIED
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16)
+    private WebhookEventStatus status;
+
+    // The signed body, only kept while the event waits to be retried
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "attempts")
+    private Integer attempts;
+
+    // Null once the event is applied or has run out of attempts
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    // The id is assigned, so tell Spring Data to insert instead of merging over an existing row
+    @Transient
+    private boolean newRecord = true;
+
+    @Override
+    public String getId() {
+        return eventId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    public boolean isFailed() {
+        return status == WebhookEventStatus.FAILED;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newRecord = false;
+    }
+}
@@ -11,7 +11,9 @@ import lombok.Data;
 @Data
 public class ShippingAddress {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "shipping_address_id")
+    @TableGenerator(name = "shipping_address_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "shipping_address", allocationSize = 50)
     private Long id;
 
     @NotNull
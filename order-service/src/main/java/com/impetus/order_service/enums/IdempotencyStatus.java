@@ -0,0 +1,6 @@
+package com.impetus.order_service.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
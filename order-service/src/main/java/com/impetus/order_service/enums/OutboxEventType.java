@@ -0,0 +1,6 @@
+package com.impetus.order_service.enums;
+
+public enum OutboxEventType {
+    INVENTORY_COMMIT,
+    INVENTORY_RELEASE
+}
@@ -0,0 +1,7 @@
+package com.impetus.order_service.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    PARKED
+}
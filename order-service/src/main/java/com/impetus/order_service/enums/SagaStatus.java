@@ -0,0 +1,10 @@
+package com.impetus.order_service.enums;
+
+public enum SagaStatus {
+    RUNNING,
+    COMPLETED,
+    COMPENSATING,
+    COMPENSATED,
+    // Compensations ran out of attempts; left for an operator
+    FAILED_COMPENSATION
+}
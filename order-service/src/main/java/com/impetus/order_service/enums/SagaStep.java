@@ -0,0 +1,11 @@
+package com.impetus.order_service.enums;
+
+public enum SagaStep {
+    PLACE_ORDER,
+    CAPTURE_PAYMENT,
+    COMMIT_INVENTORY,
+    // Compensations
+    RELEASE_INVENTORY,
+    REFUND_PAYMENT,
+    CANCEL_ORDER
+}
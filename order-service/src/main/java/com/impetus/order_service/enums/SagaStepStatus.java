@@ -0,0 +1,9 @@
+package com.impetus.order_service.enums;
+
+public enum SagaStepStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED,
+    SKIPPED
+}
@@ -0,0 +1,8 @@
+package com.impetus.order_service.exception;
+
+// A downstream call shed by its AdaptiveConcurrencyLimiter; callers treat it like any other unavailability
+public class ConcurrencyLimitExceededException extends ServiceUnavailableException{
+    public ConcurrencyLimitExceededException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,158 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.exception.ConcurrencyLimitExceededException;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limit for the calls to one downstream service that follows how the service is doing, instead of a
+ * fixed bulkhead size. Calls over the limit are rejected straight away with
+ * {@link ConcurrencyLimitExceededException} rather than queued, so threads don't pile up blocking on a service
+ * that is already slow.
+ * <p>
+ * The limit is AIMD on round-trip time. Each RTT is folded into a moving average over roughly the last ten
+ * calls, and that average is compared with the service's no-load RTT, the lowest the average has been lately.
+ * While the average stays within {@code rtt-tolerance} times the no-load RTT, every call raises the limit by one,
+ * as long as at least half of it was in use. Once it goes above, the limit is cut by {@code backoff-ratio}, but
+ * only while the calls in flight are close to the limit (a service that is slow with few calls in flight isn't
+ * slow because of them) and at most once per round trip. A call failing with {@link ServiceUnavailableException}
+ * (5xx, timeouts, network errors) cuts it too. Other errors (4xx, bad responses) say nothing about load and leave
+ * it alone.
+ * <p>
+ * Exposed as {@code downstream.concurrency.limit}, {@code .in-flight}, {@code .rejections} and {@code .drops},
+ * tagged with the service. See {@code ConcurrencyLimitConfig} for the per-service settings.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // Lets the no-load RTT creep up ~0.1% per call, so a lasting change in the service's latency is re-learned
+    private static final double NO_LOAD_DRIFT = 1.001;
+    // Weight of the newest RTT in the moving average, so one fast or slow call barely moves it
+    private static final double SMOOTHING = 0.1;
+    // Share of the limit that must be in flight for a slowdown to cut it
+    private static final double NEAR_LIMIT = 0.8;
+
+    private final String service;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Written under this, read without it to admit calls
+    private volatile double limit;
+    // Guarded by this
+    private double smoothedRttNanos;
+    private double noLoadRttNanos;
+    private long nextDecreaseAt = Long.MIN_VALUE;
+
+    private final Counter rejections;
+    private final Counter drops;
+
+    public AdaptiveConcurrencyLimiter(String service, int initialLimit, int minLimit, int maxLimit,
+                                      double rttTolerance, double backoffRatio, MeterRegistry meterRegistry) {
+        this(service, initialLimit, minLimit, maxLimit, rttTolerance, backoffRatio, meterRegistry, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(String service, int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                               double backoffRatio, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits of " + service + " must satisfy 1 <= min <= initial <= max");
+        }
+        if (rttTolerance < 1 || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Concurrency limit of " + service
+                    + " needs rtt-tolerance >= 1 and a backoff-ratio between 0 and 1");
+        }
+        this.service = service;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.limit = initialLimit;
+
+        this.rejections = meterRegistry.counter("downstream.concurrency.rejections", "service", service);
+        this.drops = meterRegistry.counter("downstream.concurrency.drops", "service", service);
+        Gauge.builder("downstream.concurrency.limit", this, AdaptiveConcurrencyLimiter::limit)
+                .tag("service", service)
+                .register(meterRegistry);
+        Gauge.builder("downstream.concurrency.in-flight", inFlight, AtomicInteger::get)
+                .tag("service", service)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} if the service is under its limit, otherwise throws
+     * {@link ConcurrencyLimitExceededException} without calling it.
+     */
+    public <T> T execute(Supplier<T> call) {
+        acquire();
+        long start = nanoClock.getAsLong();
+        T result;
+        try {
+            result = call.get();
+        } catch (ServiceUnavailableException e) {
+            inFlight.decrementAndGet();
+            drops.increment();
+            backOff();
+            throw e;
+        } catch (RuntimeException | Error e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+        long end = nanoClock.getAsLong();
+        onSuccess(end - start, inFlight.getAndDecrement(), end);
+        return result;
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void acquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejections.increment();
+                throw new ConcurrencyLimitExceededException(
+                        service + " is at its concurrency limit of " + current + ". Please try again later.");
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void onSuccess(long rttNanos, int inFlightAtEnd, long now) {
+        long rtt = Math.max(1, rttNanos);
+        smoothedRttNanos = smoothedRttNanos == 0 ? rtt : smoothedRttNanos + SMOOTHING * (rtt - smoothedRttNanos);
+        noLoadRttNanos = noLoadRttNanos == 0
+                ? smoothedRttNanos
+                : Math.min(smoothedRttNanos, noLoadRttNanos * NO_LOAD_DRIFT);
+        if (smoothedRttNanos > noLoadRttNanos * rttTolerance) {
+            // Queueing somewhere downstream: back off before it turns into timeouts. The calls already in flight
+            // when the limit was cut finish just as slowly, so they mustn't cut it again.
+            if (inFlightAtEnd >= limit * NEAR_LIMIT && now >= nextDecreaseAt) {
+                backOff();
+                nextDecreaseAt = now + (long) smoothedRttNanos;
+            }
+        } else if (inFlightAtEnd * 2 >= limit) {
+            // Only grow a limit that is actually being used
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    private synchronized void backOff() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,80 @@
+package com.impetus.order_service.integrations;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.impetus.order_service.dto.AddressResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded near-cache of shipping addresses returned by user-service, keyed by (userId, addressId) so an
+ * address is only ever served back to the user it was fetched for.
+ * <p>
+ * Entries are "fresh" for {@code ttl}. Expired entries are kept (up to {@code stale-window}) so checkout can
+ * still use a recent address when user-service is slow or down.
+ * <p>
+ * Nothing tells order-service when an address is edited or deleted in user-service; only a 404 or 400 from
+ * user-service drops an entry. An order can therefore ship to an address that changed up to {@code ttl} ago, or
+ * up to {@code stale-window} ago while user-service is unreachable. Both are kept short for that reason.
+ * <pre>
+ * services.user.cache.ttl=PT1M
+ * services.user.cache.stale-window=PT30M
+ * services.user.cache.max-size=10000
+ * </pre>
+ */
+@Component
+public class AddressSnapshotCache {
+
+    private final SnapshotCache<Key, AddressResponse> cache;
+
+    @Autowired
+    public AddressSnapshotCache(@Value("${services.user.cache.ttl:PT1M}") Duration ttl,
+                                @Value("${services.user.cache.stale-window:PT30M}") Duration staleWindow,
+                                @Value("${services.user.cache.max-size:10000}") long maxSize,
+                                MeterRegistry meterRegistry) {
+        this(ttl, staleWindow, maxSize, meterRegistry, Ticker.systemTicker());
+    }
+
+    AddressSnapshotCache(Duration ttl, Duration staleWindow, long maxSize, MeterRegistry meterRegistry,
+                         Ticker ticker) {
+        // Addresses are only ever fetched on demand, so nothing is refreshed ahead of its ttl
+        this.cache = new SnapshotCache<>("services.user.cache", "user.address.cache", ttl, ttl, staleWindow,
+                maxSize, AddressSnapshotCache::copy, meterRegistry, ticker);
+    }
+
+    /**
+     * Returns the address if it was fetched less than {@code ttl} ago, otherwise null.
+     */
+    public AddressResponse get(Long userId, Long addressId) {
+        SnapshotCache.Fresh<AddressResponse> fresh = cache.getFresh(new Key(userId, addressId));
+        return fresh == null ? null : fresh.value();
+    }
+
+    /**
+     * Returns the address even if it is past its ttl, as long as it is inside the staleness window. Used when
+     * user-service cannot be reached.
+     */
+    public AddressResponse getStale(Long userId, Long addressId) {
+        return cache.getStale(new Key(userId, addressId));
+    }
+
+    public void put(Long userId, Long addressId, AddressResponse address) {
+        cache.put(new Key(userId, addressId), address);
+    }
+
+    public void invalidate(Long userId, Long addressId) {
+        cache.invalidate(new Key(userId, addressId));
+    }
+
+    static AddressResponse copy(AddressResponse a) {
+        return new AddressResponse(a.getId(), a.getAddressLabel(), a.getContactName(), a.getPhone(),
+                a.getAddressLine1(), a.getAddressLine2(), a.getLocality(), a.getCity(), a.getState(), a.getPincode(),
+                a.getIsDefaultShipping());
+    }
+
+    private record Key(Long userId, Long addressId) {
+    }
+}
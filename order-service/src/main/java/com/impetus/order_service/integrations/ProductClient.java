@@ -1,6 +1,8 @@
 package com.impetus.order_service.integrations;
 
 
+import com.impetus.order_service.dto.InventoryCommandRequest;
+import com.impetus.order_service.dto.InventoryCommandResult;
 import com.impetus.order_service.dto.ProductResponseDto;
 import com.impetus.order_service.exception.BadRequestException;
 import com.impetus.order_service.exception.InternalServerError;
@@ -51,16 +53,22 @@ import java.util.List;
 @Slf4j
 public class ProductClient {
 
-    private final WebClient.Builder webClientBuilder;
+    // Pooled client for services.product.base-url, see WebClientConfig
+    private final WebClient productWebClient;
+    // Lookups and inventory commands are limited separately, see ConcurrencyLimitConfig
+    private final AdaptiveConcurrencyLimiter productLookupLimiter;
+    private final AdaptiveConcurrencyLimiter productCommandLimiter;
 
     public List<ProductResponseDto> fetchProducts(List<String> productIds) {
-        log.info("Fetching details of products with Ids {}", productIds);
+        return productLookupLimiter.execute(() -> requestProducts(productIds));
+    }
 
-        WebClient client = webClientBuilder.build();
+    private List<ProductResponseDto> requestProducts(List<String> productIds) {
+        log.info("Fetching details of products with Ids {}", productIds);
 
         try {
-            return client.post()
-                    .uri("http://localhost:8082/product/detailsOfIds")
+            return productWebClient.post()
+                    .uri("/detailsOfIds")
                     .bodyValue(productIds)
                     .retrieve()
                     // Handle 4xx responses
@@ -95,8 +103,7 @@ public class ProductClient {
                     )
                     // Deserialize to ApiResponse<List<ProductResponseDto>>
                     .bodyToMono(new ParameterizedTypeReference<ApiResponse<List<ProductResponseDto>>>() {})
-                    // Optional: timeout if service hangs
-                    // .timeout(Duration.ofSeconds(3))
+                    // Connect/read/response timeouts are enforced by the pooled HttpClient
                     // Validate response shape
                     .map(resp -> {
                         if (resp == null || resp.getData() == null) {
@@ -114,7 +121,8 @@ public class ProductClient {
                                     "Product service is currently unavailable. Please try again later."
                             );
                         }
-                        if (cause instanceof java.net.SocketTimeoutException) {
+                        if (cause instanceof java.net.SocketTimeoutException
+                                || cause instanceof io.netty.handler.timeout.TimeoutException) {
                             return new ServiceUnavailableException(
                                     "Product service timed out. Please try again later."
                             );
@@ -137,4 +145,42 @@ public class ProductClient {
             throw new InternalServerError("Something went wrong while fetching product details. Please try again later.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends a batch of commit/release commands in one call. Results come back in the same order, one per command,
+     * each with the status its own endpoint would have returned; a failure of the call as a whole is thrown.
+     */
+    public List<InventoryCommandResult> sendInventoryCommands(List<InventoryCommandRequest> commands) {
+        return productCommandLimiter.execute(() -> postInventoryCommands(commands));
+    }
+
+    // 4xx on the batch as a whole means product-service couldn't read it (BadRequestException); anything else is
+    // surfaced as ServiceUnavailableException so the outbox retries every command in it with the same keys
+    private List<InventoryCommandResult> postInventoryCommands(List<InventoryCommandRequest> commands) {
+        List<InventoryCommandResult> results = productWebClient.post()
+                .uri("/inventoryCommands")
+                .bodyValue(commands)
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, clientResponse ->
+                        clientResponse.bodyToMono(String.class)
+                                .defaultIfEmpty("")
+                                .flatMap(body -> Mono.error(new BadRequestException(
+                                        "Product service rejected /inventoryCommands | status=" + clientResponse.statusCode()
+                                                + (body.isBlank() ? "" : " | details: " + body)))))
+                .onStatus(HttpStatusCode::is5xxServerError, clientResponse ->
+                        clientResponse.bodyToMono(String.class)
+                                .defaultIfEmpty("")
+                                .flatMap(body -> Mono.error(new ServiceUnavailableException(
+                                        "Product service failed /inventoryCommands" + (body.isBlank() ? "" : " | details: " + body)))))
+                .bodyToMono(new ParameterizedTypeReference<List<InventoryCommandResult>>() {})
+                .onErrorMap(WebClientRequestException.class, ex ->
+                        new ServiceUnavailableException("Unable to reach product service: " + ex.getMessage()))
+                .block();
+
+        if (results == null || results.size() != commands.size()) {
+            throw new ServiceUnavailableException("Product service answered " + (results == null ? 0 : results.size())
+                    + " of " + commands.size() + " inventory commands");
+        }
+        return results;
+    }
+}
@@ -0,0 +1,280 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import com.impetus.order_service.exception.BadRequestException;
+import com.impetus.order_service.exception.NotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Micro-batching in front of {@link ProductClient#fetchProducts}: ids asked for by concurrent callers within
+ * {@code window} of each other go to product-service as one {@code detailsOfIds} call, and each caller gets back
+ * the products it asked for.
+ * <p>
+ * The first caller of a batch waits out the window and then sends it on its own thread, so batching needs no
+ * threads of its own; a caller that brings the batch to {@code max-size} ids sends it straight away. A caller
+ * whose ids would push the batch past {@code max-size} closes it and starts the next one, and a caller asking for
+ * more than {@code max-size} ids on its own is sent in slices without waiting. A window of zero turns batching off.
+ * <p>
+ * If product-service rejects a combined call with a 4xx, each caller in it is asked for again on its own, so one
+ * caller's bad id fails only that caller ({@code product.fetch.batch.splits}).
+ * <p>
+ * What to watch when tuning: {@code product.fetch.batch.ids} and {@code .requests} (how much each call carries),
+ * {@code product.fetch.batches{trigger=window|size}} (whether batches fill before the window ends) and
+ * {@code product.fetch.batch.wait} (the latency the window adds to a lookup).
+ * <pre>
+ * services.product.batch.window=PT0.002S
+ * services.product.batch.max-size=200
+ * </pre>
+ */
+@Component
+public class ProductFetchBatcher {
+
+    private final ProductClient productClient;
+    private final long windowNanos;
+    private final int maxSize;
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private Batch open;
+
+    private final DistributionSummary batchIds;
+    private final DistributionSummary batchRequests;
+    private final Counter windowTriggered;
+    private final Counter sizeTriggered;
+    private final Counter splits;
+    private final Timer waited;
+
+    @Autowired
+    public ProductFetchBatcher(ProductClient productClient,
+                               @Value("${services.product.batch.window:PT0.002S}") Duration window,
+                               @Value("${services.product.batch.max-size:200}") int maxSize,
+                               MeterRegistry meterRegistry) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("services.product.batch.max-size must be at least 1");
+        }
+        this.productClient = productClient;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+
+        this.batchIds = DistributionSummary.builder("product.fetch.batch.ids")
+                .description("Product ids per combined detailsOfIds call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.batchRequests = DistributionSummary.builder("product.fetch.batch.requests")
+                .description("Callers served by one combined detailsOfIds call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.windowTriggered = meterRegistry.counter("product.fetch.batches", "trigger", "window");
+        this.sizeTriggered = meterRegistry.counter("product.fetch.batches", "trigger", "size");
+        this.splits = meterRegistry.counter("product.fetch.batch.splits");
+        this.waited = Timer.builder("product.fetch.batch.wait")
+                .description("Time a lookup waited for its batch to be sent")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the products product-service has for {@code productIds}, in request order. Ids it doesn't know are
+     * left out, as with {@link ProductClient#fetchProducts}.
+     */
+    public List<ProductResponseDto> fetch(List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        if (windowNanos <= 0) {
+            return productClient.fetchProducts(productIds);
+        }
+
+        Set<String> distinct = new LinkedHashSet<>(productIds);
+        if (distinct.size() > maxSize) {
+            return fetchInSlices(productIds, List.copyOf(distinct));
+        }
+
+        Request request = new Request(List.copyOf(productIds), System.nanoTime());
+        Batch batch;
+        Batch closed = null;
+        boolean full;
+        synchronized (lock) {
+            if (open != null && !fits(open, distinct)) {
+                // Close it at the size it has; its first caller wakes up and sends it
+                closed = open;
+                closed.closed = true;
+                open = null;
+            }
+            if (open == null) {
+                open = new Batch(Thread.currentThread(), request.joinedAt());
+            }
+            batch = open;
+            batch.requests.add(request);
+            batch.ids.addAll(distinct);
+            full = batch.ids.size() >= maxSize;
+            if (full) {
+                open = null;
+                batch.closed = true;
+                batch.taken = true;
+            }
+        }
+
+        if (closed != null) {
+            sizeTriggered.increment();
+            LockSupport.unpark(closed.leader);
+        }
+        if (full) {
+            sizeTriggered.increment();
+            // Don't keep the first caller waiting for a window that no longer matters
+            LockSupport.unpark(batch.leader);
+            send(batch);
+        } else if (batch.leader == Thread.currentThread()) {
+            awaitWindow(batch);
+            boolean mine;
+            boolean windowEnded = false;
+            synchronized (lock) {
+                mine = !batch.taken;
+                if (mine) {
+                    windowEnded = !batch.closed;
+                    if (open == batch) {
+                        open = null;
+                    }
+                    batch.closed = true;
+                    batch.taken = true;
+                }
+            }
+            if (mine) {
+                if (windowEnded) {
+                    windowTriggered.increment();
+                }
+                send(batch);
+            }
+        }
+        return await(request.result());
+    }
+
+    private boolean fits(Batch batch, Set<String> ids) {
+        long added = ids.stream().filter(id -> !batch.ids.contains(id)).count();
+        return batch.ids.size() + added <= maxSize;
+    }
+
+    // Nobody else's ids would fit next to these, so there is nothing to wait for
+    private List<ProductResponseDto> fetchInSlices(List<String> productIds, List<String> distinct) {
+        List<ProductResponseDto> products = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += maxSize) {
+            List<String> slice = distinct.subList(from, Math.min(from + maxSize, distinct.size()));
+            sizeTriggered.increment();
+            batchIds.record(slice.size());
+            batchRequests.record(1);
+            products.addAll(productClient.fetchProducts(slice));
+        }
+        return pick(productIds, products);
+    }
+
+    private void awaitWindow(Batch batch) {
+        long deadline = batch.openedAt + windowNanos;
+        long remaining;
+        while (!batch.closed && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            // Cancelled (e.g. by Mono.zip): send early, the other callers in the batch still need it
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    private void send(Batch batch) {
+        long now = System.nanoTime();
+        batchIds.record(batch.ids.size());
+        batchRequests.record(batch.requests.size());
+        batch.requests.forEach(r -> waited.record(now - r.joinedAt(), TimeUnit.NANOSECONDS));
+
+        // The call is made for every caller in the batch, so one of them having been interrupted mustn't fail it
+        boolean interrupted = Thread.interrupted();
+        try {
+            List<ProductResponseDto> products = productClient.fetchProducts(List.copyOf(batch.ids));
+            batch.requests.forEach(r -> r.result().complete(pick(r.ids(), products)));
+        } catch (NotFoundException | BadRequestException e) {
+            if (batch.requests.size() == 1) {
+                batch.requests.get(0).result().completeExceptionally(e);
+            } else {
+                // Product-service refused the ids of at least one caller; find out which by asking for each alone
+                splits.increment();
+                batch.requests.forEach(this::sendAlone);
+            }
+        } catch (RuntimeException | Error e) {
+            batch.requests.forEach(r -> r.result().completeExceptionally(e));
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sendAlone(Request request) {
+        try {
+            request.result().complete(pick(request.ids(), productClient.fetchProducts(request.ids())));
+        } catch (RuntimeException | Error e) {
+            request.result().completeExceptionally(e);
+        }
+    }
+
+    // The products for ids, in the order they were asked for
+    private static List<ProductResponseDto> pick(List<String> ids, List<ProductResponseDto> products) {
+        Map<String, ProductResponseDto> byId = products.stream()
+                .filter(p -> p != null && p.getId() != null)
+                .collect(Collectors.toMap(ProductResponseDto::getId, Function.identity(), (a, b) -> a));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Rethrows what the call failed with, so retries and the circuit breaker see the same errors either way
+    private static List<ProductResponseDto> await(CompletableFuture<List<ProductResponseDto>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    private record Request(List<String> ids, long joinedAt, CompletableFuture<List<ProductResponseDto>> result) {
+        Request(List<String> ids, long joinedAt) {
+            this(ids, joinedAt, new CompletableFuture<>());
+        }
+    }
+
+    private static final class Batch {
+        final Thread leader;
+        final long openedAt;
+        final List<Request> requests = new ArrayList<>();
+        final Set<String> ids = new LinkedHashSet<>();
+        // Set under lock once the batch is closed to new callers, and once a caller has taken it to send
+        volatile boolean closed;
+        volatile boolean taken;
+
+        Batch(Thread leader, long openedAt) {
+            this.leader = leader;
+            this.openedAt = openedAt;
+        }
+    }
+}
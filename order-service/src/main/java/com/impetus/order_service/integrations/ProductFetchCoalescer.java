@@ -0,0 +1,112 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Single-flight in front of {@link ProductFetchBatcher}: while a product id is being fetched, other
+ * callers asking for it wait for that fetch instead of sending their own. Each caller only sends the ids nobody
+ * else is already fetching, so a flash sale's hundreds of concurrent checkouts for the same hot products turn
+ * into one request per product, and mixed id sets still get exactly the products they asked for.
+ * <p>
+ * Fetched products go into the {@link ProductSnapshotCache} before anyone waiting on them is released, so there
+ * is no gap where an id is neither cached nor in flight. A failed fetch fails every caller waiting on it; the
+ * next attempt starts a new flight.
+ */
+@Component
+public class ProductFetchCoalescer {
+
+    private final ProductFetchBatcher productFetchBatcher;
+    private final ProductSnapshotCache productSnapshotCache;
+    // Completed with null when product-service didn't return the product
+    private final Map<String, CompletableFuture<ProductResponseDto>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter fetched;
+    private final Counter coalesced;
+
+    public ProductFetchCoalescer(ProductFetchBatcher productFetchBatcher, ProductSnapshotCache productSnapshotCache,
+                                 MeterRegistry meterRegistry) {
+        this.productFetchBatcher = productFetchBatcher;
+        this.productSnapshotCache = productSnapshotCache;
+        this.fetched = meterRegistry.counter("product.fetch.ids", "result", "fetched");
+        this.coalesced = meterRegistry.counter("product.fetch.ids", "result", "coalesced");
+        Gauge.builder("product.fetch.in-flight", inFlight, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the products product-service has for {@code productIds}, in request order, and caches them. Ids it
+     * doesn't know are left out, as with {@link ProductClient#fetchProducts}.
+     */
+    public List<ProductResponseDto> fetch(List<String> productIds) {
+        Map<String, CompletableFuture<ProductResponseDto>> pending = new LinkedHashMap<>();
+        Map<String, CompletableFuture<ProductResponseDto>> owned = new LinkedHashMap<>();
+        for (String id : new LinkedHashSet<>(productIds)) {
+            CompletableFuture<ProductResponseDto> mine = new CompletableFuture<>();
+            CompletableFuture<ProductResponseDto> existing = inFlight.putIfAbsent(id, mine);
+            if (existing == null) {
+                owned.put(id, mine);
+                pending.put(id, mine);
+            } else {
+                pending.put(id, existing);
+            }
+        }
+        fetched.increment(owned.size());
+        coalesced.increment(pending.size() - owned.size());
+
+        if (!owned.isEmpty()) {
+            fetchOwned(owned);
+        }
+
+        List<ProductResponseDto> out = new ArrayList<>(pending.size());
+        for (Map.Entry<String, CompletableFuture<ProductResponseDto>> entry : pending.entrySet()) {
+            ProductResponseDto product = await(entry.getValue());
+            if (product != null) {
+                // Waiters get their own copy, like cache hits; only the caller that fetched keeps the original
+                out.add(owned.containsKey(entry.getKey()) ? product : ProductSnapshotCache.copy(product));
+            }
+        }
+        return out;
+    }
+
+    private void fetchOwned(Map<String, CompletableFuture<ProductResponseDto>> owned) {
+        try {
+            List<ProductResponseDto> products = productFetchBatcher.fetch(List.copyOf(owned.keySet()));
+            productSnapshotCache.putAll(products);
+            Map<String, ProductResponseDto> byId = products.stream()
+                    .filter(p -> p != null && p.getId() != null)
+                    .collect(Collectors.toMap(ProductResponseDto::getId, Function.identity(), (a, b) -> a));
+            owned.forEach((id, future) -> future.complete(byId.get(id)));
+        } catch (RuntimeException | Error e) {
+            owned.values().forEach(future -> future.completeExceptionally(e));
+        } finally {
+            // Only after caching, so a caller arriving now finds the products either cached or in this flight
+            owned.forEach(inFlight::remove);
+        }
+    }
+
+    // Rethrows what the fetch failed with, so retries and the circuit breaker see the same errors either way
+    private static ProductResponseDto await(CompletableFuture<ProductResponseDto> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.impetus.order_service.integrations;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.impetus.order_service.dto.ProductResponseDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded near-cache of product snapshots returned by product-service.
+ * <p>
+ * Entries are "fresh" for {@code ttl} and are flagged for background refresh once they are within
+ * {@code refresh-ahead} of expiring. Expired entries are kept (up to {@code stale-window}) so the
+ * circuit breaker fallback can still serve recent data when product-service is down.
+ * <p>
+ * Snapshots are copied going in and coming out, so a caller changing the product it was handed (its
+ * {@code inventoryQuantity}, say) can't change what the next caller reads.
+ */
+@Component
+public class ProductSnapshotCache {
+
+    private final SnapshotCache<String, ProductResponseDto> cache;
+
+    @Autowired
+    public ProductSnapshotCache(@Value("${services.product.cache.ttl:PT30S}") Duration ttl,
+                                @Value("${services.product.cache.refresh-ahead:PT5S}") Duration refreshAhead,
+                                @Value("${services.product.cache.stale-window:PT10M}") Duration staleWindow,
+                                @Value("${services.product.cache.max-size:10000}") long maxSize,
+                                MeterRegistry meterRegistry) {
+        this(ttl, refreshAhead, staleWindow, maxSize, meterRegistry, Ticker.systemTicker());
+    }
+
+    ProductSnapshotCache(Duration ttl, Duration refreshAhead, Duration staleWindow, long maxSize,
+                         MeterRegistry meterRegistry, Ticker ticker) {
+        this.cache = new SnapshotCache<>("services.product.cache", "product.snapshot.cache", ttl,
+                ttl.minus(refreshAhead), staleWindow, maxSize, ProductSnapshotCache::copy, meterRegistry, ticker);
+    }
+
+    /**
+     * Splits the requested ids into fresh hits, ids that must be fetched and hits that should be refreshed
+     * in the background because they are about to expire.
+     */
+    public Lookup lookup(List<String> productIds) {
+        Map<String, ProductResponseDto> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        List<String> refreshable = new ArrayList<>();
+
+        for (String id : new LinkedHashSet<>(productIds)) {
+            SnapshotCache.Fresh<ProductResponseDto> fresh = cache.getFresh(id);
+            if (fresh == null) {
+                missing.add(id);
+                continue;
+            }
+            found.put(id, fresh.value());
+            if (fresh.refreshDue()) {
+                refreshable.add(id);
+            }
+        }
+        return new Lookup(found, missing, refreshable);
+    }
+
+    /**
+     * Returns whatever is still cached for the ids, including entries past their ttl, as long as they
+     * are inside the staleness window. Used when product-service cannot be reached.
+     */
+    public List<ProductResponseDto> getStale(List<String> productIds) {
+        List<ProductResponseDto> out = new ArrayList<>();
+        for (String id : productIds) {
+            ProductResponseDto product = cache.getStale(id);
+            if (product != null) {
+                out.add(product);
+            }
+        }
+        return out;
+    }
+
+    public void putAll(List<ProductResponseDto> products) {
+        for (ProductResponseDto p : products) {
+            if (p != null && p.getId() != null) {
+                cache.put(p.getId(), p);
+            }
+        }
+    }
+
+    public void invalidate(String productId) {
+        cache.invalidate(productId);
+    }
+
+    static ProductResponseDto copy(ProductResponseDto p) {
+        return new ProductResponseDto(p.getId(), p.getName(), p.getDescription(), p.getSku(), p.getPrice(),
+                p.getInventoryQuantity(), p.getAttributes() == null ? null : new LinkedHashMap<>(p.getAttributes()));
+    }
+
+    public record Lookup(Map<String, ProductResponseDto> found, List<String> missing, List<String> refreshable) {
+    }
+}
@@ -1,42 +1,75 @@
 package com.impetus.order_service.integrations;
 
 import com.impetus.order_service.dto.ProductResponseDto;
-import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.github.resilience4j.retry.annotation.Retry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ResilientProductService {
-    private final ProductClient productClient;
+    private static final String PRODUCT_SERVICE = "product-service";
 
-    private final Map<String, ProductResponseDto> productsCache = new ConcurrentHashMap<>();
+    // Shares in-flight fetches between concurrent callers and caches what comes back
+    private final ProductFetchCoalescer productFetchCoalescer;
+    private final ProductSnapshotCache productSnapshotCache;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
 
-    @CircuitBreaker(name = "product-service", fallbackMethod = "productFallback")
-    @Retry(name = "product-service")
-    @Bulkhead(name = "product-service")
-    @RateLimiter(name = "product-service")
+    // Ids with a background refresh already scheduled, so hot products are refreshed once and not per request
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    @CircuitBreaker(name = PRODUCT_SERVICE, fallbackMethod = "productFallback")
+    @Retry(name = PRODUCT_SERVICE)
     public List<ProductResponseDto> getProducts(List<String> productIds){
-        List<ProductResponseDto> productResponseDtoList = productClient.fetchProducts(productIds);
+        ProductSnapshotCache.Lookup lookup = productSnapshotCache.lookup(productIds);
+        if(!lookup.refreshable().isEmpty()){
+            refreshInBackground(lookup.refreshable());
+        }
+        if(lookup.missing().isEmpty()){
+            return List.copyOf(lookup.found().values());
+        }
+
+        // Partial hit: only go remote for the ids we don't have a fresh snapshot of
+        List<ProductResponseDto> fetched = productFetchCoalescer.fetch(lookup.missing());
+
+        List<ProductResponseDto> productResponseDtoList = new ArrayList<>(lookup.found().values());
+        productResponseDtoList.addAll(fetched);
         return productResponseDtoList;
     }
 
     private List<ProductResponseDto> productFallback(List<String> productIds, Throwable ex){
         log.error("Using fallback of Product Client to fetch products", ex);
-        return productIds.stream()
-                .map(productsCache::get)
-                .filter(Objects::nonNull)
-                .toList();
+        return productSnapshotCache.getStale(productIds);
+    }
+
+    private void refreshInBackground(List<String> productIds){
+        // Nothing to gain from refreshing while product-service is failing; the fallback serves stale data
+        if(circuitBreakerRegistry.circuitBreaker(PRODUCT_SERVICE).getState() != State.CLOSED){
+            return;
+        }
+        List<String> toRefresh = productIds.stream().filter(refreshing::add).toList();
+        if(toRefresh.isEmpty()) return;
+
+        Schedulers.boundedElastic().schedule(() -> {
+            try{
+                productFetchCoalescer.fetch(toRefresh);
+            }catch (Exception e){
+                log.warn("Background refresh of products {} failed: {}", toRefresh, e.getMessage());
+            }finally {
+                toRefresh.forEach(refreshing::remove);
+            }
+        });
     }
 }
 
@@ -1,17 +1,78 @@
 package com.impetus.order_service.integrations;
 
 import com.impetus.order_service.dto.AddressResponse;
+import com.impetus.order_service.exception.BadRequestException;
+import com.impetus.order_service.exception.InternalServerError;
+import com.impetus.order_service.exception.NotFoundException;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ResilientUserService {
+    private static final String USER_SERVICE = "user-service";
+
     private final UserClient userClient;
+    private final AddressSnapshotCache addressSnapshotCache;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    // Sheds calls once user-service is at its adaptive limit, see ConcurrencyLimitConfig
+    private final AdaptiveConcurrencyLimiter userServiceLimiter;
 
-    @Retry(name = "order-service")
+    @CircuitBreaker(name = USER_SERVICE, fallbackMethod = "addressFallback")
+    @Retry(name = USER_SERVICE)
     public AddressResponse fetchUserAddress(Long userId, Long addressId){
-        return userClient.fetchUserAddress(userId, addressId);
+        AddressResponse cached = addressSnapshotCache.get(userId, addressId);
+        if(cached != null){
+            return cached;
+        }
+
+        AddressResponse address = userServiceLimiter.execute(() -> fetchWithDeadline(userId, addressId));
+        addressSnapshotCache.put(userId, addressId, address);
+        return address;
+    }
+
+    // The @TimeLimiter annotation only applies to async methods. Checkout blocks on the address anyway, so the
+    // limiter waits on the request here and cancels it (closing the connection) once the timeout passes.
+    private AddressResponse fetchWithDeadline(Long userId, Long addressId){
+        AddressResponse address;
+        try{
+            address = timeLimiterRegistry.timeLimiter(USER_SERVICE)
+                    .executeFutureSupplier(() -> userClient.address(userId, addressId).toFuture());
+        }catch (RuntimeException e){
+            throw e;
+        }catch (TimeoutException e){
+            throw new ServiceUnavailableException("User service timed out. Please try again later.");
+        }catch (Exception e){
+            log.error("Unexpected error while fetching address for userId={}, addressId={}", userId, addressId, e);
+            throw new InternalServerError("Something went wrong while fetching the address. Please try again later.");
+        }
+        if(address == null){
+            throw new InternalServerError("Address response was empty");
+        }
+        return address;
+    }
+
+    private AddressResponse addressFallback(Long userId, Long addressId, Throwable ex){
+        if(ex instanceof NotFoundException || ex instanceof BadRequestException){
+            // user-service answered: the address is gone or isn't the user's, so a cached copy must not outlive it
+            addressSnapshotCache.invalidate(userId, addressId);
+            throw (RuntimeException) ex;
+        }
+        AddressResponse stale = addressSnapshotCache.getStale(userId, addressId);
+        if(stale == null){
+            log.error("User service unavailable and no cached address {} for user {}", addressId, userId, ex);
+            throw ex instanceof ServiceUnavailableException unavailable ? unavailable
+                    : new ServiceUnavailableException("User service is currently unavailable. Please try again later.");
+        }
+        log.warn("Using cached address {} for user {}: {}", addressId, userId, ex.getMessage());
+        return stale;
     }
 }
@@ -0,0 +1,113 @@
+package com.impetus.order_service.integrations;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded near-cache of values fetched from another service, behind {@link ProductSnapshotCache} and
+ * {@link AddressSnapshotCache}.
+ * <p>
+ * An entry is fresh for {@code ttl} and due for a background refresh once it is older than {@code refreshAfter}.
+ * It is kept until {@code staleWindow} after it was fetched, so a fallback can still serve it while the service
+ * is down. Values are copied going in and coming out, so a caller changing what it was handed can't change what
+ * the next caller reads.
+ * <p>
+ * Meters are {@code <metrics>.gets} tagged hit, miss or stale, {@code <metrics>.evictions} and
+ * {@code <metrics>.size}.
+ */
+final class SnapshotCache<K, V> {
+
+    private final Cache<K, Snapshot<V>> cache;
+    private final UnaryOperator<V> copy;
+    private final Ticker ticker;
+    private final long ttlNanos;
+    private final long refreshAfterNanos;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter staleHits;
+
+    /**
+     * @param config the property prefix the durations came from, for the error message
+     */
+    SnapshotCache(String config, String metrics, Duration ttl, Duration refreshAfter, Duration staleWindow,
+                  long maxSize, UnaryOperator<V> copy, MeterRegistry meterRegistry, Ticker ticker) {
+        if (staleWindow.compareTo(ttl) < 0) {
+            throw new IllegalArgumentException(config + ".stale-window must not be shorter than the ttl");
+        }
+        this.copy = copy;
+        this.ticker = ticker;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshAfterNanos = Math.max(0, refreshAfter.toNanos());
+
+        this.hits = meterRegistry.counter(metrics + ".gets", "result", "hit");
+        this.misses = meterRegistry.counter(metrics + ".gets", "result", "miss");
+        this.staleHits = meterRegistry.counter(metrics + ".gets", "result", "stale");
+        Counter evictions = meterRegistry.counter(metrics + ".evictions");
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleWindow)
+                .ticker(ticker)
+                .removalListener((K key, Snapshot<V> snapshot, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+
+        Gauge.builder(metrics + ".size", cache, Cache::estimatedSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns a copy of the value if it was fetched less than {@code ttl} ago, otherwise null.
+     */
+    Fresh<V> getFresh(K key) {
+        Snapshot<V> snapshot = cache.getIfPresent(key);
+        long age = snapshot == null ? Long.MAX_VALUE : ticker.read() - snapshot.fetchedAt();
+        if (age >= ttlNanos) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Fresh<>(copy.apply(snapshot.value()), age >= refreshAfterNanos);
+    }
+
+    /**
+     * Returns a copy of whatever is still cached for the key, including an entry past its ttl, as long as it is
+     * inside the staleness window.
+     */
+    V getStale(K key) {
+        Snapshot<V> snapshot = cache.getIfPresent(key);
+        if (snapshot == null) {
+            return null;
+        }
+        staleHits.increment();
+        return copy.apply(snapshot.value());
+    }
+
+    void put(K key, V value) {
+        if (value != null) {
+            cache.put(key, new Snapshot<>(copy.apply(value), ticker.read()));
+        }
+    }
+
+    void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    record Fresh<V>(V value, boolean refreshDue) {
+    }
+
+    private record Snapshot<V>(V value, long fetchedAt) {
+    }
+}
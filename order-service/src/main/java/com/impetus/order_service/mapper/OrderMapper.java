@@ -0,0 +1,77 @@
+package com.impetus.order_service.mapper;
+
+import com.impetus.order_service.dto.OrderItemResponse;
+import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.dto.ShippingAddressResponse;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.ShippingAddress;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain field-by-field copies from order entities to their responses. Replaces ModelMapper, which matched
+ * properties reflectively on every order read. Add new response fields here explicitly.
+ */
+@Component
+public class OrderMapper {
+
+    public OrderResponse toResponse(Order order) {
+        OrderResponse r = new OrderResponse();
+        r.setId(order.getId());
+        r.setUserId(order.getUserId());
+        r.setOrderNumber(order.getOrderNumber());
+        r.setStatus(order.getStatus());
+        r.setPaymentStatus(order.getPaymentStatus());
+        r.setPaymentMode(order.getPaymentMode());
+        r.setTotalAmount(order.getTotalAmount());
+        r.setPlacedAt(order.getPlacedAt());
+        r.setShippingAddress(toResponse(order.getShippingAddress()));
+        r.setItems(toItemResponses(order.getItems()));
+        return r;
+    }
+
+    public OrderItemResponse toResponse(OrderItem item) {
+        OrderItemResponse r = new OrderItemResponse();
+        r.setId(item.getId());
+        r.setProductId(item.getProductId());
+        r.setProductSku(item.getProductSku());
+        r.setProductName(item.getProductName());
+        r.setUnitPrice(item.getUnitPrice());
+        r.setQuantity(item.getQuantity());
+        r.setTotalPrice(item.getTotalPrice());
+        return r;
+    }
+
+    public ShippingAddressResponse toResponse(ShippingAddress address) {
+        if (address == null) {
+            return null;
+        }
+        ShippingAddressResponse r = new ShippingAddressResponse();
+        r.setId(address.getId());
+        r.setUserId(address.getUserId());
+        r.setContactName(address.getContactName());
+        r.setPhone(address.getPhone());
+        r.setAddressLabel(address.getAddressLabel());
+        r.setAddressLine1(address.getAddressLine1());
+        r.setAddressLine2(address.getAddressLine2());
+        r.setLocality(address.getLocality());
+        r.setCity(address.getCity());
+        r.setState(address.getState());
+        r.setPincode(address.getPincode());
+        return r;
+    }
+
+    private List<OrderItemResponse> toItemResponses(List<OrderItem> items) {
+        if (items == null) {
+            return null;
+        }
+        List<OrderItemResponse> out = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            out.add(toResponse(item));
+        }
+        return out;
+    }
+}
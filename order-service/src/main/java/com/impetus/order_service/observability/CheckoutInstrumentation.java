@@ -0,0 +1,152 @@
+package com.impetus.order_service.observability;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Times the phases of checkout and the downstream calls it makes, as Micrometer observations.
+ * <p>
+ * Each observation becomes a {@code checkout.phase} or {@code checkout.dependency} timer, tagged with the
+ * phase or dependency name and {@code outcome=success|failure}, and a child span of the current trace. A
+ * second, private copy of each timer keeps percentiles over the last {@code checkout.metrics.window} only,
+ * for {@link CheckoutPhasesEndpoint}.
+ * <pre>
+ * checkout.metrics.window=PT1M
+ * </pre>
+ */
+@Component
+public class CheckoutInstrumentation {
+    public static final String PHASE = "checkout.phase";
+    public static final String DEPENDENCY = "checkout.dependency";
+
+    public record Summary(String kind, String name, long count, long failures,
+                          double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+    }
+
+    private final ObservationRegistry observationRegistry;
+    private final Duration window;
+    // Not exported; only read by summaries()
+    private final MeterRegistry windowRegistry = new SimpleMeterRegistry();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public CheckoutInstrumentation(ObservationRegistry observationRegistry,
+                                   @Value("${checkout.metrics.window:PT1M}") Duration window) {
+        this.observationRegistry = observationRegistry;
+        this.window = window;
+    }
+
+    public <T> T phase(String phase, Supplier<T> body) {
+        return observe(PHASE, "phase", phase, null, body);
+    }
+
+    public void phase(String phase, Runnable body) {
+        observe(PHASE, "phase", phase, null, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Times a downstream call. Pass {@link #current()} from the request thread as the parent when the call runs
+     * on another thread, otherwise its span is not attached to the request's trace.
+     */
+    public <T> T dependency(String dependency, Observation parent, Supplier<T> body) {
+        return observe(DEPENDENCY, "dependency", dependency, parent, body);
+    }
+
+    public Observation current() {
+        return observationRegistry.getCurrentObservation();
+    }
+
+    public Duration window() {
+        return window;
+    }
+
+    /**
+     * Phases and dependencies seen so far, slowest p99 over the window first.
+     */
+    public List<Summary> summaries() {
+        List<Summary> out = new ArrayList<>(stats.size());
+        for (Stats s : stats.values()) {
+            HistogramSnapshot snapshot = s.timer.takeSnapshot();
+            double p50 = 0, p95 = 0, p99 = 0;
+            for (ValueAtPercentile v : snapshot.percentileValues()) {
+                double ms = v.value(TimeUnit.MILLISECONDS);
+                if (v.percentile() == 0.5) p50 = ms;
+                else if (v.percentile() == 0.95) p95 = ms;
+                else if (v.percentile() == 0.99) p99 = ms;
+            }
+            out.add(new Summary(s.kind, s.name, s.timer.count(), s.failures.get(), p50, p95, p99,
+                    snapshot.max(TimeUnit.MILLISECONDS)));
+        }
+        out.sort(Comparator.comparingDouble(Summary::p99Ms).reversed());
+        return out;
+    }
+
+    private <T> T observe(String name, String key, String value, Observation parent, Supplier<T> body) {
+        Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(name + " " + value)
+                .lowCardinalityKeyValue(key, value);
+        if (parent != null) {
+            observation.parentObservation(parent);
+        }
+        observation.start();
+        long start = System.nanoTime();
+        boolean ok = false;
+        try (Observation.Scope scope = observation.openScope()) {
+            T result = body.get();
+            ok = true;
+            return result;
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.lowCardinalityKeyValue("outcome", ok ? "success" : "failure");
+            observation.stop();
+            record(name, value, System.nanoTime() - start, ok);
+        }
+    }
+
+    private void record(String kind, String name, long nanos, boolean ok) {
+        Stats s = stats.computeIfAbsent(kind + ':' + name, k -> new Stats(kind, name, Timer.builder(kind)
+                .tag("name", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(window)
+                .distributionStatisticBufferLength(3)
+                .register(windowRegistry)));
+        s.timer.record(nanos, TimeUnit.NANOSECONDS);
+        if (!ok) {
+            s.failures.incrementAndGet();
+        }
+    }
+
+    private static final class Stats {
+        private final String kind;
+        private final String name;
+        private final Timer timer;
+        private final AtomicLong failures = new AtomicLong();
+
+        private Stats(String kind, String name, Timer timer) {
+            this.kind = kind;
+            this.name = name;
+            this.timer = timer;
+        }
+    }
+}
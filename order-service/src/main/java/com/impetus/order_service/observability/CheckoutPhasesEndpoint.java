@@ -0,0 +1,28 @@
+package com.impetus.order_service.observability;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code GET /actuator/checkout}: checkout phases and downstream calls, slowest first by p99 over the recent
+ * window. Counts are since startup. Needs {@code checkout} in {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Endpoint(id = "checkout")
+@RequiredArgsConstructor
+public class CheckoutPhasesEndpoint {
+
+    private final CheckoutInstrumentation instrumentation;
+
+    public record Report(String window, List<CheckoutInstrumentation.Summary> phases) {
+    }
+
+    @ReadOperation
+    public Report slowest() {
+        return new Report(instrumentation.window().toString(), instrumentation.summaries());
+    }
+}
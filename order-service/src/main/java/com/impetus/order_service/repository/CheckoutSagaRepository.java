@@ -0,0 +1,35 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.entity.CheckoutSaga;
+import com.impetus.order_service.enums.SagaStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface CheckoutSagaRepository extends JpaRepository<CheckoutSaga, Long> {
+
+    @Query("select s.orderId from CheckoutSaga s where s.status = :status and s.updatedAt < :before order by s.updatedAt")
+    List<Long> findIdle(@Param("status") SagaStatus status, @Param("before") Instant before, Pageable limit);
+
+    @Modifying
+    @Query("update CheckoutSaga s set s.status = :to, s.updatedAt = :now where s.orderId in :ids and s.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") SagaStatus from,
+                     @Param("to") SagaStatus to,
+                     @Param("now") Instant now);
+
+    @Modifying
+    @Query("update CheckoutSaga s set s.status = :to, s.reason = :reason, s.updatedAt = :now " +
+            "where s.orderId in :ids and s.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") SagaStatus from,
+                     @Param("to") SagaStatus to,
+                     @Param("reason") String reason,
+                     @Param("now") Instant now);
+}
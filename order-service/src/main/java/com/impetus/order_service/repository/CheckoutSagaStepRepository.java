@@ -0,0 +1,44 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.entity.CheckoutSagaStep;
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.enums.SagaStepStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface CheckoutSagaStepRepository extends JpaRepository<CheckoutSagaStep, Long> {
+
+    List<CheckoutSagaStep> findByOrderId(Long orderId);
+
+    // Held while the step runs, so another thread or instance resuming the same step waits and then sees it done
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from CheckoutSagaStep s where s.orderId = :orderId and s.step = :step")
+    Optional<CheckoutSagaStep> lock(@Param("orderId") Long orderId, @Param("step") SagaStep step);
+
+    @Query("select s from CheckoutSagaStep s where s.step = :step and s.status in :statuses " +
+            "and s.updatedAt < :before and s.attempts < :maxAttempts order by s.updatedAt")
+    List<CheckoutSagaStep> findStalled(@Param("step") SagaStep step,
+                                       @Param("statuses") Collection<SagaStepStatus> statuses,
+                                       @Param("before") Instant before,
+                                       @Param("maxAttempts") int maxAttempts,
+                                       Pageable limit);
+
+    @Modifying
+    @Query("update CheckoutSagaStep s set s.status = :to, s.lastError = null, s.updatedAt = :now " +
+            "where s.orderId in :ids and s.step in :steps and s.status in :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("steps") Collection<SagaStep> steps,
+                     @Param("from") Collection<SagaStepStatus> from,
+                     @Param("to") SagaStepStatus to,
+                     @Param("now") Instant now);
+}
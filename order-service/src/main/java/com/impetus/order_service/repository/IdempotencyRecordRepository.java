@@ -0,0 +1,46 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.entity.IdempotencyRecord;
+import com.impetus.order_service.enums.IdempotencyStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update IdempotencyRecord r
+               set r.status = :status, r.responseStatus = :responseStatus,
+                   r.responseContentType = :contentType, r.responseBody = :body, r.expiresAt = :expiresAt
+             where r.id = :id
+            """)
+    int complete(@Param("id") String id,
+                 @Param("status") IdempotencyStatus status,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("contentType") String contentType,
+                 @Param("body") String body,
+                 @Param("expiresAt") Instant expiresAt);
+
+    @Query("select r.id from IdempotencyRecord r where r.expiresAt < :now order by r.expiresAt")
+    List<String> findExpiredIds(@Param("now") Instant now, Pageable limit);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.id in :ids")
+    int deleteByIds(@Param("ids") Collection<String> ids);
+
+    // Only removes the row if it is still expired, so a retry that just re-claimed the key keeps it
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.id = :id and r.expiresAt < :now")
+    int deleteIfExpired(@Param("id") String id, @Param("now") Instant now);
+}
@@ -2,19 +2,105 @@ package com.impetus.order_service.repository;
 
 import com.impetus.order_service.entity.Order;
 import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
+    // Listing pages join the to-one associations in the page query; items are batch fetched (see Order.items),
+    // so a page costs the page select, one items select and the count regardless of page size
+    @EntityGraph(attributePaths = {"shippingAddress", "paymentReference"})
     Page<Order> findByUserId(Long userId, Pageable pageable);
 
+    @Override
+    @EntityGraph(attributePaths = {"shippingAddress", "paymentReference"})
+    Page<Order> findAll(Pageable pageable);
+
+    // Keyset listings, newest first. Each page seeks to the last (placedAt, id) seen through the
+    // idx_orders_*placed_at indexes instead of skipping an offset, and there is no count query.
+    // The redundant "placedAt <= :placedAt" gives the optimizer a range bound on the index.
+    @EntityGraph(attributePaths = {"shippingAddress", "paymentReference"})
+    List<Order> findByUserIdOrderByPlacedAtDescIdDesc(Long userId, Limit limit);
+
+    @EntityGraph(attributePaths = {"shippingAddress", "paymentReference"})
+    @Query("select o from Order o where o.userId = :userId and o.placedAt <= :placedAt " +
+            "and (o.placedAt < :placedAt or o.id < :id) order by o.placedAt desc, o.id desc")
+    List<Order> findByUserIdBefore(@Param("userId") Long userId,
+                                   @Param("placedAt") Instant placedAt,
+                                   @Param("id") Long id,
+                                   Limit limit);
+
+    @EntityGraph(attributePaths = {"shippingAddress", "paymentReference"})
+    List<Order> findAllByOrderByPlacedAtDescIdDesc(Limit limit);
+
+    @EntityGraph(attributePaths = {"shippingAddress", "paymentReference"})
+    @Query("select o from Order o where o.placedAt <= :placedAt " +
+            "and (o.placedAt < :placedAt or o.id < :id) order by o.placedAt desc, o.id desc")
+    List<Order> findAllBefore(@Param("placedAt") Instant placedAt,
+                              @Param("id") Long id,
+                              Limit limit);
+
+    long countByUserId(Long userId);
+
     Optional<Order> findByIdAndUserId(Long id, Long userId);
 
+    @EntityGraph(attributePaths = "paymentReference")
+    List<Order> findByIdIn(Collection<Long> ids);
+
     Optional<Order> findByOrderNumberAndUserId(String orderNumber, Long userId);
 
     Long countByUserIdAndStatus(Long userId, OrderStatus status);
+
+    @Modifying
+    @Query("update Order o set o.status = :to, o.paymentStatus = :paymentStatus, o.cancelledAt = :cancelledAt " +
+            "where o.id in :ids and o.status = :from")
+    int cancelOrders(@Param("ids") Collection<Long> ids,
+                     @Param("from") OrderStatus from,
+                     @Param("to") OrderStatus to,
+                     @Param("paymentStatus") PaymentStatus paymentStatus,
+                     @Param("cancelledAt") Instant cancelledAt);
+
+    // Leaves paymentStatus alone, a refund may be updating it at the same time
+    @Modifying
+    @Query("update Order o set o.status = :cancelled, o.cancelledAt = :cancelledAt where o.id = :id and o.status <> :cancelled")
+    int cancelOrder(@Param("id") Long id,
+                    @Param("cancelled") OrderStatus cancelled,
+                    @Param("cancelledAt") Instant cancelledAt);
+
+    @Modifying
+    @Query("update Order o set o.paymentStatus = :to where o.id = :id and o.paymentStatus = :from")
+    int updatePaymentStatus(@Param("id") Long id,
+                            @Param("from") PaymentStatus from,
+                            @Param("to") PaymentStatus to);
+
+    // Conditional so a payment can't overwrite a cancel that committed first, see ReservationExpirySchedular
+    @Modifying
+    @Query("update Order o set o.status = :to, o.paymentStatus = :paymentStatus where o.id = :id and o.status in :from")
+    int updateStatus(@Param("id") Long id,
+                     @Param("from") Collection<OrderStatus> from,
+                     @Param("to") OrderStatus to,
+                     @Param("paymentStatus") PaymentStatus paymentStatus);
+
+    @Modifying
+    @Query("update Order o set o.paymentStatus = :to where o.id = :id and o.status = :status " +
+            "and (o.paymentStatus is null or o.paymentStatus not in :unless)")
+    int updatePaymentStatusUnless(@Param("id") Long id,
+                                  @Param("status") OrderStatus status,
+                                  @Param("unless") Collection<PaymentStatus> unless,
+                                  @Param("to") PaymentStatus to);
+
+    @Query("select o.id from Order o where o.id in :ids and o.status = :status")
+    List<Long> findIdsByStatus(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status);
 }
@@ -2,11 +2,47 @@ package com.impetus.order_service.repository;
 
 import com.impetus.order_service.entity.OrderReservation;
 import com.impetus.order_service.enums.ReservationStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderReservationRepository extends JpaRepository<OrderReservation, Long> {
     List<OrderReservation> findByOrderId(Long orderId);
+    List<OrderReservation> findByOrderIdIn(Collection<Long> orderIds);
     List<OrderReservation> findByStatus(ReservationStatus status);
+
+    // Keyset page over (createdAt, id), served by idx_reservation_status_created_at
+    @Query("select r.id as id, r.createdAt as createdAt, r.order.id as orderId from OrderReservation r " +
+            "where r.status = :status and r.createdAt < :cutOff " +
+            "and (r.createdAt > :afterCreatedAt or (r.createdAt = :afterCreatedAt and r.id > :afterId)) " +
+            "order by r.createdAt, r.id")
+    List<ExpirableReservation> findExpirable(@Param("status") ReservationStatus status,
+                                             @Param("cutOff") Instant cutOff,
+                                             @Param("afterCreatedAt") Instant afterCreatedAt,
+                                             @Param("afterId") Long afterId,
+                                             Pageable limit);
+
+    @Modifying
+    @Query("update OrderReservation r set r.status = :to where r.id in :ids and r.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") ReservationStatus from,
+                     @Param("to") ReservationStatus to);
+
+    @Modifying
+    @Query("update OrderReservation r set r.status = :to where r.order.id = :orderId and r.status in :from")
+    int updateStatusByOrderId(@Param("orderId") Long orderId,
+                              @Param("from") Collection<ReservationStatus> from,
+                              @Param("to") ReservationStatus to);
+
+    interface ExpirableReservation {
+        Long getId();
+        Instant getCreatedAt();
+        Long getOrderId();
+    }
 }
@@ -0,0 +1,26 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.entity.OutboxEvent;
+import com.impetus.order_service.enums.OutboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Lock timeout -2 is Hibernate's SKIP LOCKED, so several order-service instances can poll without overlapping
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboxEvent e where e.status = :status and e.nextAttemptAt <= :now order by e.nextAttemptAt, e.id")
+    List<OutboxEvent> findDue(@Param("status") OutboxStatus status, @Param("now") Instant now, Pageable limit);
+
+    long countByStatus(OutboxStatus status);
+}
@@ -0,0 +1,27 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.entity.PaymentWebhookEvent;
+import com.impetus.order_service.enums.WebhookEventStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, String> {
+
+    List<PaymentWebhookEvent> findByEventIdIn(Collection<String> ids);
+
+    // Lock timeout -2 is Hibernate's SKIP LOCKED, so several order-service instances can sweep without overlapping
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from PaymentWebhookEvent e where e.status = :status and e.nextAttemptAt <= :now order by e.nextAttemptAt")
+    List<PaymentWebhookEvent> findDue(@Param("status") WebhookEventStatus status, @Param("now") Instant now, Pageable limit);
+}
@@ -0,0 +1,228 @@
+package com.impetus.order_service.schedular;
+
+import com.impetus.order_service.dto.InventoryCommandRequest;
+import com.impetus.order_service.dto.InventoryCommandResult;
+import com.impetus.order_service.dto.UpdateInventoryResponse;
+import com.impetus.order_service.entity.OutboxEvent;
+import com.impetus.order_service.enums.OutboxEventType;
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.exception.ConcurrencyLimitExceededException;
+import com.impetus.order_service.integrations.ProductClient;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.payment.PaymentService;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Delivers outbox events to product-service.
+ * <p>
+ * Each poll claims a batch of due events, sends them to product-service in one call, each command with its
+ * idempotency key, and records each command's outcome.
+ * Transient failures are retried with capped exponential backoff and jitter; events that are rejected
+ * outright or keep failing past {@code outbox.dispatch.max-attempts} are parked for manual handling; parking an
+ * inventory commit also compensates its order through the checkout saga. A batch shed by the inventory command
+ * concurrency limit never reached product-service, so it is put back without using up an attempt and the poll
+ * stops until the next interval.
+ */
+@Component
+public class OutboxDispatchSchedular {
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatchSchedular.class);
+    private final OutboxService outboxService;
+    private final ProductClient productClient;
+    private final PaymentService paymentService;
+    private final CheckoutSagaOrchestrator checkoutSaga;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    // Picks the actual delay in [delay/2, delay]; swappable so tests can pin it
+    private final LongUnaryOperator jitter;
+
+    @Autowired
+    public OutboxDispatchSchedular(OutboxService outboxService,
+                                   ProductClient productClient,
+                                   PaymentService paymentService,
+                                   CheckoutSagaOrchestrator checkoutSaga,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${outbox.dispatch.batch-size:50}") int batchSize,
+                                   @Value("${outbox.dispatch.lease:PT30S}") Duration lease,
+                                   @Value("${outbox.dispatch.max-attempts:10}") int maxAttempts,
+                                   @Value("${outbox.dispatch.backoff.initial:PT1S}") Duration initialBackoff,
+                                   @Value("${outbox.dispatch.backoff.max:PT5M}") Duration maxBackoff) {
+        this(outboxService, productClient, paymentService, checkoutSaga, transactionTemplate, meterRegistry,
+                batchSize, lease, maxAttempts, initialBackoff, maxBackoff,
+                delay -> delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    OutboxDispatchSchedular(OutboxService outboxService, ProductClient productClient, PaymentService paymentService,
+                            CheckoutSagaOrchestrator checkoutSaga, TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry, int batchSize, Duration lease, int maxAttempts,
+                            Duration initialBackoff, Duration maxBackoff, LongUnaryOperator jitter) {
+        this.outboxService = outboxService;
+        this.productClient = productClient;
+        this.paymentService = paymentService;
+        this.checkoutSaga = checkoutSaga;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.jitter = jitter;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.dispatch.interval:PT1S}")
+    public void dispatchPending() {
+        List<OutboxEvent> batch;
+        do {
+            batch = outboxService.claimDue(batchSize, lease);
+        } while (dispatch(batch) && batch.size() == batchSize);
+    }
+
+    /**
+     * Sends the claimed events to product-service in one call. Each command is still applied and answered on
+     * its own under its idempotency key, so its outcome is recorded per event as before.
+     *
+     * @return false if product-service is at its concurrency limit and the events were put back
+     */
+    boolean dispatch(List<OutboxEvent> events) {
+        List<OutboxEvent> sent = new ArrayList<>(events.size());
+        List<InventoryCommandRequest> commands = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            try {
+                commands.add(new InventoryCommandRequest(commandType(event), event.getIdempotencyKey(),
+                        outboxService.readLines(event)));
+                sent.add(event);
+            } catch (IllegalArgumentException e) {
+                park(event, e.getMessage());
+            }
+        }
+        if (commands.isEmpty()) {
+            return true;
+        }
+
+        List<InventoryCommandResult> results;
+        try {
+            results = productClient.sendInventoryCommands(commands);
+        } catch (ConcurrencyLimitExceededException e) {
+            Instant next = Instant.now().plus(backoff(1));
+            log.warn("Product service is at its concurrency limit, putting back {} outbox events until {}", sent.size(), next);
+            sent.forEach(event -> {
+                outboxService.postpone(event.getId(), next, e.getMessage());
+                count(event, "shed");
+            });
+            return false;
+        } catch (Exception e) {
+            // The batch as a whole failed, which says nothing against any one command in it
+            sent.forEach(event -> retryOrPark(event, e.getMessage()));
+            return true;
+        }
+        for (int i = 0; i < sent.size(); i++) {
+            OutboxEvent event = sent.get(i);
+            InventoryCommandResult result = results.get(i);
+            if (!event.getIdempotencyKey().equals(result.getIdempotencyKey())) {
+                retryOrPark(event, "Product service answered " + result.getIdempotencyKey() + " in place of " + event.getIdempotencyKey());
+            } else {
+                handle(event, result);
+            }
+        }
+        return true;
+    }
+
+    private void handle(OutboxEvent event, InventoryCommandResult result) {
+        int status = result.getStatus();
+        if (status == HttpStatus.OK.value() && result.getResponse() != null) {
+            try {
+                transactionTemplate.executeWithoutResult(tx -> complete(event, result.getResponse()));
+                count(event, "sent");
+            } catch (Exception e) {
+                retryOrPark(event, e.getMessage());
+            }
+        } else if (status >= 400 && status < 500 && status != HttpStatus.CONFLICT.value()) {
+            // Resending the same command can't change the answer
+            park(event, result.getError());
+        } else {
+            // 409 (another delivery is still applying it) and 5xx are worth another try
+            retryOrPark(event, result.getError());
+        }
+    }
+
+    private void park(OutboxEvent event, String error) {
+        log.error("Parking outbox event {} ({}) rejected by product-service: {}", event.getId(), event.getIdempotencyKey(), error);
+        parkAndCompensate(event, error);
+    }
+
+    private void retryOrPark(OutboxEvent event, String error) {
+        if (event.getAttempts() >= maxAttempts) {
+            log.error("Parking outbox event {} ({}) after {} attempts: {}", event.getId(), event.getIdempotencyKey(), event.getAttempts(), error);
+            parkAndCompensate(event, error);
+            return;
+        }
+        Instant next = Instant.now().plus(backoff(event.getAttempts()));
+        log.warn("Outbox event {} ({}) attempt {} failed, retrying at {}: {}", event.getId(), event.getIdempotencyKey(), event.getAttempts(), next, error);
+        outboxService.retryAt(event.getId(), next, error);
+        count(event, "retry");
+    }
+
+    // A commit that will never be delivered fails the checkout, so its order is refunded and cancelled in the
+    // same transaction that parks it. Releases are themselves compensations and are only parked.
+    private void parkAndCompensate(OutboxEvent event, String error) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            outboxService.park(event.getId(), error);
+            if (event.getType() == OutboxEventType.INVENTORY_COMMIT) {
+                checkoutSaga.compensate(event.getOrderId(), SagaStep.COMMIT_INVENTORY, "inventory-commit-parked");
+            }
+        });
+        count(event, "parked");
+    }
+
+    private static String commandType(OutboxEvent event) {
+        return event.getType() == OutboxEventType.INVENTORY_COMMIT ? "COMMIT" : "RELEASE";
+    }
+
+    private void complete(OutboxEvent event, UpdateInventoryResponse response) {
+        outboxService.markSent(event.getId());
+        if (response.getPendingRelease() != null && !response.getPendingRelease().isEmpty()) {
+            outboxService.enqueueInventoryRelease(event.getOrderId(), event.getIdempotencyKey(), response.getPendingRelease());
+        }
+        if (event.getType() == OutboxEventType.INVENTORY_COMMIT) {
+            if (response.isSuccess()) {
+                checkoutSaga.inventoryCommitted(event.getOrderId());
+            } else {
+                paymentService.handleInventoryCommitFailure(event.getOrderId());
+            }
+        }
+    }
+
+    Duration backoff(int attempt) {
+        long delay = initialBackoff.toMillis() << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > maxBackoff.toMillis()) {
+            delay = maxBackoff.toMillis();
+        }
+        return Duration.ofMillis(jitter.applyAsLong(delay));
+    }
+
+    private void count(OutboxEvent event, String result) {
+        meterRegistry.counter("outbox.dispatch", "type", event.getType().name(), "result", result).increment();
+    }
+}
@@ -1,65 +1,159 @@
 package com.impetus.order_service.schedular;
 
-import com.impetus.order_service.entity.OrderReservation;
 import com.impetus.order_service.enums.OrderStatus;
 import com.impetus.order_service.enums.PaymentStatus;
 import com.impetus.order_service.enums.ReservationStatus;
 import com.impetus.order_service.repository.OrderRepository;
 import com.impetus.order_service.repository.OrderReservationRepository;
-import com.impetus.order_service.service.OrderService;
-import lombok.RequiredArgsConstructor;
+import com.impetus.order_service.repository.OrderReservationRepository.ExpirableReservation;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Expires PENDING reservations older than {@code orders.reservation.ttl} and cancels their unpaid orders.
+ * <p>
+ * The sweep walks the (status, created_at, id) index in keyset pages of {@code orders.reservation.expiry.chunk-size}
+ * and expires each page with two bulk updates in its own short transaction, so no lock is held for the whole sweep.
+ */
 @Component
-@RequiredArgsConstructor
 public class ReservationExpirySchedular {
     private static final Logger log = LoggerFactory.getLogger(ReservationExpirySchedular.class);
     private final OrderRepository orderRepository;
     private final OrderReservationRepository orderReservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderResponseCache orderResponseCache;
+    private final CheckoutSagaOrchestrator checkoutSaga;
+    private final Clock clock;
+    private final Duration reservationTtl;
+    private final int chunkSize;
+
+    private final Counter reservationsExpired;
+    private final Counter ordersCancelled;
+    private final Timer sweepTimer;
+    // Seconds the oldest expirable reservation had been waiting past its ttl when the last sweep started
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    @Autowired
+    public ReservationExpirySchedular(OrderRepository orderRepository,
+                                      OrderReservationRepository orderReservationRepository,
+                                      TransactionTemplate transactionTemplate,
+                                      OrderResponseCache orderResponseCache,
+                                      CheckoutSagaOrchestrator checkoutSaga,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${orders.reservation.ttl:PT2M}") Duration reservationTtl,
+                                      @Value("${orders.reservation.expiry.chunk-size:500}") int chunkSize) {
+        this(orderRepository, orderReservationRepository, transactionTemplate, orderResponseCache, checkoutSaga,
+                meterRegistry, reservationTtl, chunkSize, Clock.systemUTC());
+    }
+
+    ReservationExpirySchedular(OrderRepository orderRepository,
+                               OrderReservationRepository orderReservationRepository,
+                               TransactionTemplate transactionTemplate,
+                               OrderResponseCache orderResponseCache,
+                               CheckoutSagaOrchestrator checkoutSaga,
+                               MeterRegistry meterRegistry,
+                               Duration reservationTtl,
+                               int chunkSize,
+                               Clock clock) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("orders.reservation.expiry.chunk-size must be positive");
+        }
+        this.orderRepository = orderRepository;
+        this.orderReservationRepository = orderReservationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.orderResponseCache = orderResponseCache;
+        this.checkoutSaga = checkoutSaga;
+        this.reservationTtl = reservationTtl;
+        this.chunkSize = chunkSize;
+        this.clock = clock;
+
+        this.reservationsExpired = meterRegistry.counter("orders.reservation.expiry.reservations");
+        this.ordersCancelled = meterRegistry.counter("orders.reservation.expiry.orders.cancelled");
+        this.sweepTimer = meterRegistry.timer("orders.reservation.expiry.sweep");
+        Gauge.builder("orders.reservation.expiry.lag", lagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
 
     @Scheduled(cron = "0 * * * * *")
-    @Transactional
     public void expireOldOrders(){
-        Instant cutOff = Instant.now().minus(Duration.ofMinutes(2));
-        log.info("Cron job executed at {}", LocalDateTime.now());
-        List<OrderReservation> old = orderReservationRepository.findByStatus(ReservationStatus.PENDING)
-                .stream()
-                .filter(r->r.getCreatedAt().isBefore(cutOff))
-                .toList();
+        sweepTimer.record(this::sweep);
+    }
+
+    private void sweep() {
+        Instant cutOff = clock.instant().minus(reservationTtl);
+        Instant afterCreatedAt = Instant.EPOCH;
+        long afterId = 0L;
+        long expired = 0;
+        long cancelled = 0;
+        boolean first = true;
+
+        while (true) {
+            List<ExpirableReservation> page = orderReservationRepository.findExpirable(
+                    ReservationStatus.PENDING, cutOff, afterCreatedAt, afterId, PageRequest.ofSize(chunkSize));
+            if (first) {
+                lagSeconds.set(page.isEmpty() ? 0 : Duration.between(page.get(0).getCreatedAt(), cutOff).toSeconds());
+                first = false;
+            }
+            if (page.isEmpty()) break;
+
+            int[] counts = expireChunk(page);
+            expired += counts[0];
+            cancelled += counts[1];
+
+            ExpirableReservation last = page.get(page.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getId();
+            if (page.size() < chunkSize) break;
+        }
+
+        if (expired > 0) {
+            log.info("Expired {} reservations and cancelled {} orders older than {}", expired, cancelled, cutOff);
+        }
+    }
 
-        if(old.isEmpty()) return;
-        log.info("Found {} expired reservations to process", old.size());
-        Map<Long, List<OrderReservation>> byOrder = old.stream()
-                .collect(Collectors.groupingBy(r -> r.getOrder().getId()));
+    private int[] expireChunk(List<ExpirableReservation> page) {
+        List<Long> reservationIds = page.stream().map(ExpirableReservation::getId).toList();
+        Set<Long> orderIds = new LinkedHashSet<>();
+        page.forEach(r -> orderIds.add(r.getOrderId()));
 
-        for (Map.Entry<Long, List<OrderReservation>> e : byOrder.entrySet()){
-            long orderId = e.getKey();
-            List<OrderReservation> reservations = e.getValue();
-            for(OrderReservation r : reservations){
-                r.setStatus(ReservationStatus.EXPIRED);
+        int[] counts = transactionTemplate.execute(status -> {
+            // Status guards keep this safe against a payment confirming the same rows concurrently
+            int reservations = orderReservationRepository.updateStatus(
+                    reservationIds, ReservationStatus.PENDING, ReservationStatus.EXPIRED);
+            int orders = orderRepository.cancelOrders(orderIds, OrderStatus.PENDING_PAYMENT,
+                    OrderStatus.CANCELLED, PaymentStatus.FAILED, clock.instant());
+            if (orders > 0) {
+                checkoutSaga.expired(orderIds);
+                orderResponseCache.invalidateAfterCommit(orderIds);
             }
-            orderReservationRepository.saveAll(reservations);
-            log.info("OrderId {}", orderId);
-            orderRepository.findById(orderId).ifPresent(order -> {
-                if (order.getStatus() == OrderStatus.PENDING_PAYMENT) {
-                    order.setStatus(OrderStatus.CANCELLED);
-                    order.setPaymentStatus(PaymentStatus.FAILED);
-                    order.setCancelledAt(Instant.now());
-                    orderRepository.save(order);
-                    log.info("Order {} cancelled due to reservation expiry");
-                }
-            });
+            return new int[]{reservations, orders};
+        });
+        if (counts == null) {
+            return new int[]{0, 0};
         }
+        reservationsExpired.increment(counts[0]);
+        ordersCancelled.increment(counts[1]);
+        return counts;
     }
 }
@@ -1,6 +1,7 @@
 package com.impetus.order_service.service;
 
 import com.impetus.order_service.dto.AddCartItemRequest;
+import com.impetus.order_service.dto.CartQuoteResponse;
 import com.impetus.order_service.dto.CartResponse;
 import com.impetus.order_service.dto.UpdateCartItemRequest;
 
@@ -15,4 +16,9 @@ public interface CartService {
     void removeItem(Long userId, Long itemId);
 
     void clearCart(Long userId);
+
+    /**
+     * Prices the active cart the way checkout would, without placing an order or writing anything.
+     */
+    CartQuoteResponse quote(Long userId);
 }
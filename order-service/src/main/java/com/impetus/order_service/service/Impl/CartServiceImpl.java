@@ -2,14 +2,19 @@ package com.impetus.order_service.service.Impl;
 
 import com.impetus.order_service.dto.AddCartItemRequest;
 import com.impetus.order_service.dto.CartItemResponse;
+import com.impetus.order_service.dto.CartQuoteItemResponse;
+import com.impetus.order_service.dto.CartQuoteResponse;
 import com.impetus.order_service.dto.CartResponse;
 import com.impetus.order_service.dto.UpdateCartItemRequest;
 import com.impetus.order_service.entity.Cart;
 import com.impetus.order_service.entity.CartItem;
 import com.impetus.order_service.enums.CartStatus;
+import com.impetus.order_service.integrations.ResilientProductService;
 import com.impetus.order_service.repository.CartItemRepository;
-import com.impetus.order_service.repository.CartRepository;
 import com.impetus.order_service.service.CartService;
+import com.impetus.order_service.service.cart.CartStore;
+import com.impetus.order_service.service.pricing.CartPricing;
+import com.impetus.order_service.service.pricing.CartPricing.PricedCart;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -22,18 +27,20 @@ import java.util.NoSuchElementException;
 @RequiredArgsConstructor
 public class CartServiceImpl implements CartService {
 
-    private final CartRepository cartRepository;
+    private final CartStore cartStore;
     private final CartItemRepository cartItemRepository;
+    // Served from the product snapshot cache, so re-quoting on every cart change rarely goes remote
+    private final ResilientProductService resilientProductService;
 
     private Cart getOrCreateActiveCart(Long userId){
-        return cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)
+        return cartStore.findActive(userId)
                 .orElseGet(()->{
                     Cart c = new Cart();
                     c.setUserId(userId);
                     c.setCartStatus(CartStatus.ACTIVE);
                     c.setCreatedAt(Instant.now());
                     c.setUpdatedAt(Instant.now());
-                    return cartRepository.save(c);
+                    return cartStore.save(c);
                 });
     }
 
@@ -61,14 +68,14 @@ public class CartServiceImpl implements CartService {
 
     @Override
     public CartResponse getCurrentCart(Long userId) {
-        Cart cart = cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE).orElseGet(()->{
+        Cart cart = cartStore.findActive(userId).orElseGet(()->{
             Cart empty = new Cart();
             empty.setUserId(userId);
             empty.setCartStatus(CartStatus.ACTIVE);
             empty.setCreatedAt(Instant.now());
             empty.setUpdatedAt(Instant.now());
             empty.setItems(List.of());
-            return cartRepository.save(empty);
+            return cartStore.save(empty);
         });
 
         return mapToResponse(cart);
@@ -97,13 +104,13 @@ public class CartServiceImpl implements CartService {
         }
 
         cart.setUpdatedAt(Instant.now());
-        Cart saved = cartRepository.save(cart);
+        Cart saved = cartStore.save(cart);
         return mapToResponse(saved);
     }
 
     @Override
     public CartResponse updateItem(Long userId, String itemId, UpdateCartItemRequest req) {
-        Cart cart = cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE).orElseThrow(()->{
+        Cart cart = cartStore.findActive(userId).orElseThrow(()->{
             return new NoSuchElementException("No active Cat found");
         });
 
@@ -121,13 +128,13 @@ public class CartServiceImpl implements CartService {
         }
 
         cart.setUpdatedAt(Instant.now());
-        Cart saved = cartRepository.save(cart);
+        Cart saved = cartStore.save(cart);
         return mapToResponse(saved);
     }
 
     @Override
     public void removeItem(Long userId, Long itemId) {
-        Cart cart = cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)
+        Cart cart = cartStore.findActive(userId)
                 .orElseThrow(()-> new NoSuchElementException("Cart not found"));
 
         CartItem item = cart.getItems().stream()
@@ -137,18 +144,59 @@ public class CartServiceImpl implements CartService {
 
         cart.removeItem(item);
         cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
+        cartStore.save(cart);
     }
 
     @Override
     public void clearCart(Long userId) {
-        Cart cart = cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)
+        Cart cart = cartStore.findActive(userId)
                 .orElse(null);
 
         if(cart == null) return;
 
         cart.getItems().clear();
         cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
+        cartStore.save(cart);
+    }
+
+    @Override
+    public CartQuoteResponse quote(Long userId) {
+        // Unlike getCurrentCart, a missing cart is not created: quoting never writes
+        Cart cart = cartStore.findActive(userId).orElse(null);
+        if(cart == null || cart.getItems().isEmpty()){
+            return toQuote(cart, userId, CartPricing.price(List.of(), List.of()));
+        }
+
+        List<String> productIds = cart.getItems().stream()
+                .map(CartItem::getProductId)
+                .distinct()
+                .toList();
+        PricedCart priced = CartPricing.price(cart.getItems(), resilientProductService.getProducts(productIds));
+        return toQuote(cart, userId, priced);
+    }
+
+    private CartQuoteResponse toQuote(Cart cart, Long userId, PricedCart priced){
+        CartQuoteResponse res = new CartQuoteResponse();
+        res.setCartId(cart == null ? null : cart.getId());
+        res.setUserId(userId);
+        res.setItems(priced.lines().stream()
+                .map(line -> {
+                    CartQuoteItemResponse ir = new CartQuoteItemResponse();
+                    ir.setItemId(line.item().getId());
+                    ir.setProductId(line.product().getId());
+                    ir.setProductSku(line.product().getSku());
+                    ir.setProductName(line.product().getName());
+                    ir.setUnitPrice(line.product().getPrice());
+                    ir.setQuantity(line.quantity());
+                    ir.setTotalPrice(line.totalPrice());
+                    ir.setInStock(line.inStock());
+                    return ir;
+                }).toList());
+        res.setSubtotalAmount(priced.subtotalAmount());
+        res.setTaxAmount(priced.taxAmount());
+        res.setShippingFee(priced.shippingFee());
+        res.setDiscountAmount(priced.discountAmount());
+        res.setTotalAmount(priced.totalAmount());
+        return res;
     }
 }
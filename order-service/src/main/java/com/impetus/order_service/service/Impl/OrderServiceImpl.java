@@ -2,74 +2,115 @@ package com.impetus.order_service.service.Impl;
 
 //import com.impetus.order_service.client.UserClient;
 
+import com.impetus.order_service.Util.OrderNumberGenerator;
 import com.impetus.order_service.dto.*;
 import com.impetus.order_service.entity.*;
 import com.impetus.order_service.enums.CartStatus;
 import com.impetus.order_service.enums.OrderStatus;
 import com.impetus.order_service.enums.PaymentStatus;
 import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.exception.InternalServerError;
 import com.impetus.order_service.integrations.ResilientProductService;
 import com.impetus.order_service.integrations.ResilientUserService;
-import com.impetus.order_service.repository.CartRepository;
+import com.impetus.order_service.mapper.OrderMapper;
+import com.impetus.order_service.observability.CheckoutInstrumentation;
 import com.impetus.order_service.repository.OrderItemRepository;
 import com.impetus.order_service.repository.OrderRepository;
 import com.impetus.order_service.repository.OrderReservationRepository;
 import com.impetus.order_service.service.OrderService;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.cart.CartStore;
+import com.impetus.order_service.service.listing.OrderCountEstimator;
+import com.impetus.order_service.service.listing.OrderCursor;
+import com.impetus.order_service.service.pricing.CartPricing;
+import com.impetus.order_service.service.pricing.CartPricing.PricedCart;
+import com.impetus.order_service.service.pricing.CartPricing.PricedLine;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.observation.Observation;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.LongSupplier;
 
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl implements OrderService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderServiceImpl.class);
+    static final int MAX_SCROLL_SIZE = 100;
     private final OrderRepository orderRepository;
-    private final CartRepository cartRepository;
+    private final CartStore cartStore;
     private final OrderItemRepository orderItemRepository;
     private final OrderReservationRepository orderReservationRepository;
 //    private final UserClient userClient;
-    private final ModelMapper modelMapper;
-    private final WebClient.Builder webClient;
-    @Value("${services.user.base-url}")
-    private String userServiceBaseUrl;
-    @Value("${services.product.base-url}")
-    private String productBaseUrl;
+    private final OrderMapper orderMapper;
 
     private final ResilientProductService resilientProductService;
     private final ResilientUserService resilientUserService;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final OrderCountEstimator orderCountEstimator;
+    // Timers and spans per checkout phase, see /actuator/checkout
+    private final CheckoutInstrumentation checkout;
+    private final OrderResponseCache orderResponseCache;
+    private final CheckoutSagaOrchestrator checkoutSaga;
 
 
     @Override
     public OrderResponse createOrderFromCart(Long userId, OrderRequest req) {
-        Cart cart = cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE).orElseThrow(()-> new RuntimeException("No Active Cart found"));
+        Cart cart = checkout.phase("cart-load", () -> cartStore.findActive(userId))
+                .orElseThrow(()-> new RuntimeException("No Active Cart found"));
         if(cart.getItems().isEmpty()){
             throw new NoSuchElementException("No items in cart");
         }
 
-        // 1) Resolve shipping address from User Service
+        // 1) Resolve shipping address from User Service and products from Product Service
 
         Long shippingAddressId = req.getShippingAddressId();
         if(shippingAddressId == null){
             throw new NoSuchElementException("Shipping Address is required");
         }
 
-        AddressResponse address = resilientUserService.fetchUserAddress(userId, shippingAddressId);
+        List<String> productIds = cart.getItems().stream()
+                .map(CartItem::getProductId)
+                .distinct()
+                .toList();
+
+        // Address and product lookups are independent, so fan them out together. Mono.zip fails fast:
+        // the first error cancels (interrupts) the sibling call, so checkout waits for the slowest
+        // dependency instead of the sum of both.
+        Tuple2<AddressResponse, List<ProductResponseDto>> lookups = checkout.phase("lookups", () -> {
+            // The calls run on other threads, so hand them this phase to parent their spans
+            Observation parent = checkout.current();
+            return Mono.zip(
+                            Mono.fromCallable(() -> checkout.dependency("user-service.address", parent,
+                                            () -> resilientUserService.fetchUserAddress(userId, shippingAddressId)))
+                                    .subscribeOn(Schedulers.boundedElastic()),
+                            Mono.fromCallable(() -> checkout.dependency("product-service.products", parent,
+                                            () -> resilientProductService.getProducts(productIds)))
+                                    .subscribeOn(Schedulers.boundedElastic()))
+                    .block();
+        });
+        if(lookups == null){
+            throw new InternalServerError("Unable to resolve shipping address or products for checkout");
+        }
+
+        AddressResponse address = lookups.getT1();
+        List<ProductResponseDto> productList = lookups.getT2();
 
         // 2) Generate order number
-        String orderNumber = generateOrderNumber(userId);
+        String orderNumber = orderNumberGenerator.next();
 
         // 3) Build order skeleton
         Order order = new Order();
@@ -95,59 +136,48 @@ public class OrderServiceImpl implements OrderService {
         sa.setOrder(order);
         order.setShippingAddress(sa);
 
-        // 5) Create OrderItems (pricing snapshot logic — ideally from Product Service)
-        List<OrderItem> orderItems = new ArrayList<>();
-        Integer subtotal = 0;
-
-        List<String> productIds = cart.getItems().stream()
-                .map(CartItem::getProductId)
-                .distinct()
-                .toList();
+        // 5) and 6) Items, reservations and totals
+        checkout.phase("pricing", () -> priceOrder(order, cart, productList));
 
+        // Save initial order, together with its checkout saga
+        checkout.phase("order-save", () -> checkoutSaga.start(() -> orderRepository.save(order)));
 
 
-// Using resilient client instead of direclty fetching
-//        List<ProductResponseDto> productList = fetchProducts(productIds);
+        // 9) Mark cart checked out
+        checkout.phase("cart-checkout", () -> {
+            cart.setCartStatus(CartStatus.CHECKED_OUT);
+            cart.setUpdatedAt(Instant.now());
+            cartStore.save(cart);
+            cartStore.flush(userId);
+        });
 
-        List<ProductResponseDto> productList = resilientProductService.getProducts(productIds);
-        log.info(productList.stream().map(ProductResponseDto::getId).collect(Collectors.joining()));
-        Map<String, ProductResponseDto> mapOfProductsById = productList.stream()
-                .collect(Collectors.toMap(ProductResponseDto::getId, p->p));
+        return toResponse(order);
 
+    }
 
-        for(CartItem cartItem : cart.getItems()){
-            String productId = cartItem.getProductId();
-            ProductResponseDto product = mapOfProductsById.get(productId);
-            if(product == null){
-                throw new NoSuchElementException("Product not found: "+ productId);
-            }
+    // Pricing snapshot logic — ideally from Product Service
+    private void priceOrder(Order order, Cart cart, List<ProductResponseDto> productList) {
+        PricedCart priced = CartPricing.price(cart.getItems(), productList);
 
-            int requestedQuantity = cartItem.getQuantity();
-            if(product.getInventoryQuantity() == null || product.getInventoryQuantity() < requestedQuantity){
+        for(PricedLine line : priced.lines()){
+            ProductResponseDto product = line.product();
+            int requestedQuantity = line.quantity();
+            if(!line.inStock()){
                 throw new NoSuchElementException("Insufficient stock for product " + product.getName()+ " (Requested: "+ requestedQuantity+ " Available: "+ product.getInventoryQuantity());
             }
 
-            Integer unitPrice = product.getPrice();
-            if(unitPrice == null){
-                throw new NoSuchElementException("Current proice not available for product "+ product.getName());
-            }
-
-            Integer productTotal = unitPrice * requestedQuantity;
-            subtotal += productTotal;
-
-
             OrderItem orderItem = new OrderItem();
-            orderItem.setProductId(productId);
+            orderItem.setProductId(product.getId());
             orderItem.setProductSku(product.getSku());
             orderItem.setProductName(product.getName());
             orderItem.setUnitPrice(product.getPrice());
             orderItem.setQuantity(requestedQuantity);
-            orderItem.setTotalPrice(productTotal);
+            orderItem.setTotalPrice(line.totalPrice());
 
             order.addItem(orderItem);
 
             OrderReservation reservation = new OrderReservation();
-            reservation.setProductId(productId);
+            reservation.setProductId(product.getId());
             reservation.setQuantity(requestedQuantity);
             reservation.setStatus(ReservationStatus.PENDING);
             reservation.setCreatedAt(Instant.now());
@@ -155,37 +185,22 @@ public class OrderServiceImpl implements OrderService {
             order.addReservation(reservation);
         }
 
-        // 6) Totals (configurable)
-        int taxAmount = Math.round(subtotal * 0.18f);
-        int shippingFee = 49;
-        int discountAmount = 0;
-        int totalAmount = subtotal + taxAmount + shippingFee - discountAmount;
-
-        order.setSubtotalAmount(subtotal);
-        order.setTaxAmount(taxAmount);
-        order.setShippingFee(shippingFee);
-        order.setDiscountAmount(discountAmount);
-        order.setTotalAmount(totalAmount);
-
-        // Save initial order
-        Order savedOrder = orderRepository.save(order);
-
-
-        // 9) Mark cart checked out
-        cart.setCartStatus(CartStatus.CHECKED_OUT);
-        cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
-
-        return toResponse(order);
-
+        // 6) Totals, see CartPricing
+        order.setSubtotalAmount(priced.subtotalAmount());
+        order.setTaxAmount(priced.taxAmount());
+        order.setShippingFee(priced.shippingFee());
+        order.setDiscountAmount(priced.discountAmount());
+        order.setTotalAmount(priced.totalAmount());
     }
 
     @Override
     public OrderResponse getOrder(Long orderId, Long userId) {
-        Order order = orderRepository.findByIdAndUserId(orderId, userId)
-                .orElseThrow(()-> new RuntimeException("Order not found"));
+        return orderResponseCache.get(orderId, userId, () -> {
+            Order order = orderRepository.findByIdAndUserId(orderId, userId)
+                    .orElseThrow(()-> new RuntimeException("Order not found"));
 
-        return toResponse(order);
+            return toResponse(order);
+        });
     }
 
     public OrderResponse getOrder(Long orderId) {
@@ -196,62 +211,63 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<OrderResponse> listOrder(Long userId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
         Page<Order> orderPage = orderRepository.findByUserId(userId, pageable);
         return orderPage.map(this::toResponse);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Page<OrderResponse> listAllOrders(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        Page<Order> allOrders = orderRepository.findAll(pageable);
+        return allOrders.map(this::toResponse);
+    }
 
-    private String generateOrderNumber(Long userId) {
-        return "ORD-" + Instant.now().toEpochMilli() + "-" + (userId % 1000) + "-" + new Random().nextInt(9999);
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<OrderResponse> scrollOrders(Long userId, String cursor, int size, boolean withTotal) {
+        OrderCursor after = OrderCursor.decode(cursor);
+        Limit limit = scrollLimit(size);
+        List<Order> orders = after == null
+                ? orderRepository.findByUserIdOrderByPlacedAtDescIdDesc(userId, limit)
+                : orderRepository.findByUserIdBefore(userId, after.placedAt(), after.id(), limit);
+        return toCursorPage(orders, size, after, withTotal, () -> orderCountEstimator.ordersOf(userId));
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<OrderResponse> scrollAllOrders(String cursor, int size, boolean withTotal) {
+        OrderCursor after = OrderCursor.decode(cursor);
+        Limit limit = scrollLimit(size);
+        List<Order> orders = after == null
+                ? orderRepository.findAllByOrderByPlacedAtDescIdDesc(limit)
+                : orderRepository.findAllBefore(after.placedAt(), after.id(), limit);
+        return toCursorPage(orders, size, after, withTotal, orderCountEstimator::allOrders);
+    }
 
-    public UpdateInventoryResponse updateInventory(List<UpdateInventoryRequest> payload, Long userId) {
-        WebClient client = webClient.baseUrl(productBaseUrl).build();
-        UpdateInventoryResponse response = client.post()
-                .uri("/updateInventory")
-                .header("X-User-Id", String.valueOf(userId))
-                .header("X-User-Roles", "USER")
-                .bodyValue(Collections.singletonMap("items", payload))
-                .retrieve()
-                .onStatus(httpStatusCode -> httpStatusCode.is4xxClientError() || httpStatusCode.is5xxServerError(), res -> res.bodyToMono(String.class).flatMap(body -> Mono.error(new RuntimeException("ProductService error : " + body))))
-                .bodyToMono(UpdateInventoryResponse.class)
-                .block();
-
-        if (response == null) {
-            throw new RuntimeException("Product Service Returned Empty response");
+    // One extra row tells us whether there is a next page without counting
+    private static Limit scrollLimit(int size) {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SCROLL_SIZE);
         }
-        return response;
+        return Limit.of(size + 1);
     }
 
-    public UpdateInventoryResponse updateInventory(Order order) {
+    private CursorPage<OrderResponse> toCursorPage(List<Order> orders, int size, OrderCursor after,
+                                                   boolean withTotal, LongSupplier estimate) {
+        boolean hasNext = orders.size() > size;
+        List<Order> page = hasNext ? orders.subList(0, size) : orders;
+        String next = hasNext ? OrderCursor.after(page.get(size - 1)).encode() : null;
 
-        List<UpdateInventoryRequest> payload = this.getPayload(order);
-
-        WebClient client = webClient.baseUrl(productBaseUrl).build();
-        UpdateInventoryResponse response = client.post()
-                .uri("/updateInventory")
-                .header("X-User-Id", String.valueOf(order.getUserId()))
-                .header("X-User-Roles", "USER")
-                .bodyValue(Collections.singletonMap("item", payload))
-                .retrieve()
-                .onStatus(httpStatusCode -> httpStatusCode.is4xxClientError() || httpStatusCode.is5xxServerError(), res -> res.bodyToMono(String.class).flatMap(body -> Mono.error(new RuntimeException("ProductService error : " + body))))
-                .bodyToMono(UpdateInventoryResponse.class)
-                .block();
-
-        if (response == null) {
-            throw new RuntimeException("Product Service Returned Empty response");
+        Long total = null;
+        if (withTotal) {
+            // A first page that holds everything is its own exact count
+            total = after == null && !hasNext ? page.size() : estimate.getAsLong();
         }
-        return response;
-    }
-
-    @Override
-    public Page<OrderResponse> listAllOrders(int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Order> allOrders = orderRepository.findAll(pageable);
-        return allOrders.map(this::toResponse);
+        return new CursorPage<>(page.stream().map(this::toResponse).toList(), next, total);
     }
 
 //    @Override
@@ -261,15 +277,7 @@ public class OrderServiceImpl implements OrderService {
 //        return orderPage.map(this::toResponse);
 //    }
 
-    public List<UpdateInventoryRequest> getPayload(Order order){
-        List<OrderReservation> ress = orderReservationRepository.findByOrderId(order.getId());
-        return ress.stream()
-                .map(r -> new UpdateInventoryRequest(r.getProductId(), r.getQuantity()))
-                .toList();
-
-    }
-
     private OrderResponse toResponse(Order order){
-        return modelMapper.map(order, OrderResponse.class);
+        return orderMapper.toResponse(order);
     }
 }
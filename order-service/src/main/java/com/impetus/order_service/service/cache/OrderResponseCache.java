@@ -0,0 +1,197 @@
+package com.impetus.order_service.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.enums.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of {@link OrderResponse}s for {@code GET /orders/{id}}, which clients poll after paying
+ * until the order is CONFIRMED.
+ * <p>
+ * Responses are kept serialized, so every caller gets its own copy, and are only returned to the user who owns
+ * the order. Orders in a terminal state (DELIVERED, CANCELLED, RETURNED) live for {@code terminal-ttl}, every
+ * other order only for {@code ttl}. Anything that changes an order's status or payment status must call
+ * {@link #invalidateAfterCommit}; the short ttl bounds how stale an entry can get if a writer is missed.
+ * <pre>
+ * orders.cache.ttl=PT10S
+ * orders.cache.terminal-ttl=PT1H
+ * orders.cache.max-size=10000
+ * </pre>
+ */
+@Component
+public class OrderResponseCache {
+    private static final Logger log = LoggerFactory.getLogger(OrderResponseCache.class);
+
+    private static final Set<OrderStatus> TERMINAL =
+            EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.RETURNED);
+
+    private final Cache<Long, Entry> cache;
+    private final ObjectMapper objectMapper;
+    // Bumped on every invalidation, so a load that overlapped one isn't left cached with what it read before it
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidated;
+    private final Counter evictions;
+
+    @Autowired
+    public OrderResponseCache(@Value("${orders.cache.ttl:PT10S}") Duration ttl,
+                              @Value("${orders.cache.terminal-ttl:PT1H}") Duration terminalTtl,
+                              @Value("${orders.cache.max-size:10000}") long maxSize,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this(ttl, terminalTtl, maxSize, objectMapper, meterRegistry, Ticker.systemTicker());
+    }
+
+    OrderResponseCache(Duration ttl, Duration terminalTtl, long maxSize, ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry, Ticker ticker) {
+        this.objectMapper = objectMapper;
+
+        this.hits = meterRegistry.counter("order.response.cache.gets", "result", "hit");
+        this.misses = meterRegistry.counter("order.response.cache.gets", "result", "miss");
+        this.invalidated = meterRegistry.counter("order.response.cache.invalidations");
+        this.evictions = meterRegistry.counter("order.response.cache.evictions");
+
+        long ttlNanos = ttl.toNanos();
+        long terminalTtlNanos = terminalTtl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Long orderId, Entry entry, long currentTime) {
+                        return TERMINAL.contains(entry.status()) ? terminalTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long orderId, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(orderId, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long orderId, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .removalListener((Long orderId, Entry entry, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+
+        Gauge.builder("order.response.cache.size", cache, Cache::estimatedSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached response if the order belongs to {@code userId}, otherwise loads it with
+     * {@code loader} and caches the result.
+     */
+    public OrderResponse get(Long orderId, Long userId, Supplier<OrderResponse> loader) {
+        Entry cached = cache.getIfPresent(orderId);
+        if (cached != null && Objects.equals(cached.userId(), userId)) {
+            OrderResponse response = read(orderId, cached);
+            if (response != null) {
+                hits.increment();
+                return response;
+            }
+        }
+        misses.increment();
+
+        long seen = invalidations.get();
+        OrderResponse response = loader.get();
+        Entry entry = write(response);
+        if (entry != null) {
+            cache.put(orderId, entry);
+            // The order changed while it was being loaded, so what was read may already be out of date
+            if (invalidations.get() != seen) {
+                cache.asMap().remove(orderId, entry);
+            }
+        }
+        return response;
+    }
+
+    public void invalidate(Long orderId) {
+        invalidateAll(List.of(orderId));
+    }
+
+    public void invalidateAll(Collection<Long> orderIds) {
+        invalidations.incrementAndGet();
+        cache.invalidateAll(orderIds);
+        invalidated.increment(orderIds.size());
+    }
+
+    /**
+     * Invalidates the orders once the current transaction completes, so a read between the update and the
+     * commit can't cache the old state. Without a transaction they are invalidated straight away.
+     */
+    public void invalidateAfterCommit(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateAll(orderIds);
+            return;
+        }
+        List<Long> ids = List.copyOf(orderIds);
+        // On rollback nothing changed, but dropping the entries anyway is harmless
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidateAll(ids);
+            }
+        });
+    }
+
+    public void invalidateAfterCommit(Long orderId) {
+        invalidateAfterCommit(List.of(orderId));
+    }
+
+    private Entry write(OrderResponse response) {
+        if (response == null) return null;
+        try {
+            return new Entry(response.getUserId(), response.getStatus(), objectMapper.writeValueAsBytes(response));
+        } catch (IOException e) {
+            log.warn("Could not cache order {}: {}", response.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private OrderResponse read(Long orderId, Entry entry) {
+        try {
+            return objectMapper.readValue(entry.json(), OrderResponse.class);
+        } catch (IOException e) {
+            log.warn("Dropping unreadable cache entry for order {}: {}", orderId, e.getMessage());
+            cache.asMap().remove(orderId, entry);
+            return null;
+        }
+    }
+
+    private record Entry(Long userId, OrderStatus status, byte[] json) {
+    }
+}
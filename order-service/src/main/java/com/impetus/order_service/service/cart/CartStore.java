@@ -0,0 +1,29 @@
+package com.impetus.order_service.service.cart;
+
+import com.impetus.order_service.entity.Cart;
+
+import java.util.Optional;
+
+/**
+ * Where active carts are read from and written to. Selected with {@code orders.cart.store}:
+ * <ul>
+ *     <li>{@code jpa} (default): every call goes straight to the database, see {@link JpaCartStore}</li>
+ *     <li>{@code write-behind}: carts are served from memory and persisted in batches, see {@link WriteBehindCartStore}</li>
+ * </ul>
+ * Deployments running several instances without sticky routing can plug in a shared store (e.g. Redis) by
+ * providing their own bean and setting {@code orders.cart.store} to anything else.
+ */
+public interface CartStore {
+
+    Optional<Cart> findActive(Long userId);
+
+    /**
+     * Records the cart's new state. The returned cart is the one callers should keep using; it may be a copy.
+     */
+    Cart save(Cart cart);
+
+    /**
+     * Makes sure everything saved for the user so far is in the database before returning.
+     */
+    void flush(Long userId);
+}
@@ -0,0 +1,33 @@
+package com.impetus.order_service.service.cart;
+
+import com.impetus.order_service.entity.Cart;
+import com.impetus.order_service.enums.CartStatus;
+import com.impetus.order_service.repository.CartRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(name = "orders.cart.store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaCartStore implements CartStore {
+
+    private final CartRepository cartRepository;
+
+    @Override
+    public Optional<Cart> findActive(Long userId) {
+        return cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE);
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        return cartRepository.save(cart);
+    }
+
+    @Override
+    public void flush(Long userId) {
+        // Every save is already written through
+    }
+}
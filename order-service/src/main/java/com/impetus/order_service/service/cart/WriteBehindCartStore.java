@@ -0,0 +1,336 @@
+package com.impetus.order_service.service.cart;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.impetus.order_service.entity.Cart;
+import com.impetus.order_service.entity.CartItem;
+import com.impetus.order_service.enums.CartStatus;
+import com.impetus.order_service.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps active carts in memory, keyed by user, and writes changes to the database in the background.
+ * <p>
+ * Reads after the first one never touch the database. Saves only update the in-memory copy and mark the
+ * user's cart as pending. Every {@code flush-interval} the pending carts are written in batches of
+ * {@code batch-size}. Each batch runs in one transaction, and a cart edited many times between flushes is
+ * written once. Carts leave memory after {@code idle-timeout} without access, but unwritten changes are kept
+ * until they are flushed.
+ * <p>
+ * Checkout ({@link #flush}) and carts leaving the ACTIVE status are written synchronously. With the default
+ * {@code ASYNC} durability a crash loses at most one flush interval of cart edits. {@code WRITE_THROUGH}
+ * writes every save immediately and only keeps the read-side savings. Once {@code max-pending} carts are
+ * waiting, saves are written through until the backlog drains.
+ * <p>
+ * Item ids are assigned by the database, so items added since the last flush have no id yet.
+ * <pre>
+ * orders.cart.store=write-behind
+ * orders.cart.write-behind.durability=ASYNC   # or WRITE_THROUGH
+ * orders.cart.write-behind.flush-interval=PT1S
+ * orders.cart.write-behind.batch-size=100
+ * orders.cart.write-behind.max-pending=10000
+ * orders.cart.write-behind.max-size=100000
+ * orders.cart.write-behind.idle-timeout=PT30M
+ * </pre>
+ * The in-memory copy is local to each instance, so several instances need sticky routing by user.
+ */
+@Component
+@ConditionalOnProperty(name = "orders.cart.store", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    public enum Durability {
+        ASYNC,
+        WRITE_THROUGH
+    }
+
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Durability durability;
+    private final int batchSize;
+    private final int maxPending;
+
+    // Read side: recently used carts by user, including "no active cart"
+    private final Cache<Long, Entry> carts;
+    // Write side: carts with changes not yet in the database, one entry per user however many edits it had
+    private final Map<Long, Entry> pending = new ConcurrentHashMap<>();
+
+    private final Counter written;
+    private final Counter failed;
+
+    public WriteBehindCartStore(CartRepository cartRepository,
+                                TransactionTemplate transactionTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${orders.cart.write-behind.durability:ASYNC}") Durability durability,
+                                @Value("${orders.cart.write-behind.batch-size:100}") int batchSize,
+                                @Value("${orders.cart.write-behind.max-pending:10000}") int maxPending,
+                                @Value("${orders.cart.write-behind.max-size:100000}") long maxSize,
+                                @Value("${orders.cart.write-behind.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.cartRepository = cartRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTimeout)
+                .build();
+
+        this.written = meterRegistry.counter("cart.store.writes", "result", "success");
+        this.failed = meterRegistry.counter("cart.store.writes", "result", "failure");
+        Gauge.builder("cart.store.pending", pending, Map::size).register(meterRegistry);
+        Gauge.builder("cart.store.size", carts, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Cart> findActive(Long userId) {
+        Entry entry = entry(userId);
+        synchronized (entry) {
+            Cart cart = entry.cart;
+            return cart == null || cart.getCartStatus() != CartStatus.ACTIVE
+                    ? Optional.empty()
+                    : Optional.of(copy(cart));
+        }
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        Entry entry = entry(cart.getUserId());
+        Cart out;
+        synchronized (entry) {
+            Cart next = copy(cart);
+            // The caller's copy may predate the last flush, so keep the ids that flush assigned
+            if (entry.cart != null) {
+                adoptIds(next, entry.cart.getId(), itemIds(entry.cart));
+            }
+            entry.cart = next;
+            entry.version++;
+            pending.put(entry.userId, entry);
+            out = copy(next);
+        }
+
+        if (cart.getCartStatus() != CartStatus.ACTIVE || durability == Durability.WRITE_THROUGH
+                || pending.size() > maxPending) {
+            flush(cart.getUserId());
+        }
+        return out;
+    }
+
+    @Override
+    public void flush(Long userId) {
+        Entry entry = pending.get(userId);
+        if (entry != null && !write(List.of(entry), true)) {
+            throw new IllegalStateException("Could not save cart for user " + userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orders.cart.write-behind.flush-interval:PT1S}")
+    public void flushPending() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        for (Entry entry : pending.values()) {
+            batch.add(entry);
+            if (batch.size() == batchSize) {
+                write(batch, false);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch, false);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        int before = Integer.MAX_VALUE;
+        while (!pending.isEmpty() && pending.size() < before) {
+            before = pending.size();
+            flushPending();
+        }
+        if (!pending.isEmpty()) {
+            log.error("Shutting down with {} unsaved carts", pending.size());
+        }
+    }
+
+    private Entry entry(Long userId) {
+        return carts.get(userId, id -> {
+            // Evicted before its changes were written; the database copy would be stale
+            Entry unsaved = pending.get(id);
+            if (unsaved != null) {
+                return unsaved;
+            }
+            Cart cart = transactionTemplate.execute(status -> cartRepository
+                    .findByUserIdAndCartStatus(id, CartStatus.ACTIVE)
+                    .map(WriteBehindCartStore::copy)
+                    .orElse(null));
+            return new Entry(id, cart);
+        });
+    }
+
+    /**
+     * Writes the entries in one transaction, falling back to one transaction per cart when the batch fails so
+     * a single bad cart doesn't hold back the rest. Entries another thread is already writing are skipped
+     * unless {@code wait} is set. Returns false if anything failed.
+     */
+    private boolean write(List<Entry> entries, boolean wait) {
+        List<Entry> locked = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (wait) {
+                entry.writing.lock();
+                locked.add(entry);
+            } else if (entry.writing.tryLock()) {
+                locked.add(entry);
+            }
+        }
+        try {
+            if (locked.isEmpty()) {
+                return true;
+            }
+            if (writeTogether(locked)) {
+                return true;
+            }
+            if (locked.size() == 1) {
+                return false;
+            }
+            boolean ok = true;
+            for (Entry entry : locked) {
+                ok &= writeTogether(List.of(entry));
+            }
+            return ok;
+        } finally {
+            locked.forEach(entry -> entry.writing.unlock());
+        }
+    }
+
+    private boolean writeTogether(List<Entry> entries) {
+        List<Snapshot> snapshots = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            synchronized (entry) {
+                if (pending.get(entry.userId) == entry && entry.cart != null) {
+                    snapshots.add(new Snapshot(entry, copy(entry.cart), entry.version));
+                }
+            }
+        }
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Snapshot snapshot : snapshots) {
+                    Cart saved = cartRepository.save(snapshot.cart);
+                    snapshot.savedCartId = saved.getId();
+                    snapshot.savedItemIds = itemIds(saved);
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.increment(snapshots.size());
+            log.warn("Failed to save {} carts, will retry: {}", snapshots.size(), e.getMessage());
+            return false;
+        }
+
+        for (Snapshot snapshot : snapshots) {
+            Entry entry = snapshot.entry;
+            synchronized (entry) {
+                adoptIds(entry.cart, snapshot.savedCartId, snapshot.savedItemIds);
+                if (entry.version == snapshot.version) {
+                    pending.remove(entry.userId, entry);
+                    if (entry.cart.getCartStatus() != CartStatus.ACTIVE) {
+                        carts.asMap().remove(entry.userId, entry);
+                    }
+                }
+            }
+        }
+        written.increment(snapshots.size());
+        return true;
+    }
+
+    private static Cart copy(Cart cart) {
+        Cart c = new Cart();
+        c.setId(cart.getId());
+        c.setUserId(cart.getUserId());
+        c.setCartStatus(cart.getCartStatus());
+        c.setCreatedAt(cart.getCreatedAt());
+        c.setUpdatedAt(cart.getUpdatedAt());
+        List<CartItem> items = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            CartItem i = new CartItem();
+            i.setId(item.getId());
+            i.setCart(c);
+            i.setProductId(item.getProductId());
+            i.setQuantity(item.getQuantity());
+            i.setAddedAt(item.getAddedAt());
+            items.add(i);
+        }
+        c.setItems(items);
+        return c;
+    }
+
+    // A cart holds at most one line per product, so the product id identifies an item before it has an id
+    private static Map<String, Long> itemIds(Cart cart) {
+        Map<String, Long> ids = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            if (item.getId() != null) {
+                ids.put(item.getProductId(), item.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static void adoptIds(Cart cart, Long cartId, Map<String, Long> itemIds) {
+        if (cart.getId() == null) {
+            cart.setId(cartId);
+        }
+        for (CartItem item : cart.getItems()) {
+            if (item.getId() == null) {
+                item.setId(itemIds.get(item.getProductId()));
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Long userId;
+        // Held while the entry is being written, so two flushes never insert the same new cart twice
+        private final ReentrantLock writing = new ReentrantLock();
+        // Guarded by the entry's monitor; null when the user has no active cart
+        private Cart cart;
+        private long version;
+
+        private Entry(Long userId, Cart cart) {
+            this.userId = userId;
+            this.cart = cart;
+        }
+    }
+
+    private static final class Snapshot {
+        private final Entry entry;
+        private final Cart cart;
+        private final long version;
+        private Long savedCartId;
+        private Map<String, Long> savedItemIds;
+
+        private Snapshot(Entry entry, Cart cart, long version) {
+            this.entry = entry;
+            this.cart = cart;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.impetus.order_service.service.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes every order matching a filter, with its items and shipping address, straight to an output stream.
+ * <p>
+ * Orders are read in one forward-only query joined to their items, so the database streams rows and only the
+ * row being written is in memory, however many orders match. Rows come back ordered by (placed_at, id), which
+ * the {@code idx_orders_placed_at} index serves without a sort, and an order's rows are always adjacent.
+ * <p>
+ * MySQL Connector/J buffers whole result sets unless the fetch size is {@link Integer#MIN_VALUE} or the URL
+ * sets {@code useCursorFetch=true}; without the latter the export asks for row-by-row streaming.
+ * <pre>
+ * orders.export.fetch-size=1000
+ * </pre>
+ */
+@Service
+public class OrderExportService {
+    private static final Logger log = LoggerFactory.getLogger(OrderExportService.class);
+
+    public enum Format {
+        // One JSON object per order and line, items nested
+        NDJSON,
+        // One line per order item, order and address columns repeated
+        CSV
+    }
+
+    // from is inclusive, to exclusive; nulls leave that side open
+    public record Filter(Instant from, Instant to, List<OrderStatus> statuses) {
+        public Filter {
+            if (from != null && to != null && !from.isBefore(to)) {
+                throw new IllegalArgumentException("from must be before to");
+            }
+        }
+    }
+
+    private static final String SELECT = "select o.id, o.order_number, o.user_id, o.status, o.payment_status, " +
+            "o.payment_mode, o.subtotal_amount, o.tax_amount, o.shipping_fee, o.discount_amount, o.total_amount, " +
+            "o.placed_at, a.contact_name, a.phone, a.address_line1, a.address_line2, a.locality, a.city, a.state, " +
+            "a.pincode, i.product_id, i.product_sku, i.product_name, i.unit_price, i.quantity, i.total_price " +
+            "from orders o " +
+            "left join shipping_address a on a.order_id = o.id " +
+            "left join order_item i on i.order_id = o.id";
+
+    private static final String[] CSV_HEADER = {"order_id", "order_number", "user_id", "status", "payment_status",
+            "payment_mode", "subtotal_amount", "tax_amount", "shipping_fee", "discount_amount", "total_amount",
+            "placed_at", "contact_name", "phone", "address_line1", "address_line2", "locality", "city", "state",
+            "pincode", "product_id", "product_sku", "product_name", "unit_price", "quantity", "total_price"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    @Autowired
+    public OrderExportService(JdbcTemplate jdbcTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${orders.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the number of orders written. The stream is flushed but not closed.
+     */
+    public long export(Filter filter, Format format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        RowWriter writer = format == Format.NDJSON ? new NdjsonWriter(out) : new CsvWriter(out);
+        try {
+            jdbcTemplate.query(statement(filter), rs -> {
+                try {
+                    writer.row(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Usually the client went away
+            throw e.getCause();
+        }
+        writer.finish();
+        log.info("Exported {} orders as {} in {} ms", writer.orders(), format, (System.nanoTime() - start) / 1_000_000);
+        return writer.orders();
+    }
+
+    private PreparedStatementCreator statement(Filter filter) {
+        StringBuilder sql = new StringBuilder(SELECT);
+        List<Object> args = new ArrayList<>();
+        String glue = " where ";
+        if (filter.from() != null) {
+            sql.append(glue).append("o.placed_at >= ?");
+            args.add(Timestamp.from(filter.from()));
+            glue = " and ";
+        }
+        if (filter.to() != null) {
+            sql.append(glue).append("o.placed_at < ?");
+            args.add(Timestamp.from(filter.to()));
+            glue = " and ";
+        }
+        if (filter.statuses() != null && !filter.statuses().isEmpty()) {
+            sql.append(glue).append("o.status in (")
+                    .append(String.join(", ", Collections.nCopies(filter.statuses().size(), "?")))
+                    .append(')');
+            filter.statuses().forEach(status -> args.add(status.name()));
+        }
+        sql.append(" order by o.placed_at, o.id");
+
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize(con));
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        };
+    }
+
+    private int fetchSize(Connection con) throws SQLException {
+        String product = con.getMetaData().getDatabaseProductName();
+        String url = con.getMetaData().getURL();
+        if ("MySQL".equalsIgnoreCase(product) && (url == null || !url.contains("useCursorFetch=true"))) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp ts = rs.getTimestamp(column);
+        return ts == null ? null : ts.toInstant();
+    }
+
+    private static String paymentMode(ResultSet rs) throws SQLException {
+        // Mapped as an ordinal
+        int ordinal = rs.getInt("payment_mode");
+        return rs.wasNull() ? null : PaymentMode.values()[ordinal].name();
+    }
+
+    private abstract static class RowWriter {
+        private long currentOrderId = -1;
+        private long orders;
+
+        void row(ResultSet rs) throws SQLException, IOException {
+            long orderId = rs.getLong("id");
+            if (orderId != currentOrderId) {
+                if (orders > 0) {
+                    endOrder();
+                }
+                currentOrderId = orderId;
+                orders++;
+                startOrder(rs);
+            }
+            if (rs.getString("product_id") != null) {
+                item(rs);
+            }
+        }
+
+        void finish() throws IOException {
+            if (orders > 0) {
+                endOrder();
+            }
+            close();
+        }
+
+        long orders() {
+            return orders;
+        }
+
+        abstract void startOrder(ResultSet rs) throws SQLException, IOException;
+
+        abstract void item(ResultSet rs) throws SQLException, IOException;
+
+        abstract void endOrder() throws IOException;
+
+        abstract void close() throws IOException;
+    }
+
+    private final class NdjsonWriter extends RowWriter {
+        private final JsonGenerator json;
+
+        private NdjsonWriter(OutputStream out) throws IOException {
+            this.json = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        void startOrder(ResultSet rs) throws SQLException, IOException {
+            json.writeStartObject();
+            json.writeNumberField("id", rs.getLong("id"));
+            json.writeStringField("orderNumber", rs.getString("order_number"));
+            json.writeNumberField("userId", rs.getLong("user_id"));
+            json.writeStringField("status", rs.getString("status"));
+            json.writeStringField("paymentStatus", rs.getString("payment_status"));
+            json.writeStringField("paymentMode", paymentMode(rs));
+            json.writeNumberField("subtotalAmount", rs.getInt("subtotal_amount"));
+            json.writeNumberField("taxAmount", rs.getInt("tax_amount"));
+            json.writeNumberField("shippingFee", rs.getInt("shipping_fee"));
+            json.writeNumberField("discountAmount", rs.getInt("discount_amount"));
+            json.writeNumberField("totalAmount", rs.getInt("total_amount"));
+            Instant placedAt = instant(rs, "placed_at");
+            json.writeStringField("placedAt", placedAt == null ? null : placedAt.toString());
+            if (rs.getString("contact_name") == null) {
+                json.writeNullField("shippingAddress");
+            } else {
+                json.writeObjectFieldStart("shippingAddress");
+                json.writeStringField("contactName", rs.getString("contact_name"));
+                json.writeStringField("phone", rs.getString("phone"));
+                json.writeStringField("addressLine1", rs.getString("address_line1"));
+                json.writeStringField("addressLine2", rs.getString("address_line2"));
+                json.writeStringField("locality", rs.getString("locality"));
+                json.writeStringField("city", rs.getString("city"));
+                json.writeStringField("state", rs.getString("state"));
+                json.writeStringField("pincode", rs.getString("pincode"));
+                json.writeEndObject();
+            }
+            json.writeArrayFieldStart("items");
+        }
+
+        @Override
+        void item(ResultSet rs) throws SQLException, IOException {
+            json.writeStartObject();
+            json.writeStringField("productId", rs.getString("product_id"));
+            json.writeStringField("productSku", rs.getString("product_sku"));
+            json.writeStringField("productName", rs.getString("product_name"));
+            json.writeNumberField("unitPrice", rs.getInt("unit_price"));
+            json.writeNumberField("quantity", rs.getInt("quantity"));
+            json.writeNumberField("totalPrice", rs.getInt("total_price"));
+            json.writeEndObject();
+        }
+
+        @Override
+        void endOrder() throws IOException {
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        void close() throws IOException {
+            json.close();
+        }
+    }
+
+    private static final class CsvWriter extends RowWriter {
+        // Columns from here on hold text a user typed in, the shipping address
+        private static final int FIRST_TEXT_COLUMN = 12;
+
+        private final Writer out;
+        // The current order's columns, repeated on each of its item lines
+        private final String[] order = new String[20];
+        private boolean orderHasItems;
+
+        private CsvWriter(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+            line(CSV_HEADER);
+        }
+
+        @Override
+        void startOrder(ResultSet rs) throws SQLException {
+            Instant placedAt = instant(rs, "placed_at");
+            order[0] = rs.getString("id");
+            order[1] = rs.getString("order_number");
+            order[2] = rs.getString("user_id");
+            order[3] = rs.getString("status");
+            order[4] = rs.getString("payment_status");
+            order[5] = paymentMode(rs);
+            order[6] = rs.getString("subtotal_amount");
+            order[7] = rs.getString("tax_amount");
+            order[8] = rs.getString("shipping_fee");
+            order[9] = rs.getString("discount_amount");
+            order[10] = rs.getString("total_amount");
+            order[11] = placedAt == null ? null : placedAt.toString();
+            order[12] = rs.getString("contact_name");
+            order[13] = rs.getString("phone");
+            order[14] = rs.getString("address_line1");
+            order[15] = rs.getString("address_line2");
+            order[16] = rs.getString("locality");
+            order[17] = rs.getString("city");
+            order[18] = rs.getString("state");
+            order[19] = rs.getString("pincode");
+            orderHasItems = false;
+        }
+
+        @Override
+        void item(ResultSet rs) throws SQLException, IOException {
+            orderHasItems = true;
+            fields(order);
+            out.write(',');
+            text(rs.getString("product_id"));
+            out.write(',');
+            text(rs.getString("product_sku"));
+            out.write(',');
+            text(rs.getString("product_name"));
+            out.write(',');
+            field(rs.getString("unit_price"));
+            out.write(',');
+            field(rs.getString("quantity"));
+            out.write(',');
+            field(rs.getString("total_price"));
+            out.write("\r\n");
+        }
+
+        @Override
+        void endOrder() throws IOException {
+            // An order without items still gets a line, with empty item columns
+            if (!orderHasItems) {
+                fields(order);
+                out.write(",,,,,,\r\n");
+            }
+        }
+
+        @Override
+        void close() throws IOException {
+            out.flush();
+        }
+
+        private void line(String[] values) throws IOException {
+            fields(values);
+            out.write("\r\n");
+        }
+
+        private void fields(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                if (i >= FIRST_TEXT_COLUMN) {
+                    text(values[i]);
+                } else {
+                    field(values[i]);
+                }
+            }
+        }
+
+        // Spreadsheets evaluate a cell starting with =, +, -, @, tab or CR as a formula, so such text is
+        // prefixed with ' to keep it a plain value (CSV injection). Amounts and ids are written unchanged.
+        private void text(String value) throws IOException {
+            if (value != null && !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            field(value);
+        }
+
+        // RFC 4180: quote fields holding a separator, quote or line break, doubling embedded quotes
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
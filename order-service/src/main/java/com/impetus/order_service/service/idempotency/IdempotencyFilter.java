@@ -0,0 +1,154 @@
+package com.impetus.order_service.service.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.entity.IdempotencyRecord;
+import com.impetus.order_service.response.ApiError;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runs a POST carrying an {@code Idempotency-Key} header at most once per user, path and key, and answers
+ * retries with the stored response (marked {@code Idempotent-Replayed: true}). Responses with a 5xx status
+ * are not stored, so the retry runs the request again. Requests without the header pass straight through.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            error(response, HttpStatus.BAD_REQUEST, "BAD_REQUEST",
+                    HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        String id = IdempotencyStore.recordId(request.getHeader("X-User-Id"), request.getMethod(),
+                request.getRequestURI(), key);
+        IdempotencyStore.Claim claim = store.claim(id, IdempotencyStore.requestHash(body));
+
+        switch (claim.outcome()) {
+            case REPLAY -> replay(response, claim.stored());
+            case MISMATCH -> error(response, HttpStatus.UNPROCESSABLE_ENTITY, "IDEMPOTENCY_KEY_REUSED",
+                    HEADER + " was already used for a different request");
+            case BUSY -> error(response, HttpStatus.CONFLICT, "REQUEST_IN_PROGRESS",
+                    "A request with this " + HEADER + " is still being processed");
+            case ACQUIRED -> execute(new CachedBodyRequest(request, body), response, chain, id);
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain, String id)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            chain.doFilter(request, captured);
+            if (captured.getStatus() < 500) {
+                store.complete(id, captured.getStatus(), captured.getContentType(),
+                        new String(captured.getContentAsByteArray(), StandardCharsets.UTF_8));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                store.release(id);
+            }
+            captured.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyRecord stored) throws IOException {
+        response.setStatus(stored.getResponseStatus());
+        if (stored.getResponseContentType() != null) {
+            response.setContentType(stored.getResponseContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getResponseBody() != null) {
+            response.getOutputStream().write(stored.getResponseBody().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void error(HttpServletResponse response, HttpStatus status, String code, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ApiError(code, message, null));
+    }
+
+    // The body has to be read up front to fingerprint it, so hand the controller a copy
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
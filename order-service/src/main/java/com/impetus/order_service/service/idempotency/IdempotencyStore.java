@@ -0,0 +1,254 @@
+package com.impetus.order_service.service.idempotency;
+
+import com.impetus.order_service.entity.IdempotencyRecord;
+import com.impetus.order_service.enums.IdempotencyStatus;
+import com.impetus.order_service.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Remembers what requests sent with an {@code Idempotency-Key} returned, for {@code idempotency.retention}.
+ * <p>
+ * The first request for a key claims it by inserting an IN_PROGRESS row. A duplicate arriving while it runs
+ * waits for it, up to {@code idempotency.wait-timeout}, and then gets the stored response. Duplicates on the
+ * same instance wait on an in-memory future; duplicates on other instances poll the row. A claim that is
+ * never completed (the instance died) can be taken over once its {@code idempotency.lease} runs out, so the
+ * lease must be longer than the slowest request.
+ * <pre>
+ * idempotency.retention=PT24H
+ * idempotency.lease=PT1M
+ * idempotency.wait-timeout=PT10S
+ * idempotency.poll-interval=PT0.1S
+ * idempotency.purge.interval=PT5M
+ * idempotency.purge.batch-size=1000
+ * </pre>
+ */
+@Service
+public class IdempotencyStore {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public enum Outcome {
+        // The caller owns the key and must complete or release it
+        ACQUIRED,
+        // The request already ran; the stored response is attached
+        REPLAY,
+        // The key was used for a different request
+        MISMATCH,
+        // Another request with the key is still running after waiting wait-timeout
+        BUSY
+    }
+
+    public record Claim(Outcome outcome, IdempotencyRecord stored) {
+    }
+
+    private final IdempotencyRecordRepository repository;
+    private final Duration retention;
+    private final Duration lease;
+    private final Duration waitTimeout;
+    private final Duration pollInterval;
+    private final int purgeBatchSize;
+    private final Clock clock;
+
+    // Keys claimed by this instance, completed when their request finishes so local duplicates wake up
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Outcome, Counter> outcomes = new EnumMap<>(Outcome.class);
+    private final Counter purged;
+
+    @Autowired
+    public IdempotencyStore(IdempotencyRecordRepository repository,
+                            MeterRegistry meterRegistry,
+                            @Value("${idempotency.retention:PT24H}") Duration retention,
+                            @Value("${idempotency.lease:PT1M}") Duration lease,
+                            @Value("${idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+                            @Value("${idempotency.poll-interval:PT0.1S}") Duration pollInterval,
+                            @Value("${idempotency.purge.batch-size:1000}") int purgeBatchSize) {
+        this(repository, meterRegistry, retention, lease, waitTimeout, pollInterval, purgeBatchSize, Clock.systemUTC());
+    }
+
+    IdempotencyStore(IdempotencyRecordRepository repository, MeterRegistry meterRegistry, Duration retention,
+                     Duration lease, Duration waitTimeout, Duration pollInterval, int purgeBatchSize, Clock clock) {
+        this.repository = repository;
+        this.retention = retention;
+        this.lease = lease;
+        this.waitTimeout = waitTimeout;
+        this.pollInterval = pollInterval;
+        this.purgeBatchSize = purgeBatchSize;
+        this.clock = clock;
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, meterRegistry.counter("idempotency.requests", "result", outcome.name().toLowerCase()));
+        }
+        this.purged = meterRegistry.counter("idempotency.purged");
+    }
+
+    /**
+     * Compact primary key for a client key: 128 bits of sha256 over who sent it and where, base64url encoded.
+     */
+    public static String recordId(String userId, String method, String path, String key) {
+        byte[] digest = sha256((userId + '\n' + method + '\n' + path + '\n' + key).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+    }
+
+    public static String requestHash(byte[] body) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sha256(body));
+    }
+
+    public Claim claim(String id, String requestHash) {
+        Claim claim = tryClaim(id, requestHash);
+        outcomes.get(claim.outcome()).increment();
+        return claim;
+    }
+
+    public void complete(String id, int status, String contentType, String body) {
+        try {
+            int updated = repository.complete(id, IdempotencyStatus.COMPLETED, status, contentType, body,
+                    clock.instant().plus(retention));
+            if (updated == 0) {
+                log.warn("Idempotency record {} disappeared before completing; its lease may be too short", id);
+            }
+        } finally {
+            finish(id);
+        }
+    }
+
+    /**
+     * Gives the key up without storing a response, so a retry runs the request again.
+     */
+    public void release(String id) {
+        try {
+            repository.deleteById(id);
+        } finally {
+            finish(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge.interval:PT5M}")
+    public void purgeExpired() {
+        Instant now = clock.instant();
+        while (true) {
+            List<String> ids = repository.findExpiredIds(now, PageRequest.ofSize(purgeBatchSize));
+            if (ids.isEmpty()) break;
+            purged.increment(repository.deleteByIds(ids));
+            if (ids.size() < purgeBatchSize) break;
+        }
+    }
+
+    private Claim tryClaim(String id, String requestHash) {
+        long deadline = clock.millis() + waitTimeout.toMillis();
+        while (true) {
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(id, mine);
+            if (running != null) {
+                if (!await(running, deadline)) {
+                    return new Claim(Outcome.BUSY, null);
+                }
+                continue;
+            }
+
+            // Look before inserting so replays, the common case in a retry storm, don't hit the unique key
+            IdempotencyRecord existing = repository.findById(id).orElse(null);
+            if (existing == null) {
+                if (insert(id, requestHash)) {
+                    return new Claim(Outcome.ACQUIRED, null);
+                }
+                // Another instance claimed it first
+                finish(id);
+                continue;
+            }
+            finish(id);
+
+            if (!existing.getRequestHash().equals(requestHash)) {
+                return new Claim(Outcome.MISMATCH, existing);
+            }
+            Instant now = clock.instant();
+            if (existing.getExpiresAt().isBefore(now)) {
+                // Past retention, or an abandoned claim past its lease
+                repository.deleteIfExpired(id, now);
+                continue;
+            }
+            if (existing.getStatus() == IdempotencyStatus.COMPLETED) {
+                return new Claim(Outcome.REPLAY, existing);
+            }
+            if (clock.millis() >= deadline || !sleep(pollInterval)) {
+                return new Claim(Outcome.BUSY, null);
+            }
+        }
+    }
+
+    private boolean insert(String id, String requestHash) {
+        Instant now = clock.instant();
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(id);
+        record.setRequestHash(requestHash);
+        record.setStatus(IdempotencyStatus.IN_PROGRESS);
+        record.setCreatedAt(now);
+        record.setExpiresAt(now.plus(lease));
+        try {
+            repository.saveAndFlush(record);
+            return true;
+        } catch (DataIntegrityViolationException duplicate) {
+            return false;
+        }
+    }
+
+    private void finish(String id) {
+        CompletableFuture<Void> future = inFlight.remove(id);
+        if (future != null) {
+            future.complete(null);
+        }
+    }
+
+    private boolean await(CompletableFuture<Void> future, long deadline) {
+        try {
+            future.get(Math.max(0, deadline - clock.millis()), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
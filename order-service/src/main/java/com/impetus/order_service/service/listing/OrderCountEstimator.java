@@ -0,0 +1,47 @@
+package com.impetus.order_service.service.listing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.impetus.order_service.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Approximate order counts for keyset listings that ask for a total.
+ * <p>
+ * An exact {@code count(*)} on every page is what made the offset listings slow on a large orders table, so
+ * counts are computed at most once per {@code count-ttl} per user (and once for all orders) and reused. The
+ * total can lag new orders by up to that long, which is fine for "about N orders" in a UI.
+ * <pre>
+ * orders.listing.count-ttl=PT1M
+ * orders.listing.count-cache-size=10000
+ * </pre>
+ */
+@Component
+public class OrderCountEstimator {
+    // User ids start at 1, so 0 can stand for "every user"
+    private static final Long ALL_ORDERS = 0L;
+
+    private final OrderRepository orderRepository;
+    private final Cache<Long, Long> counts;
+
+    public OrderCountEstimator(OrderRepository orderRepository,
+                               @Value("${orders.listing.count-ttl:PT1M}") Duration countTtl,
+                               @Value("${orders.listing.count-cache-size:10000}") long maxSize) {
+        this.orderRepository = orderRepository;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(countTtl)
+                .build();
+    }
+
+    public long ordersOf(Long userId) {
+        return counts.get(userId, orderRepository::countByUserId);
+    }
+
+    public long allOrders() {
+        return counts.get(ALL_ORDERS, id -> orderRepository.count());
+    }
+}
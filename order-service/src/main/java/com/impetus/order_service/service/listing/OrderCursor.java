@@ -0,0 +1,43 @@
+package com.impetus.order_service.service.listing;
+
+import com.impetus.order_service.entity.Order;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in a newest-first order listing: the (placedAt, id) of the last order the client has seen.
+ * Clients get it as an opaque base64url token and hand it back unchanged for the next page.
+ */
+public record OrderCursor(Instant placedAt, long id) {
+
+    public static OrderCursor after(Order order) {
+        return new OrderCursor(order.getPlacedAt(), order.getId());
+    }
+
+    public String encode() {
+        String raw = placedAt.getEpochSecond() + ":" + placedAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns null for a missing cursor, meaning the first page.
+     */
+    public static OrderCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant placedAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new OrderCursor(placedAt, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.impetus.order_service.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.dto.UpdateInventoryRequest;
+import com.impetus.order_service.entity.OrderReservation;
+import com.impetus.order_service.entity.OutboxEvent;
+import com.impetus.order_service.enums.OutboxEventType;
+import com.impetus.order_service.enums.OutboxStatus;
+import com.impetus.order_service.exception.InternalServerError;
+import com.impetus.order_service.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Writes and tracks outbox events. Enqueueing requires an existing transaction so the event commits or
+ * rolls back together with the order change that produced it.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent enqueueInventoryCommit(Long orderId, List<OrderReservation> reservations) {
+        List<UpdateInventoryRequest> lines = reservations.stream()
+                .map(r -> new UpdateInventoryRequest(r.getProductId(), r.getQuantity()))
+                .toList();
+        return enqueue(orderId, OutboxEventType.INVENTORY_COMMIT, "inventory-commit:" + orderId, lines);
+    }
+
+    // Keyed off the command that left the stock behind, so the same leftover is only ever released once
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent enqueueInventoryRelease(Long orderId, String causedBy, List<UpdateInventoryRequest> lines) {
+        return enqueue(orderId, OutboxEventType.INVENTORY_RELEASE, "inventory-release:" + causedBy, lines);
+    }
+
+    private OutboxEvent enqueue(Long orderId, OutboxEventType type, String idempotencyKey, List<UpdateInventoryRequest> lines) {
+        Instant now = Instant.now();
+        OutboxEvent event = new OutboxEvent();
+        event.setOrderId(orderId);
+        event.setType(type);
+        event.setIdempotencyKey(idempotencyKey);
+        event.setPayload(writeLines(lines));
+        event.setStatus(OutboxStatus.PENDING);
+        event.setAttempts(0);
+        event.setNextAttemptAt(now);
+        event.setCreatedAt(now);
+        return outboxEventRepository.save(event);
+    }
+
+    /**
+     * Claims up to {@code limit} due events by pushing their next attempt out by {@code lease}. A dispatcher
+     * that dies mid-batch therefore only delays its events by the lease instead of losing them.
+     */
+    @Transactional
+    public List<OutboxEvent> claimDue(int limit, Duration lease) {
+        Instant now = Instant.now();
+        List<OutboxEvent> due = outboxEventRepository.findDue(OutboxStatus.PENDING, now, PageRequest.ofSize(limit));
+        for (OutboxEvent event : due) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plus(lease));
+        }
+        return due;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markSent(Long eventId) {
+        outboxEventRepository.findById(eventId).ifPresent(event -> {
+            event.setStatus(OutboxStatus.SENT);
+            event.setSentAt(Instant.now());
+            event.setLastError(null);
+        });
+    }
+
+    @Transactional
+    public void retryAt(Long eventId, Instant nextAttemptAt, String error) {
+        outboxEventRepository.findById(eventId).ifPresent(event -> {
+            event.setNextAttemptAt(nextAttemptAt);
+            event.setLastError(truncate(error));
+        });
+    }
+
+    // For a delivery that was never attempted: reschedules it and gives back the attempt claimDue counted
+    @Transactional
+    public void postpone(Long eventId, Instant nextAttemptAt, String error) {
+        outboxEventRepository.findById(eventId).ifPresent(event -> {
+            event.setAttempts(Math.max(0, event.getAttempts() - 1));
+            event.setNextAttemptAt(nextAttemptAt);
+            event.setLastError(truncate(error));
+        });
+    }
+
+    // Parked events are left for an operator; they are never picked up again
+    @Transactional
+    public void park(Long eventId, String error) {
+        outboxEventRepository.findById(eventId).ifPresent(event -> {
+            event.setStatus(OutboxStatus.PARKED);
+            event.setLastError(truncate(error));
+        });
+    }
+
+    public List<UpdateInventoryRequest> readLines(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), new TypeReference<List<UpdateInventoryRequest>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unreadable payload for outbox event " + event.getId(), e);
+        }
+    }
+
+    private String writeLines(List<UpdateInventoryRequest> lines) {
+        try {
+            return objectMapper.writeValueAsString(lines);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerError("Unable to serialise inventory command: " + e.getMessage());
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) return error;
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -8,4 +8,5 @@ public interface PaymentService {
     OrderResponse handlePaymentSuccess(Long orderId, Long paymentReference);
     void handlePaymentFailure(Long orderId);
     Void initiateRefund(Long orderId, Integer amountInPaisa);
+    void handleInventoryCommitFailure(Long orderId);
 }
@@ -0,0 +1,528 @@
+package com.impetus.order_service.service.payment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderReservation;
+import com.impetus.order_service.entity.PaymentWebhookEvent;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.enums.WebhookEventStatus;
+import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
+import com.impetus.order_service.repository.PaymentWebhookEventRepository;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Takes Razorpay payment webhooks off the servlet thread.
+ * <p>
+ * {@link #accept} verifies the signature and appends the raw event to a bounded queue. A full queue is
+ * refused, so the controller answers 503 and Razorpay retries later instead of the service falling over.
+ * Worker threads drain the queue in batches. Each batch runs in one transaction: events already applied,
+ * looked up by Razorpay event id, are skipped, and the orders, payments and reservations of the rest are
+ * loaded and updated together. A batch that fails is retried one event at a time.
+ * <p>
+ * Events are acknowledged before they are applied, so Razorpay won't redeliver one that fails. An event that
+ * still fails on its own is stored as FAILED with its body and queued again by {@link #retryFailed} with
+ * exponential backoff; after {@code max-attempts} it stays FAILED and is counted as parked. Queued events are
+ * drained on shutdown, but a crash loses whatever is still queued, and those orders stay PENDING_PAYMENT until
+ * the reservations expire.
+ * <p>
+ * A capture for an order that was already cancelled is recorded and refunded through the checkout saga.
+ * <pre>
+ * payments.razorpay.webhook-secret=...      # required, every event is rejected without it
+ * payments.webhook.queue-capacity=10000
+ * payments.webhook.workers=2
+ * payments.webhook.batch-size=200
+ * payments.webhook.poll-timeout=PT0.5S
+ * payments.webhook.retry-interval=PT1M
+ * payments.webhook.max-attempts=10
+ * </pre>
+ */
+@Component
+public class PaymentWebhookProcessor implements InitializingBean, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(PaymentWebhookProcessor.class);
+
+    static final String PAYMENT_CAPTURED = "payment.captured";
+    static final String PAYMENT_FAILED = "payment.failed";
+    private static final List<OrderStatus> PAYABLE = List.of(OrderStatus.PENDING_PAYMENT, OrderStatus.CREATED);
+    private static final List<PaymentStatus> CAPTURED_OR_REFUNDED =
+            List.of(PaymentStatus.CAPTURED, PaymentStatus.REFUND_INITIATED, PaymentStatus.REFUNDED);
+    private static final int MAX_ERROR_LENGTH = 1000;
+    // Caps the retry backoff at 64 x retry-interval
+    private static final int MAX_BACKOFF_DOUBLINGS = 6;
+
+    public enum Acceptance {
+        QUEUED,
+        INVALID_SIGNATURE,
+        QUEUE_FULL
+    }
+
+    private record Received(String eventId, byte[] body, Instant receivedAt) {
+    }
+
+    private record Event(String eventId, String type, Long orderId, Instant createdAt, byte[] body) {
+    }
+
+    private final OrderRepository orderRepository;
+    private final OrderReservationRepository orderReservationRepository;
+    private final PaymentWebhookEventRepository webhookEventRepository;
+    private final OutboxService outboxService;
+    private final OrderResponseCache orderResponseCache;
+    private final CheckoutSagaOrchestrator checkoutSaga;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final byte[] secret;
+    private final int workers;
+    private final int batchSize;
+    private final Duration pollTimeout;
+    private final Duration retryInterval;
+    private final int maxAttempts;
+    private final Clock clock;
+
+    private final BlockingQueue<Received> queue;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSizes;
+    private final Timer lag;
+
+    @Autowired
+    public PaymentWebhookProcessor(OrderRepository orderRepository,
+                                   OrderReservationRepository orderReservationRepository,
+                                   PaymentWebhookEventRepository webhookEventRepository,
+                                   OutboxService outboxService,
+                                   OrderResponseCache orderResponseCache,
+                                   CheckoutSagaOrchestrator checkoutSaga,
+                                   TransactionTemplate transactionTemplate,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${payments.razorpay.webhook-secret:}") String secret,
+                                   @Value("${payments.webhook.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${payments.webhook.workers:2}") int workers,
+                                   @Value("${payments.webhook.batch-size:200}") int batchSize,
+                                   @Value("${payments.webhook.poll-timeout:PT0.5S}") Duration pollTimeout,
+                                   @Value("${payments.webhook.retry-interval:PT1M}") Duration retryInterval,
+                                   @Value("${payments.webhook.max-attempts:10}") int maxAttempts) {
+        this(orderRepository, orderReservationRepository, webhookEventRepository, outboxService, orderResponseCache,
+                checkoutSaga, transactionTemplate, objectMapper, meterRegistry, secret, queueCapacity, workers,
+                batchSize, pollTimeout, retryInterval, maxAttempts, Clock.systemUTC());
+    }
+
+    PaymentWebhookProcessor(OrderRepository orderRepository, OrderReservationRepository orderReservationRepository,
+                            PaymentWebhookEventRepository webhookEventRepository, OutboxService outboxService,
+                            OrderResponseCache orderResponseCache, CheckoutSagaOrchestrator checkoutSaga,
+                            TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry, String secret, int queueCapacity, int workers,
+                            int batchSize, Duration pollTimeout, Duration retryInterval, int maxAttempts,
+                            Clock clock) {
+        this.orderRepository = orderRepository;
+        this.orderReservationRepository = orderReservationRepository;
+        this.webhookEventRepository = webhookEventRepository;
+        this.outboxService = outboxService;
+        this.orderResponseCache = orderResponseCache;
+        this.checkoutSaga = checkoutSaga;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollTimeout = pollTimeout;
+        this.retryInterval = retryInterval;
+        this.maxAttempts = maxAttempts;
+        this.clock = clock;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("payments.webhook.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("payments.webhook.batch.size").register(meterRegistry);
+        // From Razorpay creating the event to its transition being committed here
+        this.lag = Timer.builder("payments.webhook.lag").publishPercentiles(0.5, 0.99).register(meterRegistry);
+
+        if (this.secret.length == 0) {
+            log.warn("payments.razorpay.webhook-secret is not set, all payment webhooks will be rejected");
+        }
+    }
+
+    public Acceptance accept(String eventId, String signature, byte[] body) {
+        if (!signatureMatches(signature, body)) {
+            count("rejected");
+            return Acceptance.INVALID_SIGNATURE;
+        }
+        if (!queue.offer(new Received(eventId, body, clock.instant()))) {
+            count("queue_full");
+            return Acceptance.QUEUE_FULL;
+        }
+        count("queued");
+        return Acceptance.QUEUED;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        running = true;
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "payment-webhook-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.submit(this::work);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (executor != null) {
+            executor.shutdown();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.error("Stopped with {} payment webhooks still queued", queue.size());
+            }
+        }
+    }
+
+    private void work() {
+        List<Received> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Received first = queue.poll(pollTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Payment webhook batch of {} failed", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Processes whatever is queued on the calling thread; for tests, which don't start the workers.
+     */
+    void drain() {
+        List<Received> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Queues FAILED events that are due again. Their next attempt is pushed out by {@code retry-interval}
+     * first, so an event that is still waiting in the queue isn't queued twice.
+     */
+    @Scheduled(fixedDelayString = "${payments.webhook.retry-interval:PT1M}",
+            initialDelayString = "${payments.webhook.retry-interval:PT1M}")
+    public void retryFailed() {
+        List<PaymentWebhookEvent> due = transactionTemplate.execute(status -> {
+            Instant now = clock.instant();
+            List<PaymentWebhookEvent> rows = webhookEventRepository.findDue(WebhookEventStatus.FAILED, now,
+                    PageRequest.ofSize(batchSize));
+            rows.forEach(row -> row.setNextAttemptAt(now.plus(retryInterval)));
+            return rows;
+        });
+        if (due == null) return;
+        int requeued = 0;
+        for (PaymentWebhookEvent row : due) {
+            // Whatever doesn't fit comes round again after the lease
+            if (!queue.offer(new Received(row.getEventId(), row.getPayload().getBytes(StandardCharsets.UTF_8),
+                    clock.instant()))) {
+                break;
+            }
+            requeued++;
+        }
+        count("requeued", requeued);
+    }
+
+    private void process(List<Received> received) {
+        batchSizes.record(received.size());
+
+        // Razorpay redelivers, so the same event can show up twice in one batch
+        Map<String, Event> events = new LinkedHashMap<>();
+        for (Received r : received) {
+            Event event = parse(r);
+            if (event == null) {
+                count("malformed");
+            } else if (events.putIfAbsent(event.eventId(), event) != null) {
+                count("duplicate");
+            }
+        }
+        if (events.isEmpty()) return;
+
+        try {
+            applyAndRecordLag(List.copyOf(events.values()));
+        } catch (RuntimeException batchFailure) {
+            if (events.size() == 1) {
+                failed(events.values().iterator().next(), batchFailure);
+                return;
+            }
+            log.warn("Payment webhook batch of {} failed, applying one at a time: {}", events.size(), batchFailure.getMessage());
+            for (Event event : events.values()) {
+                try {
+                    applyAndRecordLag(List.of(event));
+                } catch (RuntimeException e) {
+                    failed(event, e);
+                }
+            }
+        }
+    }
+
+    private void applyAndRecordLag(List<Event> events) {
+        List<Event> applied = transactionTemplate.execute(status -> apply(events));
+        Instant now = clock.instant();
+        if (applied != null) {
+            applied.forEach(e -> lag.record(Duration.between(e.createdAt(), now)));
+        }
+    }
+
+    private List<Event> apply(List<Event> events) {
+        // Applied events are skipped; FAILED ones are applied again and their row is updated in place
+        Map<String, PaymentWebhookEvent> recorded = webhookEventRepository
+                .findByEventIdIn(events.stream().map(Event::eventId).toList()).stream()
+                .collect(Collectors.toMap(PaymentWebhookEvent::getEventId, Function.identity()));
+        List<Event> fresh = events.stream()
+                .filter(e -> !recorded.containsKey(e.eventId()) || recorded.get(e.eventId()).isFailed())
+                .toList();
+        count("duplicate", events.size() - fresh.size());
+        if (fresh.isEmpty()) return fresh;
+
+        Instant now = clock.instant();
+        List<PaymentWebhookEvent> inserts = new ArrayList<>(fresh.size());
+        for (Event e : fresh) {
+            PaymentWebhookEvent row = recorded.get(e.eventId());
+            if (row == null) {
+                row = newRow(e);
+                inserts.add(row);
+            }
+            row.setStatus(WebhookEventStatus.APPLIED);
+            row.setProcessedAt(now);
+            row.setPayload(null);
+            row.setNextAttemptAt(null);
+            row.setLastError(null);
+        }
+        webhookEventRepository.saveAll(inserts);
+
+        List<Long> orderIds = fresh.stream().map(Event::orderId).distinct().toList();
+        Map<Long, Order> orders = orderRepository.findByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        Map<Long, List<OrderReservation>> reservations = orderReservationRepository.findByOrderIdIn(orderIds).stream()
+                .collect(Collectors.groupingBy(r -> r.getOrder().getId()));
+
+        List<Event> applied = new ArrayList<>(fresh.size());
+        List<Long> captured = new ArrayList<>();
+        List<Long> capturedAfterCancel = new ArrayList<>();
+        for (Event event : fresh) {
+            Order order = orders.get(event.orderId());
+            boolean changed = order != null && switch (event.type()) {
+                case PAYMENT_CAPTURED -> {
+                    if (captured(order, reservations.getOrDefault(order.getId(), List.of()))) {
+                        captured.add(order.getId());
+                        yield true;
+                    }
+                    if (capturedAfterCancel(order)) {
+                        capturedAfterCancel.add(order.getId());
+                        yield true;
+                    }
+                    yield false;
+                }
+                case PAYMENT_FAILED -> failed(order);
+                default -> false;
+            };
+            if (changed) {
+                applied.add(event);
+            } else {
+                count("ignored");
+                log.debug("Ignoring {} event {} for order {}", event.type(), event.eventId(), event.orderId());
+            }
+        }
+        checkoutSaga.paymentCaptured(captured);
+        checkoutSaga.refundCapturedAfterCancel(capturedAfterCancel);
+        orderResponseCache.invalidateAfterCommit(applied.stream().map(Event::orderId).distinct().toList());
+        // Orders are moved by conditional updates, reservations and payments are dirty-checked and flushed on commit
+        count("applied", applied.size());
+        return applied;
+    }
+
+    // Mirrors RazorPayPaymentService.handlePaymentSuccess. The order row is moved by a conditional update rather
+    // than dirty-checking the Order loaded above: ReservationExpirySchedular cancels in bulk, and a full-row
+    // flush of the stale entity would put a cancelled order back to CONFIRMED. Losing that race falls through
+    // to capturedAfterCancel, so the money is refunded.
+    private boolean captured(Order order, List<OrderReservation> reservations) {
+        if (orderRepository.updateStatus(order.getId(), PAYABLE, OrderStatus.CONFIRMED, PaymentStatus.CAPTURED) == 0) {
+            return false;
+        }
+        reservations.forEach(r -> r.setStatus(ReservationStatus.CONFIRMED));
+        outboxService.enqueueInventoryCommit(order.getId(), reservations);
+        if (order.getPaymentReference() != null) {
+            order.getPaymentReference().setPaymentStatus(PaymentStatus.CAPTURED);
+        }
+        return true;
+    }
+
+    // The order was cancelled before the money arrived, e.g. its reservations expired, so the capture is
+    // recorded for the saga to refund. One that was already recorded or refunded is a no-op.
+    private boolean capturedAfterCancel(Order order) {
+        if (orderRepository.updatePaymentStatusUnless(order.getId(), OrderStatus.CANCELLED, CAPTURED_OR_REFUNDED,
+                PaymentStatus.CAPTURED) == 0) {
+            return false;
+        }
+        if (order.getPaymentReference() != null) {
+            order.getPaymentReference().setPaymentStatus(PaymentStatus.CAPTURED);
+        }
+        return true;
+    }
+
+    // Reservations are left to expire, which cancels the order, so the user can still retry the payment
+    private boolean failed(Order order) {
+        if (orderRepository.updatePaymentStatusUnless(order.getId(), OrderStatus.PENDING_PAYMENT,
+                List.of(PaymentStatus.CAPTURED), PaymentStatus.FAILED) == 0) {
+            return false;
+        }
+        if (order.getPaymentReference() != null) {
+            order.getPaymentReference().setPaymentStatus(PaymentStatus.FAILED);
+        }
+        return true;
+    }
+
+    // Razorpay has had its 200, so keep the event for retryFailed instead of dropping it
+    private void failed(Event event, RuntimeException cause) {
+        log.error("Could not apply payment webhook {} ({}) for order {}", event.eventId(), event.type(), event.orderId(), cause);
+        try {
+            Boolean parked = transactionTemplate.execute(status -> {
+                PaymentWebhookEvent row = webhookEventRepository.findById(event.eventId()).orElse(null);
+                if (row == null) {
+                    row = newRow(event);
+                    row.setAttempts(0);
+                } else if (!row.isFailed()) {
+                    // A redelivery got it through in the meantime
+                    return false;
+                }
+                int attempts = row.getAttempts() + 1;
+                row.setStatus(WebhookEventStatus.FAILED);
+                row.setPayload(new String(event.body(), StandardCharsets.UTF_8));
+                row.setAttempts(attempts);
+                row.setLastError(truncate(cause.getMessage()));
+                row.setNextAttemptAt(attempts >= maxAttempts ? null : clock.instant().plus(backoff(attempts)));
+                webhookEventRepository.save(row);
+                return attempts >= maxAttempts;
+            });
+            if (Boolean.TRUE.equals(parked)) {
+                count("parked");
+                log.error("Payment webhook {} for order {} is parked after {} attempts", event.eventId(), event.orderId(), maxAttempts);
+            } else {
+                count("failed");
+            }
+        } catch (RuntimeException e) {
+            count("lost");
+            log.error("Could not store failed payment webhook {} for order {}, it won't be retried", event.eventId(), event.orderId(), e);
+        }
+    }
+
+    Duration backoff(int attempts) {
+        return retryInterval.multipliedBy(1L << Math.min(attempts - 1, MAX_BACKOFF_DOUBLINGS));
+    }
+
+    private static PaymentWebhookEvent newRow(Event event) {
+        PaymentWebhookEvent row = new PaymentWebhookEvent();
+        row.setEventId(event.eventId());
+        row.setEventType(event.type());
+        row.setOrderId(event.orderId());
+        return row;
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) return error;
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    // The order id travels in the payment's notes, set when the Razorpay order is created
+    private Event parse(Received r) {
+        try {
+            JsonNode root = objectMapper.readTree(r.body());
+            JsonNode order = root.path("payload").path("payment").path("entity").path("notes").path("order_id");
+            if (!order.canConvertToLong() && !order.isTextual()) {
+                return null;
+            }
+            Instant createdAt = root.has("created_at")
+                    ? Instant.ofEpochSecond(root.get("created_at").asLong())
+                    : r.receivedAt();
+            return new Event(r.eventId(), root.path("event").asText(), Long.valueOf(order.asText()), createdAt, r.body());
+        } catch (Exception e) {
+            log.warn("Unreadable payment webhook {}: {}", r.eventId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean signatureMatches(String signature, byte[] body) {
+        if (secret.length == 0 || signature == null) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            byte[] expected = mac.doFinal(body);
+            byte[] actual = HexFormat.of().parseHex(signature);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private void count(String result) {
+        count(result, 1);
+    }
+
+    private void count(String result, int amount) {
+        if (amount > 0) {
+            meterRegistry.counter("payments.webhook.events", "result", result).increment(amount);
+        }
+    }
+}
@@ -2,35 +2,57 @@ package com.impetus.order_service.service.payment;
 
 import com.impetus.order_service.dto.OrderResponse;
 import com.impetus.order_service.dto.PaymentInitiationResponse;
-import com.impetus.order_service.dto.UpdateInventoryResponse;
 import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderReservation;
 import com.impetus.order_service.entity.Payment;
 import com.impetus.order_service.enums.OrderStatus;
 import com.impetus.order_service.enums.PaymentMode;
 import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.mapper.OrderMapper;
 import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
 import com.impetus.order_service.repository.PaymentRepository;
-import com.impetus.order_service.service.OrderService;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
 import lombok.AllArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.EnumSet;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 @Service
 @AllArgsConstructor
 public class RazorPayPaymentService implements PaymentService{
 
     private static final Logger log = LoggerFactory.getLogger(RazorPayPaymentService.class);
-    private final OrderService orderService;
+    private static final Set<PaymentStatus> CAPTURED_OR_REFUNDED =
+            EnumSet.of(PaymentStatus.CAPTURED, PaymentStatus.REFUND_INITIATED, PaymentStatus.REFUNDED);
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
-    private final ModelMapper modelMapper;
+    private final OrderMapper orderMapper;
+    private final OrderReservationRepository orderReservationRepository;
+    private final OutboxService outboxService;
+    private final OrderResponseCache orderResponseCache;
+    private final CheckoutSagaOrchestrator checkoutSaga;
+
     @Override
+    @Transactional
     public PaymentInitiationResponse initiatePayment(Long orderId) {
         Order order = orderRepository.findById(orderId).orElseThrow(()-> new NoSuchElementException("Order Not found"));
+        // Paying again for a confirmed, cancelled or already captured order would reopen a finished checkout
+        if((order.getStatus() != OrderStatus.CREATED && order.getStatus() != OrderStatus.PENDING_PAYMENT)
+                || CAPTURED_OR_REFUNDED.contains(order.getPaymentStatus())){
+            throw new IllegalArgumentException("Order " + orderId + " can't be paid for in status " + order.getStatus()
+                    + " with payment " + order.getPaymentStatus());
+        }
         order.setPaymentStatus(PaymentStatus.INITIATED);
         order.setStatus(OrderStatus.PENDING_PAYMENT);
         order.setPaymentMode(PaymentMode.UPI);
@@ -43,11 +65,17 @@ public class RazorPayPaymentService implements PaymentService{
         Payment saved = paymentRepository.save(paymentEntry);
         order.setPaymentReference(saved);
         orderRepository.save(order);
-        this.handlePaymentSuccess(orderId, saved.getId());
+        orderResponseCache.invalidateAfterCommit(orderId);
+        // Captured on a saga thread after this commits; the client polls the order for CONFIRMED
+        if(!checkoutSaga.capturePayment(orderId, saved.getId())){
+            // Rolls back the payment entry above, the capture already under way stays the only one
+            throw new IllegalArgumentException("Payment for order " + orderId + " is already being captured");
+        }
         return null;
     }
 
     @Override
+    @Transactional
     public OrderResponse handlePaymentSuccess(Long orderId, Long paymentReference) {
         //Update inventory and reservations
         // no inventory available initiate refund
@@ -63,7 +91,7 @@ public class RazorPayPaymentService implements PaymentService{
 //        if(order.getPaymentStatus().equals(PaymentStatus.CAPTURED)){
 //            log.error("Payment already done need to initiate refund");
 //            this.initiateRefund(orderId, order.getTotalAmount());
-//            return modelMapper.map(order, OrderResponse.class);
+//            return orderMapper.toResponse(order);
 //        }
 
 //        if(!orderResponse.getTotalAmount().equals(payment.getAmountPaisa())){
@@ -71,16 +99,36 @@ public class RazorPayPaymentService implements PaymentService{
 //            this.initiateRefund(orderId, payment.getAmountPaisa());
 //        }
 
-        UpdateInventoryResponse response = orderService.updateInventory(order);
-        if(response == null || !response.isSuccess()){
-            this.initiateRefund(orderId, order.getTotalAmount());
-            throw new RuntimeException("Failed to update inventory");
+        if(order.getStatus() == OrderStatus.CONFIRMED){
+            log.info("Payment success for order {} already handled", orderId);
+            return null;
         }
+        if(order.getStatus() == OrderStatus.CANCELLED){
+            // The money arrived after the order was cancelled, so record it and hand it back
+            if(CAPTURED_OR_REFUNDED.contains(order.getPaymentStatus())){
+                return null;
+            }
+            log.warn("Payment captured for cancelled order {}, refunding", orderId);
+            order.setPaymentStatus(PaymentStatus.CAPTURED);
+            payment.setPaymentStatus(PaymentStatus.CAPTURED);
+            checkoutSaga.refundCapturedAfterCancel(List.of(orderId));
+            orderResponseCache.invalidateAfterCommit(orderId);
+            return null;
+        }
+
+        // Stock is committed by OutboxDispatchSchedular. The command is stored in this transaction so it can't be
+        // lost or sent for an order that didn't commit; if product-service is out of stock the order is
+        // cancelled and refunded in handleInventoryCommitFailure
+        List<OrderReservation> reservations = orderReservationRepository.findByOrderId(orderId);
+        reservations.forEach(r -> r.setStatus(ReservationStatus.CONFIRMED));
+        outboxService.enqueueInventoryCommit(orderId, reservations);
 
         order.setStatus(OrderStatus.CONFIRMED);
         order.setPaymentStatus(PaymentStatus.CAPTURED);
         order.setPaymentStatus(PaymentStatus.CAPTURED);
         orderRepository.save(order);
+        checkoutSaga.paymentCaptured(List.of(orderId));
+        orderResponseCache.invalidateAfterCommit(orderId);
         return null;
     }
 
@@ -94,4 +142,21 @@ public class RazorPayPaymentService implements PaymentService{
     public Void initiateRefund(Long orderId, Integer amountInPaisa) {
         return null;
     }
+
+    @Override
+    @Transactional
+    public void handleInventoryCommitFailure(Long orderId) {
+        Order order = orderRepository.findById(orderId).orElseThrow(() -> new NoSuchElementException("Order not found"));
+        if(order.getStatus() == OrderStatus.CANCELLED){
+            // Cancelled some other way while the payment stayed captured; the saga may already be compensating,
+            // so only make sure the money goes back. The refund itself runs once.
+            if(order.getPaymentStatus() == PaymentStatus.CAPTURED){
+                checkoutSaga.refundCapturedAfterCancel(List.of(orderId));
+            }
+            return;
+        }
+        log.warn("Inventory could not be committed for order {}, cancelling and refunding", orderId);
+        // Reservations, the order and the refund are handled by the saga's compensations
+        checkoutSaga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-unavailable");
+    }
 }
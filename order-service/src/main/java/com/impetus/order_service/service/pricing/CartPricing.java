@@ -0,0 +1,70 @@
+package com.impetus.order_service.service.pricing;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import com.impetus.order_service.entity.CartItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Prices cart lines against product snapshots. Checkout and {@code GET /cart/quote} both go through here, so a
+ * quote shows the same amounts the order will be placed with as long as the prices don't change in between.
+ * <p>
+ * Stock is only reported per line; whether a short line is an error is up to the caller.
+ */
+public final class CartPricing {
+
+    // Totals (configurable)
+    static final float TAX_RATE = 0.18f;
+    static final int SHIPPING_FEE = 49;
+
+    private CartPricing() {
+    }
+
+    public static PricedCart price(List<CartItem> items, List<ProductResponseDto> products) {
+        Map<String, ProductResponseDto> productsById = products.stream()
+                .collect(Collectors.toMap(ProductResponseDto::getId, Function.identity(), (a, b) -> a));
+
+        List<PricedLine> lines = new ArrayList<>(items.size());
+        int subtotal = 0;
+        for (CartItem item : items) {
+            String productId = item.getProductId();
+            ProductResponseDto product = productsById.get(productId);
+            if (product == null) {
+                throw new NoSuchElementException("Product not found: " + productId);
+            }
+            Integer unitPrice = product.getPrice();
+            if (unitPrice == null) {
+                throw new NoSuchElementException("Current proice not available for product " + product.getName());
+            }
+
+            int quantity = item.getQuantity();
+            int totalPrice = unitPrice * quantity;
+            subtotal += totalPrice;
+            lines.add(new PricedLine(item, product, quantity, totalPrice));
+        }
+
+        if (lines.isEmpty()) {
+            return new PricedCart(List.of(), 0, 0, 0, 0, 0);
+        }
+        int taxAmount = Math.round(subtotal * TAX_RATE);
+        int discountAmount = 0;
+        int totalAmount = subtotal + taxAmount + SHIPPING_FEE - discountAmount;
+        return new PricedCart(lines, subtotal, taxAmount, SHIPPING_FEE, discountAmount, totalAmount);
+    }
+
+    public record PricedCart(List<PricedLine> lines, int subtotalAmount, int taxAmount, int shippingFee,
+                             int discountAmount, int totalAmount) {
+    }
+
+    public record PricedLine(CartItem item, ProductResponseDto product, int quantity, int totalPrice) {
+
+        public boolean inStock() {
+            return product.getInventoryQuantity() != null && product.getInventoryQuantity() >= quantity;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package com.impetus.order_service.service.saga;
+
+import com.impetus.order_service.dto.UpdateInventoryRequest;
+import com.impetus.order_service.entity.CheckoutSaga;
+import com.impetus.order_service.entity.CheckoutSagaStep;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.enums.SagaStatus;
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.enums.SagaStepStatus;
+import com.impetus.order_service.repository.CheckoutSagaRepository;
+import com.impetus.order_service.repository.CheckoutSagaStepRepository;
+import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.payment.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs checkout as a saga and keeps the state of each order's steps in {@code checkout_saga_step}, so work cut
+ * short by a crash is picked up again.
+ * <p>
+ * The forward steps are PLACE_ORDER, CAPTURE_PAYMENT and COMMIT_INVENTORY. Only placing the order runs on the
+ * request thread: the payment is captured on the saga's threads once {@code initiatePayment} commits, and the
+ * inventory commit is delivered by the outbox. When a step fails for good (the payment can't be captured within
+ * {@code max-attempts}, or product-service refuses the commit or its outbox event is parked) the order is
+ * compensated by releasing its inventory, refunding the payment and cancelling it. The three run in parallel,
+ * each in its own transaction and recorded on its own, so a compensation that fails is retried without repeating
+ * the ones that finished.
+ * <p>
+ * Incomplete sagas are resumed when the application starts and every {@code retry-interval} after that. A
+ * compensation that keeps failing is left FAILED after {@code max-attempts}; once none of them can be retried the
+ * saga ends as FAILED_COMPENSATION, counted in {@code checkout.saga.failed-compensations} for alerting, and is
+ * left for an operator like a parked outbox event.
+ * <pre>
+ * checkout.saga.threads=4
+ * checkout.saga.retry-interval=PT30S
+ * checkout.saga.max-attempts=10
+ * checkout.saga.resume-batch-size=100
+ * </pre>
+ */
+@Component
+public class CheckoutSagaOrchestrator implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(CheckoutSagaOrchestrator.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    static final List<SagaStep> COMPENSATIONS =
+            List.of(SagaStep.RELEASE_INVENTORY, SagaStep.REFUND_PAYMENT, SagaStep.CANCEL_ORDER);
+    private static final Set<SagaStepStatus> FINISHED = EnumSet.of(SagaStepStatus.DONE, SagaStepStatus.SKIPPED);
+    private static final Set<SagaStepStatus> UNFINISHED =
+            EnumSet.of(SagaStepStatus.PENDING, SagaStepStatus.RUNNING, SagaStepStatus.FAILED);
+    private static final Set<SagaStepStatus> CAPTURABLE = EnumSet.of(SagaStepStatus.PENDING, SagaStepStatus.RUNNING,
+            SagaStepStatus.FAILED, SagaStepStatus.SKIPPED);
+
+    private final CheckoutSagaRepository sagaRepository;
+    private final CheckoutSagaStepRepository stepRepository;
+    private final OrderRepository orderRepository;
+    private final OrderReservationRepository orderReservationRepository;
+    private final OutboxService outboxService;
+    // Looked up lazily, RazorPayPaymentService depends on this class
+    private final ObjectProvider<PaymentService> paymentService;
+    private final OrderResponseCache orderResponseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Executor executor;
+    private final Duration retryInterval;
+    private final int maxAttempts;
+    private final int resumeBatchSize;
+    private final Clock clock;
+
+    // Orders whose compensations are running on this instance, so a resume sweep doesn't queue them again
+    private final Set<Long> compensating = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public CheckoutSagaOrchestrator(CheckoutSagaRepository sagaRepository,
+                                    CheckoutSagaStepRepository stepRepository,
+                                    OrderRepository orderRepository,
+                                    OrderReservationRepository orderReservationRepository,
+                                    OutboxService outboxService,
+                                    ObjectProvider<PaymentService> paymentService,
+                                    OrderResponseCache orderResponseCache,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${checkout.saga.threads:4}") int threads,
+                                    @Value("${checkout.saga.retry-interval:PT30S}") Duration retryInterval,
+                                    @Value("${checkout.saga.max-attempts:10}") int maxAttempts,
+                                    @Value("${checkout.saga.resume-batch-size:100}") int resumeBatchSize) {
+        this(sagaRepository, stepRepository, orderRepository, orderReservationRepository, outboxService,
+                paymentService, orderResponseCache, transactionTemplate, meterRegistry, executor(threads),
+                retryInterval, maxAttempts, resumeBatchSize, Clock.systemUTC());
+    }
+
+    CheckoutSagaOrchestrator(CheckoutSagaRepository sagaRepository, CheckoutSagaStepRepository stepRepository,
+                             OrderRepository orderRepository, OrderReservationRepository orderReservationRepository,
+                             OutboxService outboxService, ObjectProvider<PaymentService> paymentService,
+                             OrderResponseCache orderResponseCache, TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry, Executor executor, Duration retryInterval,
+                             int maxAttempts, int resumeBatchSize, Clock clock) {
+        this.sagaRepository = sagaRepository;
+        this.stepRepository = stepRepository;
+        this.orderRepository = orderRepository;
+        this.orderReservationRepository = orderReservationRepository;
+        this.outboxService = outboxService;
+        this.paymentService = paymentService;
+        this.orderResponseCache = orderResponseCache;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.executor = executor;
+        this.retryInterval = retryInterval;
+        this.maxAttempts = maxAttempts;
+        this.resumeBatchSize = resumeBatchSize;
+        this.clock = clock;
+    }
+
+    private static ExecutorService executor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "checkout-saga-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (executor instanceof ExecutorService pool) {
+            pool.shutdown();
+            if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Stopped with checkout saga steps still running; they resume on the next start");
+            }
+        }
+    }
+
+    /**
+     * Saves the order built by {@code placeOrder} together with its saga, so no order exists without one.
+     */
+    public Order start(Supplier<Order> placeOrder) {
+        return transactionTemplate.execute(status -> {
+            Order order = placeOrder.get();
+            Instant now = clock.instant();
+            sagaRepository.save(newSaga(order.getId(), now));
+            stepRepository.saveAll(List.of(
+                    newStep(order.getId(), SagaStep.PLACE_ORDER, SagaStepStatus.DONE, now),
+                    newStep(order.getId(), SagaStep.CAPTURE_PAYMENT, SagaStepStatus.PENDING, now),
+                    newStep(order.getId(), SagaStep.COMMIT_INVENTORY, SagaStepStatus.PENDING, now)));
+            return order;
+        });
+    }
+
+    /**
+     * Captures the payment on a saga thread once the caller's transaction commits. The payment id is stored
+     * with the step, so a capture lost in a crash is run again on the next start.
+     *
+     * @return false, capturing nothing, if the order's capture is already running or done
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean capturePayment(Long orderId, Long paymentId) {
+        // Orders placed before sagas were recorded have no step to check and are captured as before
+        Optional<CheckoutSagaStep> capture = stepRepository.lock(orderId, SagaStep.CAPTURE_PAYMENT);
+        if (capture.isPresent()) {
+            CheckoutSagaStep step = capture.get();
+            if (step.getStatus() != SagaStepStatus.PENDING && step.getStatus() != SagaStepStatus.FAILED) {
+                return false;
+            }
+            step.setStatus(SagaStepStatus.RUNNING);
+            step.setReference(paymentId);
+            step.setUpdatedAt(clock.instant());
+        }
+        afterCommit(() -> submit(() -> capture(orderId, paymentId)));
+        return true;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void paymentCaptured(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) return;
+        stepRepository.updateStatus(orderIds, List.of(SagaStep.CAPTURE_PAYMENT), UNFINISHED, SagaStepStatus.DONE,
+                clock.instant());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void inventoryCommitted(Long orderId) {
+        Instant now = clock.instant();
+        stepRepository.updateStatus(List.of(orderId), List.of(SagaStep.COMMIT_INVENTORY), UNFINISHED,
+                SagaStepStatus.DONE, now);
+        sagaRepository.updateStatus(List.of(orderId), SagaStatus.RUNNING, SagaStatus.COMPLETED, now);
+    }
+
+    /**
+     * Marks {@code failedStep} as failed and compensates the order once the caller's transaction commits.
+     * Orders that are already being compensated are left alone, and so are completed ones: their payment was
+     * captured and their stock committed, which nothing that fails later can undo.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void compensate(Long orderId, SagaStep failedStep, String reason) {
+        Instant now = clock.instant();
+        // Orders placed before sagas were recorded get one now
+        CheckoutSaga saga = sagaRepository.findById(orderId).orElseGet(() -> newSaga(orderId, now));
+        if (saga.getStatus() == SagaStatus.COMPLETED) {
+            log.warn("Not compensating completed order {} after {} failed: {}", orderId, failedStep, reason);
+            return;
+        }
+        if (saga.getStatus() == SagaStatus.COMPENSATING || saga.getStatus() == SagaStatus.COMPENSATED
+                || saga.getStatus() == SagaStatus.FAILED_COMPENSATION) {
+            return;
+        }
+        saga.setStatus(SagaStatus.COMPENSATING);
+        saga.setReason(reason);
+        saga.setUpdatedAt(now);
+        sagaRepository.save(saga);
+
+        // A step that already recorded its own failure keeps its error
+        stepRepository.lock(orderId, failedStep)
+                .filter(step -> step.getStatus() != SagaStepStatus.FAILED)
+                .ifPresent(step -> fail(step, reason));
+        stepRepository.saveAll(COMPENSATIONS.stream()
+                .map(step -> newStep(orderId, step, SagaStepStatus.PENDING, now))
+                .toList());
+        log.info("Compensating order {} after {} failed: {}", orderId, failedStep, reason);
+        afterCommit(() -> runCompensations(orderId));
+    }
+
+    /**
+     * Refunds payments captured for orders that were already cancelled, e.g. a capture that arrives after the
+     * order's reservations expired. The caller has recorded the capture. The order's compensations are reopened
+     * with a fresh REFUND_PAYMENT step; releasing and cancelling find nothing left to do.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void refundCapturedAfterCancel(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) return;
+        Instant now = clock.instant();
+        // Including a capture the reservation sweep skipped, the money did arrive
+        stepRepository.updateStatus(orderIds, List.of(SagaStep.CAPTURE_PAYMENT), CAPTURABLE, SagaStepStatus.DONE, now);
+        // The capture was never recorded before, so no commit was enqueued for it
+        stepRepository.updateStatus(orderIds, List.of(SagaStep.COMMIT_INVENTORY), List.of(SagaStepStatus.PENDING),
+                SagaStepStatus.SKIPPED, now);
+        for (Long orderId : orderIds) {
+            CheckoutSaga saga = sagaRepository.findById(orderId).orElseGet(() -> newSaga(orderId, now));
+            saga.setStatus(SagaStatus.COMPENSATING);
+            saga.setReason("captured-after-cancel");
+            saga.setUpdatedAt(now);
+            sagaRepository.save(saga);
+
+            Set<SagaStep> recorded = EnumSet.noneOf(SagaStep.class);
+            stepRepository.findByOrderId(orderId).forEach(s -> recorded.add(s.getStep()));
+            stepRepository.saveAll(COMPENSATIONS.stream()
+                    .filter(step -> !recorded.contains(step))
+                    .map(step -> newStep(orderId, step, SagaStepStatus.PENDING, now))
+                    .toList());
+            stepRepository.lock(orderId, SagaStep.REFUND_PAYMENT).ifPresent(step -> {
+                step.setStatus(SagaStepStatus.PENDING);
+                step.setAttempts(0);
+                step.setLastError(null);
+                step.setUpdatedAt(now);
+            });
+            log.warn("Payment captured for cancelled order {}, refunding", orderId);
+            afterCommit(() -> runCompensations(orderId));
+        }
+    }
+
+    /**
+     * Closes the sagas of orders the reservation sweep cancelled; there is nothing else to undo for an order
+     * that was never paid. Orders among {@code orderIds} that weren't cancelled are left alone.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void expired(Collection<Long> orderIds) {
+        List<Long> cancelled = orderRepository.findIdsByStatus(orderIds, OrderStatus.CANCELLED);
+        if (cancelled.isEmpty()) return;
+        Instant now = clock.instant();
+        sagaRepository.updateStatus(cancelled, SagaStatus.RUNNING, SagaStatus.COMPENSATED, "reservation-expired", now);
+        stepRepository.updateStatus(cancelled, List.of(SagaStep.CAPTURE_PAYMENT, SagaStep.COMMIT_INVENTORY),
+                UNFINISHED, SagaStepStatus.SKIPPED, now);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        resume(clock.instant());
+    }
+
+    @Scheduled(fixedDelayString = "${checkout.saga.retry-interval:PT30S}",
+            initialDelayString = "${checkout.saga.retry-interval:PT30S}")
+    public void retryStalled() {
+        resume(clock.instant().minus(retryInterval));
+    }
+
+    // Picks up captures and compensations that haven't moved since idleSince
+    void resume(Instant idleSince) {
+        List<CheckoutSagaStep> captures = stepRepository.findStalled(SagaStep.CAPTURE_PAYMENT,
+                List.of(SagaStepStatus.RUNNING, SagaStepStatus.FAILED), idleSince, maxAttempts,
+                PageRequest.ofSize(resumeBatchSize));
+        for (CheckoutSagaStep step : captures) {
+            if (step.getReference() != null) {
+                submit(() -> capture(step.getOrderId(), step.getReference()));
+            }
+        }
+        List<Long> sagas = sagaRepository.findIdle(SagaStatus.COMPENSATING, idleSince,
+                PageRequest.ofSize(resumeBatchSize));
+        sagas.forEach(this::runCompensations);
+        if (!captures.isEmpty() || !sagas.isEmpty()) {
+            log.info("Resumed {} payment captures and {} compensations", captures.size(), sagas.size());
+        }
+    }
+
+    private void capture(Long orderId, Long paymentId) {
+        try {
+            // Marks CAPTURE_PAYMENT done through paymentCaptured in its own transaction
+            paymentService.getObject().handlePaymentSuccess(orderId, paymentId);
+            count(SagaStep.CAPTURE_PAYMENT, "done");
+        } catch (RuntimeException e) {
+            log.warn("Capturing payment {} for order {} failed: {}", paymentId, orderId, e.getMessage());
+            count(SagaStep.CAPTURE_PAYMENT, "failed");
+            captureFailed(orderId, e);
+        }
+    }
+
+    // Out of attempts the payment won't be captured, so compensate rather than leave the order PENDING_PAYMENT
+    private void captureFailed(Long orderId, RuntimeException cause) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    stepRepository.lock(orderId, SagaStep.CAPTURE_PAYMENT).ifPresent(row -> {
+                        fail(row, cause.getMessage());
+                        if (row.getStatus() == SagaStepStatus.FAILED && row.getAttempts() >= maxAttempts) {
+                            compensate(orderId, SagaStep.CAPTURE_PAYMENT, "payment-capture-failed");
+                        }
+                    }));
+        } catch (RuntimeException e) {
+            log.error("Could not record failure of {} for order {}", SagaStep.CAPTURE_PAYMENT, orderId, e);
+        }
+    }
+
+    private void runCompensations(Long orderId) {
+        if (!compensating.add(orderId)) return;
+        try {
+            CompletableFuture<?>[] steps = COMPENSATIONS.stream()
+                    .map(step -> CompletableFuture.runAsync(() -> runCompensation(orderId, step), executor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(steps).whenComplete((ignored, e) -> {
+                try {
+                    finish(orderId);
+                } finally {
+                    compensating.remove(orderId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compensating.remove(orderId);
+            log.warn("Could not queue compensations for order {}, they resume on the next sweep", orderId);
+        }
+    }
+
+    private void runCompensation(Long orderId, SagaStep step) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                CheckoutSagaStep row = stepRepository.lock(orderId, step).orElse(null);
+                if (row == null || FINISHED.contains(row.getStatus()) || row.getAttempts() >= maxAttempts) {
+                    return;
+                }
+                SagaStepStatus outcome = switch (step) {
+                    case RELEASE_INVENTORY -> releaseInventory(orderId);
+                    case REFUND_PAYMENT -> refund(orderId);
+                    case CANCEL_ORDER -> cancel(orderId);
+                    default -> throw new IllegalArgumentException(step + " is not a compensation");
+                };
+                row.setStatus(outcome);
+                row.setAttempts(row.getAttempts() + 1);
+                row.setLastError(null);
+                row.setUpdatedAt(clock.instant());
+                count(step, outcome.name().toLowerCase());
+            });
+        } catch (RuntimeException e) {
+            log.warn("Compensation {} for order {} failed: {}", step, orderId, e.getMessage());
+            count(step, "failed");
+            recordFailure(orderId, step, e);
+        }
+    }
+
+    private SagaStepStatus releaseInventory(Long orderId) {
+        boolean committed = stepRepository.findByOrderId(orderId).stream()
+                .anyMatch(s -> s.getStep() == SagaStep.COMMIT_INVENTORY && s.getStatus() == SagaStepStatus.DONE);
+        if (!committed) {
+            // Nothing was committed. A refused commit already hands back its leftovers through the outbox.
+            return SagaStepStatus.SKIPPED;
+        }
+        List<UpdateInventoryRequest> lines = orderReservationRepository.findByOrderId(orderId).stream()
+                .map(r -> new UpdateInventoryRequest(r.getProductId(), r.getQuantity()))
+                .toList();
+        outboxService.enqueueInventoryRelease(orderId, "saga:" + orderId, lines);
+        return SagaStepStatus.DONE;
+    }
+
+    private SagaStepStatus refund(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new NoSuchElementException("Order not found"));
+        if (orderRepository.updatePaymentStatus(orderId, PaymentStatus.CAPTURED, PaymentStatus.REFUND_INITIATED) == 0) {
+            return SagaStepStatus.SKIPPED;
+        }
+        paymentService.getObject().initiateRefund(orderId, order.getTotalAmount() * 100);
+        orderResponseCache.invalidateAfterCommit(orderId);
+        return SagaStepStatus.DONE;
+    }
+
+    private SagaStepStatus cancel(Long orderId) {
+        int cancelled = orderRepository.cancelOrder(orderId, OrderStatus.CANCELLED, clock.instant());
+        orderReservationRepository.updateStatusByOrderId(orderId,
+                List.of(ReservationStatus.PENDING, ReservationStatus.CONFIRMED), ReservationStatus.CANCELLED);
+        orderResponseCache.invalidateAfterCommit(orderId);
+        return cancelled > 0 ? SagaStepStatus.DONE : SagaStepStatus.SKIPPED;
+    }
+
+    private void finish(Long orderId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<CheckoutSagaStep> unfinished = stepRepository.findByOrderId(orderId).stream()
+                        .filter(s -> COMPENSATIONS.contains(s.getStep()) && !FINISHED.contains(s.getStatus()))
+                        .toList();
+                if (unfinished.isEmpty()) {
+                    sagaRepository.updateStatus(List.of(orderId), SagaStatus.COMPENSATING, SagaStatus.COMPENSATED,
+                            clock.instant());
+                } else if (unfinished.stream().allMatch(s -> s.getAttempts() >= maxAttempts)
+                        && sagaRepository.updateStatus(List.of(orderId), SagaStatus.COMPENSATING,
+                                SagaStatus.FAILED_COMPENSATION, clock.instant()) > 0) {
+                    // Taken out of the resume sweep, which would otherwise pick it up on every pass
+                    meterRegistry.counter("checkout.saga.failed-compensations").increment();
+                    log.error("Compensating order {} failed after {} attempts, {} need manual handling", orderId,
+                            maxAttempts, unfinished.stream().map(CheckoutSagaStep::getStep).toList());
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not close the saga of order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    private void recordFailure(Long orderId, SagaStep step, RuntimeException cause) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    stepRepository.lock(orderId, step).ifPresent(row -> fail(row, cause.getMessage())));
+        } catch (RuntimeException e) {
+            log.error("Could not record failure of {} for order {}", step, orderId, e);
+        }
+    }
+
+    private void fail(CheckoutSagaStep step, String error) {
+        // A duplicate run that lost the race must not undo the one that finished
+        if (FINISHED.contains(step.getStatus())) return;
+        step.setStatus(SagaStepStatus.FAILED);
+        step.setAttempts(step.getAttempts() + 1);
+        step.setLastError(truncate(error));
+        step.setUpdatedAt(clock.instant());
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Checkout saga executor is shut down, the step resumes on the next start");
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static CheckoutSaga newSaga(Long orderId, Instant now) {
+        CheckoutSaga saga = new CheckoutSaga();
+        saga.setOrderId(orderId);
+        saga.setStatus(SagaStatus.RUNNING);
+        saga.setCreatedAt(now);
+        saga.setUpdatedAt(now);
+        return saga;
+    }
+
+    private static CheckoutSagaStep newStep(Long orderId, SagaStep step, SagaStepStatus status, Instant now) {
+        CheckoutSagaStep row = new CheckoutSagaStep();
+        row.setOrderId(orderId);
+        row.setStep(step);
+        row.setStatus(status);
+        row.setUpdatedAt(now);
+        return row;
+    }
+
+    private void count(SagaStep step, String result) {
+        meterRegistry.counter("checkout.saga.steps", "step", step.name(), "result", result).increment();
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) return error;
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,46 @@
+-- Moves an existing order-service MySQL schema from AUTO_INCREMENT ids to the pooled id_generator table.
+--
+-- Run once, with every order-service instance stopped, before starting the build that uses pooled ids.
+-- Old and new builds must not write at the same time: an instance still on AUTO_INCREMENT can hand out an
+-- id inside a range a new instance has already reserved.
+--
+-- Each row holds the first id of the next free range (pooled-lo), so it starts one past the table's
+-- highest id. Re-running is safe; a row only ever moves forward.
+--
+-- AUTO_INCREMENT stays on the id columns. MySQL ignores it when the id is supplied, and keeping it means
+-- the previous build can still be rolled back to after this script has run (re-run the script before
+-- rolling forward again).
+
+create table if not exists id_generator (
+    sequence_name varchar(255) not null,
+    next_val bigint,
+    primary key (sequence_name)
+) engine = InnoDB;
+
+insert into id_generator (sequence_name, next_val)
+select 'orders', coalesce(max(id), 0) + 1 from orders
+on duplicate key update next_val = greatest(next_val, values(next_val));
+
+insert into id_generator (sequence_name, next_val)
+select 'order_item', coalesce(max(id), 0) + 1 from order_item
+on duplicate key update next_val = greatest(next_val, values(next_val));
+
+insert into id_generator (sequence_name, next_val)
+select 'order_reservation', coalesce(max(id), 0) + 1 from order_reservation
+on duplicate key update next_val = greatest(next_val, values(next_val));
+
+insert into id_generator (sequence_name, next_val)
+select 'shipping_address', coalesce(max(id), 0) + 1 from shipping_address
+on duplicate key update next_val = greatest(next_val, values(next_val));
+
+insert into id_generator (sequence_name, next_val)
+select 'payment', coalesce(max(id), 0) + 1 from payment
+on duplicate key update next_val = greatest(next_val, values(next_val));
+
+insert into id_generator (sequence_name, next_val)
+select 'cart', coalesce(max(id), 0) + 1 from cart
+on duplicate key update next_val = greatest(next_val, values(next_val));
+
+insert into id_generator (sequence_name, next_val)
+select 'cart_item', coalesce(max(id), 0) + 1 from cart_item
+on duplicate key update next_val = greatest(next_val, values(next_val));
@@ -0,0 +1,118 @@
+package com.impetus.order_service.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderNumberGeneratorTest {
+
+    private static final long NOW = OrderNumberGenerator.EPOCH + 1_000_000L;
+
+    @Test
+    void nextId_shouldPackTimestampNodeAndSequence() {
+        OrderNumberGenerator generator = new OrderNumberGenerator(5, OrderNumberGenerator.Encoding.DECIMAL, "ORD-", () -> NOW);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertEquals(1_000_000L, first >>> 22);
+        assertEquals(5, (first >>> 12) & 0x3ff);
+        assertEquals(0, first & 0xfff);
+        assertEquals(first + 1, second);
+    }
+
+    @Test
+    void nextId_shouldBorrowNextMillisecond_whenSequenceRunsOut() {
+        OrderNumberGenerator generator = new OrderNumberGenerator(0, OrderNumberGenerator.Encoding.DECIMAL, "", () -> NOW);
+
+        long last = 0;
+        for (int i = 0; i <= OrderNumberGenerator.SEQUENCE_MASK + 1; i++) {
+            last = generator.nextId();
+        }
+
+        assertEquals(1_000_001L, last >>> 22);
+        assertEquals(0, last & 0xfff);
+    }
+
+    @Test
+    void nextId_shouldStayMonotonic_whenClockStepsBackwards() {
+        AtomicLong clock = new AtomicLong(NOW);
+        OrderNumberGenerator generator = new OrderNumberGenerator(0, OrderNumberGenerator.Encoding.DECIMAL, "", clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-5_000);
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+    }
+
+    @Test
+    void next_shouldEncodeWithPrefixInConfiguredAlphabet() {
+        OrderNumberGenerator decimal = new OrderNumberGenerator(3, OrderNumberGenerator.Encoding.DECIMAL, "ORD-", () -> NOW);
+        OrderNumberGenerator crockford = new OrderNumberGenerator(3, OrderNumberGenerator.Encoding.CROCKFORD32, "ORD-", () -> NOW);
+
+        long id = decimal.nextId();
+        assertEquals("ORD-" + id, decimal.encode(id));
+        assertEquals("ORD-" + Long.MAX_VALUE, decimal.encode(Long.MAX_VALUE));
+        assertEquals("ORD-0", crockford.encode(0));
+        assertEquals("ORD-10", crockford.encode(32));
+        assertTrue(crockford.next().matches("ORD-[0-9A-HJKMNP-TV-Z]+"));
+        assertEquals("ORD-Z", new OrderNumberGenerator(0, OrderNumberGenerator.Encoding.BASE36, "ORD-", () -> NOW).encode(35));
+    }
+
+    @Test
+    void constructor_shouldRejectNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OrderNumberGenerator(1024, OrderNumberGenerator.Encoding.DECIMAL, "ORD-"));
+    }
+
+    @Test
+    void next_shouldNeverCollide_underConcurrentCheckouts() throws Exception {
+        int threads = 16;
+        int perThread = 50_000;
+        // Two nodes sharing the clock, as two order-service instances would
+        OrderNumberGenerator nodeA = new OrderNumberGenerator(1, OrderNumberGenerator.Encoding.CROCKFORD32, "ORD-");
+        OrderNumberGenerator nodeB = new OrderNumberGenerator(2, OrderNumberGenerator.Encoding.CROCKFORD32, "ORD-");
+        Set<String> seen = ConcurrentHashMap.newKeySet(threads * perThread);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                OrderNumberGenerator generator = t % 2 == 0 ? nodeA : nodeB;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    boolean increasing = true;
+                    long previous = -1;
+                    for (int i = 0; i < perThread; i++) {
+                        long id = generator.nextId();
+                        increasing &= id > previous;
+                        previous = id;
+                        seen.add(generator.encode(id));
+                    }
+                    return increasing;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(60, TimeUnit.SECONDS), "ids must increase per thread");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, seen.size());
+    }
+}
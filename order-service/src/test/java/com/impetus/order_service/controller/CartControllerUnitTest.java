@@ -2,6 +2,7 @@ package com.impetus.order_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.impetus.order_service.dto.AddCartItemRequest;
+import com.impetus.order_service.dto.CartQuoteResponse;
 import com.impetus.order_service.dto.CartResponse;
 import com.impetus.order_service.dto.UpdateCartItemRequest;
 import com.impetus.order_service.service.CartService;
@@ -104,6 +105,27 @@ class CartControllerUnitTest {
         verify(cartService, times(1)).getCurrentCart(eq(userId));
     }
 
+    // --------------------------
+    // Happy-path: GET /cart/quote
+    // --------------------------
+    @Test
+    void quote_shouldReturn200_andInvokeService() throws Exception {
+        CartQuoteResponse response = new CartQuoteResponse();
+        response.setTotalAmount(462);
+        when(cartService.quote(eq(userId))).thenReturn(response);
+
+        mockMvc.perform(
+                        get("/cart/quote")
+                                .header(USER_ID_HEADER, String.valueOf(userId))
+                                .header(ROLES_HEADER, roles)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Cart quoted successfully"))
+                .andExpect(jsonPath("$.data.totalAmount").value(462));
+
+        verify(cartService, times(1)).quote(eq(userId));
+    }
+
     // --------------------------
     // Happy-path: POST /cart/item/{itemId}
     // --------------------------
@@ -5,6 +5,7 @@ import com.impetus.order_service.dto.OrderRequest;
 import com.impetus.order_service.dto.OrderResponse;
 import com.impetus.order_service.enums.PaymentMode;
 import com.impetus.order_service.service.OrderService;
+import com.impetus.order_service.service.export.OrderExportService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -42,6 +43,9 @@ class OrderControllerUnitTest {
     @MockBean
     private OrderService orderService;
 
+    @MockBean
+    private OrderExportService orderExportService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -0,0 +1,177 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.exception.ConcurrencyLimitExceededException;
+import com.impetus.order_service.exception.NotFoundException;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initial, int min, int max) {
+        return new AdaptiveConcurrencyLimiter("product-service", initial, min, max, 2.0, 0.5, meterRegistry, nanos::get);
+    }
+
+    // A call that takes rttMs on the fake clock
+    private Supplier<String> call(long rttMs) {
+        return () -> {
+            nanos.addAndGet(rttMs * MS);
+            return "ok";
+        };
+    }
+
+    // Holds `depth` calls in flight at once by nesting them; all of them see the innermost one's rttMs
+    private void concurrently(AdaptiveConcurrencyLimiter limiter, int depth, long rttMs) {
+        limiter.execute(() -> {
+            if (depth > 1) {
+                concurrently(limiter, depth - 1, rttMs);
+                return "ok";
+            }
+            return call(rttMs).get();
+        });
+    }
+
+    private double meter(String name) {
+        return meterRegistry.get(name).tag("service", "product-service").meter().measure().iterator().next().getValue();
+    }
+
+    @Test
+    void execute_shouldShedCallsOverTheLimit_withoutMakingThem() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 10);
+        boolean[] called = new boolean[1];
+
+        ConcurrencyLimitExceededException ex = assertThrows(ConcurrencyLimitExceededException.class,
+                () -> limiter.execute(() -> limiter.execute(() -> limiter.execute(() -> called[0] = true))));
+
+        assertFalse(called[0]);
+        assertInstanceOf(ServiceUnavailableException.class, ex);
+        assertEquals(1, meter("downstream.concurrency.rejections"));
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void execute_shouldGrowTheLimit_whileItIsUsedAndTheServiceKeepsUp() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 10);
+
+        concurrently(limiter, 4, 10);
+
+        assertTrue(limiter.limit() > 4);
+        assertEquals(limiter.limit(), meter("downstream.concurrency.limit"));
+        assertEquals(0, meter("downstream.concurrency.in-flight"));
+    }
+
+    @Test
+    void execute_shouldNotGrowTheLimit_whenMostOfItIsIdle() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 1, 20);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.execute(call(10));
+        }
+
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    void execute_shouldBackOffOncePerRoundTrip_whenRoundTripsStaySlowUnderLoad() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 4);
+        concurrently(limiter, 4, 10);
+
+        // The average only crosses 2x the no-load RTT late in the first slow round, when few calls are left in flight
+        concurrently(limiter, 4, 50);
+        assertEquals(4, limiter.limit());
+
+        // Then the first call to finish cuts it, and the ones finishing with it don't cut it again
+        concurrently(limiter, 4, 50);
+        assertEquals(2, limiter.limit());
+        assertEquals(0, meter("downstream.concurrency.drops"));
+    }
+
+    @Test
+    void execute_shouldNotBackOff_whenSlowCallsAreFarBelowTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1, 10);
+        for (int i = 0; i < 3; i++) {
+            limiter.execute(call(10));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            limiter.execute(call(50));
+        }
+
+        assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    void execute_shouldNotBackOff_onJitterAfterAFastOutlier() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 4);
+        concurrently(limiter, 4, 10);
+        limiter.execute(call(1));
+
+        // 15ms is 15x the fastest call, but well within 2x of the typical one
+        for (int i = 0; i < 3; i++) {
+            concurrently(limiter, 4, 15);
+        }
+
+        assertEquals(4, limiter.limit());
+    }
+
+    @Test
+    void execute_shouldBackOff_whenTheServiceIsUnavailable() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1, 10);
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> limiter.execute(() -> { throw new ServiceUnavailableException("product-service down"); }));
+
+        assertEquals(4, limiter.limit());
+        assertEquals(1, meter("downstream.concurrency.drops"));
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void execute_shouldLeaveTheLimitAlone_onClientErrors() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1, 10);
+
+        assertThrows(NotFoundException.class,
+                () -> limiter.execute(() -> { throw new NotFoundException("no such product"); }));
+
+        assertEquals(8, limiter.limit());
+        assertEquals(0, meter("downstream.concurrency.drops"));
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void execute_shouldKeepTheLimitWithinItsBounds() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 2, 3);
+
+        concurrently(limiter, 2, 10);
+        concurrently(limiter, 3, 10);
+        assertEquals(3, limiter.limit());
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(ServiceUnavailableException.class,
+                    () -> limiter.execute(() -> { throw new ServiceUnavailableException("product-service down"); }));
+        }
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    void constructor_shouldRejectInconsistentLimits() {
+        assertThrows(IllegalArgumentException.class, () -> limiter(1, 2, 10));
+        assertThrows(IllegalArgumentException.class, () -> limiter(5, 2, 4));
+    }
+}
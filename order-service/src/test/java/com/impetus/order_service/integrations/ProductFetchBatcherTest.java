@@ -0,0 +1,194 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import com.impetus.order_service.exception.BadRequestException;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductFetchBatcherTest {
+
+    @Mock
+    private ProductClient productClient;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    private ProductFetchBatcher batcher(Duration window, int maxSize) {
+        return new ProductFetchBatcher(productClient, window, maxSize, meterRegistry);
+    }
+
+    private static ProductResponseDto product(String id) {
+        ProductResponseDto dto = new ProductResponseDto();
+        dto.setId(id);
+        dto.setPrice(100);
+        return dto;
+    }
+
+    private static List<String> ids(List<ProductResponseDto> products) {
+        return products.stream().map(ProductResponseDto::getId).toList();
+    }
+
+    // Lets the callers through together, so they land in the same window
+    private Future<List<ProductResponseDto>> submit(ProductFetchBatcher batcher, CyclicBarrier start, List<String> ids) {
+        return callers.submit(() -> {
+            start.await(5, TimeUnit.SECONDS);
+            return batcher.fetch(ids);
+        });
+    }
+
+    @Test
+    void fetch_shouldCombineConcurrentCallers_andSplitTheResultsBack() throws Exception {
+        ProductFetchBatcher batcher = batcher(Duration.ofMillis(300), 200);
+        when(productClient.fetchProducts(anyList())).thenAnswer(inv -> inv.<List<String>>getArgument(0).stream()
+                .filter(id -> !id.equals("P404"))
+                .map(ProductFetchBatcherTest::product)
+                .toList());
+        CyclicBarrier start = new CyclicBarrier(3);
+
+        Future<List<ProductResponseDto>> a = submit(batcher, start, List.of("P1", "P2"));
+        Future<List<ProductResponseDto>> b = submit(batcher, start, List.of("P2", "P3"));
+        Future<List<ProductResponseDto>> c = submit(batcher, start, List.of("P404", "P4"));
+
+        assertEquals(List.of("P1", "P2"), ids(a.get(5, TimeUnit.SECONDS)));
+        assertEquals(List.of("P2", "P3"), ids(b.get(5, TimeUnit.SECONDS)));
+        assertEquals(List.of("P4"), ids(c.get(5, TimeUnit.SECONDS)));
+        verify(productClient, times(1)).fetchProducts(argThat(ids -> ids.size() == 5
+                && ids.containsAll(List.of("P1", "P2", "P3", "P4", "P404"))));
+        assertEquals(1, meterRegistry.counter("product.fetch.batches", "trigger", "window").count());
+        assertEquals(3, meterRegistry.get("product.fetch.batch.requests").summary().totalAmount());
+        assertEquals(3, meterRegistry.get("product.fetch.batch.wait").timer().count());
+    }
+
+    @Test
+    void fetch_shouldSendStraightAway_onceTheBatchIsFull() throws Exception {
+        ProductFetchBatcher batcher = batcher(Duration.ofSeconds(30), 3);
+        when(productClient.fetchProducts(anyList())).thenAnswer(inv -> inv.<List<String>>getArgument(0).stream()
+                .map(ProductFetchBatcherTest::product)
+                .toList());
+
+        Future<List<ProductResponseDto>> first = callers.submit(() -> batcher.fetch(List.of("P1", "P2")));
+        // Whichever caller comes second fills the batch; neither should wait out the 30s window
+        Thread.sleep(50);
+        List<ProductResponseDto> second = batcher.fetch(List.of("P3"));
+
+        assertEquals(List.of("P1", "P2"), ids(first.get(5, TimeUnit.SECONDS)));
+        assertEquals(List.of("P3"), ids(second));
+        verify(productClient, times(1)).fetchProducts(anyList());
+        assertEquals(1, meterRegistry.counter("product.fetch.batches", "trigger", "size").count());
+        assertEquals(0, meterRegistry.counter("product.fetch.batches", "trigger", "window").count());
+    }
+
+    @Test
+    void fetch_shouldCloseTheBatch_ratherThanPushItPastMaxSize() throws Exception {
+        ProductFetchBatcher batcher = batcher(Duration.ofMillis(300), 3);
+        when(productClient.fetchProducts(anyList())).thenAnswer(inv -> inv.<List<String>>getArgument(0).stream()
+                .map(ProductFetchBatcherTest::product)
+                .toList());
+
+        Future<List<ProductResponseDto>> first = callers.submit(() -> batcher.fetch(List.of("P1", "P2")));
+        Thread.sleep(50);
+        List<ProductResponseDto> second = batcher.fetch(List.of("P2", "P3", "P4"));
+
+        assertEquals(List.of("P1", "P2"), ids(first.get(5, TimeUnit.SECONDS)));
+        assertEquals(List.of("P2", "P3", "P4"), ids(second));
+        verify(productClient).fetchProducts(List.of("P1", "P2"));
+        verify(productClient).fetchProducts(List.of("P2", "P3", "P4"));
+        assertEquals(2, meterRegistry.counter("product.fetch.batches", "trigger", "size").count());
+        assertEquals(3, meterRegistry.get("product.fetch.batch.ids").summary().max());
+    }
+
+    @Test
+    void fetch_shouldSendOversizedLookupsInSlices_withoutWaiting() {
+        ProductFetchBatcher batcher = batcher(Duration.ofSeconds(30), 2);
+        when(productClient.fetchProducts(anyList())).thenAnswer(inv -> inv.<List<String>>getArgument(0).stream()
+                .map(ProductFetchBatcherTest::product)
+                .toList());
+
+        List<ProductResponseDto> products = batcher.fetch(List.of("P1", "P2", "P3", "P4", "P5"));
+
+        assertEquals(List.of("P1", "P2", "P3", "P4", "P5"), ids(products));
+        verify(productClient).fetchProducts(List.of("P1", "P2"));
+        verify(productClient).fetchProducts(List.of("P3", "P4"));
+        verify(productClient).fetchProducts(List.of("P5"));
+    }
+
+    @Test
+    void fetch_shouldFailOnlyTheCallerWithTheBadId_whenTheBatchIsRejected() throws Exception {
+        ProductFetchBatcher batcher = batcher(Duration.ofMillis(300), 200);
+        when(productClient.fetchProducts(anyList())).thenAnswer(inv -> {
+            List<String> ids = inv.getArgument(0);
+            if (ids.contains("bad id")) {
+                throw new BadRequestException("Invalid product id");
+            }
+            return ids.stream().map(ProductFetchBatcherTest::product).toList();
+        });
+        CyclicBarrier start = new CyclicBarrier(3);
+
+        Future<List<ProductResponseDto>> a = submit(batcher, start, List.of("P1", "P2"));
+        Future<List<ProductResponseDto>> b = submit(batcher, start, List.of("bad id"));
+        Future<List<ProductResponseDto>> c = submit(batcher, start, List.of("P3"));
+
+        assertEquals(List.of("P1", "P2"), ids(a.get(5, TimeUnit.SECONDS)));
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BadRequestException.class, failed.getCause());
+        assertEquals(List.of("P3"), ids(c.get(5, TimeUnit.SECONDS)));
+        // The combined call, then one per caller
+        verify(productClient, times(4)).fetchProducts(anyList());
+        assertEquals(1, meterRegistry.counter("product.fetch.batch.splits").count());
+    }
+
+    @Test
+    void fetch_shouldFailEveryCallerInTheBatch_whenTheCallFails() throws Exception {
+        ProductFetchBatcher batcher = batcher(Duration.ofMillis(300), 200);
+        when(productClient.fetchProducts(anyList())).thenThrow(new ServiceUnavailableException("product-service down"));
+        CyclicBarrier start = new CyclicBarrier(2);
+
+        Future<List<ProductResponseDto>> a = submit(batcher, start, List.of("P1"));
+        Future<List<ProductResponseDto>> b = submit(batcher, start, List.of("P2"));
+
+        ExecutionException failedA = assertThrows(ExecutionException.class, () -> a.get(5, TimeUnit.SECONDS));
+        ExecutionException failedB = assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, failedA.getCause());
+        assertInstanceOf(ServiceUnavailableException.class, failedB.getCause());
+        verify(productClient, times(1)).fetchProducts(anyList());
+    }
+
+    @Test
+    void fetch_shouldCallStraightThrough_withoutAWindow() {
+        ProductFetchBatcher batcher = batcher(Duration.ZERO, 200);
+        when(productClient.fetchProducts(List.of("P1"))).thenReturn(List.of(product("P1")));
+
+        assertEquals(List.of("P1"), ids(batcher.fetch(List.of("P1"))));
+        assertEquals(0, meterRegistry.get("product.fetch.batch.wait").timer().count());
+    }
+}
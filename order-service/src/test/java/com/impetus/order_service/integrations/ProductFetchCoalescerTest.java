@@ -0,0 +1,139 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductFetchCoalescerTest {
+
+    @Mock
+    private ProductClient productClient;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private SimpleMeterRegistry meterRegistry;
+    private ProductSnapshotCache cache;
+    private ProductFetchCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProductSnapshotCache(Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofMinutes(10),
+                100, meterRegistry);
+        // No batching window, so every flight is its own call
+        coalescer = new ProductFetchCoalescer(new ProductFetchBatcher(productClient, Duration.ZERO, 200, meterRegistry),
+                cache, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    private static ProductResponseDto product(String id) {
+        ProductResponseDto dto = new ProductResponseDto();
+        dto.setId(id);
+        dto.setPrice(100);
+        return dto;
+    }
+
+    private static List<String> ids(List<ProductResponseDto> products) {
+        return products.stream().map(ProductResponseDto::getId).toList();
+    }
+
+    private double ids(String result) {
+        return meterRegistry.counter("product.fetch.ids", "result", result).count();
+    }
+
+    @Test
+    void fetch_shouldShareAnInFlightFetch_andOnlySendTheIdsNobodyIsFetching() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productClient.fetchProducts(List.of("P1", "P2"))).thenAnswer(inv -> {
+            started.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return List.of(product("P1"), product("P2"));
+        });
+        when(productClient.fetchProducts(List.of("P3"))).thenReturn(List.of(product("P3")));
+
+        Future<List<ProductResponseDto>> first = callers.submit(() -> coalescer.fetch(List.of("P1", "P2")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<List<ProductResponseDto>> second = callers.submit(() -> coalescer.fetch(List.of("P3", "P1")));
+        // The second caller has sent its own id and is now waiting on P1
+        verify(productClient, timeout(5000)).fetchProducts(List.of("P3"));
+        assertFalse(second.isDone());
+
+        release.countDown();
+
+        assertEquals(List.of("P1", "P2"), ids(first.get(5, TimeUnit.SECONDS)));
+        assertEquals(List.of("P3", "P1"), ids(second.get(5, TimeUnit.SECONDS)));
+        verify(productClient, times(2)).fetchProducts(anyList());
+        assertEquals(3, ids("fetched"));
+        assertEquals(1, ids("coalesced"));
+        assertEquals(0, meterRegistry.get("product.fetch.in-flight").gauge().value());
+    }
+
+    @Test
+    void fetch_shouldCacheWhatItFetched_andLeaveOutUnknownIds() {
+        when(productClient.fetchProducts(List.of("P1", "P404"))).thenReturn(List.of(product("P1")));
+
+        List<ProductResponseDto> out = coalescer.fetch(List.of("P1", "P404"));
+
+        assertEquals(List.of("P1"), ids(out));
+        assertEquals(List.of("P1"), List.copyOf(cache.lookup(List.of("P1", "P404")).found().keySet()));
+    }
+
+    @Test
+    void fetch_shouldFailEveryWaiter_andStartANewFlightNextTime() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productClient.fetchProducts(List.of("P1")))
+                .thenAnswer(inv -> {
+                    started.countDown();
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                    throw new ServiceUnavailableException("product-service down");
+                })
+                .thenReturn(List.of(product("P1")));
+
+        Future<List<ProductResponseDto>> first = callers.submit(() -> coalescer.fetch(List.of("P1")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<List<ProductResponseDto>> second = callers.submit(() -> coalescer.fetch(List.of("P1")));
+        awaitCoalesced(1);
+        release.countDown();
+
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, failed.getCause());
+        ExecutionException joined = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceUnavailableException.class, joined.getCause());
+
+        assertEquals(List.of("P1"), ids(coalescer.fetch(List.of("P1"))));
+        verify(productClient, times(2)).fetchProducts(List.of("P1"));
+    }
+
+    private void awaitCoalesced(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ids("coalesced") < count) {
+            assertTrue(System.nanoTime() < deadline, "caller never joined the flight");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.dto.ProductResponseDto;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientProductServiceUnitTest {
+
+    @Mock
+    private ProductClient productClient;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private ProductSnapshotCache cache;
+    private ResilientProductService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProductSnapshotCache(Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofMinutes(10),
+                100, meterRegistry, nanos::get);
+        service = new ResilientProductService(new ProductFetchCoalescer(
+                new ProductFetchBatcher(productClient, Duration.ZERO, 200, meterRegistry), cache, meterRegistry), cache,
+                CircuitBreakerRegistry.ofDefaults());
+    }
+
+    private ProductResponseDto product(String id, Integer price) {
+        ProductResponseDto dto = new ProductResponseDto();
+        dto.setId(id);
+        dto.setName("Prod " + id);
+        dto.setPrice(price);
+        dto.setInventoryQuantity(10);
+        return dto;
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("product.snapshot.cache.gets", "result", result).count();
+    }
+
+    @Test
+    void getProducts_shouldServeRepeatLookupsFromCache() {
+        when(productClient.fetchProducts(eq(List.of("P1", "P2"))))
+                .thenReturn(List.of(product("P1", 100), product("P2", 200)));
+
+        service.getProducts(List.of("P1", "P2"));
+        List<ProductResponseDto> second = service.getProducts(List.of("P1", "P2"));
+
+        assertEquals(2, second.size());
+        verify(productClient, times(1)).fetchProducts(anyList());
+        assertEquals(2, gets("hit"));
+        assertEquals(2, gets("miss"));
+    }
+
+    @Test
+    void getProducts_shouldOnlyFetchMissingIds_onPartialHit() {
+        when(productClient.fetchProducts(eq(List.of("P1")))).thenReturn(List.of(product("P1", 100)));
+        when(productClient.fetchProducts(eq(List.of("P2")))).thenReturn(List.of(product("P2", 200)));
+
+        service.getProducts(List.of("P1"));
+        List<ProductResponseDto> out = service.getProducts(List.of("P1", "P2"));
+
+        assertEquals(List.of("P1", "P2"), out.stream().map(ProductResponseDto::getId).toList());
+        verify(productClient).fetchProducts(eq(List.of("P2")));
+    }
+
+    @Test
+    void getProducts_shouldNotLetCallersChangeTheCachedSnapshot() {
+        ProductResponseDto fetched = product("P1", 100);
+        when(productClient.fetchProducts(eq(List.of("P1")))).thenReturn(List.of(fetched));
+
+        service.getProducts(List.of("P1")).get(0).setInventoryQuantity(0);
+        fetched.setPrice(1);
+        ProductResponseDto cached = service.getProducts(List.of("P1")).get(0);
+
+        assertEquals(10, cached.getInventoryQuantity());
+        assertEquals(100, cached.getPrice());
+        assertNotSame(cached, service.getProducts(List.of("P1")).get(0));
+    }
+
+    @Test
+    void getProducts_shouldRefetch_afterTtl() {
+        when(productClient.fetchProducts(eq(List.of("P1"))))
+                .thenReturn(List.of(product("P1", 100)))
+                .thenReturn(List.of(product("P1", 150)));
+
+        service.getProducts(List.of("P1"));
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        List<ProductResponseDto> out = service.getProducts(List.of("P1"));
+
+        assertEquals(150, out.get(0).getPrice());
+        verify(productClient, times(2)).fetchProducts(eq(List.of("P1")));
+    }
+
+    @Test
+    void getProducts_shouldRefreshInBackground_whenEntryIsCloseToExpiry() {
+        when(productClient.fetchProducts(eq(List.of("P1"))))
+                .thenReturn(List.of(product("P1", 100)))
+                .thenReturn(List.of(product("P1", 120)));
+
+        service.getProducts(List.of("P1"));
+        nanos.addAndGet(Duration.ofSeconds(26).toNanos());
+
+        // Served from cache straight away, refresh happens off the request thread
+        assertEquals(100, service.getProducts(List.of("P1")).get(0).getPrice());
+        verify(productClient, timeout(2000).times(2)).fetchProducts(eq(List.of("P1")));
+    }
+
+    @Test
+    void productFallback_shouldServeStaleEntries_insideStalenessWindow() {
+        when(productClient.fetchProducts(eq(List.of("P1", "P2"))))
+                .thenReturn(List.of(product("P1", 100), product("P2", 200)));
+        service.getProducts(List.of("P1", "P2"));
+
+        nanos.addAndGet(Duration.ofMinutes(5).toNanos());
+        List<ProductResponseDto> stale = ReflectionTestUtils.invokeMethod(service, "productFallback",
+                List.of("P1", "P2", "P3"), new RuntimeException("circuit open"));
+        assertEquals(2, stale.size());
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        List<ProductResponseDto> expired = ReflectionTestUtils.invokeMethod(service, "productFallback",
+                List.of("P1", "P2"), new RuntimeException("circuit open"));
+        assertTrue(expired.isEmpty());
+    }
+}
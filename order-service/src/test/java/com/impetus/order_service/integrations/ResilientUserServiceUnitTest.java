@@ -0,0 +1,130 @@
+package com.impetus.order_service.integrations;
+
+import com.impetus.order_service.dto.AddressResponse;
+import com.impetus.order_service.exception.NotFoundException;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientUserServiceUnitTest {
+
+    @Mock
+    private UserClient userClient;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private AddressSnapshotCache cache;
+    private ResilientUserService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new AddressSnapshotCache(Duration.ofMinutes(10), Duration.ofHours(24), 100, meterRegistry, nanos::get);
+        TimeLimiterRegistry timeLimiters = TimeLimiterRegistry.of(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofMillis(200))
+                .build());
+        service = new ResilientUserService(userClient, cache, timeLimiters,
+                new AdaptiveConcurrencyLimiter("user-service", 20, 2, 200, 2.0, 0.9, meterRegistry));
+    }
+
+    private AddressResponse address(String city) {
+        AddressResponse a = new AddressResponse();
+        a.setContactName("John Doe");
+        a.setCity(city);
+        return a;
+    }
+
+    private AddressResponse fallback(Long userId, Long addressId, Throwable ex) {
+        return ReflectionTestUtils.invokeMethod(service, "addressFallback", userId, addressId, ex);
+    }
+
+    @Test
+    void fetchUserAddress_shouldServeRepeatCheckoutsFromCache() {
+        when(userClient.address(1L, 10L)).thenReturn(Mono.just(address("Pune")));
+
+        service.fetchUserAddress(1L, 10L);
+        AddressResponse second = service.fetchUserAddress(1L, 10L);
+
+        assertEquals("Pune", second.getCity());
+        verify(userClient, times(1)).address(1L, 10L);
+        assertEquals(1, meterRegistry.counter("user.address.cache.gets", "result", "hit").count());
+    }
+
+    @Test
+    void fetchUserAddress_shouldKeyTheCacheByUser() {
+        when(userClient.address(1L, 10L)).thenReturn(Mono.just(address("Pune")));
+        when(userClient.address(2L, 10L)).thenReturn(Mono.error(new NotFoundException("not yours")));
+
+        service.fetchUserAddress(1L, 10L);
+
+        assertThrows(NotFoundException.class, () -> service.fetchUserAddress(2L, 10L));
+    }
+
+    @Test
+    void fetchUserAddress_shouldRefetch_afterTtl() {
+        when(userClient.address(1L, 10L))
+                .thenReturn(Mono.just(address("Pune")))
+                .thenReturn(Mono.just(address("Mumbai")));
+
+        service.fetchUserAddress(1L, 10L);
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        assertEquals("Mumbai", service.fetchUserAddress(1L, 10L).getCity());
+    }
+
+    @Test
+    void fetchUserAddress_shouldGiveUpAndCancel_whenUserServiceIsTooSlow() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(userClient.address(1L, 10L)).thenReturn(Mono.<AddressResponse>never().doOnCancel(() -> cancelled.set(true)));
+
+        ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class,
+                () -> service.fetchUserAddress(1L, 10L));
+
+        assertEquals("User service timed out. Please try again later.", ex.getMessage());
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void addressFallback_shouldServeStaleAddress_insideStalenessWindow() {
+        when(userClient.address(1L, 10L)).thenReturn(Mono.just(address("Pune")));
+        service.fetchUserAddress(1L, 10L);
+        nanos.addAndGet(Duration.ofHours(1).toNanos());
+
+        AddressResponse stale = fallback(1L, 10L, new ServiceUnavailableException("down"));
+
+        assertEquals("Pune", stale.getCity());
+        assertEquals(1, meterRegistry.counter("user.address.cache.gets", "result", "stale").count());
+    }
+
+    @Test
+    void addressFallback_shouldFail_whenNothingIsCached() {
+        RuntimeException open = new RuntimeException("circuit open");
+
+        assertThrows(ServiceUnavailableException.class, () -> fallback(1L, 10L, open));
+    }
+
+    @Test
+    void addressFallback_shouldDropTheCachedAddress_whenUserServiceSaysItIsGone() {
+        when(userClient.address(1L, 10L)).thenReturn(Mono.just(address("Pune")));
+        service.fetchUserAddress(1L, 10L);
+
+        assertThrows(NotFoundException.class, () -> fallback(1L, 10L, new NotFoundException("deleted")));
+        assertNull(cache.getStale(1L, 10L));
+    }
+}
@@ -0,0 +1,110 @@
+package com.impetus.order_service.mapper;
+
+import com.impetus.order_service.dto.OrderItemResponse;
+import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.ShippingAddress;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderMapperTest {
+
+    private final OrderMapper mapper = new OrderMapper();
+
+    private Order order() {
+        Order order = new Order();
+        order.setId(10L);
+        order.setUserId(101L);
+        order.setOrderNumber("ORD-1");
+        order.setStatus(OrderStatus.CONFIRMED);
+        order.setPaymentStatus(PaymentStatus.CAPTURED);
+        order.setPaymentMode(PaymentMode.UPI);
+        order.setTotalAmount(521);
+        order.setPlacedAt(Instant.parse("2025-01-01T10:00:00Z"));
+
+        ShippingAddress address = new ShippingAddress();
+        address.setId(5L);
+        address.setUserId(101L);
+        address.setContactName("A");
+        address.setPhone("9876543210");
+        address.setAddressLabel("HOME");
+        address.setAddressLine1("Line 1");
+        address.setAddressLine2("Line 2");
+        address.setLocality("Vijay Nagar");
+        address.setCity("Indore");
+        address.setState("MP");
+        address.setPincode("452001");
+        address.setOrder(order);
+        order.setShippingAddress(address);
+
+        OrderItem item = new OrderItem();
+        item.setId(7L);
+        item.setOrder(order);
+        item.setProductId("P1");
+        item.setProductSku("SKU-1");
+        item.setProductName("Prod 1");
+        item.setUnitPrice(100);
+        item.setQuantity(2);
+        item.setTotalPrice(200);
+        order.getItems().add(item);
+        return order;
+    }
+
+    @Test
+    void toResponse_shouldCopyEveryField() {
+        OrderResponse r = mapper.toResponse(order());
+
+        assertEquals(10L, r.getId());
+        assertEquals(101L, r.getUserId());
+        assertEquals("ORD-1", r.getOrderNumber());
+        assertEquals(OrderStatus.CONFIRMED, r.getStatus());
+        assertEquals(PaymentStatus.CAPTURED, r.getPaymentStatus());
+        assertEquals(PaymentMode.UPI, r.getPaymentMode());
+        assertEquals(521, r.getTotalAmount());
+        assertEquals(Instant.parse("2025-01-01T10:00:00Z"), r.getPlacedAt());
+
+        assertEquals("Vijay Nagar", r.getShippingAddress().getLocality());
+        assertEquals("452001", r.getShippingAddress().getPincode());
+
+        OrderItemResponse item = r.getItems().get(0);
+        assertEquals(7L, item.getId());
+        assertEquals("SKU-1", item.getProductSku());
+        assertEquals(200, item.getTotalPrice());
+    }
+
+    @Test
+    void toResponse_shouldHandleOrderWithoutAddressOrItems() {
+        Order order = new Order();
+        order.setId(1L);
+
+        OrderResponse r = mapper.toResponse(order);
+
+        assertNull(r.getShippingAddress());
+        assertTrue(r.getItems().isEmpty());
+    }
+
+    // Fails when a field is added to a response without a matching line in OrderMapper
+    @Test
+    void toResponse_shouldPopulateEveryResponseField() throws Exception {
+        OrderResponse r = mapper.toResponse(order());
+
+        assertAllFieldsSet(r);
+        assertAllFieldsSet(r.getShippingAddress());
+        assertAllFieldsSet(r.getItems().get(0));
+    }
+
+    private static void assertAllFieldsSet(Object response) throws IllegalAccessException {
+        for (Field field : response.getClass().getDeclaredFields()) {
+            field.setAccessible(true);
+            assertNotNull(field.get(response), response.getClass().getSimpleName() + "." + field.getName());
+        }
+    }
+}
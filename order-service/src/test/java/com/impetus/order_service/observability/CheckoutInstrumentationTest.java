@@ -0,0 +1,100 @@
+package com.impetus.order_service.observability;
+
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutInstrumentationTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ObservationRegistry observationRegistry;
+    private CheckoutInstrumentation instrumentation;
+    // Observation name + tag value -> its parent's contextual name
+    private final Map<String, String> parents = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig()
+                .observationHandler(new DefaultMeterObservationHandler(meterRegistry))
+                .observationHandler(new ObservationHandler<>() {
+                    @Override
+                    public void onStart(Observation.Context context) {
+                        if (context.getParentObservation() != null) {
+                            parents.put(context.getContextualName(),
+                                    context.getParentObservation().getContextView().getContextualName());
+                        }
+                    }
+
+                    @Override
+                    public boolean supportsContext(Observation.Context context) {
+                        return true;
+                    }
+                });
+        instrumentation = new CheckoutInstrumentation(observationRegistry, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void phase_shouldTagOutcome_andRethrow() {
+        assertEquals("ok", instrumentation.phase("pricing", () -> "ok"));
+        assertThrows(IllegalStateException.class, () -> instrumentation.phase("pricing", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, meterRegistry.get("checkout.phase").tags("phase", "pricing", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("checkout.phase").tags("phase", "pricing", "outcome", "failure").timer().count());
+
+        CheckoutInstrumentation.Summary summary = instrumentation.summaries().get(0);
+        assertEquals("pricing", summary.name());
+        assertEquals(2, summary.count());
+        assertEquals(1, summary.failures());
+    }
+
+    @Test
+    void dependency_shouldNestUnderGivenParent_whenRunOnAnotherThread() {
+        instrumentation.phase("lookups", () -> {
+            Observation parent = instrumentation.current();
+            return CompletableFuture.supplyAsync(() ->
+                    instrumentation.dependency("user-service.address", parent, () -> "address")).join();
+        });
+
+        assertEquals("checkout.phase lookups", parents.get("checkout.dependency user-service.address"));
+    }
+
+    @Test
+    void summaries_shouldListSlowestFirst() {
+        instrumentation.phase("cart-load", () -> "fast");
+        instrumentation.phase("order-save", () -> {
+            sleep(30);
+            return "slow";
+        });
+
+        List<CheckoutInstrumentation.Summary> summaries = instrumentation.summaries();
+
+        assertEquals(List.of("order-save", "cart-load"),
+                summaries.stream().map(CheckoutInstrumentation.Summary::name).toList());
+        assertTrue(summaries.get(0).p99Ms() >= 25, "p99 was " + summaries.get(0).p99Ms());
+        assertTrue(summaries.get(0).maxMs() >= 25, "max was " + summaries.get(0).maxMs());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.config.JpaBatchingConfig;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.OrderReservation;
+import com.impetus.order_service.entity.Payment;
+import com.impetus.order_service.entity.ShippingAddress;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards batched inserts for the order aggregate: once the id ranges are reserved, saving an order costs one
+ * statement per table whatever its number of lines.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(JpaBatchingConfig.class)
+class OrderBatchInsertTest {
+
+    // orders, order_item, order_reservation, shipping_address, payment
+    private static final long MAX_STATEMENTS_PER_ORDER = 5;
+
+    @Autowired private OrderRepository orderRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private final AtomicInteger orderNumbers = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Order newOrder(int lines) {
+        Order order = new Order();
+        order.setOrderNumber("ORD-" + orderNumbers.incrementAndGet());
+        order.setUserId(7L);
+        order.setStatus(OrderStatus.PENDING_PAYMENT);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentMode(PaymentMode.UPI);
+        order.setSubtotalAmount(100 * lines);
+        order.setTaxAmount(0);
+        order.setShippingFee(0);
+        order.setDiscountAmount(0);
+        order.setTotalAmount(100 * lines);
+        order.setPlacedAt(Instant.now());
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setProductId("P" + i);
+            item.setProductSku("SKU-" + i);
+            item.setProductName("Product " + i);
+            item.setUnitPrice(100);
+            item.setQuantity(1);
+            item.setTotalPrice(100);
+            order.addItem(item);
+
+            OrderReservation reservation = new OrderReservation();
+            reservation.setProductId("P" + i);
+            reservation.setQuantity(1);
+            reservation.setStatus(ReservationStatus.PENDING);
+            reservation.setCreatedAt(Instant.now());
+            order.addReservation(reservation);
+        }
+
+        ShippingAddress address = new ShippingAddress();
+        address.setUserId(7L);
+        address.setContactName("Asha");
+        address.setPhone("9876543210");
+        address.setAddressLabel("Home");
+        address.setAddressLine1("1 MG Road");
+        address.setCity("Bengaluru");
+        address.setState("KA");
+        address.setPincode("560001");
+        address.setOrder(order);
+        order.setShippingAddress(address);
+
+        Payment payment = new Payment();
+        payment.setUserId(7L);
+        payment.setAmountPaisa(100 * lines * 100);
+        payment.setPaymentStatus(PaymentStatus.INITIATED);
+        payment.setOrder(order);
+        order.setPaymentReference(payment);
+        return order;
+    }
+
+    private long statementsToSave(Order order) {
+        statistics.clear();
+        orderRepository.saveAndFlush(order);
+        return statistics.getPrepareStatementCount();
+    }
+
+    @ParameterizedTest(name = "order with {0} lines")
+    @ValueSource(ints = {1, 20})
+    void save_shouldIssueOneStatementPerTable_whateverTheLineCount(int lines) {
+        // The first save reserves an id range per table
+        orderRepository.saveAndFlush(newOrder(1));
+
+        long statements = statementsToSave(newOrder(lines));
+
+        assertTrue(statements <= MAX_STATEMENTS_PER_ORDER,
+                "saving an order with " + lines + " lines issued " + statements + " statements");
+        assertEquals(3 + 2L * lines, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    void save_shouldAssignIdsBeforeInsert_fromReservedRanges() {
+        Order order = newOrder(2);
+        entityManager.persist(order);
+
+        // Known at persist time, nothing has been flushed yet
+        assertNotNull(order.getId());
+        assertNotNull(order.getItems().get(0).getId());
+        assertNotEquals(order.getItems().get(0).getId(), order.getItems().get(1).getId());
+
+        entityManager.flush();
+        Order next = orderRepository.saveAndFlush(newOrder(1));
+        assertEquals(order.getId() + 1, next.getId());
+    }
+}
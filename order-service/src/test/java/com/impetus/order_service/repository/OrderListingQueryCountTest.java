@@ -0,0 +1,223 @@
+package com.impetus.order_service.repository;
+
+import com.impetus.order_service.Util.OrderNumberGenerator;
+import com.impetus.order_service.dto.CursorPage;
+import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.Payment;
+import com.impetus.order_service.entity.ShippingAddress;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.mapper.OrderMapper;
+import com.impetus.order_service.observability.CheckoutInstrumentation;
+import com.impetus.order_service.service.Impl.OrderServiceImpl;
+import com.impetus.order_service.service.listing.OrderCountEstimator;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the order listing against N+1 selects: a page must cost the same, small number of statements
+ * whatever its size.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderListingQueryCountTest {
+
+    // page select + one batched items select + count
+    private static final long MAX_STATEMENTS_PER_PAGE = 3;
+
+    @Autowired private OrderRepository orderRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private OrderServiceImpl service;
+    private Statistics statistics;
+    private final OrderNumberGenerator orderNumbers = new OrderNumberGenerator(0, OrderNumberGenerator.Encoding.DECIMAL, "ORD-");
+
+    @BeforeEach
+    void setUp() {
+        service = new OrderServiceImpl(orderRepository, null, null, null, new OrderMapper(), null, null, orderNumbers,
+                new OrderCountEstimator(orderRepository, Duration.ofMinutes(1), 100),
+                new CheckoutInstrumentation(ObservationRegistry.NOOP, Duration.ofMinutes(1)), null, null);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private void seed(Long userId, int orders) {
+        seed(userId, orders, Instant.now());
+    }
+
+    private void seed(Long userId, int orders, Instant placedAt) {
+        for (int i = 0; i < orders; i++) {
+            Order order = new Order();
+            order.setOrderNumber(orderNumbers.next());
+            order.setUserId(userId);
+            order.setStatus(OrderStatus.CONFIRMED);
+            order.setPaymentStatus(PaymentStatus.CAPTURED);
+            order.setPaymentMode(PaymentMode.UPI);
+            order.setSubtotalAmount(300);
+            order.setTaxAmount(54);
+            order.setShippingFee(49);
+            order.setDiscountAmount(0);
+            order.setTotalAmount(403);
+            order.setPlacedAt(placedAt);
+
+            for (int j = 0; j < 3; j++) {
+                OrderItem item = new OrderItem();
+                item.setProductId("P" + j);
+                item.setProductSku("SKU-" + j);
+                item.setProductName("Product " + j);
+                item.setUnitPrice(100);
+                item.setQuantity(1);
+                item.setTotalPrice(100);
+                order.addItem(item);
+            }
+
+            ShippingAddress address = new ShippingAddress();
+            address.setUserId(userId);
+            address.setContactName("Asha");
+            address.setPhone("9876543210");
+            address.setAddressLabel("Home");
+            address.setAddressLine1("1 MG Road");
+            address.setCity("Bengaluru");
+            address.setState("KA");
+            address.setPincode("560001");
+            address.setOrder(order);
+            order.setShippingAddress(address);
+
+            Payment payment = new Payment();
+            payment.setUserId(userId);
+            payment.setAmountPaisa(40300);
+            payment.setPaymentStatus(PaymentStatus.CAPTURED);
+            payment.setOrder(order);
+            order.setPaymentReference(payment);
+
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private <T> long statementsFor(Supplier<T> call) {
+        entityManager.clear();
+        statistics.clear();
+        call.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @ParameterizedTest(name = "page of {0} orders")
+    @ValueSource(ints = {1, 5, 20})
+    void listOrder_shouldIssueConstantNumberOfStatements(int pageSize) {
+        seed(7L, pageSize);
+        seed(8L, 2);
+
+        long statements = statementsFor(() -> {
+            Page<OrderResponse> page = service.listOrder(7L, 0, pageSize);
+            assertEquals(pageSize, page.getContent().size());
+            page.getContent().forEach(o -> {
+                assertEquals(3, o.getItems().size());
+                assertEquals("Bengaluru", o.getShippingAddress().getCity());
+            });
+            return page;
+        });
+
+        assertTrue(statements <= MAX_STATEMENTS_PER_PAGE,
+                "listing " + pageSize + " orders issued " + statements + " statements");
+    }
+
+    @ParameterizedTest(name = "page of {0} orders")
+    @ValueSource(ints = {1, 20})
+    void listAllOrders_shouldIssueConstantNumberOfStatements(int pageSize) {
+        seed(7L, pageSize);
+        seed(8L, pageSize);
+
+        long statements = statementsFor(() -> {
+            Page<OrderResponse> page = service.listAllOrders(0, pageSize);
+            assertEquals(pageSize, page.getContent().size());
+            page.getContent().forEach(o -> assertEquals(3, o.getItems().size()));
+            return page;
+        });
+
+        assertTrue(statements <= MAX_STATEMENTS_PER_PAGE,
+                "listing " + pageSize + " orders issued " + statements + " statements");
+    }
+
+    // scroll costs the page select and one batched items select; no count
+    @ParameterizedTest(name = "page of {0} orders")
+    @ValueSource(ints = {1, 20})
+    void scrollOrders_shouldIssueConstantNumberOfStatements_onDeepPages(int pageSize) {
+        seed(7L, pageSize * 3);
+        String cursor = service.scrollOrders(7L, null, pageSize, false).getNextCursor();
+        String second = service.scrollOrders(7L, cursor, pageSize, false).getNextCursor();
+
+        long statements = statementsFor(() -> {
+            CursorPage<OrderResponse> page = service.scrollOrders(7L, second, pageSize, false);
+            assertEquals(pageSize, page.getContent().size());
+            page.getContent().forEach(o -> assertEquals(3, o.getItems().size()));
+            return page;
+        });
+
+        assertTrue(statements <= 2, "scrolling " + pageSize + " orders issued " + statements + " statements");
+    }
+
+    @Test
+    void scrollAllOrders_shouldVisitEveryOrderOnce_newestFirst_evenWhenPlacedAtTies() {
+        Instant t = Instant.parse("2025-01-01T10:00:00Z");
+        seed(7L, 4, t);
+        seed(8L, 3, t.plusSeconds(60));
+        seed(9L, 2, t);
+
+        List<OrderResponse> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<OrderResponse> page = service.scrollAllOrders(cursor, 3, false);
+            seen.addAll(page.getContent());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(9, seen.size());
+        assertEquals(9, seen.stream().map(OrderResponse::getId).distinct().count());
+        assertEquals(List.of(8L, 8L, 8L), seen.subList(0, 3).stream().map(OrderResponse::getUserId).toList());
+        for (int i = 4; i < seen.size(); i++) {
+            assertTrue(seen.get(i - 1).getId() > seen.get(i).getId(), "ties on placedAt must be ordered by id");
+        }
+    }
+
+    @Test
+    void scrollOrders_shouldOnlyReturnTotal_whenAsked() {
+        seed(7L, 5);
+        seed(8L, 1);
+
+        assertNull(service.scrollOrders(7L, null, 2, false).getEstimatedTotal());
+        CursorPage<OrderResponse> first = service.scrollOrders(7L, null, 2, true);
+        assertEquals(5L, first.getEstimatedTotal());
+        assertEquals(5L, service.scrollOrders(7L, first.getNextCursor(), 2, true).getEstimatedTotal());
+        assertEquals(1L, service.scrollOrders(8L, null, 2, true).getEstimatedTotal());
+        assertEquals(6L, service.scrollAllOrders(null, 2, true).getEstimatedTotal());
+    }
+
+    @Test
+    void scrollOrders_shouldRejectMalformedCursorAndBadSize() {
+        assertThrows(IllegalArgumentException.class, () -> service.scrollOrders(7L, "not-a-cursor", 20, false));
+        assertThrows(IllegalArgumentException.class, () -> service.scrollOrders(7L, null, 0, false));
+        assertThrows(IllegalArgumentException.class, () -> service.scrollOrders(7L, null, 101, false));
+    }
+}
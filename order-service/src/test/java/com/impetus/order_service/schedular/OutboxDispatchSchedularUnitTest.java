@@ -0,0 +1,270 @@
+package com.impetus.order_service.schedular;
+
+import com.impetus.order_service.dto.InventoryCommandResult;
+import com.impetus.order_service.dto.UpdateInventoryRequest;
+import com.impetus.order_service.dto.UpdateInventoryResponse;
+import com.impetus.order_service.entity.OutboxEvent;
+import com.impetus.order_service.enums.OutboxEventType;
+import com.impetus.order_service.enums.OutboxStatus;
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.exception.ConcurrencyLimitExceededException;
+import com.impetus.order_service.exception.ServiceUnavailableException;
+import com.impetus.order_service.integrations.ProductClient;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.payment.PaymentService;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatchSchedularUnitTest {
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private ProductClient productClient;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private CheckoutSagaOrchestrator checkoutSaga;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxDispatchSchedular dispatcher;
+
+    private final List<UpdateInventoryRequest> lines = List.of(new UpdateInventoryRequest("P1", 2));
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // no jitter, so backoff is exactly initial * 2^(attempt-1)
+        dispatcher = new OutboxDispatchSchedular(outboxService, productClient, paymentService, checkoutSaga,
+                new TransactionTemplate(transactionManager), meterRegistry, 2, Duration.ofSeconds(30), 3,
+                Duration.ofSeconds(1), Duration.ofSeconds(10), delay -> delay);
+    }
+
+    private OutboxEvent event(long id, OutboxEventType type, int attempts) {
+        OutboxEvent e = new OutboxEvent();
+        e.setId(id);
+        e.setOrderId(100L + id);
+        e.setType(type);
+        e.setIdempotencyKey("inventory-commit:" + (100L + id));
+        e.setStatus(OutboxStatus.PENDING);
+        e.setAttempts(attempts);
+        return e;
+    }
+
+    private double dispatched(String type, String result) {
+        return meterRegistry.counter("outbox.dispatch", "type", type, "result", result).count();
+    }
+
+    private InventoryCommandResult ok(OutboxEvent event, UpdateInventoryResponse response) {
+        return new InventoryCommandResult(event.getIdempotencyKey(), 200, response, null);
+    }
+
+    private InventoryCommandResult failed(OutboxEvent event, int status, String error) {
+        return new InventoryCommandResult(event.getIdempotencyKey(), status, null, error);
+    }
+
+    @Test
+    void dispatchPending_shouldSendTheClaimedEventsInOneCall_andMarkThemSent() {
+        OutboxEvent commit = event(1, OutboxEventType.INVENTORY_COMMIT, 1);
+        OutboxEvent release = event(2, OutboxEventType.INVENTORY_RELEASE, 1);
+        when(outboxService.claimDue(2, Duration.ofSeconds(30))).thenReturn(List.of(commit, release), List.of());
+        when(outboxService.readLines(any())).thenReturn(lines);
+        when(productClient.sendInventoryCommands(argThat(commands -> commands.size() == 2
+                && commands.get(0).getType().equals("COMMIT") && commands.get(0).getIdempotencyKey().equals("inventory-commit:101")
+                && commands.get(1).getType().equals("RELEASE") && commands.get(1).getItem() == lines)))
+                .thenReturn(List.of(ok(commit, new UpdateInventoryResponse(true, List.of())),
+                        ok(release, new UpdateInventoryResponse(true, List.of()))));
+
+        dispatcher.dispatchPending();
+
+        verify(productClient, times(1)).sendInventoryCommands(anyList());
+        verify(outboxService).markSent(1L);
+        verify(outboxService).markSent(2L);
+        verify(transactionManager, times(2)).commit(any());
+        verify(checkoutSaga).inventoryCommitted(101L);
+        verify(checkoutSaga, never()).inventoryCommitted(102L);
+        verifyNoInteractions(paymentService);
+        assertEquals(1, dispatched("INVENTORY_COMMIT", "sent"));
+        assertEquals(1, dispatched("INVENTORY_RELEASE", "sent"));
+    }
+
+    @Test
+    void dispatchPending_shouldKeepClaiming_whileBatchesComeBackFull() {
+        OutboxEvent a = event(1, OutboxEventType.INVENTORY_COMMIT, 1);
+        OutboxEvent b = event(2, OutboxEventType.INVENTORY_COMMIT, 1);
+        OutboxEvent c = event(3, OutboxEventType.INVENTORY_COMMIT, 1);
+        when(outboxService.claimDue(anyInt(), any())).thenReturn(List.of(a, b), List.of(c));
+        when(outboxService.readLines(any())).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenReturn(
+                List.of(ok(a, new UpdateInventoryResponse(true, List.of())), ok(b, new UpdateInventoryResponse(true, List.of()))),
+                List.of(ok(c, new UpdateInventoryResponse(true, List.of()))));
+
+        dispatcher.dispatchPending();
+
+        verify(outboxService, times(2)).claimDue(anyInt(), any());
+        verify(productClient, times(2)).sendInventoryCommands(anyList());
+        verify(outboxService, times(3)).markSent(anyLong());
+    }
+
+    @Test
+    void dispatch_shouldCancelAndRefundOrder_whenStockCannotBeCommitted() {
+        OutboxEvent commit = event(1, OutboxEventType.INVENTORY_COMMIT, 1);
+        when(outboxService.readLines(commit)).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenReturn(List.of(ok(commit, new UpdateInventoryResponse(false,
+                List.of(new UpdateInventoryResponse.FailedItem("P1", "INSUFFICIENT_STOCK", 1))))));
+
+        dispatcher.dispatch(List.of(commit));
+
+        verify(outboxService).markSent(1L);
+        verify(paymentService).handleInventoryCommitFailure(101L);
+        verify(checkoutSaga, never()).inventoryCommitted(any());
+        verify(outboxService, never()).enqueueInventoryRelease(any(), any(), any());
+    }
+
+    @Test
+    void dispatch_shouldEnqueueRelease_forStockProductServiceCouldNotPutBack() {
+        OutboxEvent commit = event(1, OutboxEventType.INVENTORY_COMMIT, 1);
+        List<UpdateInventoryRequest> leaked = List.of(new UpdateInventoryRequest("P9", 4));
+        when(outboxService.readLines(commit)).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenReturn(List.of(ok(commit, new UpdateInventoryResponse(false,
+                List.of(new UpdateInventoryResponse.FailedItem("P1", "INSUFFICIENT_STOCK", 1)), leaked))));
+
+        dispatcher.dispatch(List.of(commit));
+
+        verify(outboxService).enqueueInventoryRelease(101L, "inventory-commit:101", leaked);
+    }
+
+    @Test
+    void dispatch_shouldRetryEveryEventWithExponentialBackoff_whenTheCallFails() {
+        OutboxEvent a = event(1, OutboxEventType.INVENTORY_COMMIT, 2);
+        OutboxEvent b = event(2, OutboxEventType.INVENTORY_COMMIT, 1);
+        when(outboxService.readLines(any())).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenThrow(new ServiceUnavailableException("down"));
+
+        Instant before = Instant.now();
+        dispatcher.dispatch(List.of(a, b));
+
+        verify(outboxService).retryAt(eq(1L), argThat(next ->
+                !next.isBefore(before.plusSeconds(2)) && next.isBefore(before.plusSeconds(3))), eq("down"));
+        verify(outboxService).retryAt(eq(2L), argThat(next ->
+                !next.isBefore(before.plusSeconds(1)) && next.isBefore(before.plusSeconds(2))), eq("down"));
+        verify(outboxService, never()).markSent(anyLong());
+        assertEquals(2, dispatched("INVENTORY_COMMIT", "retry"));
+    }
+
+    @Test
+    void dispatchPending_shouldPutShedEventsBackWithoutUsingAnAttempt_andStopPolling() {
+        OutboxEvent a = event(1, OutboxEventType.INVENTORY_COMMIT, 3);
+        OutboxEvent b = event(2, OutboxEventType.INVENTORY_RELEASE, 1);
+        when(outboxService.claimDue(2, Duration.ofSeconds(30))).thenReturn(List.of(a, b));
+        when(outboxService.readLines(any())).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList()))
+                .thenThrow(new ConcurrencyLimitExceededException("product-service-commands is at its concurrency limit"));
+
+        Instant before = Instant.now();
+        dispatcher.dispatchPending();
+
+        // Not another claim in this poll, not a retry or park even at max attempts, and no compensation
+        verify(outboxService, times(1)).claimDue(anyInt(), any());
+        verify(outboxService).postpone(eq(1L), argThat(next ->
+                !next.isBefore(before.plusSeconds(1)) && next.isBefore(before.plusSeconds(2))), anyString());
+        verify(outboxService).postpone(eq(2L), any(), anyString());
+        verify(outboxService, never()).retryAt(anyLong(), any(), any());
+        verify(outboxService, never()).park(anyLong(), any());
+        verifyNoInteractions(checkoutSaga);
+        assertEquals(1, dispatched("INVENTORY_COMMIT", "shed"));
+        assertEquals(1, dispatched("INVENTORY_RELEASE", "shed"));
+    }
+
+    @Test
+    void dispatch_shouldRetryACommandStillBeingApplied() {
+        OutboxEvent commit = event(1, OutboxEventType.INVENTORY_COMMIT, 1);
+        when(outboxService.readLines(commit)).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenReturn(List.of(failed(commit, 409, "still being applied")));
+
+        dispatcher.dispatch(List.of(commit));
+
+        verify(outboxService).retryAt(eq(1L), any(), eq("still being applied"));
+        verify(outboxService, never()).park(anyLong(), any());
+    }
+
+    @Test
+    void dispatch_shouldPark_afterMaxAttempts() {
+        OutboxEvent release = event(1, OutboxEventType.INVENTORY_RELEASE, 3);
+        when(outboxService.readLines(release)).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenReturn(List.of(failed(release, 500, "down")));
+
+        dispatcher.dispatch(List.of(release));
+
+        verify(outboxService).park(1L, "down");
+        verify(outboxService, never()).retryAt(anyLong(), any(), any());
+        // A release is already a compensation
+        verifyNoInteractions(checkoutSaga);
+        assertEquals(1, dispatched("INVENTORY_RELEASE", "parked"));
+    }
+
+    @Test
+    void dispatch_shouldCompensateTheOrder_whenItsCommitIsParked() {
+        OutboxEvent commit = event(1, OutboxEventType.INVENTORY_COMMIT, 3);
+        when(outboxService.readLines(commit)).thenReturn(lines);
+        when(productClient.sendInventoryCommands(anyList())).thenThrow(new ServiceUnavailableException("down"));
+
+        dispatcher.dispatch(List.of(commit));
+
+        verify(outboxService).park(1L, "down");
+        verify(checkoutSaga).compensate(101L, SagaStep.COMMIT_INVENTORY, "inventory-commit-parked");
+        verify(transactionManager).commit(any());
+        assertEquals(1, dispatched("INVENTORY_COMMIT", "parked"));
+    }
+
+    @Test
+    void dispatch_shouldParkRejectedCommandsImmediately_andStillApplyTheRest() {
+        OutboxEvent rejected = event(1, OutboxEventType.INVENTORY_COMMIT, 1);
+        OutboxEvent unreadable = event(2, OutboxEventType.INVENTORY_COMMIT, 1);
+        OutboxEvent fine = event(3, OutboxEventType.INVENTORY_COMMIT, 1);
+        when(outboxService.readLines(rejected)).thenReturn(lines);
+        when(outboxService.readLines(unreadable)).thenThrow(new IllegalArgumentException("Unreadable payload"));
+        when(outboxService.readLines(fine)).thenReturn(lines);
+        when(productClient.sendInventoryCommands(argThat(commands -> commands.size() == 2))).thenReturn(List.of(
+                failed(rejected, 400, "bad key"), ok(fine, new UpdateInventoryResponse(true, List.of()))));
+
+        dispatcher.dispatch(List.of(rejected, unreadable, fine));
+
+        verify(outboxService).park(1L, "bad key");
+        verify(outboxService).park(2L, "Unreadable payload");
+        verify(checkoutSaga).compensate(101L, SagaStep.COMMIT_INVENTORY, "inventory-commit-parked");
+        verify(checkoutSaga).compensate(102L, SagaStep.COMMIT_INVENTORY, "inventory-commit-parked");
+        verify(outboxService).markSent(3L);
+        verify(outboxService, never()).retryAt(anyLong(), any(), any());
+    }
+
+    @Test
+    void backoff_shouldDoublePerAttempt_andCapAtMax() {
+        assertEquals(Duration.ofSeconds(1), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(4), dispatcher.backoff(3));
+        assertEquals(Duration.ofSeconds(10), dispatcher.backoff(5));
+        assertEquals(Duration.ofSeconds(10), dispatcher.backoff(60));
+    }
+}
@@ -0,0 +1,121 @@
+package com.impetus.order_service.schedular;
+
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
+import com.impetus.order_service.repository.OrderReservationRepository.ExpirableReservation;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationExpirySchedularUnitTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderReservationRepository orderReservationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OrderResponseCache orderResponseCache;
+
+    @Mock
+    private CheckoutSagaOrchestrator checkoutSaga;
+
+    private final Instant now = Instant.parse("2025-01-01T10:00:00Z");
+    private final Instant cutOff = now.minus(Duration.ofMinutes(2));
+    private SimpleMeterRegistry meterRegistry;
+    private ReservationExpirySchedular schedular;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        schedular = new ReservationExpirySchedular(orderRepository, orderReservationRepository,
+                new TransactionTemplate(transactionManager), orderResponseCache, checkoutSaga, meterRegistry,
+                Duration.ofMinutes(2), 2,
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private ExpirableReservation row(long id, Instant createdAt, long orderId) {
+        return new ExpirableReservation() {
+            public Long getId() { return id; }
+            public Instant getCreatedAt() { return createdAt; }
+            public Long getOrderId() { return orderId; }
+        };
+    }
+
+    @Test
+    void expireOldOrders_shouldWalkKeysetPages_andExpireEachChunkInItsOwnTransaction() {
+        Instant t1 = cutOff.minusSeconds(90);
+        Instant t2 = cutOff.minusSeconds(30);
+        when(orderReservationRepository.findExpirable(eq(ReservationStatus.PENDING), eq(cutOff),
+                eq(Instant.EPOCH), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(row(1, t1, 10), row(2, t1, 10)));
+        when(orderReservationRepository.findExpirable(eq(ReservationStatus.PENDING), eq(cutOff),
+                eq(t1), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(row(3, t2, 11)));
+        when(orderReservationRepository.updateStatus(anyCollection(), eq(ReservationStatus.PENDING),
+                eq(ReservationStatus.EXPIRED))).thenReturn(2, 1);
+        when(orderRepository.cancelOrders(anyCollection(), eq(OrderStatus.PENDING_PAYMENT), eq(OrderStatus.CANCELLED),
+                eq(PaymentStatus.FAILED), eq(now))).thenReturn(1, 0);
+
+        schedular.expireOldOrders();
+
+        verify(orderReservationRepository).updateStatus(List.of(1L, 2L), ReservationStatus.PENDING, ReservationStatus.EXPIRED);
+        verify(orderReservationRepository).updateStatus(List.of(3L), ReservationStatus.PENDING, ReservationStatus.EXPIRED);
+        verify(orderRepository).cancelOrders(Set.of(10L), OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED,
+                PaymentStatus.FAILED, now);
+        verify(orderRepository).cancelOrders(Set.of(11L), OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED,
+                PaymentStatus.FAILED, now);
+        verify(transactionManager, times(2)).commit(any());
+        // only the chunk that actually cancelled an order drops cached responses
+        verify(orderResponseCache).invalidateAfterCommit(Set.of(10L));
+        verifyNoMoreInteractions(orderResponseCache);
+        verify(checkoutSaga).expired(Set.of(10L));
+        verifyNoMoreInteractions(checkoutSaga);
+        // short last page ends the sweep without another query
+        verify(orderReservationRepository, times(2)).findExpirable(any(), any(), any(), any(), any());
+        verify(orderRepository, never()).findById(any());
+
+        assertEquals(3, meterRegistry.counter("orders.reservation.expiry.reservations").count());
+        assertEquals(1, meterRegistry.counter("orders.reservation.expiry.orders.cancelled").count());
+        assertEquals(90, meterRegistry.get("orders.reservation.expiry.lag").gauge().value());
+        assertEquals(1, meterRegistry.timer("orders.reservation.expiry.sweep").count());
+    }
+
+    @Test
+    void expireOldOrders_shouldDoNothing_whenNothingIsExpirable() {
+        when(orderReservationRepository.findExpirable(any(), any(), any(), any(), any())).thenReturn(List.of());
+
+        schedular.expireOldOrders();
+
+        verifyNoInteractions(orderRepository, transactionManager);
+        verify(orderReservationRepository, never()).updateStatus(any(), any(), any());
+        assertEquals(0, meterRegistry.get("orders.reservation.expiry.lag").gauge().value());
+    }
+}
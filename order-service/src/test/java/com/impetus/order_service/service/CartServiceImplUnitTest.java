@@ -4,13 +4,17 @@ import com.impetus.order_service.dto.AddCartItemRequest;
 import com.impetus.order_service.dto.UpdateCartItemRequest;
 import com.impetus.order_service.dto.CartResponse;
 import com.impetus.order_service.dto.CartItemResponse;
+import com.impetus.order_service.dto.CartQuoteResponse;
+import com.impetus.order_service.dto.ProductResponseDto;
 import com.impetus.order_service.entity.Cart;
 import com.impetus.order_service.entity.CartItem;
 import com.impetus.order_service.enums.CartStatus;
+import com.impetus.order_service.integrations.ResilientProductService;
 import com.impetus.order_service.repository.CartRepository;
 import com.impetus.order_service.repository.CartItemRepository;
 
 import com.impetus.order_service.service.Impl.CartServiceImpl;
+import com.impetus.order_service.service.cart.JpaCartStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -37,6 +41,9 @@ class CartServiceImplUnitTest {
     @Mock
     private CartItemRepository cartItemRepository;
 
+    @Mock
+    private ResilientProductService resilientProductService;
+
     private CartServiceImpl service;
 
     @Captor
@@ -46,7 +53,7 @@ class CartServiceImplUnitTest {
 
     @BeforeEach
     void setUp() {
-        service = new CartServiceImpl(cartRepository, cartItemRepository);
+        service = new CartServiceImpl(new JpaCartStore(cartRepository), cartItemRepository, resilientProductService);
     }
 
     // ----------------------------
@@ -356,5 +363,77 @@ class CartServiceImplUnitTest {
 
         verify(cartRepository, never()).save(any(Cart.class));
     }
+
+    // ==========================================================
+    // quote
+    // ==========================================================
+
+    private ProductResponseDto product(String id, int price, Integer stock) {
+        ProductResponseDto p = new ProductResponseDto();
+        p.setId(id);
+        p.setName("Name-" + id);
+        p.setSku("SKU-" + id);
+        p.setPrice(price);
+        p.setInventoryQuantity(stock);
+        return p;
+    }
+
+    @Test
+    void quote_shouldPriceLinesAndTotals_likeCheckout() {
+        Cart existing = newCart(600L, userId, CartStatus.ACTIVE);
+        existing.getItems().add(newItem(61L, "P-1", 2));
+        existing.getItems().add(newItem(62L, "P-2", 3));
+
+        when(cartRepository.findByUserIdAndCartStatus(eq(userId), eq(CartStatus.ACTIVE)))
+                .thenReturn(Optional.of(existing));
+        when(resilientProductService.getProducts(List.of("P-1", "P-2")))
+                .thenReturn(List.of(product("P-1", 100, 10), product("P-2", 50, 1)));
+
+        CartQuoteResponse res = service.quote(userId);
+
+        assertEquals(600L, res.getCartId());
+        assertEquals(2, res.getItems().size());
+        assertEquals(61L, res.getItems().get(0).getItemId());
+        assertEquals("SKU-P-1", res.getItems().get(0).getProductSku());
+        assertEquals(200, res.getItems().get(0).getTotalPrice());
+        assertTrue(res.getItems().get(0).isInStock());
+        assertEquals(150, res.getItems().get(1).getTotalPrice());
+        assertFalse(res.getItems().get(1).isInStock());
+        // 350 subtotal + 18% tax (63) + 49 shipping
+        assertEquals(350, res.getSubtotalAmount());
+        assertEquals(63, res.getTaxAmount());
+        assertEquals(49, res.getShippingFee());
+        assertEquals(0, res.getDiscountAmount());
+        assertEquals(462, res.getTotalAmount());
+
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void quote_shouldBeEmpty_withoutCreatingACart() {
+        when(cartRepository.findByUserIdAndCartStatus(eq(userId), eq(CartStatus.ACTIVE)))
+                .thenReturn(Optional.empty());
+
+        CartQuoteResponse res = service.quote(userId);
+
+        assertNull(res.getCartId());
+        assertTrue(res.getItems().isEmpty());
+        assertEquals(0, res.getTotalAmount());
+        verify(cartRepository, never()).save(any(Cart.class));
+        verifyNoInteractions(resilientProductService);
+    }
+
+    @Test
+    void quote_shouldThrow_whenAProductIsUnknown() {
+        Cart existing = newCart(700L, userId, CartStatus.ACTIVE);
+        existing.getItems().add(newItem(71L, "P-404", 1));
+
+        when(cartRepository.findByUserIdAndCartStatus(eq(userId), eq(CartStatus.ACTIVE)))
+                .thenReturn(Optional.of(existing));
+        when(resilientProductService.getProducts(List.of("P-404"))).thenReturn(List.of());
+
+        NoSuchElementException ex = assertThrows(NoSuchElementException.class, () -> service.quote(userId));
+        assertEquals("Product not found: P-404", ex.getMessage());
+    }
 }
 
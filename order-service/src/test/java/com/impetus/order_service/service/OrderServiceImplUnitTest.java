@@ -1,19 +1,30 @@
 package com.impetus.order_service.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.Util.OrderNumberGenerator;
 import com.impetus.order_service.dto.*;
 import com.impetus.order_service.entity.Cart;
 import com.impetus.order_service.entity.CartItem;
 import com.impetus.order_service.entity.Order;
 import com.impetus.order_service.entity.OrderReservation;
 import com.impetus.order_service.enums.CartStatus;
+import com.impetus.order_service.exception.NotFoundException;
 import com.impetus.order_service.integrations.ResilientProductService;
 import com.impetus.order_service.integrations.ResilientUserService;
+import com.impetus.order_service.mapper.OrderMapper;
+import com.impetus.order_service.observability.CheckoutInstrumentation;
 import com.impetus.order_service.repository.CartRepository;
 import com.impetus.order_service.repository.OrderItemRepository;
 import com.impetus.order_service.repository.OrderRepository;
 import com.impetus.order_service.repository.OrderReservationRepository;
 
 import com.impetus.order_service.service.Impl.OrderServiceImpl;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.cart.JpaCartStore;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,18 +34,18 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -42,7 +53,7 @@ import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for OrderServiceImpl.
- * Focuses on business logic, mapping, repository interactions, and WebClient orchestration.
+ * Focuses on business logic, mapping, and repository interactions.
  */
 @ExtendWith(MockitoExtension.class)
 class OrderServiceImplUnitTest {
@@ -52,19 +63,14 @@ class OrderServiceImplUnitTest {
     @Mock private OrderItemRepository orderItemRepository;
     @Mock private OrderReservationRepository orderReservationRepository;
 
-    @Mock private ModelMapper modelMapper;
-    @Mock private WebClient.Builder webClientBuilder;
+    private final OrderMapper orderMapper = new OrderMapper();
 
     @Mock private ResilientProductService resilientProductService;
     @Mock private ResilientUserService resilientUserService;
-
-    // WebClient chain mocks:
-    @Mock private WebClient webClient;
-    @Mock private WebClient.RequestBodyUriSpec requestBodyUriSpec;
-    @Mock private WebClient.RequestHeadersSpec<?> requestHeadersSpec;
-    @Mock private WebClient.ResponseSpec responseSpec;
+    @Mock private CheckoutSagaOrchestrator checkoutSaga;
 
     private OrderServiceImpl service;
+    private SimpleMeterRegistry meterRegistry;
 
     @Captor private ArgumentCaptor<Order> orderCaptor;
     @Captor private ArgumentCaptor<Map<String, Object>> mapCaptor;
@@ -73,21 +79,27 @@ class OrderServiceImplUnitTest {
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
         service = new OrderServiceImpl(
                 orderRepository,
-                cartRepository,
+                new JpaCartStore(cartRepository),
                 orderItemRepository,
                 orderReservationRepository,
-                modelMapper,
-                webClientBuilder,
-                // Strings are non-final in your service; we set productBaseUrl via ReflectionTestUtils
+                orderMapper,
                 // resilient services:
                 resilientProductService,
-                resilientUserService
+                resilientUserService,
+                new OrderNumberGenerator(1, OrderNumberGenerator.Encoding.CROCKFORD32, "ORD-"),
+                null,
+                new CheckoutInstrumentation(observationRegistry, Duration.ofMinutes(1)),
+                new OrderResponseCache(Duration.ofSeconds(10), Duration.ofHours(1), 100,
+                        new ObjectMapper().findAndRegisterModules(), meterRegistry),
+                checkoutSaga
         );
-
-        // Set product base URL for updateInventory tests
-        ReflectionTestUtils.setField(service, "productBaseUrl", "http://product-service");
+        // Runs the save it is handed, as the real saga does inside its transaction
+        lenient().when(checkoutSaga.start(any())).thenAnswer(inv -> inv.<Supplier<Order>>getArgument(0).get());
     }
 
     // --------------------------------------
@@ -135,23 +147,6 @@ class OrderServiceImplUnitTest {
         return req;
     }
 
-    private void mockWebClientChainReturning(UpdateInventoryResponse resp) {
-        when(webClientBuilder.baseUrl(anyString())).thenReturn(webClientBuilder);
-        when(webClientBuilder.build()).thenReturn(webClient);
-
-        when(webClient.post()).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.uri(anyString())).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.header(anyString(), anyString())).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.retrieve()).thenReturn(responseSpec);
-        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
-
-        // Allow onStatus chaining to return the same responseSpec
-        when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-
-        // Return Mono of response
-        when(responseSpec.bodyToMono(eq(UpdateInventoryResponse.class))).thenReturn(Mono.just(resp));
-    }
-
     // ======================================
     // createOrderFromCart - success
     // ======================================
@@ -181,16 +176,6 @@ class OrderServiceImplUnitTest {
         when(orderRepository.save(any(Order.class)))
                 .thenAnswer(inv -> inv.getArgument(0));
 
-        // ModelMapper mapping
-        when(modelMapper.map(any(Order.class), eq(OrderResponse.class)))
-                .thenAnswer(inv -> {
-                    Order o = inv.getArgument(0);
-                    OrderResponse r = new OrderResponse();
-                    r.setOrderNumber(o.getOrderNumber());
-                    r.setTotalAmount(o.getTotalAmount());
-                    return r;
-                });
-
         OrderRequest req = validOrderReq(999L);
 
         OrderResponse out = service.createOrderFromCart(userId, req);
@@ -203,7 +188,8 @@ class OrderServiceImplUnitTest {
         // cart status updated to CHECKED_OUT and saved
         verify(cartRepository).save(argThat(c -> c.getCartStatus() == CartStatus.CHECKED_OUT));
 
-        // order persisted
+        // order persisted, inside its checkout saga
+        verify(checkoutSaga).start(any());
         verify(orderRepository).save(orderCaptor.capture());
         Order saved = orderCaptor.getValue();
         assertEquals(400, saved.getSubtotalAmount());
@@ -214,6 +200,92 @@ class OrderServiceImplUnitTest {
         assertEquals(userId, saved.getShippingAddress().getUserId());
     }
 
+    @Test
+    void createOrderFromCart_shouldTimeEachPhaseAndDependency() {
+        Cart cart = newActiveCart(10L, userId);
+        cart.getItems().add(ci("P1", 1));
+        when(cartRepository.findByUserIdAndCartStatus(eq(userId), eq(CartStatus.ACTIVE))).thenReturn(Optional.of(cart));
+        when(resilientUserService.fetchUserAddress(eq(userId), eq(1L))).thenReturn(address("John Doe", "9999999999"));
+        when(resilientProductService.getProducts(eq(List.of("P1")))).thenReturn(List.of(product("P1", "Prod 1", 100, 10)));
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.createOrderFromCart(userId, validOrderReq(1L));
+
+        for (String phase : List.of("cart-load", "lookups", "pricing", "order-save", "cart-checkout")) {
+            assertEquals(1, meterRegistry.get(CheckoutInstrumentation.PHASE)
+                    .tags("phase", phase, "outcome", "success").timer().count(), phase);
+        }
+        for (String dependency : List.of("user-service.address", "product-service.products")) {
+            assertEquals(1, meterRegistry.get(CheckoutInstrumentation.DEPENDENCY)
+                    .tags("dependency", dependency, "outcome", "success").timer().count(), dependency);
+        }
+    }
+
+    @Test
+    void createOrderFromCart_shouldFetchAddressAndProductsConcurrently() {
+        Cart cart = newActiveCart(16L, userId);
+        cart.getItems().add(ci("P1", 1));
+
+        when(cartRepository.findByUserIdAndCartStatus(eq(userId), eq(CartStatus.ACTIVE)))
+                .thenReturn(Optional.of(cart));
+
+        // Each lookup waits for the other one to start; a sequential implementation would time out here
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(resilientUserService.fetchUserAddress(eq(userId), eq(1L)))
+                .thenAnswer(inv -> {
+                    bothStarted.countDown();
+                    assertTrue(bothStarted.await(5, TimeUnit.SECONDS), "product lookup never started");
+                    return address("A", "B");
+                });
+        when(resilientProductService.getProducts(eq(List.of("P1"))))
+                .thenAnswer(inv -> {
+                    bothStarted.countDown();
+                    assertTrue(bothStarted.await(5, TimeUnit.SECONDS), "address lookup never started");
+                    return List.of(product("P1", "Prod 1", 100, 10));
+                });
+
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        assertNotNull(service.createOrderFromCart(userId, validOrderReq(1L)));
+    }
+
+    @Test
+    void createOrderFromCart_shouldFailFast_andCancelProductLookup_whenAddressLookupFails() {
+        Cart cart = newActiveCart(17L, userId);
+        cart.getItems().add(ci("P1", 1));
+
+        when(cartRepository.findByUserIdAndCartStatus(eq(userId), eq(CartStatus.ACTIVE)))
+                .thenReturn(Optional.of(cart));
+
+        // Address lookup fails once the product lookup is in flight; the product lookup hangs until cancelled
+        CountDownLatch productStarted = new CountDownLatch(1);
+        CountDownLatch productCancelled = new CountDownLatch(1);
+        when(resilientUserService.fetchUserAddress(eq(userId), eq(1L)))
+                .thenAnswer(inv -> {
+                    productStarted.await(5, TimeUnit.SECONDS);
+                    throw new NotFoundException("Address not found");
+                });
+        when(resilientProductService.getProducts(eq(List.of("P1"))))
+                .thenAnswer(inv -> {
+                    productStarted.countDown();
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        productCancelled.countDown();
+                    }
+                    return List.of();
+                });
+
+        long start = System.nanoTime();
+        NotFoundException ex = assertThrows(NotFoundException.class,
+                () -> service.createOrderFromCart(userId, validOrderReq(1L)));
+        assertEquals("Address not found", ex.getMessage());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, "checkout waited for the slow sibling");
+
+        assertDoesNotThrow(() -> assertTrue(productCancelled.await(5, TimeUnit.SECONDS)));
+        verify(orderRepository, never()).save(any());
+    }
+
     // ======================================
     // createOrderFromCart - error paths
     // ======================================
@@ -275,6 +347,8 @@ class OrderServiceImplUnitTest {
         NoSuchElementException ex = assertThrows(NoSuchElementException.class,
                 () -> service.createOrderFromCart(userId, req));
         assertEquals("Product not found: P-MISSING", ex.getMessage());
+        assertEquals(1, meterRegistry.get(CheckoutInstrumentation.PHASE)
+                .tags("phase", "pricing", "outcome", "failure").timer().count());
     }
 
     @Test
@@ -334,11 +408,9 @@ class OrderServiceImplUnitTest {
         when(orderRepository.findByIdAndUserId(eq(1000L), eq(userId)))
                 .thenReturn(Optional.of(order));
 
-        when(modelMapper.map(eq(order), eq(OrderResponse.class)))
-                .thenReturn(new OrderResponse());
-
         OrderResponse resp = service.getOrder(1000L, userId);
-        assertNotNull(resp);
+        assertEquals(1000L, resp.getId());
+        assertEquals(userId, resp.getUserId());
     }
 
     @Test
@@ -351,6 +423,25 @@ class OrderServiceImplUnitTest {
         assertEquals("Order not found", ex.getMessage());
     }
 
+    @Test
+    void getOrder_withUser_shouldServeRepeatPolls_fromCache() {
+        Order order = new Order();
+        order.setId(1000L);
+        order.setUserId(userId);
+        when(orderRepository.findByIdAndUserId(eq(1000L), eq(userId)))
+                .thenReturn(Optional.of(order));
+
+        service.getOrder(1000L, userId);
+        OrderResponse resp = service.getOrder(1000L, userId);
+
+        assertEquals(1000L, resp.getId());
+        verify(orderRepository, times(1)).findByIdAndUserId(1000L, userId);
+
+        // another user's poll still goes to the repository, which doesn't find the order for them
+        when(orderRepository.findByIdAndUserId(eq(1000L), eq(999L))).thenReturn(Optional.empty());
+        assertThrows(RuntimeException.class, () -> service.getOrder(1000L, 999L));
+    }
+
     // ======================================
     // getOrder (admin)
     // ======================================
@@ -361,11 +452,9 @@ class OrderServiceImplUnitTest {
 
         when(orderRepository.findById(eq(2000L)))
                 .thenReturn(Optional.of(order));
-        when(modelMapper.map(eq(order), eq(OrderResponse.class)))
-                .thenReturn(new OrderResponse());
 
         OrderResponse resp = service.getOrder(2000L);
-        assertNotNull(resp);
+        assertEquals(2000L, resp.getId());
     }
 
     @Test
@@ -387,9 +476,6 @@ class OrderServiceImplUnitTest {
         when(orderRepository.findByUserId(eq(userId), any()))
                 .thenReturn(page);
 
-        when(modelMapper.map(any(Order.class), eq(OrderResponse.class)))
-                .thenAnswer(inv -> new OrderResponse());
-
         Page<OrderResponse> out = service.listOrder(userId, 0, 2);
         assertEquals(2, out.getTotalElements());
         assertEquals(2, out.getContent().size());
@@ -407,36 +493,9 @@ class OrderServiceImplUnitTest {
         when(orderRepository.findAll(any(Pageable.class)))
                 .thenReturn(page);
 
-        when(modelMapper.map(any(Order.class), eq(OrderResponse.class)))
-                .thenAnswer(inv -> new OrderResponse());
-
         Page<OrderResponse> out = service.listAllOrders(1, 1);
 
         assertEquals(5, out.getTotalElements());
         assertEquals(1, out.getContent().size());
     }
-
-
-    // ======================================
-    // getPayload
-    // ======================================
-    @Test
-    void getPayload_shouldMapReservations_toUpdateInventoryRequests() {
-        Order order = new Order();
-        order.setId(7000L);
-
-        when(orderReservationRepository.findByOrderId(eq(order.getId())))
-                .thenReturn(List.of(
-                        new OrderReservation() {{ setProductId("P1"); setQuantity(2); }},
-                        new OrderReservation() {{ setProductId("P2"); setQuantity(5); }}
-                ));
-
-        List<UpdateInventoryRequest> out = service.getPayload(order);
-        assertEquals(2, out.size());
-        assertEquals("P1", out.get(0).getProductId());
-        assertEquals(2, out.get(0).getQuantity());
-        assertEquals("P2", out.get(1).getProductId());
-        assertEquals(5, out.get(1).getQuantity());
-    }
 }
-
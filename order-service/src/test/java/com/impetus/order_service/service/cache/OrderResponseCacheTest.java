@@ -0,0 +1,128 @@
+package com.impetus.order_service.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.dto.OrderResponse;
+import com.impetus.order_service.enums.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderResponseCacheTest {
+
+    private static final Long USER = 7L;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private OrderResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new OrderResponseCache(Duration.ofSeconds(10), Duration.ofHours(1), 100,
+                new ObjectMapper().findAndRegisterModules(), meterRegistry, nanos::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Supplier<OrderResponse> loader(OrderStatus status) {
+        return () -> {
+            loads.incrementAndGet();
+            OrderResponse r = new OrderResponse();
+            r.setId(1L);
+            r.setUserId(USER);
+            r.setStatus(status);
+            r.setPlacedAt(Instant.parse("2025-01-01T10:00:00Z"));
+            return r;
+        };
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("order.response.cache.gets", "result", result).count();
+    }
+
+    @Test
+    void get_shouldServeRepeatPolls_withACopyPerCaller() {
+        OrderResponse first = cache.get(1L, USER, loader(OrderStatus.PENDING_PAYMENT));
+        OrderResponse second = cache.get(1L, USER, loader(OrderStatus.PENDING_PAYMENT));
+
+        assertEquals(1, loads.get());
+        assertNotSame(first, second);
+        assertEquals(OrderStatus.PENDING_PAYMENT, second.getStatus());
+        assertEquals(first.getPlacedAt(), second.getPlacedAt());
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+        assertEquals(1, meterRegistry.get("order.response.cache.size").gauge().value());
+    }
+
+    @Test
+    void get_shouldNotServeAnotherUsersOrder() {
+        cache.get(1L, USER, loader(OrderStatus.CONFIRMED));
+
+        assertThrows(RuntimeException.class, () -> cache.get(1L, 8L, () -> {
+            throw new RuntimeException("Order not found");
+        }));
+        assertEquals(0, gets("hit"));
+    }
+
+    @Test
+    void get_shouldKeepTerminalOrdersLongerThanInFlightOnes() {
+        cache.get(1L, USER, loader(OrderStatus.PENDING_PAYMENT));
+        cache.get(2L, USER, loader(OrderStatus.DELIVERED));
+
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+        cache.get(1L, USER, loader(OrderStatus.PENDING_PAYMENT));
+        cache.get(2L, USER, loader(OrderStatus.DELIVERED));
+
+        assertEquals(3, loads.get());
+        assertEquals(1, gets("hit"));
+    }
+
+    @Test
+    void invalidateAfterCommit_shouldWaitForTheTransactionToComplete() {
+        cache.get(1L, USER, loader(OrderStatus.PENDING_PAYMENT));
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit(1L);
+        cache.get(1L, USER, loader(OrderStatus.PENDING_PAYMENT));
+        assertEquals(1, loads.get());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        OrderResponse after = cache.get(1L, USER, loader(OrderStatus.CONFIRMED));
+
+        assertEquals(2, loads.get());
+        assertEquals(OrderStatus.CONFIRMED, after.getStatus());
+        assertEquals(1, meterRegistry.counter("order.response.cache.invalidations").count());
+    }
+
+    @Test
+    void get_shouldNotCacheALoad_thatOverlappedAnInvalidation() {
+        cache.get(1L, USER, () -> {
+            OrderResponse stale = loader(OrderStatus.PENDING_PAYMENT).get();
+            cache.invalidateAll(List.of(1L));
+            return stale;
+        });
+        OrderResponse next = cache.get(1L, USER, loader(OrderStatus.CONFIRMED));
+
+        assertEquals(OrderStatus.CONFIRMED, next.getStatus());
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,189 @@
+package com.impetus.order_service.service.cart;
+
+import com.impetus.order_service.entity.Cart;
+import com.impetus.order_service.entity.CartItem;
+import com.impetus.order_service.enums.CartStatus;
+import com.impetus.order_service.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindCartStoreTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Long userId = 42L;
+
+    private WriteBehindCartStore store(WriteBehindCartStore.Durability durability) {
+        return new WriteBehindCartStore(cartRepository, new TransactionTemplate(transactionManager), meterRegistry,
+                durability, 100, 1000, 1000, Duration.ofMinutes(30));
+    }
+
+    // Mimics the database assigning ids on insert
+    private void assignIdsOnSave() {
+        AtomicLong ids = new AtomicLong(100);
+        when(cartRepository.save(any(Cart.class))).thenAnswer(inv -> {
+            Cart c = inv.getArgument(0);
+            if (c.getId() == null) c.setId(ids.incrementAndGet());
+            c.getItems().stream().filter(i -> i.getId() == null).forEach(i -> i.setId(ids.incrementAndGet()));
+            return c;
+        });
+    }
+
+    private Cart cart(Long id) {
+        Cart c = new Cart();
+        c.setId(id);
+        c.setUserId(userId);
+        c.setCartStatus(CartStatus.ACTIVE);
+        return c;
+    }
+
+    private void addLine(Cart cart, String productId, int qty) {
+        CartItem item = new CartItem();
+        item.setProductId(productId);
+        item.setQuantity(qty);
+        cart.addItem(item);
+    }
+
+    private double writes() {
+        return meterRegistry.counter("cart.store.writes", "result", "success").count();
+    }
+
+    @Test
+    void findActive_shouldLoadOnce_andServeLaterReadsFromMemory() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.of(cart(1L)));
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.ASYNC);
+
+        assertEquals(1L, store.findActive(userId).orElseThrow().getId());
+        assertEquals(1L, store.findActive(userId).orElseThrow().getId());
+
+        verify(cartRepository, times(1)).findByUserIdAndCartStatus(any(), any());
+    }
+
+    @Test
+    void save_shouldCoalesceEdits_intoOneWritePerFlush() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.empty());
+        assignIdsOnSave();
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.ASYNC);
+
+        Cart cart = cart(null);
+        addLine(cart, "P1", 1);
+        cart = store.save(cart);
+        cart.getItems().get(0).setQuantity(3);
+        cart = store.save(cart);
+        addLine(cart, "P2", 1);
+        store.save(cart);
+        verify(cartRepository, never()).save(any());
+
+        store.flushPending();
+
+        verify(cartRepository, times(1)).save(any(Cart.class));
+        Cart current = store.findActive(userId).orElseThrow();
+        assertEquals(101L, current.getId());
+        assertEquals(3, current.getItems().get(0).getQuantity());
+        assertTrue(current.getItems().stream().allMatch(i -> i.getId() != null));
+
+        store.flushPending();
+        verify(cartRepository, times(1)).save(any(Cart.class));
+        assertEquals(1, writes());
+    }
+
+    @Test
+    void save_shouldKeepIdsAssignedByFlush_whenCallerHoldsAnOlderCopy() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.empty());
+        assignIdsOnSave();
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.ASYNC);
+
+        Cart cart = cart(null);
+        addLine(cart, "P1", 1);
+        Cart olderCopy = store.save(cart);
+        store.flushPending();
+
+        olderCopy.getItems().get(0).setQuantity(5);
+        store.save(olderCopy);
+        store.flushPending();
+
+        // Second write updates the cart and line the first one inserted instead of inserting new ones
+        verify(cartRepository, times(2)).save(argThat(c -> c.getId() == null || c.getId() == 101L));
+        Cart current = store.findActive(userId).orElseThrow();
+        assertEquals(101L, current.getId());
+        assertEquals(102L, current.getItems().get(0).getId());
+    }
+
+    @Test
+    void save_shouldWriteThroughAndForgetCart_whenItLeavesActiveStatus() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE))
+                .thenReturn(Optional.of(cart(1L)))
+                .thenReturn(Optional.empty());
+        when(cartRepository.save(any(Cart.class))).thenAnswer(inv -> inv.getArgument(0));
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.ASYNC);
+
+        Cart cart = store.findActive(userId).orElseThrow();
+        cart.setCartStatus(CartStatus.CHECKED_OUT);
+        store.save(cart);
+
+        verify(cartRepository).save(argThat(c -> c.getCartStatus() == CartStatus.CHECKED_OUT));
+        assertTrue(store.findActive(userId).isEmpty());
+        verify(cartRepository, times(2)).findByUserIdAndCartStatus(any(), any());
+    }
+
+    @Test
+    void save_shouldWriteImmediately_withWriteThroughDurability() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.empty());
+        assignIdsOnSave();
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.WRITE_THROUGH);
+
+        Cart cart = cart(null);
+        addLine(cart, "P1", 1);
+        store.save(cart);
+
+        verify(cartRepository).save(any(Cart.class));
+        assertEquals(1, writes());
+    }
+
+    @Test
+    void flushPending_shouldKeepCartPending_whenWriteFails() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.empty());
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(new RuntimeException("db down"))
+                .thenAnswer(inv -> inv.getArgument(0));
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.ASYNC);
+
+        store.save(cart(null));
+        store.flushPending();
+        assertEquals(0, writes());
+
+        store.flushPending();
+        assertEquals(1, writes());
+        verify(cartRepository, times(2)).save(any(Cart.class));
+    }
+
+    @Test
+    void flush_shouldThrow_whenCheckoutWriteFails() {
+        when(cartRepository.findByUserIdAndCartStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.empty());
+        when(cartRepository.save(any(Cart.class))).thenThrow(new RuntimeException("db down"));
+        WriteBehindCartStore store = store(WriteBehindCartStore.Durability.ASYNC);
+
+        store.save(cart(null));
+
+        assertThrows(IllegalStateException.class, () -> store.flush(userId));
+    }
+}
@@ -0,0 +1,167 @@
+package com.impetus.order_service.service.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderItem;
+import com.impetus.order_service.entity.ShippingAddress;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class OrderExportServiceTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T00:00:00Z");
+
+    @Autowired private EntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private OrderExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new OrderExportService(jdbcTemplate, objectMapper, 2);
+    }
+
+    private Order order(String number, OrderStatus status, Instant placedAt, String... products) {
+        Order order = new Order();
+        order.setOrderNumber(number);
+        order.setUserId(7L);
+        order.setStatus(status);
+        order.setPaymentStatus(PaymentStatus.CAPTURED);
+        order.setPaymentMode(PaymentMode.UPI);
+        order.setSubtotalAmount(100 * products.length);
+        order.setTaxAmount(0);
+        order.setShippingFee(0);
+        order.setDiscountAmount(0);
+        order.setTotalAmount(100 * products.length);
+        order.setPlacedAt(placedAt);
+        for (String product : products) {
+            OrderItem item = new OrderItem();
+            item.setProductId(product);
+            item.setProductSku("SKU-" + product);
+            item.setProductName(product + " name");
+            item.setUnitPrice(100);
+            item.setQuantity(1);
+            item.setTotalPrice(100);
+            order.addItem(item);
+        }
+        ShippingAddress address = new ShippingAddress();
+        address.setUserId(7L);
+        address.setContactName("Asha, \"Home\"");
+        address.setPhone("9876543210");
+        address.setAddressLabel("Home");
+        address.setAddressLine1("1 MG Road");
+        address.setCity("Bengaluru");
+        address.setState("KA");
+        address.setPincode("560001");
+        address.setOrder(order);
+        order.setShippingAddress(address);
+        entityManager.persist(order);
+        return order;
+    }
+
+    private String export(OrderExportService.Filter filter, OrderExportService.Format format) throws Exception {
+        entityManager.flush();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(filter, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void ndjson_shouldWriteOneLinePerOrder_withNestedItemsInPlacedAtOrder() throws Exception {
+        order("ORD-2", OrderStatus.CONFIRMED, T0.plusSeconds(60), "P1", "P2", "P3");
+        order("ORD-1", OrderStatus.CONFIRMED, T0, "P9");
+        order("ORD-3", OrderStatus.CANCELLED, T0.plusSeconds(120));
+
+        String[] lines = export(new OrderExportService.Filter(null, null, null), OrderExportService.Format.NDJSON)
+                .split("\n");
+
+        assertEquals(3, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        JsonNode second = objectMapper.readTree(lines[1]);
+        JsonNode third = objectMapper.readTree(lines[2]);
+        assertEquals("ORD-1", first.get("orderNumber").asText());
+        assertEquals("UPI", first.get("paymentMode").asText());
+        assertEquals(T0.toString(), first.get("placedAt").asText());
+        assertEquals("Bengaluru", first.get("shippingAddress").get("city").asText());
+        assertEquals(3, second.get("items").size());
+        assertEquals(0, third.get("items").size());
+    }
+
+    @Test
+    void csv_shouldRepeatOrderColumnsPerItem_andQuoteSpecialCharacters() throws Exception {
+        order("ORD-1", OrderStatus.CONFIRMED, T0, "P1", "P2");
+        order("ORD-2", OrderStatus.CANCELLED, T0.plusSeconds(60));
+
+        List<String> lines = export(new OrderExportService.Filter(null, null, null), OrderExportService.Format.CSV)
+                .lines().toList();
+
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).startsWith("order_id,order_number,"));
+        assertTrue(lines.get(1).contains(",ORD-1,"));
+        assertTrue(lines.get(1).contains(",\"Asha, \"\"Home\"\"\","));
+        assertTrue(lines.get(1).endsWith(",P1,SKU-P1,P1 name,100,1,100"));
+        assertTrue(lines.get(2).endsWith(",P2,SKU-P2,P2 name,100,1,100"));
+        // Order without items: item columns left empty
+        assertTrue(lines.get(3).contains(",ORD-2,"));
+        assertTrue(lines.get(3).endsWith(",560001,,,,,,"));
+    }
+
+    @Test
+    void csv_shouldNeutraliseFormulasInUserText() throws Exception {
+        Order order = order("ORD-1", OrderStatus.CONFIRMED, T0, "P1");
+        order.getShippingAddress().setContactName("=HYPERLINK(\"http://x\",\"y\")");
+        order.getShippingAddress().setAddressLine1("+91 MG Road");
+        order.getShippingAddress().setAddressLine2("@SUM(1)");
+        order.getItems().get(0).setProductName("-2+3");
+
+        List<String> lines = export(new OrderExportService.Filter(null, null, null), OrderExportService.Format.CSV)
+                .lines().toList();
+
+        assertTrue(lines.get(1).contains(",\"'=HYPERLINK(\"\"http://x\"\",\"\"y\"\")\","));
+        assertTrue(lines.get(1).contains(",'+91 MG Road,'@SUM(1),"));
+        assertTrue(lines.get(1).endsWith(",P1,SKU-P1,'-2+3,100,1,100"));
+    }
+
+    @Test
+    void export_shouldFilterByPlacedAtRangeAndStatus() throws Exception {
+        order("ORD-1", OrderStatus.CONFIRMED, T0.minusSeconds(1), "P1");
+        order("ORD-2", OrderStatus.CONFIRMED, T0, "P1");
+        order("ORD-3", OrderStatus.CANCELLED, T0.plusSeconds(10), "P1");
+        order("ORD-4", OrderStatus.DELIVERED, T0.plusSeconds(20), "P1");
+        order("ORD-5", OrderStatus.CONFIRMED, T0.plusSeconds(60), "P1");
+
+        String out = export(new OrderExportService.Filter(T0, T0.plusSeconds(60),
+                List.of(OrderStatus.CONFIRMED, OrderStatus.DELIVERED)), OrderExportService.Format.NDJSON);
+
+        List<String> numbers = out.lines().map(line -> {
+            try {
+                return objectMapper.readTree(line).get("orderNumber").asText();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList();
+        assertEquals(List.of("ORD-2", "ORD-4"), numbers);
+    }
+
+    @Test
+    void filter_shouldRejectEmptyRange() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderExportService.Filter(T0, T0, null));
+    }
+}
@@ -0,0 +1,173 @@
+package com.impetus.order_service.service.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not transactional, so claims commit and concurrent duplicates see each other like separate requests would
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyFilterTest {
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyStore store;
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        store = store(Clock.systemUTC());
+        filter = new IdempotencyFilter(store, new ObjectMapper().findAndRegisterModules());
+    }
+
+    private IdempotencyStore store(Clock clock) {
+        return new IdempotencyStore(repository, new SimpleMeterRegistry(), Duration.ofHours(24), Duration.ofMinutes(1),
+                Duration.ofSeconds(5), Duration.ofMillis(20), 100, clock);
+    }
+
+    private MockHttpServletRequest post(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/order");
+        request.addHeader("X-User-Id", "101");
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    // Echoes the body back with a per-execution order number
+    private FilterChain controller(int status) {
+        return (req, res) -> {
+            String body = new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            ((jakarta.servlet.http.HttpServletResponse) res).setStatus(status);
+            res.setContentType("application/json");
+            res.getWriter().write("{\"order\":" + executions.incrementAndGet() + ",\"request\":" + body + "}");
+        };
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    @Test
+    void retry_shouldGetStoredResponse_withoutRunningRequestAgain() throws Exception {
+        MockHttpServletResponse first = send(post("k1", "{\"a\":1}"), controller(200));
+        MockHttpServletResponse retry = send(post("k1", "{\"a\":1}"), controller(200));
+
+        assertEquals(1, executions.get());
+        assertEquals("{\"order\":1,\"request\":{\"a\":1}}", first.getContentAsString());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals(200, retry.getStatus());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void keys_shouldBeScopedPerUser() throws Exception {
+        send(post("k1", "{}"), controller(200));
+        MockHttpServletRequest otherUser = post("k1", "{}");
+        otherUser.removeHeader("X-User-Id");
+        otherUser.addHeader("X-User-Id", "202");
+        send(otherUser, controller(200));
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void reusedKey_withDifferentBody_shouldBeRejected() throws Exception {
+        send(post("k1", "{\"a\":1}"), controller(200));
+        MockHttpServletResponse response = send(post("k1", "{\"a\":2}"), controller(200));
+
+        assertEquals(422, response.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void serverError_shouldNotBeStored_soRetryRunsAgain() throws Exception {
+        assertEquals(500, send(post("k1", "{}"), controller(500)).getStatus());
+        assertEquals(200, send(post("k1", "{}"), controller(200)).getStatus());
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void requestWithoutKey_shouldPassThrough() throws Exception {
+        send(post(null, "{}"), controller(200));
+        send(post(null, "{}"), controller(200));
+
+        assertEquals(2, executions.get());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void concurrentDuplicate_shouldWaitForInFlightRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            controller(201).doFilter(req, res);
+        };
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> sendQuietly(slow));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> duplicate = CompletableFuture.supplyAsync(() -> sendQuietly(slow));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone(), "duplicate should wait for the first request");
+        release.countDown();
+
+        assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatus());
+        MockHttpServletResponse replayed = duplicate.get(5, TimeUnit.SECONDS);
+        assertEquals(201, replayed.getStatus());
+        assertEquals(first.get().getContentAsString(), replayed.getContentAsString());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void purgeExpired_shouldDeleteRecordsPastRetention() throws Exception {
+        send(post("k1", "{}"), controller(200));
+        send(post("k2", "{}"), controller(200));
+        assertEquals(2, repository.count());
+
+        store(Clock.offset(Clock.systemUTC(), Duration.ofHours(25))).purgeExpired();
+
+        assertEquals(0, repository.count());
+    }
+
+    private MockHttpServletResponse sendQuietly(FilterChain chain) {
+        try {
+            return send(post("k1", "{}"), chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.impetus.order_service.service.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderReservation;
+import com.impetus.order_service.entity.Payment;
+import com.impetus.order_service.entity.PaymentWebhookEvent;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.enums.WebhookEventStatus;
+import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
+import com.impetus.order_service.repository.PaymentWebhookEventRepository;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentWebhookProcessorTest {
+
+    private static final String SECRET = "whsec";
+
+    @Mock private OrderRepository orderRepository;
+    @Mock private OrderReservationRepository orderReservationRepository;
+    @Mock private PaymentWebhookEventRepository webhookEventRepository;
+    @Mock private OutboxService outboxService;
+    @Mock private OrderResponseCache orderResponseCache;
+    @Mock private CheckoutSagaOrchestrator checkoutSaga;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final Instant now = Instant.parse("2025-01-01T10:00:00Z");
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentWebhookProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        processor = processor(100);
+    }
+
+    private PaymentWebhookProcessor processor(int capacity) {
+        return new PaymentWebhookProcessor(orderRepository, orderReservationRepository, webhookEventRepository,
+                outboxService, orderResponseCache, checkoutSaga, new TransactionTemplate(transactionManager),
+                new ObjectMapper(), meterRegistry, SECRET, capacity, 1, 50, Duration.ofMillis(10), Duration.ofMinutes(1), 3,
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static byte[] event(String type, long orderId) {
+        return ("{\"event\":\"" + type + "\",\"created_at\":" + (Instant.parse("2025-01-01T09:59:58Z").getEpochSecond())
+                + ",\"payload\":{\"payment\":{\"entity\":{\"id\":\"pay_1\",\"notes\":{\"order_id\":\"" + orderId + "\"}}}}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sign(byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(body));
+    }
+
+    private PaymentWebhookProcessor.Acceptance send(String eventId, byte[] body) throws Exception {
+        return processor.accept(eventId, sign(body), body);
+    }
+
+    private Order pendingOrder(long id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(OrderStatus.PENDING_PAYMENT);
+        order.setPaymentStatus(PaymentStatus.INITIATED);
+        Payment payment = new Payment();
+        payment.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentReference(payment);
+        return order;
+    }
+
+    private PaymentWebhookEvent recorded(String eventId, WebhookEventStatus status, int attempts, byte[] body) {
+        PaymentWebhookEvent row = new PaymentWebhookEvent();
+        row.setEventId(eventId);
+        row.setStatus(status);
+        row.setAttempts(attempts);
+        row.setPayload(body == null ? null : new String(body, StandardCharsets.UTF_8));
+        row.setNewRecord(false);
+        return row;
+    }
+
+    private OrderReservation reservation(Order order) {
+        OrderReservation r = new OrderReservation();
+        r.setOrder(order);
+        r.setStatus(ReservationStatus.PENDING);
+        return r;
+    }
+
+    private void confirms(long orderId, int rows) {
+        when(orderRepository.updateStatus(eq(orderId), eq(List.of(OrderStatus.PENDING_PAYMENT, OrderStatus.CREATED)),
+                eq(OrderStatus.CONFIRMED), eq(PaymentStatus.CAPTURED))).thenReturn(rows);
+    }
+
+    private double events(String result) {
+        return meterRegistry.counter("payments.webhook.events", "result", result).count();
+    }
+
+    @Test
+    void accept_shouldRejectBadSignature() {
+        byte[] body = event("payment.captured", 1);
+
+        assertEquals(PaymentWebhookProcessor.Acceptance.INVALID_SIGNATURE, processor.accept("evt_1", "00ff", body));
+        assertEquals(PaymentWebhookProcessor.Acceptance.INVALID_SIGNATURE, processor.accept("evt_1", null, body));
+        assertEquals(PaymentWebhookProcessor.Acceptance.INVALID_SIGNATURE, processor.accept("evt_1", "not-hex", body));
+    }
+
+    @Test
+    void accept_shouldRefuse_whenQueueIsFull() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        processor = processor(1);
+
+        assertEquals(PaymentWebhookProcessor.Acceptance.QUEUED, send("evt_1", event("payment.captured", 1)));
+        assertEquals(PaymentWebhookProcessor.Acceptance.QUEUE_FULL, send("evt_2", event("payment.captured", 2)));
+        assertEquals(1, meterRegistry.get("payments.webhook.queue.depth").gauge().value());
+    }
+
+    @Test
+    void drain_shouldApplyBatch_inOneTransaction_andSkipDuplicates() throws Exception {
+        Order o1 = pendingOrder(1L);
+        Order o2 = pendingOrder(2L);
+        OrderReservation r1 = reservation(o1);
+        when(webhookEventRepository.findByEventIdIn(anyCollection()))
+                .thenReturn(List.of(recorded("evt_old", WebhookEventStatus.APPLIED, 0, null)));
+        when(orderRepository.findByIdIn(anyCollection())).thenReturn(List.of(o1, o2));
+        when(orderReservationRepository.findByOrderIdIn(anyCollection())).thenReturn(List.of(r1));
+        confirms(1L, 1);
+        when(orderRepository.updatePaymentStatusUnless(2L, OrderStatus.PENDING_PAYMENT, List.of(PaymentStatus.CAPTURED),
+                PaymentStatus.FAILED)).thenReturn(1);
+
+        send("evt_1", event("payment.captured", 1));
+        send("evt_1", event("payment.captured", 1));      // redelivered inside the batch
+        send("evt_old", event("payment.captured", 1));    // applied in an earlier batch
+        send("evt_2", event("payment.failed", 2));
+        processor.drain();
+
+        verify(transactionManager, times(1)).getTransaction(any());
+        assertEquals(PaymentStatus.CAPTURED, o1.getPaymentReference().getPaymentStatus());
+        assertEquals(ReservationStatus.CONFIRMED, r1.getStatus());
+        verify(outboxService).enqueueInventoryCommit(eq(1L), eq(List.of(r1)));
+
+        assertEquals(PaymentStatus.FAILED, o2.getPaymentReference().getPaymentStatus());
+        verify(orderResponseCache).invalidateAfterCommit(List.of(1L, 2L));
+        verify(checkoutSaga).paymentCaptured(List.of(1L));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PaymentWebhookEvent>> saved = ArgumentCaptor.forClass(List.class);
+        verify(webhookEventRepository).saveAll(saved.capture());
+        assertEquals(List.of("evt_1", "evt_2"), saved.getValue().stream().map(PaymentWebhookEvent::getEventId).toList());
+
+        assertEquals(2, events("applied"));
+        assertEquals(2, events("duplicate"));
+        assertEquals(4, meterRegistry.get("payments.webhook.batch.size").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("payments.webhook.lag").timer().count());
+    }
+
+    @Test
+    void drain_shouldIgnoreCapture_forOrderThatIsAlreadyConfirmed() throws Exception {
+        Order confirmed = pendingOrder(1L);
+        confirmed.setStatus(OrderStatus.CONFIRMED);
+        confirmed.setPaymentStatus(PaymentStatus.CAPTURED);
+        when(orderRepository.findByIdIn(anyCollection())).thenReturn(List.of(confirmed));
+
+        send("evt_1", event("payment.captured", 1));
+        processor.drain();
+
+        verifyNoInteractions(outboxService);
+        verify(checkoutSaga).refundCapturedAfterCancel(List.of());
+        assertEquals(1, events("ignored"));
+    }
+
+    @Test
+    void drain_shouldRecordTheCaptureAndRefund_forOrderThatWasAlreadyCancelled() throws Exception {
+        Order cancelled = pendingOrder(1L);
+        cancelled.setStatus(OrderStatus.CANCELLED);
+        when(orderRepository.findByIdIn(anyCollection())).thenReturn(List.of(cancelled));
+        when(orderRepository.updatePaymentStatusUnless(eq(1L), eq(OrderStatus.CANCELLED), anyCollection(),
+                eq(PaymentStatus.CAPTURED))).thenReturn(1);
+
+        send("evt_1", event("payment.captured", 1));
+        processor.drain();
+
+        assertEquals(PaymentStatus.CAPTURED, cancelled.getPaymentReference().getPaymentStatus());
+        verify(checkoutSaga).refundCapturedAfterCancel(List.of(1L));
+        verify(checkoutSaga).paymentCaptured(List.of());
+        verifyNoInteractions(outboxService);
+        assertEquals(1, events("applied"));
+    }
+
+    @Test
+    void drain_shouldRefund_whenTheExpirySweepCancelsTheOrderFirst() throws Exception {
+        // Loaded as pending, but the sweep's bulk cancel committed before the conditional update ran
+        Order order = pendingOrder(1L);
+        OrderReservation r1 = reservation(order);
+        when(orderRepository.findByIdIn(anyCollection())).thenReturn(List.of(order));
+        when(orderReservationRepository.findByOrderIdIn(anyCollection())).thenReturn(List.of(r1));
+        confirms(1L, 0);
+        when(orderRepository.updatePaymentStatusUnless(1L, OrderStatus.CANCELLED,
+                List.of(PaymentStatus.CAPTURED, PaymentStatus.REFUND_INITIATED, PaymentStatus.REFUNDED),
+                PaymentStatus.CAPTURED)).thenReturn(1);
+
+        send("evt_1", event("payment.captured", 1));
+        processor.drain();
+
+        // Nothing is flushed from the stale entity over the cancel
+        assertEquals(OrderStatus.PENDING_PAYMENT, order.getStatus());
+        assertEquals(PaymentStatus.INITIATED, order.getPaymentStatus());
+        assertEquals(ReservationStatus.PENDING, r1.getStatus());
+        verifyNoInteractions(outboxService);
+        verify(checkoutSaga).paymentCaptured(List.of());
+        verify(checkoutSaga).refundCapturedAfterCancel(List.of(1L));
+        assertEquals(1, events("applied"));
+    }
+
+    @Test
+    void drain_shouldRetryEventsOneByOne_whenBatchFails_andKeepTheOnesThatStillFail() throws Exception {
+        Order o1 = pendingOrder(1L);
+        Order o2 = pendingOrder(2L);
+        when(orderRepository.findByIdIn(anyCollection()))
+                .thenThrow(new RuntimeException("deadlock"))
+                .thenReturn(List.of(o1))
+                .thenThrow(new RuntimeException("still broken"));
+        confirms(1L, 1);
+
+        send("evt_1", event("payment.captured", 1));
+        send("evt_2", event("payment.captured", 2));
+        processor.drain();
+
+        verify(checkoutSaga).paymentCaptured(List.of(1L));
+        verify(orderRepository, never()).updateStatus(eq(2L), anyCollection(), any(), any());
+        assertEquals(1, events("applied"));
+        assertEquals(1, events("failed"));
+
+        ArgumentCaptor<PaymentWebhookEvent> kept = ArgumentCaptor.forClass(PaymentWebhookEvent.class);
+        verify(webhookEventRepository).save(kept.capture());
+        assertEquals("evt_2", kept.getValue().getEventId());
+        assertEquals(WebhookEventStatus.FAILED, kept.getValue().getStatus());
+        assertEquals(1, kept.getValue().getAttempts());
+        assertEquals(new String(event("payment.captured", 2), StandardCharsets.UTF_8), kept.getValue().getPayload());
+        assertEquals(now.plus(Duration.ofMinutes(1)), kept.getValue().getNextAttemptAt());
+        assertEquals("still broken", kept.getValue().getLastError());
+    }
+
+    @Test
+    void drain_shouldParkAFailedEvent_afterMaxAttempts() throws Exception {
+        when(webhookEventRepository.findByEventIdIn(anyCollection()))
+                .thenReturn(List.of(recorded("evt_1", WebhookEventStatus.FAILED, 2, event("payment.captured", 1))));
+        // Loaded again after the rollback, in the state the database kept
+        PaymentWebhookEvent row = recorded("evt_1", WebhookEventStatus.FAILED, 2, event("payment.captured", 1));
+        when(webhookEventRepository.findById("evt_1")).thenReturn(Optional.of(row));
+        when(orderRepository.findByIdIn(anyCollection())).thenThrow(new RuntimeException("still broken"));
+
+        send("evt_1", event("payment.captured", 1));
+        processor.drain();
+
+        assertEquals(WebhookEventStatus.FAILED, row.getStatus());
+        assertEquals(3, row.getAttempts());
+        assertNull(row.getNextAttemptAt());
+        assertEquals(1, events("parked"));
+        assertEquals(0, events("failed"));
+    }
+
+    @Test
+    void retryFailed_shouldQueueDueEventsAgain_andMarkThemApplied() throws Exception {
+        Order o1 = pendingOrder(1L);
+        PaymentWebhookEvent row = recorded("evt_1", WebhookEventStatus.FAILED, 1, event("payment.captured", 1));
+        row.setNextAttemptAt(now);
+        when(webhookEventRepository.findDue(eq(WebhookEventStatus.FAILED), eq(now), any())).thenReturn(List.of(row));
+        when(webhookEventRepository.findByEventIdIn(anyCollection())).thenReturn(List.of(row));
+        when(orderRepository.findByIdIn(anyCollection())).thenReturn(List.of(o1));
+        confirms(1L, 1);
+
+        processor.retryFailed();
+        // Leased, so the next sweep doesn't queue it a second time
+        assertEquals(now.plus(Duration.ofMinutes(1)), row.getNextAttemptAt());
+        processor.drain();
+
+        verify(checkoutSaga).paymentCaptured(List.of(1L));
+        assertEquals(WebhookEventStatus.APPLIED, row.getStatus());
+        assertNull(row.getPayload());
+        assertNull(row.getNextAttemptAt());
+        // The row is updated in place, not inserted again
+        verify(webhookEventRepository).saveAll(List.of());
+        assertEquals(1, events("requeued"));
+        assertEquals(1, events("applied"));
+    }
+
+    @Test
+    void backoff_shouldDoublePerAttempt_andCap() {
+        assertEquals(Duration.ofMinutes(1), processor.backoff(1));
+        assertEquals(Duration.ofMinutes(4), processor.backoff(3));
+        assertEquals(Duration.ofMinutes(64), processor.backoff(20));
+    }
+
+    @Test
+    void drain_shouldDropMalformedEvents() throws Exception {
+        send("evt_1", "{\"event\":\"payment.captured\"}".getBytes(StandardCharsets.UTF_8));
+        processor.drain();
+
+        assertEquals(1, events("malformed"));
+        verifyNoInteractions(orderRepository);
+    }
+}
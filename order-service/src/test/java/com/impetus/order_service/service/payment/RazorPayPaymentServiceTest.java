@@ -0,0 +1,103 @@
+package com.impetus.order_service.service.payment;
+
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.Payment;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.mapper.OrderMapper;
+import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
+import com.impetus.order_service.repository.PaymentRepository;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.saga.CheckoutSagaOrchestrator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RazorPayPaymentServiceTest {
+
+    @Mock private OrderRepository orderRepository;
+    @Mock private PaymentRepository paymentRepository;
+    @Mock private OrderReservationRepository orderReservationRepository;
+    @Mock private OutboxService outboxService;
+    @Mock private OrderResponseCache orderResponseCache;
+    @Mock private CheckoutSagaOrchestrator checkoutSaga;
+
+    private RazorPayPaymentService paymentService;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = new RazorPayPaymentService(orderRepository, paymentRepository, mock(OrderMapper.class),
+                orderReservationRepository, outboxService, orderResponseCache, checkoutSaga);
+    }
+
+    private Order order(OrderStatus status, PaymentStatus paymentStatus) {
+        Order order = new Order();
+        order.setId(1L);
+        order.setUserId(7L);
+        order.setStatus(status);
+        order.setPaymentStatus(paymentStatus);
+        order.setTotalAmount(500);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        return order;
+    }
+
+    private Payment saved(Long id) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(payment);
+        return payment;
+    }
+
+    @Test
+    void initiatePayment_shouldStartTheCapture_forAnOrderAwaitingPayment() {
+        Order order = order(OrderStatus.CREATED, PaymentStatus.PENDING);
+        saved(55L);
+        when(checkoutSaga.capturePayment(1L, 55L)).thenReturn(true);
+
+        paymentService.initiatePayment(1L);
+
+        assertEquals(OrderStatus.PENDING_PAYMENT, order.getStatus());
+        assertEquals(PaymentStatus.INITIATED, order.getPaymentStatus());
+        verify(checkoutSaga).capturePayment(1L, 55L);
+    }
+
+    @Test
+    void initiatePayment_shouldRejectAConfirmedOrder_withoutTouchingIt() {
+        Order order = order(OrderStatus.CONFIRMED, PaymentStatus.CAPTURED);
+
+        assertThrows(IllegalArgumentException.class, () -> paymentService.initiatePayment(1L));
+
+        assertEquals(OrderStatus.CONFIRMED, order.getStatus());
+        assertEquals(PaymentStatus.CAPTURED, order.getPaymentStatus());
+        verifyNoInteractions(paymentRepository, checkoutSaga);
+    }
+
+    @Test
+    void initiatePayment_shouldRejectACancelledOrder() {
+        order(OrderStatus.CANCELLED, PaymentStatus.PENDING);
+
+        assertThrows(IllegalArgumentException.class, () -> paymentService.initiatePayment(1L));
+
+        verifyNoInteractions(paymentRepository, checkoutSaga);
+    }
+
+    @Test
+    void initiatePayment_shouldFail_whileTheOrdersCaptureIsAlreadyRunning() {
+        order(OrderStatus.PENDING_PAYMENT, PaymentStatus.INITIATED);
+        saved(56L);
+        when(checkoutSaga.capturePayment(1L, 56L)).thenReturn(false);
+
+        assertThrows(IllegalArgumentException.class, () -> paymentService.initiatePayment(1L));
+    }
+}
@@ -0,0 +1,402 @@
+package com.impetus.order_service.service.saga;
+
+import com.impetus.order_service.entity.CheckoutSagaStep;
+import com.impetus.order_service.entity.Order;
+import com.impetus.order_service.entity.OrderReservation;
+import com.impetus.order_service.enums.OrderStatus;
+import com.impetus.order_service.enums.PaymentMode;
+import com.impetus.order_service.enums.PaymentStatus;
+import com.impetus.order_service.enums.ReservationStatus;
+import com.impetus.order_service.enums.SagaStatus;
+import com.impetus.order_service.enums.SagaStep;
+import com.impetus.order_service.enums.SagaStepStatus;
+import com.impetus.order_service.repository.CheckoutSagaRepository;
+import com.impetus.order_service.repository.CheckoutSagaStepRepository;
+import com.impetus.order_service.repository.OrderRepository;
+import com.impetus.order_service.repository.OrderReservationRepository;
+import com.impetus.order_service.service.cache.OrderResponseCache;
+import com.impetus.order_service.service.outbox.OutboxService;
+import com.impetus.order_service.service.payment.PaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the saga against H2, outside a test transaction so after-commit hooks fire. Work handed to the saga's
+ * executor is queued and run by {@link #runTasks}, standing in for the saga threads.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutSagaOrchestratorTest {
+
+    @Autowired private CheckoutSagaRepository sagaRepository;
+    @Autowired private CheckoutSagaStepRepository stepRepository;
+    @Autowired private OrderRepository orderRepository;
+    @Autowired private OrderReservationRepository orderReservationRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private TransactionTemplate transactionTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private CheckoutSagaOrchestrator saga;
+    private int orderNumbers;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<PaymentService> payments = mock(ObjectProvider.class);
+        when(payments.getObject()).thenReturn(paymentService);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        meterRegistry = new SimpleMeterRegistry();
+        saga = new CheckoutSagaOrchestrator(sagaRepository, stepRepository, orderRepository,
+                orderReservationRepository, outboxService, payments, mock(OrderResponseCache.class),
+                transactionTemplate, meterRegistry, tasks::add, Duration.ofSeconds(30), 3, 100,
+                Clock.systemUTC());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stepRepository.deleteAllInBatch();
+        sagaRepository.deleteAllInBatch();
+        orderRepository.deleteAll();
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setOrderNumber("ORD-SAGA-" + (++orderNumbers));
+        order.setUserId(7L);
+        order.setStatus(OrderStatus.PENDING_PAYMENT);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentMode(PaymentMode.UPI);
+        order.setSubtotalAmount(500);
+        order.setTaxAmount(0);
+        order.setShippingFee(0);
+        order.setDiscountAmount(0);
+        order.setTotalAmount(500);
+        order.setPlacedAt(Instant.now());
+        OrderReservation reservation = new OrderReservation();
+        reservation.setProductId("P1");
+        reservation.setQuantity(2);
+        reservation.setStatus(ReservationStatus.PENDING);
+        reservation.setCreatedAt(Instant.now());
+        order.addReservation(reservation);
+        return order;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void inTransaction(Runnable body) {
+        transactionTemplate.executeWithoutResult(status -> body.run());
+        runTasks();
+    }
+
+    private void resume() {
+        saga.resume(Instant.now().plusSeconds(1));
+        runTasks();
+    }
+
+    private Long placeOrder() {
+        return saga.start(() -> orderRepository.save(newOrder())).getId();
+    }
+
+    // Payment captured, as handlePaymentSuccess or the webhook leave it
+    private Long paidOrder() {
+        Long orderId = placeOrder();
+        inTransaction(() -> {
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            order.setStatus(OrderStatus.CONFIRMED);
+            order.setPaymentStatus(PaymentStatus.CAPTURED);
+            orderReservationRepository.findByOrderId(orderId).forEach(r -> r.setStatus(ReservationStatus.CONFIRMED));
+            saga.paymentCaptured(List.of(orderId));
+        });
+        return orderId;
+    }
+
+    private Map<SagaStep, CheckoutSagaStep> steps(Long orderId) {
+        Map<SagaStep, CheckoutSagaStep> steps = new EnumMap<>(SagaStep.class);
+        stepRepository.findByOrderId(orderId).forEach(s -> steps.put(s.getStep(), s));
+        return steps;
+    }
+
+    private SagaStatus sagaStatus(Long orderId) {
+        return sagaRepository.findById(orderId).orElseThrow().getStatus();
+    }
+
+    @Test
+    void start_shouldSaveTheOrderWithItsSaga() {
+        Long orderId = placeOrder();
+
+        assertEquals(SagaStatus.RUNNING, sagaStatus(orderId));
+        Map<SagaStep, CheckoutSagaStep> steps = steps(orderId);
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.PLACE_ORDER).getStatus());
+        assertEquals(SagaStepStatus.PENDING, steps.get(SagaStep.CAPTURE_PAYMENT).getStatus());
+        assertEquals(SagaStepStatus.PENDING, steps.get(SagaStep.COMMIT_INVENTORY).getStatus());
+    }
+
+    @Test
+    void start_shouldNotLeaveASaga_whenTheOrderCannotBeSaved() {
+        assertThrows(RuntimeException.class, () -> saga.start(() -> {
+            orderRepository.save(newOrder());
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(0, sagaRepository.count());
+        assertEquals(0, orderRepository.count());
+    }
+
+    @Test
+    void capturePayment_shouldCaptureOnlyOnceTheCallerCommits() {
+        Long orderId = placeOrder();
+
+        inTransaction(() -> {
+            saga.capturePayment(orderId, 55L);
+            verifyNoInteractions(paymentService);
+        });
+
+        verify(paymentService).handlePaymentSuccess(orderId, 55L);
+        CheckoutSagaStep capture = steps(orderId).get(SagaStep.CAPTURE_PAYMENT);
+        assertEquals(SagaStepStatus.RUNNING, capture.getStatus());
+        assertEquals(55L, capture.getReference());
+    }
+
+    @Test
+    void capturePayment_shouldNotReopenACaptureThatIsRunningOrDone() {
+        Long orderId = placeOrder();
+        inTransaction(() -> assertTrue(saga.capturePayment(orderId, 55L)));
+
+        inTransaction(() -> assertFalse(saga.capturePayment(orderId, 56L)));
+        inTransaction(() -> saga.paymentCaptured(List.of(orderId)));
+        inTransaction(() -> assertFalse(saga.capturePayment(orderId, 57L)));
+
+        verify(paymentService, times(1)).handlePaymentSuccess(any(), any());
+        CheckoutSagaStep capture = steps(orderId).get(SagaStep.CAPTURE_PAYMENT);
+        assertEquals(SagaStepStatus.DONE, capture.getStatus());
+        assertEquals(55L, capture.getReference());
+    }
+
+    @Test
+    void resume_shouldRunACaptureAgain_afterItFailed() {
+        Long orderId = placeOrder();
+        when(paymentService.handlePaymentSuccess(orderId, 55L)).thenThrow(new RuntimeException("gateway down"));
+        inTransaction(() -> saga.capturePayment(orderId, 55L));
+
+        CheckoutSagaStep capture = steps(orderId).get(SagaStep.CAPTURE_PAYMENT);
+        assertEquals(SagaStepStatus.FAILED, capture.getStatus());
+        assertEquals("gateway down", capture.getLastError());
+
+        resume();
+
+        verify(paymentService, times(2)).handlePaymentSuccess(orderId, 55L);
+    }
+
+    @Test
+    void resume_shouldCompensate_whenTheCaptureRunsOutOfAttempts() {
+        Long orderId = placeOrder();
+        when(paymentService.handlePaymentSuccess(orderId, 55L)).thenThrow(new RuntimeException("gateway down"));
+        inTransaction(() -> saga.capturePayment(orderId, 55L));
+
+        resume();
+        resume();
+
+        verify(paymentService, times(3)).handlePaymentSuccess(orderId, 55L);
+        CheckoutSagaStep capture = steps(orderId).get(SagaStep.CAPTURE_PAYMENT);
+        assertEquals(SagaStepStatus.FAILED, capture.getStatus());
+        assertEquals(3, capture.getAttempts());
+        assertEquals("gateway down", capture.getLastError());
+        assertEquals(OrderStatus.CANCELLED, orderRepository.findById(orderId).orElseThrow().getStatus());
+        assertEquals(SagaStatus.COMPENSATED, sagaStatus(orderId));
+        assertEquals("payment-capture-failed", sagaRepository.findById(orderId).orElseThrow().getReason());
+        // Never paid, so there is nothing to refund
+        verify(paymentService, never()).initiateRefund(any(), any());
+
+        // Exhausted captures aren't picked up again
+        resume();
+        verify(paymentService, times(3)).handlePaymentSuccess(orderId, 55L);
+    }
+
+    @Test
+    void inventoryCommitted_shouldCompleteTheSaga() {
+        Long orderId = paidOrder();
+
+        inTransaction(() -> saga.inventoryCommitted(orderId));
+
+        assertEquals(SagaStatus.COMPLETED, sagaStatus(orderId));
+        assertEquals(SagaStepStatus.DONE, steps(orderId).get(SagaStep.CAPTURE_PAYMENT).getStatus());
+        assertEquals(SagaStepStatus.DONE, steps(orderId).get(SagaStep.COMMIT_INVENTORY).getStatus());
+    }
+
+    @Test
+    void compensate_shouldRefundAndCancel_whenStockCouldNotBeCommitted() {
+        Long orderId = paidOrder();
+
+        inTransaction(() -> saga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-unavailable"));
+
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertEquals(OrderStatus.CANCELLED, order.getStatus());
+        assertEquals(PaymentStatus.REFUND_INITIATED, order.getPaymentStatus());
+        assertNotNull(order.getCancelledAt());
+        assertTrue(orderReservationRepository.findByOrderId(orderId).stream()
+                .allMatch(r -> r.getStatus() == ReservationStatus.CANCELLED));
+        verify(paymentService).initiateRefund(orderId, 500 * 100);
+        // Nothing was committed, so there is nothing to release
+        verify(outboxService, never()).enqueueInventoryRelease(any(), any(), any());
+
+        Map<SagaStep, CheckoutSagaStep> steps = steps(orderId);
+        assertEquals(SagaStepStatus.FAILED, steps.get(SagaStep.COMMIT_INVENTORY).getStatus());
+        assertEquals(SagaStepStatus.SKIPPED, steps.get(SagaStep.RELEASE_INVENTORY).getStatus());
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.REFUND_PAYMENT).getStatus());
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.CANCEL_ORDER).getStatus());
+        assertEquals(SagaStatus.COMPENSATED, sagaStatus(orderId));
+        assertEquals("inventory-unavailable", sagaRepository.findById(orderId).orElseThrow().getReason());
+    }
+
+    @Test
+    void compensate_shouldLeaveACompletedSagaAlone() {
+        Long orderId = paidOrder();
+        inTransaction(() -> saga.inventoryCommitted(orderId));
+
+        inTransaction(() -> saga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-commit-parked"));
+
+        assertEquals(SagaStatus.COMPLETED, sagaStatus(orderId));
+        assertEquals(OrderStatus.CONFIRMED, orderRepository.findById(orderId).orElseThrow().getStatus());
+        assertFalse(steps(orderId).containsKey(SagaStep.RELEASE_INVENTORY));
+        verify(outboxService, never()).enqueueInventoryRelease(any(), any(), any());
+        verify(paymentService, never()).initiateRefund(any(), any());
+    }
+
+    @Test
+    void resume_shouldRetryOnlyTheCompensationsThatFailed() {
+        Long orderId = paidOrder();
+        doThrow(new RuntimeException("refund api down")).doNothing()
+                .when(paymentService).initiateRefund(any(), any());
+
+        inTransaction(() -> saga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-unavailable"));
+
+        Map<SagaStep, CheckoutSagaStep> steps = steps(orderId);
+        assertEquals(SagaStepStatus.FAILED, steps.get(SagaStep.REFUND_PAYMENT).getStatus());
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.CANCEL_ORDER).getStatus());
+        assertEquals(SagaStatus.COMPENSATING, sagaStatus(orderId));
+        // The failed refund rolled back, the payment is still captured
+        assertEquals(PaymentStatus.CAPTURED, orderRepository.findById(orderId).orElseThrow().getPaymentStatus());
+
+        resume();
+
+        steps = steps(orderId);
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.REFUND_PAYMENT).getStatus());
+        assertEquals(2, steps.get(SagaStep.REFUND_PAYMENT).getAttempts());
+        assertEquals(1, steps.get(SagaStep.CANCEL_ORDER).getAttempts());
+        assertEquals(SagaStatus.COMPENSATED, sagaStatus(orderId));
+        assertEquals(1, meterRegistry.counter("checkout.saga.steps", "step", "REFUND_PAYMENT", "result", "failed").count());
+    }
+
+    @Test
+    void resume_shouldGiveUpOnACompensationThatRunsOutOfAttempts() {
+        Long orderId = paidOrder();
+        doThrow(new RuntimeException("refund api down")).when(paymentService).initiateRefund(any(), any());
+        inTransaction(() -> saga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-unavailable"));
+
+        resume();
+        assertEquals(SagaStatus.COMPENSATING, sagaStatus(orderId));
+        resume();
+
+        assertEquals(SagaStatus.FAILED_COMPENSATION, sagaStatus(orderId));
+        assertEquals(3, steps(orderId).get(SagaStep.REFUND_PAYMENT).getAttempts());
+        assertEquals(1, meterRegistry.counter("checkout.saga.failed-compensations").count());
+
+        // No longer swept, so it can't crowd out sagas that can still finish
+        resume();
+        verify(paymentService, times(3)).initiateRefund(any(), any());
+        assertEquals(1, meterRegistry.counter("checkout.saga.failed-compensations").count());
+    }
+
+    @Test
+    void compensate_shouldDoNothing_forAnOrderAlreadyBeingCompensated() {
+        Long orderId = paidOrder();
+        inTransaction(() -> saga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-unavailable"));
+
+        inTransaction(() -> saga.compensate(orderId, SagaStep.COMMIT_INVENTORY, "inventory-unavailable"));
+
+        verify(paymentService, times(1)).initiateRefund(any(), any());
+    }
+
+    @Test
+    void expired_shouldCloseTheSagasOfCancelledOrdersOnly() {
+        Long expired = placeOrder();
+        Long paid = paidOrder();
+        inTransaction(() -> orderRepository.cancelOrder(expired, OrderStatus.CANCELLED, Instant.now()));
+
+        inTransaction(() -> saga.expired(List.of(expired, paid)));
+
+        assertEquals(SagaStatus.COMPENSATED, sagaStatus(expired));
+        assertEquals(SagaStepStatus.SKIPPED, steps(expired).get(SagaStep.CAPTURE_PAYMENT).getStatus());
+        assertEquals(SagaStatus.RUNNING, sagaStatus(paid));
+    }
+
+    @Test
+    void refundCapturedAfterCancel_shouldRefundAnOrderThatExpiredBeforeItWasPaid() {
+        Long orderId = placeOrder();
+        inTransaction(() -> orderRepository.cancelOrder(orderId, OrderStatus.CANCELLED, Instant.now()));
+        inTransaction(() -> saga.expired(List.of(orderId)));
+
+        inTransaction(() -> {
+            orderRepository.findById(orderId).orElseThrow().setPaymentStatus(PaymentStatus.CAPTURED);
+            saga.refundCapturedAfterCancel(List.of(orderId));
+        });
+
+        assertEquals(PaymentStatus.REFUND_INITIATED, orderRepository.findById(orderId).orElseThrow().getPaymentStatus());
+        verify(paymentService).initiateRefund(orderId, 500 * 100);
+        verify(outboxService, never()).enqueueInventoryRelease(any(), any(), any());
+        Map<SagaStep, CheckoutSagaStep> steps = steps(orderId);
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.CAPTURE_PAYMENT).getStatus());
+        assertEquals(SagaStepStatus.DONE, steps.get(SagaStep.REFUND_PAYMENT).getStatus());
+        assertEquals(SagaStepStatus.SKIPPED, steps.get(SagaStep.RELEASE_INVENTORY).getStatus());
+        assertEquals(SagaStepStatus.SKIPPED, steps.get(SagaStep.CANCEL_ORDER).getStatus());
+        assertEquals(SagaStatus.COMPENSATED, sagaStatus(orderId));
+        assertEquals("captured-after-cancel", sagaRepository.findById(orderId).orElseThrow().getReason());
+    }
+
+    @Test
+    void refundCapturedAfterCancel_shouldRunTheRefundAgain_afterACompensationThatSkippedIt() {
+        Long orderId = placeOrder();
+        // Compensated while unpaid, so the refund was skipped
+        inTransaction(() -> saga.compensate(orderId, SagaStep.CAPTURE_PAYMENT, "payment-failed"));
+        assertEquals(SagaStepStatus.SKIPPED, steps(orderId).get(SagaStep.REFUND_PAYMENT).getStatus());
+
+        inTransaction(() -> {
+            orderRepository.findById(orderId).orElseThrow().setPaymentStatus(PaymentStatus.CAPTURED);
+            saga.refundCapturedAfterCancel(List.of(orderId));
+        });
+
+        verify(paymentService).initiateRefund(orderId, 500 * 100);
+        assertEquals(SagaStepStatus.DONE, steps(orderId).get(SagaStep.REFUND_PAYMENT).getStatus());
+        assertEquals(SagaStatus.COMPENSATED, sagaStatus(orderId));
+    }
+}
@@ -62,19 +62,34 @@ public class ProductController {
     //For Order Service
     @Tag(name = "For inter service communication", description = "Used for internal service communication only by order service")
     @PostMapping("/detailsOfIds")
-    public ResponseEntity<ApiResponse<List<ProductResponseDto>>> getProductFromIds(@RequestBody List<String> productIds) throws InterruptedException {
+    public ResponseEntity<ApiResponse<List<ProductResponseDto>>> getProductFromIds(@RequestBody List<String> productIds){
         List<ProductResponseDto> productResponseDtoList = productService.getDetailsOfIds(productIds);
-        //For testing retry
-        Thread.sleep(3000);
         return ResponseEntity.ok(new ApiResponse<>("Products fetched successfully", productResponseDtoList));
     }
 
     //for order service
     @Tag(name = "For inter service communication", description = "Used for internal service communication only by order service")
     @PostMapping(value = "/updateInventory", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<UpdateInventoryResponse> updateInventory(@RequestBody UpdateInventoryDto req){
-        UpdateInventoryResponse response = productService.updateInventory(req.getItem());
+    public ResponseEntity<UpdateInventoryResponse> updateInventory(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                                   @RequestBody UpdateInventoryDto req){
+        UpdateInventoryResponse response = productService.updateInventory(idempotencyKey, req.getItem());
         return ResponseEntity.ok(response);
     }
 
+    //for order service, puts back stock taken by an earlier updateInventory
+    @Tag(name = "For inter service communication", description = "Used for internal service communication only by order service")
+    @PostMapping(value = "/releaseInventory", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UpdateInventoryResponse> releaseInventory(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                                    @RequestBody UpdateInventoryDto req){
+        UpdateInventoryResponse response = productService.releaseInventory(idempotencyKey, req.getItem());
+        return ResponseEntity.ok(response);
+    }
+
+    //for order service, a batch of commit/release commands in one call, each applied and answered on its own
+    @Tag(name = "For inter service communication", description = "Used for internal service communication only by order service")
+    @PostMapping(value = "/inventoryCommands", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<InventoryCommandResult>> applyInventoryCommands(@RequestBody List<InventoryCommandRequest> commands){
+        return ResponseEntity.ok(productService.applyInventoryCommands(commands));
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.impetus.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// One entry of a /inventoryCommands batch: type is COMMIT (updateInventory) or RELEASE (releaseInventory)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class InventoryCommandRequest {
+    private String type;
+    private String idempotencyKey;
+    private List<UpdateInventoryRequest> item;
+}
@@ -0,0 +1,16 @@
+package com.impetus.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The status and body the command would have got from its own endpoint; response is only set for 200
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class InventoryCommandResult {
+    private String idempotencyKey;
+    private int status;
+    private UpdateInventoryResponse response;
+    private String error;
+}
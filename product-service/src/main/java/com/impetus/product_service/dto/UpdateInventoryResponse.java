@@ -12,6 +12,13 @@ import java.util.List;
 public class UpdateInventoryResponse {
     private boolean success;
     private List<FailedItem> failedItems;
+    // Lines that were decremented but could not be put back; the caller must release them later
+    private List<UpdateInventoryRequest> pendingRelease = List.of();
+
+    public UpdateInventoryResponse(boolean success, List<FailedItem> failedItems) {
+        this.success = success;
+        this.failedItems = failedItems;
+    }
 
     @Data
     @AllArgsConstructor
@@ -0,0 +1,38 @@
+package com.impetus.product_service.entity;
+
+import com.impetus.product_service.dto.UpdateInventoryResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Record of an inventory command already applied for an {@code Idempotency-Key}, so a redelivered
+ * command from the order-service outbox replays the stored response instead of moving stock twice.
+ * A null response means the command is still being applied by whoever claimed it at {@code claimedAt}; once
+ * {@code inventory.command.lease} has passed that owner is presumed dead and another delivery may take over.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Document("inventory_command")
+public class InventoryCommand {
+    @Id
+    private String id;
+
+    private String type;
+
+    private UpdateInventoryResponse response;
+
+    // Keys only need to outlive the sender's retry window
+    @Indexed(expireAfter = "7d")
+    private Instant createdAt;
+
+    private Instant claimedAt;
+}
@@ -10,7 +10,9 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @AllArgsConstructor
@@ -41,6 +43,9 @@ public class Product {
 
     private Map<String, Object> attributes = new HashMap<>();
 
+    // Inventory commands that changed this stock and haven't finished yet, see ProductServiceImpl.updateInventoryBulk
+    private List<String> inventoryOps = new ArrayList<>();
+
     private Instant createdAt = Instant.now();
     private Instant updatedAt = Instant.now();
 }
@@ -0,0 +1,8 @@
+package com.impetus.product_service.exception;
+
+// Another delivery of the same inventory command holds its Idempotency-Key; answered with 409 so the sender retries
+public class InventoryCommandInProgressException extends RuntimeException {
+    public InventoryCommandInProgressException(String message) {
+        super(message);
+    }
+}
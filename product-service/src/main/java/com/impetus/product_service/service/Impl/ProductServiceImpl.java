@@ -1,37 +1,66 @@
 package com.impetus.product_service.service.Impl;
 
 import com.impetus.product_service.dto.*;
+import com.impetus.product_service.entity.InventoryCommand;
 import com.impetus.product_service.entity.Product;
+import com.impetus.product_service.exception.InventoryCommandInProgressException;
 import com.impetus.product_service.repository.ProductRepository;
 import com.impetus.product_service.service.ProductService;
+import com.mongodb.bulk.BulkWriteError;
 import jakarta.ws.rs.NotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
 
+    private static final String COMMAND_COMMIT = "COMMIT";
+    private static final String COMMAND_RELEASE = "RELEASE";
+    // Ids of the unfinished inventory commands that changed a product's stock, see updateInventoryBulk
+    private static final String INVENTORY_OPS = "inventoryOps";
+
     private final ProductRepository productRepository;
     private final MongoTemplate mongoTemplate;
 
+    // bulk = one bulkWrite per order, false keeps the legacy findAndModify-per-line path
+    @Value("${inventory.update.bulk-enabled:true}")
+    private boolean bulkInventoryUpdate;
+
+    // How long a claimed command may stay unfinished before another delivery takes it over
+    @Value("${inventory.command.lease:PT1M}")
+    private Duration commandLease = Duration.ofMinutes(1);
+
     private ProductResponseDto toResponse(Product p){
         ProductResponseDto r = new ProductResponseDto();
         r.setId(p.getId());
@@ -139,6 +168,284 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public UpdateInventoryResponse updateInventory(List<UpdateInventoryRequest> items){
+        return bulkInventoryUpdate ? updateInventoryBulk(items) : updateInventorySequential(items);
+    }
+
+    private UpdateInventoryResponse updateInventory(List<UpdateInventoryRequest> items, String opId){
+        return bulkInventoryUpdate ? updateInventoryBulk(items, opId) : updateInventorySequential(items);
+    }
+
+    @Override
+    public UpdateInventoryResponse updateInventory(String idempotencyKey, List<UpdateInventoryRequest> items){
+        if(idempotencyKey == null || idempotencyKey.isBlank()){
+            return updateInventory(items);
+        }
+        return applyOnce(idempotencyKey, COMMAND_COMMIT, items, () -> updateInventory(items, idempotencyKey));
+    }
+
+    @Override
+    public UpdateInventoryResponse releaseInventory(String idempotencyKey, List<UpdateInventoryRequest> items){
+        if(idempotencyKey == null || idempotencyKey.isBlank()){
+            throw new IllegalArgumentException("Idempotency-Key is required to release inventory");
+        }
+        return applyOnce(idempotencyKey, COMMAND_RELEASE, items, () -> release(items, idempotencyKey));
+    }
+
+    @Override
+    public List<InventoryCommandResult> applyInventoryCommands(List<InventoryCommandRequest> commands){
+        List<InventoryCommandResult> results = new ArrayList<>(commands.size());
+        for(InventoryCommandRequest command : commands){
+            results.add(applyCommand(command));
+        }
+        return results;
+    }
+
+    // Answers each command as its own endpoint would, so one bad or busy command doesn't fail the rest
+    private InventoryCommandResult applyCommand(InventoryCommandRequest command){
+        String key = command.getIdempotencyKey();
+        try{
+            if(key == null || key.isBlank()){
+                throw new IllegalArgumentException("Idempotency-Key is required for batched inventory commands");
+            }
+            UpdateInventoryResponse response = switch (String.valueOf(command.getType())) {
+                case COMMAND_COMMIT -> updateInventory(key, command.getItem());
+                case COMMAND_RELEASE -> releaseInventory(key, command.getItem());
+                default -> throw new IllegalArgumentException("Unknown inventory command type " + command.getType());
+            };
+            return new InventoryCommandResult(key, HttpStatus.OK.value(), response, null);
+        }catch (InventoryCommandInProgressException e){
+            return new InventoryCommandResult(key, HttpStatus.CONFLICT.value(), null, e.getMessage());
+        }catch (IllegalArgumentException e){
+            return new InventoryCommandResult(key, HttpStatus.BAD_REQUEST.value(), null, e.getMessage());
+        }catch (RuntimeException e){
+            log.error("Inventory command {} failed", key, e);
+            return new InventoryCommandResult(key, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, e.getMessage());
+        }
+    }
+
+    /**
+     * Claims the key before touching stock, so a concurrent or repeated delivery of the same command either
+     * replays the stored response or is rejected (409) while the first one is still in flight. A claim left
+     * unfinished past {@code inventory.command.lease} is taken over; the command's stock changes are marked with
+     * its key, so lines the dead owner already applied are not applied twice. The marks stay until the response
+     * is recorded, however much other traffic the products see in the meantime, and are cleared after that.
+     */
+    private UpdateInventoryResponse applyOnce(String idempotencyKey, String type, List<UpdateInventoryRequest> items,
+                                              Supplier<UpdateInventoryResponse> command){
+        Instant now = Instant.now();
+        try{
+            mongoTemplate.insert(new InventoryCommand(idempotencyKey, type, null, now, now));
+        }catch (DuplicateKeyException e){
+            InventoryCommand existing = mongoTemplate.findById(idempotencyKey, InventoryCommand.class);
+            if(existing == null){
+                throw new InventoryCommandInProgressException("Inventory command " + idempotencyKey + " was released concurrently, retry");
+            }
+            if(!type.equals(existing.getType())){
+                throw new IllegalArgumentException("Idempotency-Key " + idempotencyKey + " was already used for " + existing.getType());
+            }
+            if(existing.getResponse() != null){
+                log.info("Replaying inventory command {}", idempotencyKey);
+                // In case the first delivery died between recording the response and clearing its marks
+                clearMarks(idempotencyKey, items);
+                return existing.getResponse();
+            }
+            if(!takeOver(existing, now)){
+                throw new InventoryCommandInProgressException("Inventory command " + idempotencyKey + " is still being applied");
+            }
+            log.warn("Taking over inventory command {} left unfinished since {}", idempotencyKey, claimedAt(existing));
+        }
+
+        UpdateInventoryResponse response;
+        try{
+            response = command.get();
+        }catch (RuntimeException e){
+            // Nothing was recorded as applied, let the sender retry with the same key
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(idempotencyKey)), InventoryCommand.class);
+            throw e;
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(idempotencyKey)),
+                new Update().set("response", response), InventoryCommand.class);
+        clearMarks(idempotencyKey, items);
+        return response;
+    }
+
+    // Once a command's outcome is recorded nothing reads its marks again; one left behind only costs space
+    private void clearMarks(String opId, List<UpdateInventoryRequest> items){
+        Set<String> productIds = new HashSet<>();
+        items.forEach(it -> productIds.add(it.getProductId()));
+        if(productIds.isEmpty()){
+            return;
+        }
+        try{
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(productIds).and(INVENTORY_OPS).is(opId)),
+                    new Update().pull(INVENTORY_OPS, opId), Product.class, "product");
+        }catch (RuntimeException e){
+            log.warn("Could not clear inventory command {} from {}: {}", opId, productIds, e.getMessage());
+        }
+    }
+
+    private boolean takeOver(InventoryCommand existing, Instant now){
+        Instant claimedAt = claimedAt(existing);
+        if(claimedAt != null && claimedAt.plus(commandLease).isAfter(now)){
+            return false;
+        }
+        // Only one of several redeliveries racing for an expired claim wins it
+        Query query = new Query(Criteria.where("_id").is(existing.getId())
+                .and("response").is(null)
+                .and("claimedAt").is(existing.getClaimedAt()));
+        return mongoTemplate.updateFirst(query, new Update().set("claimedAt", now), InventoryCommand.class)
+                .getModifiedCount() == 1;
+    }
+
+    // Claims written before claimedAt existed count from their creation
+    private static Instant claimedAt(InventoryCommand command){
+        return command.getClaimedAt() != null ? command.getClaimedAt() : command.getCreatedAt();
+    }
+
+    private UpdateInventoryResponse release(List<UpdateInventoryRequest> items, String opId){
+        Map<String, Integer> qtyByProduct = new LinkedHashMap<>();
+        for(UpdateInventoryRequest it : items){
+            qtyByProduct.merge(it.getProductId(), it.getQuantity(), Integer::sum);
+        }
+        List<String> productIds = new ArrayList<>(qtyByProduct.keySet());
+        if(productIds.isEmpty()){
+            return new UpdateInventoryResponse(true, List.of());
+        }
+
+        // Marked with the key like decrements, so a taken-over release doesn't give the same stock back twice
+        BulkOperations increment = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class, "product");
+        for(String productId : productIds){
+            increment.updateOne(new Query(Criteria.where("_id").is(productId).and(INVENTORY_OPS).ne(opId)),
+                    new Update().inc("inventoryQuantity", qtyByProduct.get(productId)).addToSet(INVENTORY_OPS, opId));
+        }
+        try{
+            increment.execute();
+            return new UpdateInventoryResponse(true, List.of());
+        }catch (BulkOperationException e){
+            // Lines that did land stay applied under this key; hand the rest back to the caller
+            List<UpdateInventoryRequest> pendingRelease = new ArrayList<>();
+            for(BulkWriteError error : e.getErrors()){
+                String productId = productIds.get(error.getIndex());
+                log.error("Release failed for {} {}", productId, error.getMessage());
+                pendingRelease.add(new UpdateInventoryRequest(productId, qtyByProduct.get(productId)));
+            }
+            return new UpdateInventoryResponse(false, List.of(), pendingRelease);
+        }
+    }
+
+    /**
+     * Applies every conditional decrement in a single unordered bulkWrite of plain {@code updateOne}s on
+     * {@code {_id, inventoryQuantity >= qty}}. Nothing is upserted, so an unknown id never creates a document.
+     * <p>
+     * When fewer lines match than were sent, one find over the ids tells missing products from short ones. Each
+     * decrement also adds an id for this call to the product's {@code inventoryOps}, so the same find shows
+     * which lines did apply and are undone, even if other orders moved the stock since. The id stays there until
+     * the call is done.
+     */
+    public UpdateInventoryResponse updateInventoryBulk(List<UpdateInventoryRequest> items){
+        String opId = UUID.randomUUID().toString();
+        UpdateInventoryResponse response = updateInventoryBulk(items, opId);
+        clearMarks(opId, items);
+        return response;
+    }
+
+    /**
+     * As above, with the id to mark the decrements with. A line already carrying {@code opId} is left alone and
+     * counted as applied, which makes re-running a command under its idempotency key safe.
+     */
+    private UpdateInventoryResponse updateInventoryBulk(List<UpdateInventoryRequest> items, String opId){
+        // Coalesce repeated products so each document is touched once
+        Map<String, Integer> qtyByProduct = new LinkedHashMap<>();
+        for(UpdateInventoryRequest it : items){
+            qtyByProduct.merge(it.getProductId(), it.getQuantity(), Integer::sum);
+        }
+        List<String> productIds = new ArrayList<>(qtyByProduct.keySet());
+        if(productIds.isEmpty()){
+            return new UpdateInventoryResponse(true, List.of());
+        }
+
+        BulkOperations decrement = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class, "product");
+        for(String productId : productIds){
+            int qty = qtyByProduct.get(productId);
+            decrement.updateOne(new Query(Criteria.where("_id").is(productId).and("inventoryQuantity").gte(qty)
+                            .and(INVENTORY_OPS).ne(opId)),
+                    new Update().inc("inventoryQuantity", -qty).addToSet(INVENTORY_OPS, opId));
+        }
+
+        int matched;
+        Set<Integer> errored = new HashSet<>();
+        try{
+            matched = decrement.execute().getMatchedCount();
+        }catch (BulkOperationException e){
+            matched = e.getResult() == null ? 0 : e.getResult().getMatchedCount();
+            for(BulkWriteError error : e.getErrors()){
+                log.error("Error updating inventory for {} {}", productIds.get(error.getIndex()), error.getMessage());
+                errored.add(error.getIndex());
+            }
+        }
+        if(matched == productIds.size() && errored.isEmpty()){
+            return new UpdateInventoryResponse(true, List.of());
+        }
+
+        // Which lines applied, which products are gone and what the short ones have left, in one round trip
+        Query query = new Query(Criteria.where("_id").in(productIds));
+        query.fields().include("inventoryQuantity").include(INVENTORY_OPS);
+        Map<String, Product> current = new HashMap<>();
+        for(Product p : mongoTemplate.find(query, Product.class, "product")){
+            current.put(p.getId(), p);
+        }
+
+        List<UpdateInventoryResponse.FailedItem> failed = new ArrayList<>();
+        List<String> applied = new ArrayList<>();
+        for(int i = 0; i < productIds.size(); i++){
+            String productId = productIds.get(i);
+            Product p = current.get(productId);
+            int available = p == null || p.getInventoryQuantity() == null ? 0 : p.getInventoryQuantity();
+            if(p == null){
+                failed.add(new UpdateInventoryResponse.FailedItem(productId, "NOT_FOUND", 0));
+            }else if(p.getInventoryOps() != null && p.getInventoryOps().contains(opId)){
+                applied.add(productId);
+            }else if(errored.contains(i)){
+                failed.add(new UpdateInventoryResponse.FailedItem(productId, "ERROR", available));
+            }else {
+                failed.add(new UpdateInventoryResponse.FailedItem(productId, "INSUFFICIENT_STOCK", available));
+            }
+        }
+
+        if(failed.isEmpty()){
+            // Every line carries opId: an earlier run of this command applied the ones that didn't match now
+            return new UpdateInventoryResponse(true, List.of());
+        }
+
+        // Undo the applied decrements in one round trip; what doesn't land goes back to the caller's outbox
+        List<UpdateInventoryRequest> pendingRelease = new ArrayList<>();
+        if(!applied.isEmpty()){
+            BulkOperations compensate = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class, "product");
+            for(String productId : applied){
+                compensate.updateOne(new Query(Criteria.where("_id").is(productId)),
+                        new Update().inc("inventoryQuantity", qtyByProduct.get(productId)).pull(INVENTORY_OPS, opId));
+            }
+            Set<Integer> notRolledBack = new HashSet<>();
+            try{
+                compensate.execute();
+            }catch (BulkOperationException e){
+                e.getErrors().forEach(error -> notRolledBack.add(error.getIndex()));
+                log.error("Rollback failed for {} {}", notRolledBack.stream().map(applied::get).toList(), e.getMessage());
+            }catch (Exception e){
+                for(int i = 0; i < applied.size(); i++){
+                    notRolledBack.add(i);
+                }
+                log.error("Rollback failed for {} {}", applied, e.getMessage());
+            }
+            for(int i : notRolledBack){
+                String productId = applied.get(i);
+                pendingRelease.add(new UpdateInventoryRequest(productId, qtyByProduct.get(productId)));
+            }
+        }
+        return new UpdateInventoryResponse(false, failed, pendingRelease);
+    }
+
+    public UpdateInventoryResponse updateInventorySequential(List<UpdateInventoryRequest> items){
         List<UpdateInventoryRequest> succeeded = new ArrayList<>();
         List<UpdateInventoryResponse.FailedItem> failed = new ArrayList<>();
 
@@ -174,15 +481,16 @@ public class ProductServiceImpl implements ProductService {
 
         }
         if(!failed.isEmpty()){
+            List<UpdateInventoryRequest> pendingRelease = new ArrayList<>();
             for (UpdateInventoryRequest it: succeeded){
                 try{
                     mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(it.getProductId())),new Update().inc("inventoryQuantity", it.getQuantity()), Product.class, "product");
                 }catch (Exception e){
                     log.error("Rollback failed for {} {}", it.getProductId(), e.getMessage());
-                    //Add this rollback in queue so it can rollback later
+                    pendingRelease.add(it);
                 }
             }
-            return new UpdateInventoryResponse(false, failed);
+            return new UpdateInventoryResponse(false, failed, pendingRelease);
         }
         return new UpdateInventoryResponse(true, List.of());
     }
@@ -23,4 +23,7 @@ public interface ProductService {
 
     //For order service
     UpdateInventoryResponse updateInventory(List<UpdateInventoryRequest> listOfProducts);
+    UpdateInventoryResponse updateInventory(String idempotencyKey, List<UpdateInventoryRequest> listOfProducts);
+    UpdateInventoryResponse releaseInventory(String idempotencyKey, List<UpdateInventoryRequest> listOfProducts);
+    List<InventoryCommandResult> applyInventoryCommands(List<InventoryCommandRequest> commands);
 }
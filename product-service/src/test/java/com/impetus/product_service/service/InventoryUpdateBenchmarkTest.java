@@ -0,0 +1,102 @@
+package com.impetus.product_service.service;
+
+import com.impetus.product_service.dto.UpdateInventoryRequest;
+import com.impetus.product_service.dto.UpdateInventoryResponse;
+import com.impetus.product_service.entity.Product;
+import com.impetus.product_service.repository.ProductRepository;
+import com.impetus.product_service.service.Impl.ProductServiceImpl;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.mongodb.MongoDBContainer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the legacy findAndModify-per-line inventory update with the single bulkWrite path against a real
+ * MongoDB, for orders of 1, 10 and 100 lines. Skipped when Docker isn't available.
+ * <p>
+ * Run with: {@code mvn -pl product-service test -Dtest=InventoryUpdateBenchmarkTest}
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class InventoryUpdateBenchmarkTest {
+
+    private static final int WARMUP_ORDERS = 50;
+    private static final int MEASURED_ORDERS = 200;
+
+    @Container
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.4.2").withReplicaSet();
+
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+    private static ProductServiceImpl service;
+
+    @BeforeAll
+    static void setUp() {
+        mongoClient = MongoClients.create(mongoDBContainer.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(mongoClient, "productdb");
+        ProductRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(ProductRepository.class);
+        service = new ProductServiceImpl(repository, mongoTemplate);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        mongoClient.close();
+    }
+
+    @ParameterizedTest(name = "{0} items per order")
+    @ValueSource(ints = {1, 10, 100})
+    void compareSequentialAndBulk(int itemsPerOrder) {
+        List<UpdateInventoryRequest> order = seed(itemsPerOrder);
+
+        double sequential = measure(order, service::updateInventorySequential);
+        double bulk = measure(order, service::updateInventoryBulk);
+
+        System.out.printf("inventory update, %3d items/order: sequential %8.3f ms/order, bulk %8.3f ms/order (%.1fx)%n",
+                itemsPerOrder, sequential, bulk, sequential / bulk);
+    }
+
+    private List<UpdateInventoryRequest> seed(int items) {
+        mongoTemplate.dropCollection("product");
+        List<Product> products = new ArrayList<>();
+        List<UpdateInventoryRequest> order = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Product p = new Product();
+            p.setName("Bench " + i);
+            p.setSku("BENCH-" + i);
+            p.setPrice(BigDecimal.TEN);
+            p.setInventoryQuantity(1_000_000);
+            products.add(p);
+        }
+        for (Product saved : mongoTemplate.insert(products, "product")) {
+            order.add(new UpdateInventoryRequest(saved.getId(), 1));
+        }
+        return order;
+    }
+
+    private double measure(List<UpdateInventoryRequest> order,
+                           Function<List<UpdateInventoryRequest>, UpdateInventoryResponse> path) {
+        for (int i = 0; i < WARMUP_ORDERS; i++) {
+            assertTrue(path.apply(order).isSuccess());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ORDERS; i++) {
+            assertTrue(path.apply(order).isSuccess());
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ORDERS;
+    }
+}
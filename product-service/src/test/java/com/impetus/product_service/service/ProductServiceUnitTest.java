@@ -2,9 +2,16 @@ package com.impetus.product_service.service;
 
 
 import com.impetus.product_service.dto.*;
+import com.impetus.product_service.entity.InventoryCommand;
 import com.impetus.product_service.entity.Product;
+import com.impetus.product_service.exception.InventoryCommandInProgressException;
 import com.impetus.product_service.repository.ProductRepository;
 import com.impetus.product_service.service.Impl.ProductServiceImpl;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
 import jakarta.ws.rs.NotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,24 +19,34 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.bson.BsonDocument;
+
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -389,4 +406,298 @@ class ProductServiceUnitTest {
                 argThat(u -> u.getUpdateObject().get("$inc").toString().contains("inventoryQuantity=2")),
                 eq(Product.class), eq("product"));
     }
+
+    // ---------- updateInventory (bulkWrite mode) ----------
+    private BulkOperations enableBulkMode() {
+        ReflectionTestUtils.setField(service, "bulkInventoryUpdate", true);
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Product.class), eq("product")))
+                .thenReturn(bulk);
+        return bulk;
+    }
+
+    private BulkOperationException bulkFailure(List<BulkWriteError> errors, int matched) {
+        BulkWriteResult partial = BulkWriteResult.acknowledged(0, matched, 0, matched, List.of(), List.of());
+        return new BulkOperationException("bulk failed",
+                new MongoBulkWriteException(partial, errors, null, new ServerAddress(), Set.of()));
+    }
+
+    private List<Update> recordUpdates(BulkOperations bulk) {
+        List<Update> updates = new ArrayList<>();
+        when(bulk.updateOne(any(Query.class), any(Update.class))).thenAnswer(inv -> {
+            updates.add(inv.getArgument(1));
+            return bulk;
+        });
+        return updates;
+    }
+
+    // The id the bulk decrement pushed onto inventoryOps, as the follow-up find would see it
+    private String opIdOf(List<Update> updates) {
+        Matcher m = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}")
+                .matcher(updates.get(0).getUpdateObject().toString());
+        assertTrue(m.find());
+        return m.group();
+    }
+
+    private Product withOps(Product p, String... ops) {
+        p.setInventoryOps(new ArrayList<>(List.of(ops)));
+        return p;
+    }
+
+    @Test
+    void updateInventory_bulkMode_shouldApplyAllDecrementsInOneBulkWrite() {
+        BulkOperations bulk = enableBulkMode();
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 2, 0, 2, List.of(), List.of()));
+
+        UpdateInventoryResponse resp = service.updateInventory(List.of(
+                new UpdateInventoryRequest("b1", 2),
+                new UpdateInventoryRequest("b2", 3),
+                new UpdateInventoryRequest("b1", 1)));
+
+        assertTrue(resp.isSuccess());
+        assertTrue(resp.getFailedItems().isEmpty());
+        // repeated product lines are coalesced into one conditional $inc, and nothing is upserted
+        verify(bulk).updateOne(
+                argThat((Query q) -> "b1".equals(q.getQueryObject().get("_id"))),
+                argThat((Update u) -> u.getUpdateObject().get("$inc").toString().contains("inventoryQuantity=-3")));
+        verify(bulk, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, never()).upsert(any(Query.class), any(Update.class));
+        verify(bulk, times(1)).execute();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Product.class), eq("product"));
+        // the call's mark is kept however many others the product sees, and taken off once the call is done
+        verify(bulk, times(2)).updateOne(any(Query.class), argThat((Update u) -> u.getUpdateObject().containsKey("$addToSet")
+                && !u.getUpdateObject().containsKey("$push")));
+        verify(mongoTemplate).updateMulti(argThat((Query q) -> q.getQueryObject().toString().contains("inventoryOps")),
+                argThat((Update u) -> u.getUpdateObject().containsKey("$pull")), eq(Product.class), eq("product"));
+    }
+
+    @Test
+    void updateInventory_bulkMode_shouldReportPerItemFailures_andCompensateInOneBulkWrite() {
+        BulkOperations bulk = enableBulkMode();
+        List<Update> updates = recordUpdates(bulk);
+        // only c1 matches: c2 lacks stock and c404 does not exist
+        when(bulk.execute())
+                .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()))
+                .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class), eq("product"))).thenAnswer(inv -> List.of(
+                withOps(newProduct("c1", "A", new BigDecimal("10"), 3), "older-op", opIdOf(updates)),
+                withOps(newProduct("c2", "B", new BigDecimal("10"), 1), "older-op")));
+
+        UpdateInventoryResponse resp = service.updateInventory(List.of(
+                new UpdateInventoryRequest("c1", 2),
+                new UpdateInventoryRequest("c2", 5),
+                new UpdateInventoryRequest("c404", 1)));
+
+        assertFalse(resp.isSuccess());
+        assertEquals(2, resp.getFailedItems().size());
+        assertEquals("c2", resp.getFailedItems().get(0).getProductId());
+        assertEquals("INSUFFICIENT_STOCK", resp.getFailedItems().get(0).getReason());
+        assertEquals(1, resp.getFailedItems().get(0).getAvailableQuantity());
+        assertEquals("c404", resp.getFailedItems().get(1).getProductId());
+        assertEquals("NOT_FOUND", resp.getFailedItems().get(1).getReason());
+        assertTrue(resp.getPendingRelease().isEmpty());
+
+        // only the applied line is given back, and no document is created or removed
+        verify(bulk).updateOne(
+                argThat((Query q) -> "c1".equals(q.getQueryObject().get("_id"))),
+                argThat((Update u) -> u.getUpdateObject().get("$inc").toString().contains("inventoryQuantity=2")));
+        verify(bulk, times(4)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, never()).upsert(any(Query.class), any(Update.class));
+        verify(bulk, never()).remove(any(Query.class));
+        verify(bulk, times(2)).execute();
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Product.class), eq("product"));
+    }
+
+    @Test
+    void updateInventory_bulkMode_shouldNotUndoAnything_whenNoLineApplied() {
+        BulkOperations bulk = enableBulkMode();
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class), eq("product"))).thenReturn(List.of());
+
+        UpdateInventoryResponse resp = service.updateInventory(List.of(new UpdateInventoryRequest("e404", 1)));
+
+        assertFalse(resp.isSuccess());
+        assertEquals("NOT_FOUND", resp.getFailedItems().get(0).getReason());
+        verify(bulk, times(1)).execute();
+    }
+
+    @Test
+    void updateInventory_bulkMode_shouldReportLinesThatCouldNotBeRolledBack() {
+        BulkOperations bulk = enableBulkMode();
+        List<Update> updates = recordUpdates(bulk);
+        when(bulk.execute())
+                .thenThrow(bulkFailure(
+                        List.of(new BulkWriteError(91, "shutdown in progress", new BsonDocument(), 2)), 2))
+                // compensation holds d1 and d2; the give-back for d2 fails
+                .thenThrow(bulkFailure(
+                        List.of(new BulkWriteError(91, "shutdown in progress", new BsonDocument(), 1)), 1));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class), eq("product"))).thenAnswer(inv -> List.of(
+                withOps(newProduct("d1", "A", new BigDecimal("10"), 5), opIdOf(updates)),
+                withOps(newProduct("d2", "B", new BigDecimal("10"), 5), opIdOf(updates)),
+                withOps(newProduct("d3", "C", new BigDecimal("10"), 20))));
+
+        UpdateInventoryResponse resp = service.updateInventory(List.of(
+                new UpdateInventoryRequest("d1", 1),
+                new UpdateInventoryRequest("d2", 4),
+                new UpdateInventoryRequest("d3", 9)));
+
+        assertFalse(resp.isSuccess());
+        assertEquals("ERROR", resp.getFailedItems().get(0).getReason());
+        assertEquals(20, resp.getFailedItems().get(0).getAvailableQuantity());
+        assertEquals(1, resp.getPendingRelease().size());
+        assertEquals("d2", resp.getPendingRelease().get(0).getProductId());
+        assertEquals(4, resp.getPendingRelease().get(0).getQuantity());
+    }
+
+    // ---------- idempotent inventory commands ----------
+    @Test
+    void updateInventory_withKey_shouldApplyOnce_andRecordResponse() {
+        BulkOperations bulk = enableBulkMode();
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+
+        UpdateInventoryResponse resp = service.updateInventory("inventory-commit:7", List.of(new UpdateInventoryRequest("k1", 1)));
+
+        assertTrue(resp.isSuccess());
+        verify(mongoTemplate).insert(argThat((InventoryCommand c) -> "inventory-commit:7".equals(c.getId()) && c.getResponse() == null));
+        // the marks only come off once the response is recorded, so a takeover before that still sees them
+        InOrder inOrder = inOrder(mongoTemplate);
+        inOrder.verify(mongoTemplate).updateFirst(argThat((Query q) -> "inventory-commit:7".equals(q.getQueryObject().get("_id"))),
+                argThat((Update u) -> u.getUpdateObject().get("$set").toString().contains("response")),
+                eq(InventoryCommand.class));
+        inOrder.verify(mongoTemplate).updateMulti(
+                argThat((Query q) -> "inventory-commit:7".equals(q.getQueryObject().get("inventoryOps"))),
+                argThat((Update u) -> u.getUpdateObject().get("$pull").toString().contains("inventory-commit:7")),
+                eq(Product.class), eq("product"));
+    }
+
+    @Test
+    void updateInventory_withKey_shouldReplayStoredResponse_onRedelivery() {
+        UpdateInventoryResponse stored = new UpdateInventoryResponse(true, List.of());
+        when(mongoTemplate.insert(any(InventoryCommand.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("inventory-commit:7", InventoryCommand.class))
+                .thenReturn(new InventoryCommand("inventory-commit:7", "COMMIT", stored, Instant.now(), Instant.now()));
+
+        UpdateInventoryResponse resp = service.updateInventory("inventory-commit:7", List.of(new UpdateInventoryRequest("k1", 1)));
+
+        assertSame(stored, resp);
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class), anyString());
+        // marks the first delivery may have left behind are cleared
+        verify(mongoTemplate).updateMulti(argThat((Query q) -> "inventory-commit:7".equals(q.getQueryObject().get("inventoryOps"))),
+                any(Update.class), eq(Product.class), eq("product"));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Product.class), eq("product"));
+    }
+
+    @Test
+    void updateInventory_withKey_shouldRejectRedelivery_whileFirstDeliveryIsInFlight() {
+        when(mongoTemplate.insert(any(InventoryCommand.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("inventory-commit:7", InventoryCommand.class))
+                .thenReturn(new InventoryCommand("inventory-commit:7", "COMMIT", null, Instant.now(), Instant.now()));
+
+        assertThrows(InventoryCommandInProgressException.class,
+                () -> service.updateInventory("inventory-commit:7", List.of(new UpdateInventoryRequest("k1", 1))));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(InventoryCommand.class));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class), anyString());
+    }
+
+    @Test
+    void updateInventory_withKey_shouldTakeOverAClaimPastItsLease_withoutReapplyingMarkedLines() {
+        BulkOperations bulk = enableBulkMode();
+        Instant abandoned = Instant.now().minus(Duration.ofMinutes(5));
+        when(mongoTemplate.insert(any(InventoryCommand.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("inventory-commit:7", InventoryCommand.class))
+                .thenReturn(new InventoryCommand("inventory-commit:7", "COMMIT", null, abandoned, abandoned));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(InventoryCommand.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        // the dead owner already took k1; only k2 still matches
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class), eq("product"))).thenReturn(List.of(
+                withOps(newProduct("k1", "A", new BigDecimal("10"), 4), "inventory-commit:7"),
+                withOps(newProduct("k2", "B", new BigDecimal("10"), 4), "inventory-commit:7")));
+
+        UpdateInventoryResponse resp = service.updateInventory("inventory-commit:7", List.of(
+                new UpdateInventoryRequest("k1", 1),
+                new UpdateInventoryRequest("k2", 1)));
+
+        assertTrue(resp.isSuccess());
+        // the takeover only wins if the claim is still the abandoned one
+        verify(mongoTemplate).updateFirst(argThat((Query q) -> abandoned.equals(q.getQueryObject().get("claimedAt"))),
+                argThat((Update u) -> u.getUpdateObject().get("$set").toString().contains("claimedAt")),
+                eq(InventoryCommand.class));
+        // decrements skip products already marked with the key, and nothing is given back
+        verify(bulk, times(2)).updateOne(argThat((Query q) -> q.getQueryObject().toString().contains("$ne=inventory-commit:7")),
+                any(Update.class));
+        verify(bulk, times(1)).execute();
+    }
+
+    @Test
+    void updateInventory_withKey_shouldStayInProgress_whenAnotherDeliveryTookTheClaimOver() {
+        Instant abandoned = Instant.now().minus(Duration.ofMinutes(5));
+        when(mongoTemplate.insert(any(InventoryCommand.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("inventory-commit:7", InventoryCommand.class))
+                .thenReturn(new InventoryCommand("inventory-commit:7", "COMMIT", null, abandoned, abandoned));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(InventoryCommand.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThrows(InventoryCommandInProgressException.class,
+                () -> service.updateInventory("inventory-commit:7", List.of(new UpdateInventoryRequest("k1", 1))));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class), anyString());
+    }
+
+    @Test
+    void updateInventory_withKey_shouldReleaseClaim_whenCommandThrows() {
+        BulkOperations bulk = enableBulkMode();
+        when(bulk.execute()).thenThrow(new IllegalStateException("connection reset"));
+
+        assertThrows(IllegalStateException.class,
+                () -> service.updateInventory("inventory-commit:8", List.of(new UpdateInventoryRequest("k1", 1))));
+        verify(mongoTemplate).remove(argThat((Query q) -> "inventory-commit:8".equals(q.getQueryObject().get("_id"))),
+                eq(InventoryCommand.class));
+    }
+
+    @Test
+    void releaseInventory_shouldIncrementEachProductOnce_andReturnUnappliedLines() {
+        BulkOperations bulk = enableBulkMode();
+        when(bulk.execute()).thenThrow(bulkFailure(
+                List.of(new BulkWriteError(91, "shutdown in progress", new BsonDocument(), 1)), 1));
+
+        UpdateInventoryResponse resp = service.releaseInventory("inventory-release:9", List.of(
+                new UpdateInventoryRequest("r1", 2),
+                new UpdateInventoryRequest("r2", 3),
+                new UpdateInventoryRequest("r1", 1)));
+
+        verify(bulk).updateOne(
+                argThat((Query q) -> "r1".equals(q.getQueryObject().get("_id"))),
+                argThat((Update u) -> u.getUpdateObject().get("$inc").toString().contains("inventoryQuantity=3")));
+        assertFalse(resp.isSuccess());
+        assertEquals(List.of("r2"), resp.getPendingRelease().stream().map(UpdateInventoryRequest::getProductId).toList());
+    }
+
+    @Test
+    void releaseInventory_shouldRequireKey() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.releaseInventory(null, List.of(new UpdateInventoryRequest("r1", 1))));
+    }
+
+    @Test
+    void applyInventoryCommands_shouldAnswerEachCommandWithItsOwnStatus() {
+        UpdateInventoryResponse stored = new UpdateInventoryResponse(true, List.of());
+        when(mongoTemplate.insert(any(InventoryCommand.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("inventory-commit:7", InventoryCommand.class))
+                .thenReturn(new InventoryCommand("inventory-commit:7", "COMMIT", stored, Instant.now(), Instant.now()));
+        when(mongoTemplate.findById("inventory-commit:8", InventoryCommand.class))
+                .thenReturn(new InventoryCommand("inventory-commit:8", "COMMIT", null, Instant.now(), Instant.now()));
+        List<UpdateInventoryRequest> item = List.of(new UpdateInventoryRequest("k1", 1));
+
+        List<InventoryCommandResult> results = service.applyInventoryCommands(List.of(
+                new InventoryCommandRequest("COMMIT", "inventory-commit:7", item),
+                new InventoryCommandRequest("COMMIT", "inventory-commit:8", item),
+                new InventoryCommandRequest("COMMIT", null, item),
+                new InventoryCommandRequest("RESERVE", "inventory-reserve:9", item)));
+
+        assertEquals(List.of(200, 409, 400, 400), results.stream().map(InventoryCommandResult::getStatus).toList());
+        assertSame(stored, results.get(0).getResponse());
+        assertEquals("inventory-commit:8", results.get(1).getIdempotencyKey());
+        assertNull(results.get(1).getResponse());
+    }
 }